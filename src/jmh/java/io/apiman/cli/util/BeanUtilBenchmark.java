@@ -0,0 +1,77 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.util;
+
+import io.apiman.cli.support.DeclarationGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures resolving the placeholders in a declaration, with one property per API, both from its text and
+ * from a precompiled template.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanUtilBenchmark {
+    @Param({"100", "10000"})
+    private int propertyCount;
+
+    private String declaration;
+    private PlaceholderTemplate template;
+    private Map<String, String> properties;
+
+    @Setup
+    public void setUp() throws Exception {
+        final DeclarationGenerator generator = new DeclarationGenerator()
+                .withApis(propertyCount)
+                .withPlaceholders(false);
+
+        declaration = generator.toYaml();
+        template = PlaceholderTemplate.compile(declaration);
+        properties = generator.getProperties();
+    }
+
+    @Benchmark
+    public String resolvePlaceholders() {
+        return BeanUtil.resolvePlaceholders(declaration, properties);
+    }
+
+    /**
+     * Renders a template compiled once, as when rendering a declaration for many environments.
+     */
+    @Benchmark
+    public String renderTemplate() {
+        return template.render(PlaceholderResolver.of(properties));
+    }
+}
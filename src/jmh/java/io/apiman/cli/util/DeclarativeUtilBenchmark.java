@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.apiman.cli.core.declarative.model.Declaration;
+import io.apiman.cli.support.DeclarationGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading declarations of increasing size, in each format, with and without shared properties, and
+ * rendering declarations that have already been compiled.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DeclarativeUtilBenchmark {
+    @Param({"10", "1000", "50000"})
+    private int apiCount;
+
+    @Param({".yml", ".json"})
+    private String format;
+
+    /**
+     * Whether placeholders are resolved from shared properties, rather than properties provided.
+     */
+    @Param({"false", "true"})
+    private boolean sharedProperties;
+
+    private Path declarationFile;
+    private ObjectMapper mapper;
+    private DeclarationTemplate template;
+    private Map<String, String> properties;
+
+    @Setup
+    public void setUp() throws Exception {
+        final DeclarationGenerator generator = new DeclarationGenerator()
+                .withApis(apiCount)
+                .withPolicies(2)
+                .withPlaceholders(sharedProperties);
+
+        declarationFile = generator.write(format);
+        mapper = ".json".equals(format) ? MappingUtil.JSON_MAPPER : MappingUtil.YAML_MAPPER;
+        properties = generator.getProperties();
+        template = DeclarativeUtil.compileDeclaration(declarationFile, mapper);
+    }
+
+    @TearDown
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(declarationFile);
+    }
+
+    @Benchmark
+    public Declaration loadDeclaration() {
+        return DeclarativeUtil.loadDeclaration(declarationFile, mapper, properties);
+    }
+
+    /**
+     * Renders a declaration compiled once, as when rendering a declaration for many environments.
+     */
+    @Benchmark
+    public Declaration renderDeclaration() {
+        return template.render(properties);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.util;
+
+import io.apiman.cli.core.api.model.Api;
+import io.apiman.cli.core.api.model.ApiConfig;
+import io.apiman.cli.core.declarative.model.Declaration;
+import io.apiman.cli.core.declarative.model.DeclarativeApi;
+import io.apiman.cli.core.declarative.model.DeclarativeGateway;
+import io.apiman.cli.core.declarative.model.DeclarativePolicy;
+import io.apiman.cli.core.gateway.model.Gateway;
+import io.apiman.cli.support.DeclarationGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures mapping declarative models to their Management API equivalents, and writing policy configurations
+ * as JSON, as done for each item when applying a declaration.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MappingUtilBenchmark {
+    private DeclarativeApi declarativeApi;
+    private DeclarativeGateway declarativeGateway;
+    private List<DeclarativePolicy> policies;
+
+    @Setup
+    public void setUp() throws Exception {
+        final DeclarationGenerator generator = new DeclarationGenerator()
+                .withApis(1)
+                .withPolicies(4);
+
+        final Declaration declaration = MappingUtil.YAML_MAPPER.readValue(generator.toYaml(), Declaration.class);
+        declarativeApi = declaration.getOrg().getApis().get(0);
+        declarativeGateway = declaration.getSystem().getGateways().get(0);
+        policies = declarativeApi.getPolicies();
+    }
+
+    @Benchmark
+    public Api mapApi() {
+        return MappingUtil.map(declarativeApi, Api.class);
+    }
+
+    @Benchmark
+    public ApiConfig mapApiConfig() {
+        return MappingUtil.map(declarativeApi.getConfig(), ApiConfig.class);
+    }
+
+    @Benchmark
+    public Gateway mapGateway() {
+        return MappingUtil.map(declarativeGateway, Gateway.class);
+    }
+
+    @Benchmark
+    public void writePolicyConfigs(Blackhole blackhole) {
+        policies.forEach(policy -> blackhole.consume(MappingUtil.safeWriteValueAsJson(policy.getConfig())));
+    }
+
+    @Benchmark
+    public void writePolicyConfigsForWire(Blackhole blackhole) {
+        policies.forEach(policy -> blackhole.consume(MappingUtil.safeWriteValueAsWireJson(policy.getConfig())));
+    }
+}
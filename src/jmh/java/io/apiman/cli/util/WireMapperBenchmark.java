@@ -0,0 +1,109 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.util;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.google.common.collect.ImmutableMap;
+import io.apiman.cli.core.api.model.ApiConfig;
+import io.apiman.cli.core.api.model.ApiGateway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Compares the serialisation time and payload size of Management API request bodies written as Retrofit's
+ * {@code JacksonConverter} did with the indented {@link MappingUtil#JSON_MAPPER}, and with the cached writers of
+ * the compact {@link MappingUtil#WIRE_MAPPER}.
+ * <p>
+ * Payload sizes are printed once per trial.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireMapperBenchmark {
+    @Param({"pretty", "wire"})
+    private String mapper;
+
+    private ApiConfig apiConfig;
+    private Map<String, Object> policyConfig;
+
+    private boolean wire;
+    private ObjectWriter apiConfigWriter;
+    private ObjectWriter policyConfigWriter;
+
+    @Setup
+    public void setUp() throws Exception {
+        apiConfig = new ApiConfig("http://example.com/api", "rest", true,
+                Collections.singletonList(new ApiGateway("TheGateway")));
+
+        // a representative policy, with nested configuration
+        final List<Map<String, Object>> rules = IntStream.range(0, 10)
+                .mapToObj(i -> ImmutableMap.<String, Object>of(
+                        "verb", "GET",
+                        "pathPattern", "/resource/" + i + "/.*",
+                        "roleId", "role" + i))
+                .collect(Collectors.toList());
+
+        policyConfig = ImmutableMap.of(
+                "limit", 100,
+                "granularity", "Api",
+                "period", "Minute",
+                "rules", rules);
+
+        wire = "wire".equals(mapper);
+        apiConfigWriter = MappingUtil.getWireWriter(ApiConfig.class);
+        policyConfigWriter = MappingUtil.getWireWriter(policyConfig.getClass());
+
+        System.out.printf("%n%s payload sizes: apiConfig=%d bytes, policyConfig=%d bytes%n", mapper,
+                writeApiConfig().length, writePolicyConfig().length);
+    }
+
+    @Benchmark
+    public byte[] writeApiConfig() throws Exception {
+        return wire ? apiConfigWriter.writeValueAsBytes(apiConfig) : writePretty(apiConfig);
+    }
+
+    @Benchmark
+    public byte[] writePolicyConfig() throws Exception {
+        return wire ? policyConfigWriter.writeValueAsBytes(policyConfig) : writePretty(policyConfig);
+    }
+
+    private static byte[] writePretty(Object obj) throws Exception {
+        return MappingUtil.JSON_MAPPER.writeValueAsString(obj).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -21,6 +21,14 @@ import io.apiman.cli.core.common.model.ManagementApiVersion;
 import io.apiman.cli.exception.CommandException;
 import io.apiman.cli.exception.ExitWithCodeException;
 import io.apiman.cli.management.ManagementApiUtil;
+import io.apiman.cli.management.metrics.MetricsFormat;
+import io.apiman.cli.management.metrics.MetricsUtil;
+import io.apiman.cli.management.transport.LimitConfig;
+import io.apiman.cli.management.transport.RetryConfig;
+import io.apiman.cli.management.transport.RetryMetrics;
+import io.apiman.cli.management.transport.TransportConfig;
+import io.apiman.cli.management.transport.TransportType;
+import io.apiman.cli.management.transport.TransportUtil;
 import io.apiman.cli.util.LogUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
@@ -62,6 +70,36 @@ public abstract class AbstractCommand implements Command {
     @Option(name = "--serverPassword", aliases = {"-sp"}, usage = "Management API server password")
     private String serverPassword = DEFAULT_SERVER_PASSWORD;
 
+    @Option(name = "--transport", usage = "Management API HTTP transport")
+    private TransportType transport = TransportType.DEFAULT_TRANSPORT;
+
+    @Option(name = "--maxConnectionsPerHost", usage = "Maximum connections per host, for the pooled transport")
+    private int maxConnectionsPerHost = TransportConfig.DEFAULT_MAX_CONNECTIONS_PER_HOST;
+
+    @Option(name = "--keepAlive", usage = "Seconds to keep idle connections open, for the pooled transport")
+    private int keepAliveSeconds = TransportConfig.DEFAULT_KEEP_ALIVE_SECONDS;
+
+    @Option(name = "--http2", usage = "Use HTTP/2 where supported by the server, for the pooled transport")
+    private boolean http2;
+
+    @Option(name = "--retries", usage = "Maximum number of retries of a failed Management API request")
+    private int maxRetries = RetryConfig.DEFAULT_MAX_RETRIES;
+
+    @Option(name = "--retryBackoff", usage = "Initial delay in milliseconds before retrying a failed request")
+    private long retryBackoffMillis = RetryConfig.DEFAULT_INITIAL_BACKOFF_MILLIS;
+
+    @Option(name = "--metrics", usage = "Print Management API call metrics and timings on completion")
+    private boolean printMetrics;
+
+    @Option(name = "--metricsFormat", usage = "Format of the metrics printed by --metrics")
+    private MetricsFormat metricsFormat = MetricsFormat.text;
+
+    @Option(name = "--adaptiveConcurrency", usage = "Adjust the number of concurrent requests to the server's response")
+    private boolean adaptiveConcurrency;
+
+    @Option(name = "--maxConcurrency", usage = "Maximum number of concurrent requests, with --adaptiveConcurrency")
+    private int maxConcurrency = LimitConfig.DEFAULT_MAX_LIMIT;
+
     /**
      * The parent Command (<code>null</code> if root).
      */
@@ -130,10 +168,18 @@ public abstract class AbstractCommand implements Command {
                 // update log config based on parsed arguments
                 LogUtil.configureLogging(logDebug);
 
+                // update transport config based on parsed arguments
+                configureTransport();
+
                 if (displayHelp) {
                     printUsage(parser, true);
                 } else {
-                    performAction(parser);
+                    MetricsUtil.reset();
+                    try {
+                        MetricsUtil.timePhase("total", () -> performAction(parser));
+                    } finally {
+                        logSummary();
+                    }
                 }
 
             } catch (CmdLineException e) {
@@ -167,6 +213,53 @@ public abstract class AbstractCommand implements Command {
         }
     }
 
+    /**
+     * Configure the HTTP transport used by Management API clients.
+     */
+    private void configureTransport() {
+        if (maxConnectionsPerHost < 1) {
+            throw new ExitWithCodeException(1, "Maximum connections per host must be at least 1", true);
+        }
+        if (keepAliveSeconds < 0) {
+            throw new ExitWithCodeException(1, "Keep alive must not be negative", true);
+        }
+        if (maxRetries < 0) {
+            throw new ExitWithCodeException(1, "Retries must not be negative", true);
+        }
+        if (retryBackoffMillis < 0) {
+            throw new ExitWithCodeException(1, "Retry backoff must not be negative", true);
+        }
+        if (maxConcurrency < 1) {
+            throw new ExitWithCodeException(1, "Maximum concurrency must be at least 1", true);
+        }
+
+        final RetryConfig retryConfig = new RetryConfig(maxRetries, retryBackoffMillis,
+                RetryConfig.DEFAULT_MAX_BACKOFF_MILLIS, RetryConfig.DEFAULT_FAILURE_THRESHOLD,
+                RetryConfig.DEFAULT_OPEN_MILLIS);
+
+        final LimitConfig limitConfig = new LimitConfig(adaptiveConcurrency,
+                Math.min(LimitConfig.DEFAULT_INITIAL_LIMIT, maxConcurrency), maxConcurrency);
+
+        TransportUtil.configure(new TransportConfig(transport, maxConnectionsPerHost, keepAliveSeconds, http2,
+                retryConfig, limitConfig));
+    }
+
+    /**
+     * Log a summary of any requests that were retried or rejected, and the final concurrency limit, then
+     * print the metrics if requested.
+     */
+    private void logSummary() {
+        final RetryMetrics retryMetrics = TransportUtil.getRetryMetrics();
+        if (retryMetrics.hasActivity()) {
+            LOGGER.info(retryMetrics.describe());
+        }
+        TransportUtil.getLimiter().ifPresent(limiter -> LOGGER.info(limiter.describe()));
+
+        if (printMetrics) {
+            LogUtil.OUTPUT.info(MetricsUtil.render(MetricsUtil.buildReport(), metricsFormat));
+        }
+    }
+
     /**
      * @return <code>true</code> if the Command is permitted to accept no arguments, otherwise <code>false</code>
      */
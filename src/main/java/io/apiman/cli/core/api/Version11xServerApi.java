@@ -19,7 +19,7 @@ package io.apiman.cli.core.api;
 import io.apiman.cli.core.api.model.*;
 import retrofit.client.Response;
 import retrofit.http.*;
-import retrofit.mime.TypedString;
+import retrofit.mime.TypedOutput;
 
 import java.util.List;
 
@@ -41,6 +41,9 @@ public interface Version11xServerApi {
     @GET("/organizations/{orgName}/services/{serviceName}")
     Api fetch(@Path("orgName") String orgName, @Path("serviceName") String serviceName);
 
+    @GET("/organizations/{orgName}/services/{serviceName}/versions")
+    List<Api> listVersions(@Path("orgName") String orgName, @Path("serviceName") String serviceName);
+
     @GET("/organizations/{orgName}/services/{serviceName}/versions/{version}")
     Api fetchVersion(@Path("orgName") String orgName, @Path("serviceName") String serviceName, @Path("version") String version);
 
@@ -50,7 +53,12 @@ public interface Version11xServerApi {
 
     @PUT("/organizations/{orgName}/services/{serviceName}/versions/{version}/definition")
     Response setDefinition(@Path("orgName") String orgName, @Path("serviceName") String serviceName,
-                           @Path("version") String version, @Header("Content-Type") String type, @Body TypedString content);
+                           @Path("version") String version, @Header("Content-Type") String type, @Body TypedOutput content);
+
+    @Streaming
+    @GET("/organizations/{orgName}/services/{serviceName}/versions/{version}/definition")
+    Response fetchDefinition(@Path("orgName") String orgName, @Path("serviceName") String serviceName,
+                             @Path("version") String version);
 
     @POST("/organizations/{orgName}/services/{serviceName}/versions/{version}/policies")
     Response addPolicy(@Path("orgName") String orgName, @Path("serviceName") String serviceName,
@@ -60,7 +68,19 @@ public interface Version11xServerApi {
     List<ApiPolicy> fetchPolicies(@Path("orgName") String orgName, @Path("serviceName") String serviceName,
                                   @Path("version") String version);
 
+    @GET("/organizations/{orgName}/services/{serviceName}/versions/{version}/policies/{policyId}")
+    ApiPolicy fetchPolicy(@Path("orgName") String orgName, @Path("serviceName") String serviceName,
+                          @Path("version") String version, @Path("policyId") Long policyId);
+
     @PUT("/organizations/{orgName}/services/{serviceName}/versions/{version}/policies/{policyId}")
     Response configurePolicy(@Path("orgName") String orgName, @Path("serviceName") String serviceName,
                              @Path("version") String version, @Path("policyId") Long policyId, @Body ApiPolicy policyConfig);
+
+    @DELETE("/organizations/{orgName}/services/{serviceName}/versions/{version}/policies/{policyId}")
+    Response removePolicy(@Path("orgName") String orgName, @Path("serviceName") String serviceName,
+                          @Path("version") String version, @Path("policyId") Long policyId);
+
+    @POST("/organizations/{orgName}/services/{serviceName}/versions/{version}/reorderPolicies")
+    Response reorderPolicies(@Path("orgName") String orgName, @Path("serviceName") String serviceName,
+                             @Path("version") String version, @Body ApiPolicyChain policyChain);
 }
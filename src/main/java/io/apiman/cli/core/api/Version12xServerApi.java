@@ -19,7 +19,7 @@ package io.apiman.cli.core.api;
 import io.apiman.cli.core.api.model.*;
 import retrofit.client.Response;
 import retrofit.http.*;
-import retrofit.mime.TypedString;
+import retrofit.mime.TypedOutput;
 
 import java.util.List;
 
@@ -41,6 +41,9 @@ public interface Version12xServerApi {
     @GET("/organizations/{orgName}/apis/{apiName}")
     Api fetch(@Path("orgName") String orgName, @Path("apiName") String apiName);
 
+    @GET("/organizations/{orgName}/apis/{apiName}/versions")
+    List<Api> listVersions(@Path("orgName") String orgName, @Path("apiName") String apiName);
+
     @GET("/organizations/{orgName}/apis/{apiName}/versions/{version}")
     Api fetchVersion(@Path("orgName") String orgName, @Path("apiName") String apiName, @Path("version") String version);
 
@@ -50,7 +53,12 @@ public interface Version12xServerApi {
 
     @PUT("/organizations/{orgName}/apis/{serviceName}/versions/{version}/definition")
     Response setDefinition(@Path("orgName") String orgName, @Path("serviceName") String serviceName,
-                       @Path("version") String version, @Header("Content-Type") String type, @Body TypedString content);
+                       @Path("version") String version, @Header("Content-Type") String type, @Body TypedOutput content);
+
+    @Streaming
+    @GET("/organizations/{orgName}/apis/{serviceName}/versions/{version}/definition")
+    Response fetchDefinition(@Path("orgName") String orgName, @Path("serviceName") String serviceName,
+                             @Path("version") String version);
 
     @POST("/organizations/{orgName}/apis/{apiName}/versions/{version}/policies")
     Response addPolicy(@Path("orgName") String orgName, @Path("apiName") String apiName,
@@ -60,7 +68,19 @@ public interface Version12xServerApi {
     List<ApiPolicy> fetchPolicies(@Path("orgName") String orgName, @Path("apiName") String apiName,
                                   @Path("version") String version);
 
+    @GET("/organizations/{orgName}/apis/{apiName}/versions/{version}/policies/{policyId}")
+    ApiPolicy fetchPolicy(@Path("orgName") String orgName, @Path("apiName") String apiName,
+                          @Path("version") String version, @Path("policyId") Long policyId);
+
     @PUT("/organizations/{orgName}/apis/{apiName}/versions/{version}/policies/{policyId}")
     Response configurePolicy(@Path("orgName") String orgName, @Path("apiName") String apiName,
                              @Path("version") String version, @Path("policyId") Long policyId, @Body ApiPolicy policyConfig);
+
+    @DELETE("/organizations/{orgName}/apis/{apiName}/versions/{version}/policies/{policyId}")
+    Response removePolicy(@Path("orgName") String orgName, @Path("apiName") String apiName,
+                          @Path("version") String version, @Path("policyId") Long policyId);
+
+    @POST("/organizations/{orgName}/apis/{apiName}/versions/{version}/reorderPolicies")
+    Response reorderPolicies(@Path("orgName") String orgName, @Path("apiName") String apiName,
+                             @Path("version") String version, @Body ApiPolicyChain policyChain);
 }
@@ -18,7 +18,7 @@ package io.apiman.cli.core.api;
 
 import io.apiman.cli.core.api.model.*;
 import retrofit.client.Response;
-import retrofit.mime.TypedString;
+import retrofit.mime.TypedOutput;
 
 import java.util.List;
 
@@ -34,6 +34,8 @@ public interface VersionAgnosticApi {
 
     Api fetch(String orgName, String apiName);
 
+    List<Api> listVersions(String orgName, String apiName);
+
     Api fetchVersion(String orgName, String apiName, String version);
 
     Response configure(String orgName, String apiName,
@@ -43,11 +45,21 @@ public interface VersionAgnosticApi {
                        String version, ApiPolicy policyConfig);
 
     Response setDefinition(String orgName, String apiName,
-                       String version, String definitionType,  TypedString definition);
+                       String version, String definitionType,  TypedOutput definition);
+
+    Response fetchDefinition(String orgName, String apiName, String version);
 
     List<ApiPolicy> fetchPolicies(String orgName, String serviceName,
                                   String version);
 
+    ApiPolicy fetchPolicy(String orgName, String apiName, String apiVersion, Long policyId);
+
     Response configurePolicy(String orgName, String apiName,
                              String apiVersion, Long policyId, ApiPolicy policyConfig);
+
+    Response removePolicy(String orgName, String apiName,
+                          String apiVersion, Long policyId);
+
+    Response reorderPolicies(String orgName, String apiName,
+                             String apiVersion, ApiPolicyChain policyChain);
 }
@@ -17,23 +17,22 @@
 package io.apiman.cli.core.api.command;
 
 import com.google.common.collect.Lists;
-import com.google.common.io.CharStreams;
+import com.google.common.io.ByteStreams;
 import io.apiman.cli.core.api.ApiMixin;
 import io.apiman.cli.core.api.VersionAgnosticApi;
-import io.apiman.cli.core.api.model.*;
+import io.apiman.cli.core.common.util.DefinitionUtil;
 import io.apiman.cli.exception.CommandException;
 import io.apiman.cli.exception.ExitWithCodeException;
 import io.apiman.cli.management.ManagementApiUtil;
+import io.apiman.cli.util.HashUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
-import retrofit.mime.TypedString;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedOutput;
 
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.text.MessageFormat;
 
@@ -71,18 +70,30 @@ public class ApiDefinitionCommand extends AbstractApiCommand implements ApiMixin
             throw new ExitWithCodeException(1, "API definition must be provided", true);
         }
 
-        // read definition from STDIN or file
-        String definition;
-        try (InputStream is = (definitionStdIn ? System.in : Files.newInputStream(definitionFile))) {
-            definition = CharStreams.toString(new InputStreamReader(is));
+        final VersionAgnosticApi apiClient = buildServerApiClient(VersionAgnosticApi.class, serverVersion);
+
+        // read definition from STDIN, or stream it from the file when it is sent
+        final TypedOutput definition;
+        try {
+            if (definitionStdIn) {
+                definition = new TypedByteArray(definitionType, ByteStreams.toByteArray(System.in));
+            } else {
+                definition = DefinitionUtil.buildDefinitionBody(definitionFile, definitionType);
+            }
+
+            if (DefinitionUtil.isDefinitionUnchanged(apiClient, orgName, name, version, HashUtil.sha256(definition))) {
+                LOGGER.info("Definition of API '{}' version '{}' unchanged - skipping upload", name, version);
+                return;
+            }
 
         } catch (IOException e) {
             throw new CommandException(e);
         }
 
-        LOGGER.debug("Adding definition to API '{}' with contents: {}", this::getModelName, () -> definition);
+        LOGGER.debug("Adding definition to API '{}' from: {}", this::getModelName,
+                () -> definitionStdIn ? "STDIN" : definitionFile);
 
         ManagementApiUtil.invokeAndCheckResponse(() ->
-                buildServerApiClient(VersionAgnosticApi.class, serverVersion).setDefinition(orgName, name, version, definitionType, new TypedString(definition)));
+                apiClient.setDefinition(orgName, name, version, definitionType, definition));
     }
 }
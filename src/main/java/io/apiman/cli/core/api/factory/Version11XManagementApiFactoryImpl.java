@@ -22,7 +22,7 @@ import io.apiman.cli.core.api.model.*;
 import io.apiman.cli.management.factory.AbstractManagementApiFactory;
 import io.apiman.cli.management.factory.ManagementApiFactory;
 import retrofit.client.Response;
-import retrofit.mime.TypedString;
+import retrofit.mime.TypedOutput;
 
 import java.util.List;
 
@@ -59,6 +59,11 @@ public class Version11XManagementApiFactoryImpl extends AbstractManagementApiFac
                 return delegate.fetch(orgName, apiName);
             }
 
+            @Override
+            public List<Api> listVersions(String orgName, String apiName) {
+                return delegate.listVersions(orgName, apiName);
+            }
+
             @Override
             public Api fetchVersion(String orgName, String apiName, String version) {
                 return delegate.fetchVersion(orgName, apiName, version);
@@ -77,19 +82,39 @@ public class Version11XManagementApiFactoryImpl extends AbstractManagementApiFac
             }
 
             @Override
-            public Response setDefinition(String orgName, String apiName, String version, String definitionType, TypedString definition) {
+            public Response setDefinition(String orgName, String apiName, String version, String definitionType, TypedOutput definition) {
                 return delegate.setDefinition(orgName, apiName, version, definitionType, definition);
             }
 
+            @Override
+            public Response fetchDefinition(String orgName, String apiName, String version) {
+                return delegate.fetchDefinition(orgName, apiName, version);
+            }
+
             @Override
             public List<ApiPolicy> fetchPolicies(String orgName, String serviceName, String version) {
                 return delegate.fetchPolicies(orgName, serviceName, version);
             }
 
+            @Override
+            public ApiPolicy fetchPolicy(String orgName, String apiName, String apiVersion, Long policyId) {
+                return delegate.fetchPolicy(orgName, apiName, apiVersion, policyId);
+            }
+
             @Override
             public Response configurePolicy(String orgName, String apiName, String apiVersion, Long policyId, ApiPolicy policyConfig) {
                 return delegate.configurePolicy(orgName, apiName, apiVersion, policyId, policyConfig);
             }
+
+            @Override
+            public Response removePolicy(String orgName, String apiName, String apiVersion, Long policyId) {
+                return delegate.removePolicy(orgName, apiName, apiVersion, policyId);
+            }
+
+            @Override
+            public Response reorderPolicies(String orgName, String apiName, String apiVersion, ApiPolicyChain policyChain) {
+                return delegate.reorderPolicies(orgName, apiName, apiVersion, policyChain);
+            }
         };
     }
 
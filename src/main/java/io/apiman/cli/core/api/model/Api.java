@@ -16,10 +16,15 @@
 
 package io.apiman.cli.core.api.model;
 
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
 
+import java.util.Map;
+import java.util.TreeMap;
+
 /**
  * Models an API.
  *
@@ -28,6 +33,12 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Api {
+    /**
+     * This is a response property.
+     */
+    @JsonProperty
+    private String id;
+
     @JsonProperty
     private String name;
 
@@ -49,6 +60,13 @@ public class Api {
     @JsonProperty
     private String status;
 
+    /**
+     * Other properties returned by the server, such as the endpoint configuration of an API version.
+     * This is a response property.
+     */
+    @JsonIgnore
+    private final Map<String, Object> otherProperties = new TreeMap<>();
+
     public Api() {
     }
 
@@ -58,6 +76,10 @@ public class Api {
         this.initialVersion = initialVersion;
     }
 
+    public String getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
@@ -81,4 +103,18 @@ public class Api {
     public String getStatus() {
         return status;
     }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    @JsonIgnore
+    public Map<String, Object> getOtherProperties() {
+        return otherProperties;
+    }
+
+    @JsonAnySetter
+    public void setOtherProperty(String name, Object value) {
+        otherProperties.put(name, value);
+    }
 }
@@ -56,6 +56,10 @@ public class ApiConfig {
         this.gateways = gateways;
     }
 
+    public String getEndpoint() {
+        return endpoint;
+    }
+
     public void setGateways(ArrayList<ApiGateway> gateways) {
         this.gateways = gateways;
     }
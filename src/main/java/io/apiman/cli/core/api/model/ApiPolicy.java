@@ -60,10 +60,18 @@ public class ApiPolicy {
         return policyDefinitionId;
     }
 
+    public String getConfiguration() {
+        return configuration;
+    }
+
     public Long getId() {
         return id;
     }
 
+    public String getDefinitionId() {
+        return definitionId;
+    }
+
     public void setDefinitionId(String definitionId) {
         this.definitionId = definitionId;
     }
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.api.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.List;
+
+/**
+ * Models the order of the policies of an API.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+@JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+@JsonIgnoreProperties(ignoreUnknown = true)
+public class ApiPolicyChain {
+    /**
+     * The policies, in the order in which they are executed, identified by their IDs.
+     */
+    @JsonProperty
+    private List<ApiPolicy> policies;
+
+    public ApiPolicyChain() {
+    }
+
+    public ApiPolicyChain(List<ApiPolicy> policies) {
+        this.policies = policies;
+    }
+
+    public List<ApiPolicy> getPolicies() {
+        return policies;
+    }
+}
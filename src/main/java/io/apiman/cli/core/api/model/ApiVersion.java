@@ -24,4 +24,8 @@ public class ApiVersion {
     public ApiVersion(String version) {
         this.version = version;
     }
+
+    public String getVersion() {
+        return version;
+    }
 }
@@ -49,4 +49,20 @@ public class ServerAction {
         this.entityId = entityId;
         this.entityVersion = entityVersion;
     }
+
+    public String getType() {
+        return type;
+    }
+
+    public String getEntityId() {
+        return entityId;
+    }
+
+    public String getOrganizationId() {
+        return organizationId;
+    }
+
+    public String getEntityVersion() {
+        return entityVersion;
+    }
 }
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.common.util;
+
+import io.apiman.cli.core.api.VersionAgnosticApi;
+import io.apiman.cli.util.DeclarativeUtil;
+import io.apiman.cli.util.HashUtil;
+import retrofit.client.Response;
+import retrofit.mime.TypedFile;
+import retrofit.mime.TypedOutput;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.Optional;
+
+/**
+ * Common API definition functionality.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class DefinitionUtil {
+    /**
+     * Build a request body that streams the definition from its file when sent, so large definitions are not
+     * held in memory. The body can be sent more than once, such as when a request is retried.
+     *
+     * @param definitionFile the definition file
+     * @param definitionType the content type of the definition
+     * @return the request body
+     * @throws NoSuchFileException if the file does not exist
+     */
+    public static TypedOutput buildDefinitionBody(Path definitionFile, String definitionType) throws NoSuchFileException {
+        if (!Files.isRegularFile(definitionFile)) {
+            throw new NoSuchFileException(definitionFile.toString());
+        }
+        return new TypedFile(definitionType, definitionFile.toFile());
+    }
+
+    /**
+     * Determine whether the definition of an API version on the server has the given content, by comparing
+     * the SHA-256 hash of the server's definition as it is read.
+     *
+     * @param apiClient  the API client
+     * @param orgName    the organisation name
+     * @param apiName    the API name
+     * @param apiVersion the API version
+     * @param sha256     the hex encoded SHA-256 hash of the definition to be set
+     * @return <code>true</code> if the server has a definition with the same hash
+     * @throws IOException if the server's definition cannot be read
+     */
+    public static boolean isDefinitionUnchanged(VersionAgnosticApi apiClient, String orgName, String apiName,
+                                                String apiVersion, String sha256) throws IOException {
+
+        return fetchDefinitionSha256(apiClient, orgName, apiName, apiVersion).map(sha256::equals).orElse(false);
+    }
+
+    /**
+     * Hash the definition of an API version on the server as it is read, without holding it in memory.
+     *
+     * @param apiClient  the API client
+     * @param orgName    the organisation name
+     * @param apiName    the API name
+     * @param apiVersion the API version
+     * @return the hex encoded SHA-256 hash of the server's definition, or empty if it has none
+     * @throws IOException if the server's definition cannot be read
+     */
+    public static Optional<String> fetchDefinitionSha256(VersionAgnosticApi apiClient, String orgName,
+                                                         String apiName, String apiVersion) throws IOException {
+
+        final Optional<Response> existing = DeclarativeUtil.checkExists(() ->
+                apiClient.fetchDefinition(orgName, apiName, apiVersion));
+
+        if (!existing.isPresent() || null == existing.get().getBody()) {
+            return Optional.empty();
+        }
+        return Optional.of(HashUtil.sha256(existing.get().getBody()));
+    }
+}
@@ -29,6 +29,8 @@ import java.net.HttpURLConnection;
  * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
  */
 public class ServerActionUtil {
+    private static final String RETIRE_PREFIX = "retire";
+
     /**
      * Publish an API, taking into account the Management Server API version.
      *
@@ -40,16 +42,43 @@ public class ServerActionUtil {
      */
     public static void publishApi(String orgName, String apiName, String apiVersion,
                                   ManagementApiVersion serverVersion, ActionApi apiClient) {
+        doApiAction("publish", orgName, apiName, apiVersion, serverVersion, apiClient);
+    }
+
+    /**
+     * Retire a published API, taking into account the Management Server API version.
+     *
+     * @param orgName       the organisation name
+     * @param apiName       the API name
+     * @param apiVersion    the API version
+     * @param serverVersion the Management Server API version
+     * @param apiClient     the Server Action API client
+     */
+    public static void retireApi(String orgName, String apiName, String apiVersion,
+                                 ManagementApiVersion serverVersion, ActionApi apiClient) {
+        doApiAction(RETIRE_PREFIX, orgName, apiName, apiVersion, serverVersion, apiClient);
+    }
+
+    /**
+     * @param action the server action
+     * @return <code>true</code> if the action retires an API
+     */
+    public static boolean isRetire(ServerAction action) {
+        return null != action.getType() && action.getType().startsWith(RETIRE_PREFIX);
+    }
+
+    private static void doApiAction(String verb, String orgName, String apiName, String apiVersion,
+                                    ManagementApiVersion serverVersion, ActionApi apiClient) {
         String actionType;
         switch (serverVersion) {
             case v11x:
                 // legacy apiman 1.1.x support
-                actionType = "publishService";
+                actionType = verb + "Service";
                 break;
 
             default:
                 // apiman 1.2.x support
-                actionType = "publishAPI";
+                actionType = verb + "API";
                 break;
         }
 
@@ -16,44 +16,75 @@
 
 package io.apiman.cli.core.declarative.command;
 
-import com.google.common.io.CharStreams;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import io.apiman.cli.command.AbstractFinalCommand;
 import io.apiman.cli.core.api.VersionAgnosticApi;
 import io.apiman.cli.core.api.model.*;
 import io.apiman.cli.core.common.ActionApi;
 import io.apiman.cli.core.common.model.ManagementApiVersion;
+import io.apiman.cli.core.common.util.DefinitionUtil;
 import io.apiman.cli.core.common.util.ServerActionUtil;
+import io.apiman.cli.core.declarative.executor.TaskGraph;
+import io.apiman.cli.core.declarative.loader.DeclarationLoader;
+import io.apiman.cli.core.declarative.loader.DeclarationMerger;
 import io.apiman.cli.core.declarative.model.Declaration;
 import io.apiman.cli.core.declarative.model.DeclarativeApi;
+import io.apiman.cli.core.declarative.model.DeclarativeApiDefinition;
+import io.apiman.cli.core.declarative.model.DeclarativeOrg;
+import io.apiman.cli.core.declarative.model.DeclarativePolicy;
+import io.apiman.cli.core.declarative.plan.ApplyPlan;
+import io.apiman.cli.core.declarative.policy.CompiledPolicy;
+import io.apiman.cli.core.declarative.policy.PolicyChainReorder;
+import io.apiman.cli.core.declarative.policy.PolicyCompiler;
+import io.apiman.cli.core.declarative.prune.Pruner;
+import io.apiman.cli.core.declarative.plan.DryRunClients;
+import io.apiman.cli.core.declarative.plan.PlanningRemoteState;
+import io.apiman.cli.core.declarative.remote.LiveRemoteState;
+import io.apiman.cli.core.declarative.remote.RemoteState;
+import io.apiman.cli.core.declarative.remote.SnapshotRemoteState;
+import io.apiman.cli.core.declarative.state.OperationJournal;
+import io.apiman.cli.core.declarative.state.StateFile;
 import io.apiman.cli.core.gateway.GatewayApi;
 import io.apiman.cli.core.gateway.model.Gateway;
 import io.apiman.cli.core.org.OrgApi;
 import io.apiman.cli.core.org.model.Org;
 import io.apiman.cli.core.plugin.PluginApi;
-import io.apiman.cli.core.plugin.model.Plugin;
 import io.apiman.cli.exception.CommandException;
 import io.apiman.cli.exception.DeclarativeException;
+import io.apiman.cli.exception.ExitWithCodeException;
+import io.apiman.cli.management.metrics.MetricsUtil;
 import io.apiman.cli.util.BeanUtil;
-import io.apiman.cli.util.DeclarativeUtil;
+import io.apiman.cli.util.HashUtil;
+import io.apiman.cli.util.LogUtil;
 import io.apiman.cli.util.MappingUtil;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import org.kohsuke.args4j.CmdLineParser;
 import org.kohsuke.args4j.Option;
-import retrofit.mime.TypedString;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedOutput;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 import static io.apiman.cli.util.Functions.of;
 import static java.util.Optional.ofNullable;
@@ -65,13 +96,13 @@ import static java.util.Optional.ofNullable;
  */
 public class ApplyCommand extends AbstractFinalCommand {
     private static final Logger LOGGER = LogManager.getLogger(ApplyCommand.class);
-    private static final String JSON_EXTENSION = ".json";
     private static final String STATE_READY = "READY";
     private static final String STATE_PUBLISHED = "PUBLISHED";
     private static final String STATE_RETIRED = "RETIRED";
 
-    @Option(name = "--declarationFile", aliases = {"-f"}, usage = "Declaration file")
-    private Path declarationFile;
+    @Option(name = "--declarationFile", aliases = {"-f"},
+            usage = "Declaration file, directory or glob, or - for standard input; may be repeated")
+    private List<String> declarationFiles;
 
     @Option(name = "-P", usage = "Set property (key=value)")
     private List<String> properties;
@@ -82,6 +113,88 @@ public class ApplyCommand extends AbstractFinalCommand {
     @Option(name = "--serverVersion", aliases = {"-sv"}, usage = "Management API server version")
     private ManagementApiVersion serverVersion = ManagementApiVersion.DEFAULT_VERSION;
 
+    @Option(name = "--parallelism", usage = "Maximum number of declaration items to apply concurrently")
+    private int parallelism = 1;
+
+    @Option(name = "--prefetch", usage = "Load the server state up front, instead of checking each item individually")
+    private boolean prefetch;
+
+    @Option(name = "--plan", usage = "Show the changes that would be made, without making them")
+    private boolean planOnly;
+
+    @Option(name = "--stateFile", usage = "State file, used to skip items unchanged since the last apply")
+    private Path stateFilePath;
+
+    @Option(name = "--refresh", usage = "Verify every item against the server, ignoring the state file")
+    private boolean refresh;
+
+    @Option(name = "--forceRepublish", aliases = {"--force-republish"},
+            usage = "Republish published APIs, even if nothing in the version has changed")
+    private boolean forceRepublish;
+
+    @Option(name = "--prune",
+            usage = "Remove policies, and retire published versions of APIs, that are not in the declaration")
+    private boolean prune;
+
+    @Option(name = "--pruneSystem", aliases = {"--prune-system"},
+            usage = "With --prune, also delete gateways and plugins that are not in the declaration")
+    private boolean pruneSystem;
+
+    @Option(name = "--maxDeletions", aliases = {"--max-deletions"},
+            usage = "With --prune, the maximum number of items to remove - if more would be removed, none are")
+    private int maxDeletions = 50;
+
+    @Option(name = "--journal", usage = "Journal of the items applied, from which an unfinished apply can be resumed")
+    private Path journalPath;
+
+    @Option(name = "--resume",
+            usage = "Skip the items completed by an unfinished apply of the same declaration, using the journal")
+    private boolean resume;
+
+    @Option(name = "--deadline", usage = "Seconds after which no further items are started, leaving the apply to be resumed")
+    private long deadlineSeconds;
+
+    /**
+     * The server state against which the declaration is applied.
+     */
+    private RemoteState remoteState;
+
+    /**
+     * Records the changes that would be made; <code>null</code> unless planning.
+     */
+    private ApplyPlan plan;
+
+    /**
+     * The hashes of items applied by this and the previous run.
+     */
+    private StateFile stateFile;
+
+    /**
+     * The operations completed by this run, and by the unfinished run being resumed.
+     */
+    private OperationJournal journal = OperationJournal.disabled();
+
+    /**
+     * When the command started, from which the deadline is measured.
+     */
+    private long startNanos;
+
+    /**
+     * Counts of policies added, reconfigured, and left unchanged because their configuration matched, and of
+     * policy chains reordered.
+     */
+    private final AtomicInteger policiesAdded = new AtomicInteger();
+    private final AtomicInteger policiesConfigured = new AtomicInteger();
+    private final AtomicInteger policiesUnchanged = new AtomicInteger();
+    private final AtomicInteger policyChainsReordered = new AtomicInteger();
+
+    /**
+     * The paths of the API versions created or changed by this run, which must be republished.
+     */
+    private final Set<String> changedVersions = ConcurrentHashMap.newKeySet();
+
+    private final PolicyCompiler policyCompiler = new PolicyCompiler();
+
     @Override
     protected String getCommandDescription() {
         return "Apply declaration";
@@ -96,7 +209,27 @@ public class ApplyCommand extends AbstractFinalCommand {
      * Load and then apply the Declaration.
      */
     public void applyDeclaration() {
-        final Map<String, String> parsedProperties = BeanUtil.parseReplacements(properties);
+        if (parallelism < 1) {
+            throw new ExitWithCodeException(1, "Parallelism must be at least 1", true);
+        }
+        if (null == declarationFiles || declarationFiles.isEmpty()) {
+            throw new ExitWithCodeException(1, "A declaration file must be specified", true);
+        }
+        if (pruneSystem && !prune) {
+            throw new ExitWithCodeException(1, "--pruneSystem requires --prune", true);
+        }
+        if (maxDeletions < 0) {
+            throw new ExitWithCodeException(1, "Max deletions must not be negative", true);
+        }
+        if (resume && null == journalPath) {
+            throw new ExitWithCodeException(1, "--resume requires --journal", true);
+        }
+        if (deadlineSeconds < 0) {
+            throw new ExitWithCodeException(1, "Deadline must not be negative", true);
+        }
+        startNanos = System.nanoTime();
+
+        final Map<String, String> parsedProperties = Maps.newHashMap();
 
         // check for properties file
         ofNullable(propertiesFiles).ifPresent(propertiesFiles -> propertiesFiles.forEach(propertiesFile -> {
@@ -116,17 +249,14 @@ public class ApplyCommand extends AbstractFinalCommand {
             fileProperties.forEach((key, value) -> parsedProperties.put((String) key, (String) value));
         }));
 
-        final Declaration declaration;
+        // properties on the command line take precedence over those in files
+        parsedProperties.putAll(BeanUtil.parseReplacements(properties));
 
         // parse declaration
-        if (declarationFile.endsWith(JSON_EXTENSION)) {
-            declaration = DeclarativeUtil.loadDeclaration(declarationFile, MappingUtil.JSON_MAPPER, parsedProperties);
-        } else {
-            // default is YAML
-            declaration = DeclarativeUtil.loadDeclaration(declarationFile, MappingUtil.YAML_MAPPER, parsedProperties);
-        }
+        final Declaration declaration = MetricsUtil.timePhase("load declaration",
+                () -> new DeclarationLoader(parsedProperties).load(declarationFiles));
 
-        LOGGER.info("Loaded declaration: {}", declarationFile);
+        LOGGER.info("Loaded declaration: {}", String.join(", ", declarationFiles));
         LOGGER.debug("Declaration loaded: {}", () -> MappingUtil.safeWriteValueAsJson(declaration));
 
         try {
@@ -138,119 +268,333 @@ public class ApplyCommand extends AbstractFinalCommand {
 
     /**
      * Apply the given Declaration.
+     * <p>
+     * The items in the declaration are arranged into a graph of tasks: gateways and plugins first, then the
+     * org, then each API. Independent tasks are executed concurrently, up to the configured parallelism.
      *
      * @param declaration the Declaration to apply.
      */
     private void applyDeclaration(Declaration declaration) {
         LOGGER.debug("Applying declaration");
+        if (planOnly) {
+            LOGGER.info("Planning changes - the server will not be modified");
+            plan = new ApplyPlan();
+        }
 
-        // add gateways
-        applyGateways(declaration);
+        stateFile = ofNullable(stateFilePath)
+                .map(path -> StateFile.load(path, getManagementApiEndpoint(), serverVersion.name(), refresh))
+                .orElseGet(StateFile::disabled);
 
-        // add plugins
-        applyPlugins(declaration);
+        if (null != journalPath && !planOnly) {
+            journal = OperationJournal.open(journalPath, HashUtil.hash(declaration), getManagementApiEndpoint(),
+                    serverVersion.name(), resume);
+            if (resume) {
+                // the items completed by the previous run are not applied again, so keep their state
+                stateFile.carryForward();
+            }
+        }
 
-        // add org
-        ofNullable(declaration.getOrg()).ifPresent(declarativeOrg -> {
-            final String orgName = declaration.getOrg().getName();
-            final OrgApi orgApiClient = buildServerApiClient(OrgApi.class);
+        remoteState = MetricsUtil.timePhase("load server state", () -> buildRemoteState(declaration));
+        final TaskGraph taskGraph = new TaskGraph();
+        if (deadlineSeconds > 0) {
+            taskGraph.setDeadline(startNanos + TimeUnit.SECONDS.toNanos(deadlineSeconds));
+        }
 
-            of(DeclarativeUtil.checkExists(() -> orgApiClient.fetch(orgName)))
-                    .ifPresent(existing -> {
-                        LOGGER.info("Org already exists: {}", orgName);
-                    })
-                    .ifNotPresent(() -> {
-                        LOGGER.info("Adding org: {}", orgName);
-                        orgApiClient.create(MappingUtil.map(declaration.getOrg(), Org.class));
-                    });
+        // add gateways and plugins
+        final List<String> systemTasks = Lists.newArrayList();
+        systemTasks.addAll(scheduleGateways(declaration, taskGraph));
+        systemTasks.addAll(schedulePlugins(declaration, taskGraph));
+
+        // add orgs, each in its own group, so they are applied fairly
+        final OrgApi orgApiClient = buildServerApiClient(OrgApi.class);
+        declaration.getAllOrgs().forEach(declarativeOrg -> {
+            final String orgName = declarativeOrg.getName();
+
+            final Org org = MappingUtil.map(declarativeOrg, Org.class);
+            final String orgKey = "org:" + orgName;
+
+            final String orgTask = addTask(taskGraph, orgKey, orgName, () -> applyIfChanged(orgKey, HashUtil.hash(org), () ->
+                    of(remoteState.fetchOrg(orgName))
+                            .ifPresent(existing -> {
+                                LOGGER.info("Org already exists: {}", orgName);
+                            })
+                            .ifNotPresent(() -> {
+                                LOGGER.info("Adding org: {}", orgName);
+                                orgApiClient.create(org);
+                                remoteState.markOrgCreated(orgName);
+                            })), systemTasks);
 
             // add apis
-            applyApis(declaration, orgName);
+            scheduleApis(declarativeOrg, taskGraph, orgTask);
         });
 
-        LOGGER.info("Applied declaration");
+        if (planOnly) {
+            // apply sequentially, so the order of the plan is stable
+            MetricsUtil.timePhase("plan", () -> {
+                taskGraph.execute(1);
+                if (prune) {
+                    prune(declaration, 1);
+                }
+            });
+
+            reportPolicies();
+
+            final PlanningRemoteState planningState = (PlanningRemoteState) remoteState;
+            plan.describe(planningState.getPrefetchRequestCount(), planningState.getLiveRequestCount())
+                    .forEach(LogUtil.OUTPUT::info);
+
+        } else {
+            try {
+                MetricsUtil.timePhase("apply", () -> taskGraph.execute(parallelism));
+            } finally {
+                reportOrgs(taskGraph);
+                reportPolicies();
+
+                // keep the state of the items that were applied, even if others failed
+                MetricsUtil.timePhase("save state", stateFile::save);
+                journal.close();
+            }
+
+            if (taskGraph.isDeadlineReached()) {
+                throw new DeclarativeException(String.format(
+                        "Deadline of %d seconds reached before every item was applied%s", deadlineSeconds,
+                        null != journalPath ? " - use --resume to continue" : ""));
+            }
+
+            // every item has been applied, so there is nothing to resume
+            journal.delete();
+
+            // only prune once everything declared has been applied
+            if (prune) {
+                MetricsUtil.timePhase("prune", () -> prune(declaration, parallelism));
+            }
+            LOGGER.info("Applied declaration");
+        }
+    }
+
+    /**
+     * Log the outcome of applying each org.
+     *
+     * @param taskGraph the executed graph, whose groups are orgs
+     */
+    private void reportOrgs(TaskGraph taskGraph) {
+        taskGraph.getGroupResults().forEach((orgName, result) -> {
+            if (result.isSuccessful()) {
+                LOGGER.info("Applied org '{}': {} items in {}ms", orgName, result.getCompleted(),
+                        result.getElapsedMillis());
+            } else {
+                LOGGER.error("Failed to apply org '{}': {} items applied, {} failed, {} not attempted - {}", orgName,
+                        result.getCompleted(), result.getFailed(), result.getSkipped(),
+                        ofNullable(result.getFailure()).map(Throwable::getMessage).orElse(
+                                taskGraph.isDeadlineReached() ? "the deadline was reached" : "a dependency failed"));
+            }
+        });
+    }
+
+    /**
+     * Remove the items on the server that are not in the declaration, then republish the published API
+     * versions from which policies were removed, so that gateways stop executing them.
+     *
+     * @param declaration      the Declaration that was applied
+     * @param pruneParallelism the maximum number of items to remove concurrently
+     */
+    private void prune(Declaration declaration, int pruneParallelism) {
+        final Pruner pruner = new Pruner(remoteState, buildServerApiClient(VersionAgnosticApi.class, serverVersion),
+                buildServerApiClient(ActionApi.class), buildServerApiClient(GatewayApi.class),
+                buildServerApiClient(PluginApi.class), serverVersion);
+
+        try {
+            pruner.prune(declaration, pruneSystem, maxDeletions, pruneParallelism);
+        } finally {
+            LOGGER.info("Pruned: {} policies, {} API versions retired, {} gateways, {} plugins",
+                    pruner.getPruned(Pruner.Kind.POLICY), pruner.getPruned(Pruner.Kind.API_VERSION),
+                    pruner.getPruned(Pruner.Kind.GATEWAY), pruner.getPruned(Pruner.Kind.PLUGIN));
+        }
+
+        final ActionApi actionClient = buildServerApiClient(ActionApi.class);
+        declaration.getAllOrgs().forEach(declarativeOrg -> ofNullable(declarativeOrg.getApis()).ifPresent(apis ->
+                apis.stream().filter(DeclarativeApi::isPublished).forEach(declarativeApi -> {
+                    final String orgName = declarativeOrg.getName();
+                    final String apiName = declarativeApi.getName();
+                    final String apiVersion = ofNullable(declarativeApi.getVersion())
+                            .orElse(declarativeApi.getInitialVersion());
+
+                    if (pruner.getPrunedPolicyVersions().contains(Arrays.asList(orgName, apiName, apiVersion))) {
+                        changedVersions.add(buildVersionPath(orgName, apiName, apiVersion));
+                        publish(actionClient, orgName, apiName, apiVersion);
+                    }
+                })));
+    }
+
+    private void reportPolicies() {
+        LOGGER.info("Policies: {} added, {} configured, {} unchanged, {} chains reordered", policiesAdded.get(),
+                policiesConfigured.get(), policiesUnchanged.get(), policyChainsReordered.get());
+    }
+
+    /**
+     * Add a task to the graph. The task is skipped if the journal records that an earlier, unfinished apply
+     * completed it, and is recorded in the journal once it completes.
+     *
+     * @param taskGraph    the graph to which the task should be added
+     * @param taskId       the unique ID of the task
+     * @param group        the group, such as the org the task applies to, or <code>null</code>
+     * @param action       applies the item
+     * @param dependencies the IDs of tasks already in the graph
+     * @return the task ID
+     */
+    private String addTask(TaskGraph taskGraph, String taskId, String group, Runnable action,
+                           Collection<String> dependencies) {
+        return taskGraph.addTask(taskId, group, () -> {
+            if (journal.isCompleted(taskId)) {
+                LOGGER.info("Completed by the previous apply - skipping: {}", taskId);
+            } else {
+                action.run();
+                journal.record(taskId);
+            }
+        }, dependencies);
+    }
+
+    /**
+     * Perform the action for the item, unless it is unchanged since the last apply, then record its hash.
+     *
+     * @param itemKey the item key
+     * @param hash    the content hash of the item
+     * @param action  applies the item
+     */
+    private void applyIfChanged(String itemKey, String hash, Runnable action) {
+        if (stateFile.isUnchanged(itemKey, hash)) {
+            LOGGER.info("Unchanged since last apply - skipping: {}", itemKey);
+        } else {
+            action.run();
+        }
+        stateFile.record(itemKey, hash);
+    }
+
+    /**
+     * When planning, writes made by the client are recorded in the plan instead of being sent to the server.
+     * {@inheritDoc}
+     */
+    @Override
+    protected <T> T buildServerApiClient(Class<T> clazz, ManagementApiVersion serverVersion) {
+        final T client = super.buildServerApiClient(clazz, serverVersion);
+        return null != plan ? DryRunClients.wrap(clazz, client, plan) : client;
+    }
+
+    /**
+     * Build the view of the server state used to determine which items already exist.
+     *
+     * @param declaration the Declaration to apply.
+     * @return the server state
+     */
+    private RemoteState buildRemoteState(Declaration declaration) {
+        final GatewayApi gatewayClient = buildServerApiClient(GatewayApi.class);
+        final PluginApi pluginClient = buildServerApiClient(PluginApi.class);
+        final OrgApi orgClient = buildServerApiClient(OrgApi.class);
+        final VersionAgnosticApi apiClient = buildServerApiClient(VersionAgnosticApi.class, serverVersion);
+
+        if (planOnly) {
+            return new PlanningRemoteState(new SnapshotRemoteState(gatewayClient, pluginClient, orgClient, apiClient)
+                    .load(declaration, parallelism));
+        } else if (prefetch) {
+            return new SnapshotRemoteState(gatewayClient, pluginClient, orgClient, apiClient)
+                    .load(declaration, parallelism);
+        } else {
+            return new LiveRemoteState(gatewayClient, pluginClient, orgClient, apiClient);
+        }
     }
 
     /**
      * Add gateways if they are not present.
      *
      * @param declaration the Declaration to apply.
+     * @param taskGraph   the graph to which tasks should be added
+     * @return the IDs of the tasks added
      */
-    private void applyGateways(Declaration declaration) {
+    private List<String> scheduleGateways(Declaration declaration, TaskGraph taskGraph) {
+        final List<String> gatewayTasks = Lists.newArrayList();
+
         ofNullable(declaration.getSystem().getGateways()).ifPresent(gateways -> {
             LOGGER.debug("Applying gateways");
+            final GatewayApi apiClient = buildServerApiClient(GatewayApi.class);
 
             gateways.forEach(declarativeGateway -> {
-                final GatewayApi apiClient = buildServerApiClient(GatewayApi.class);
                 final String gatewayName = declarativeGateway.getName();
 
-                of(DeclarativeUtil.checkExists(() -> apiClient.fetch(gatewayName)))
-                        .ifPresent(existing -> {
-                            LOGGER.info("Gateway already exists: {}", gatewayName);
-                        })
-                        .ifNotPresent(() -> {
-                            LOGGER.info("Adding gateway: {}", gatewayName);
+                final String gatewayKey = "gateway:" + gatewayName;
+
+                gatewayTasks.add(addTask(taskGraph, gatewayKey, null, () -> applyIfChanged(gatewayKey,
+                        HashUtil.hash(declarativeGateway), () -> of(remoteState.fetchGateway(gatewayName))
+                                .ifPresent(existing -> {
+                                    LOGGER.info("Gateway already exists: {}", gatewayName);
+                                })
+                                .ifNotPresent(() -> {
+                                    LOGGER.info("Adding gateway: {}", gatewayName);
 
-                            final Gateway gateway = MappingUtil.map(declarativeGateway, Gateway.class);
-                            apiClient.create(gateway);
-                        });
+                                    final Gateway gateway = MappingUtil.map(declarativeGateway, Gateway.class);
+                                    apiClient.create(gateway);
+                                    remoteState.markGatewayCreated(gatewayName);
+                                })), Collections.emptyList()));
             });
         });
+
+        return gatewayTasks;
     }
 
     /**
      * Add plugins if they are not present.
      *
      * @param declaration the Declaration to apply.
+     * @param taskGraph   the graph to which tasks should be added
+     * @return the IDs of the tasks added
      */
-    private void applyPlugins(Declaration declaration) {
+    private List<String> schedulePlugins(Declaration declaration, TaskGraph taskGraph) {
+        final List<String> pluginTasks = Lists.newArrayList();
+
         ofNullable(declaration.getSystem().getPlugins()).ifPresent(plugins -> {
             LOGGER.debug("Applying plugins");
+            final PluginApi apiClient = buildServerApiClient(PluginApi.class);
 
             plugins.forEach(plugin -> {
-                final PluginApi apiClient = buildServerApiClient(PluginApi.class);
-
-                if (checkPluginExists(plugin, apiClient)) {
-                    LOGGER.info("Plugin already installed: {}", plugin.getName());
-                } else {
-                    LOGGER.info("Installing plugin: {}", plugin.getName());
-                    apiClient.create(plugin);
-                }
+                final String pluginTaskId = "plugin:" + DeclarationMerger.getPluginKey(plugin);
+
+                pluginTasks.add(addTask(taskGraph, pluginTaskId, null, () -> applyIfChanged(pluginTaskId,
+                        HashUtil.hash(plugin), () -> {
+                            if (remoteState.isPluginInstalled(plugin)) {
+                                LOGGER.info("Plugin already installed: {}", plugin.getName());
+                            } else {
+                                LOGGER.info("Installing plugin: {}", plugin.getName());
+                                apiClient.create(plugin);
+                                remoteState.markPluginInstalled(plugin);
+                            }
+                        }), Collections.emptyList()));
             });
         });
-    }
 
-    /**
-     * Determine if the plugin is installed.
-     *
-     * @param plugin
-     * @param apiClient
-     * @return <code>true</code> if the plugin is installed, otherwise <code>false</code>
-     */
-    private boolean checkPluginExists(Plugin plugin, PluginApi apiClient) {
-        return DeclarativeUtil.checkExists(apiClient::list)
-                .map(apiPolicies -> apiPolicies.stream()
-                        .anyMatch(installedPlugin ->
-                                plugin.getArtifactId().equals(installedPlugin.getArtifactId()) &&
-                                        plugin.getGroupId().equals(installedPlugin.getGroupId()) &&
-                                        plugin.getVersion().equals(installedPlugin.getVersion()) &&
-                                        BeanUtil.safeEquals(plugin.getClassifier(), installedPlugin.getClassifier())
-                        ))
-                .orElse(false);
+        return pluginTasks;
     }
 
     /**
      * Add and configure APIs if they are not present.
+     * <p>
+     * Each API version is applied by a single task, so its steps always run in order. Versions of the
+     * same API share the base API, so they are chained one after another; different APIs are independent.
      *
-     * @param declaration the Declaration to apply.
-     * @param orgName
+     * @param declarativeOrg the org whose APIs to apply
+     * @param taskGraph      the graph to which tasks should be added
+     * @param orgTask        the ID of the task that adds the org
      */
-    private void applyApis(Declaration declaration, String orgName) {
-        ofNullable(declaration.getOrg().getApis()).ifPresent(declarativeApis -> {
+    private void scheduleApis(DeclarativeOrg declarativeOrg, TaskGraph taskGraph, String orgTask) {
+        final String orgName = declarativeOrg.getName();
+
+        ofNullable(declarativeOrg.getApis()).ifPresent(declarativeApis -> {
             LOGGER.debug("Applying APIs");
+            final VersionAgnosticApi apiClient = buildServerApiClient(VersionAgnosticApi.class, serverVersion);
+            final ActionApi actionClient = buildServerApiClient(ActionApi.class);
+
+            // the most recent task for each API name
+            final Map<String, String> apiTasks = Maps.newHashMap();
 
             declarativeApis.forEach(declarativeApi -> {
-                final VersionAgnosticApi apiClient = buildServerApiClient(VersionAgnosticApi.class, serverVersion);
                 final String apiName = declarativeApi.getName();
 
                 // determine the version of the API being configured
@@ -259,19 +603,40 @@ public class ApplyCommand extends AbstractFinalCommand {
 
                 final String apiVersion = ofNullable(declarativeApi.getVersion()).orElse(declarativeApi.getInitialVersion());
 
-                // create and configure API
-                applyApi(apiClient, declarativeApi, orgName, apiName, apiVersion);
-
-                // add definition
-                applyDefinition(apiClient, declarativeApi, orgName, apiName, apiVersion);
-
-                // add policies
-                applyPolicies(apiClient, declarativeApi, orgName, apiName, apiVersion);
-
-                // publish API
-                if (declarativeApi.isPublished()) {
-                    publish(apiClient, orgName, apiName, apiVersion);
-                }
+                final List<String> dependencies = Lists.newArrayList(orgTask);
+                ofNullable(apiTasks.get(apiName)).ifPresent(dependencies::add);
+
+                final String versionPath = buildVersionPath(orgName, apiName, apiVersion);
+                final String apiTaskId = "api:" + versionPath;
+                apiTasks.put(apiName, addTask(taskGraph, apiTaskId, orgName, () -> {
+                    // create and configure API
+                    final String apiHash = HashUtil.hash(MappingUtil.map(declarativeApi, Api.class),
+                            declarativeApi.getConfig());
+                    applyIfChanged(apiTaskId, apiHash, () ->
+                            applyApi(apiClient, declarativeApi, orgName, apiName, apiVersion));
+
+                    // add definition
+                    final String definitionHash = applyDefinition(apiClient, declarativeApi, orgName, apiName,
+                            apiVersion, versionPath);
+
+                    // add policies
+                    final String policiesHash = applyPolicies(apiClient, declarativeApi, orgName, apiName,
+                            apiVersion, versionPath);
+
+                    // publish API, if anything in the version has changed
+                    if (declarativeApi.isPublished()) {
+                        final String publishKey = "publish:" + versionPath;
+                        final String publishHash = HashUtil.hash(apiHash, definitionHash, policiesHash);
+                        final Runnable publishAction = () -> publish(actionClient, orgName, apiName, apiVersion);
+
+                        if (forceRepublish) {
+                            publishAction.run();
+                            stateFile.record(publishKey, publishHash);
+                        } else {
+                            applyIfChanged(publishKey, publishHash, publishAction);
+                        }
+                    }
+                }, dependencies));
             });
         });
     }
@@ -292,7 +657,7 @@ public class ApplyCommand extends AbstractFinalCommand {
         LOGGER.debug("Applying API: {}", apiName);
 
         // base API
-        of(DeclarativeUtil.checkExists(() -> apiClient.fetch(orgName, apiName)))
+        of(remoteState.fetchApi(orgName, apiName))
                 .ifPresent(existing -> {
                     LOGGER.info("API '{}' already exists", apiName);
                 })
@@ -306,10 +671,11 @@ public class ApplyCommand extends AbstractFinalCommand {
 
                     // create API *without* version
                     apiClient.create(orgName, api);
+                    remoteState.markApiCreated(orgName, apiName);
                 });
 
         // API version
-        of(DeclarativeUtil.checkExists(() -> apiClient.fetchVersion(orgName, apiName, apiVersion)))
+        of(remoteState.fetchApiVersion(orgName, apiName, apiVersion))
                 .ifPresent(existing -> {
                     LOGGER.info("API '{}' version '{}' already exists", apiName, apiVersion);
                 })
@@ -319,6 +685,8 @@ public class ApplyCommand extends AbstractFinalCommand {
                     // create version
                     final ApiVersion apiVersionWrapper = new ApiVersion(apiVersion);
                     apiClient.createVersion(orgName, apiName, apiVersionWrapper);
+                    remoteState.markApiVersionCreated(orgName, apiName, apiVersion);
+                    changedVersions.add(buildVersionPath(orgName, apiName, apiVersion));
 
                     if (ManagementApiVersion.v11x.equals(serverVersion)) {
                         // do this only on initial creation as v1.1.x API throws a 409 if this is called more than once
@@ -328,10 +696,13 @@ public class ApplyCommand extends AbstractFinalCommand {
 
         if (ManagementApiVersion.v12x.equals(serverVersion)) {
             // The v1.2.x API supports configuration of the API even if published (but not retired)
-            final String apiState = fetchCurrentState(apiClient, orgName, apiName, apiVersion);
+            final String apiState = fetchCurrentState(orgName, apiName, apiVersion);
             if (STATE_RETIRED.equals(apiState.toUpperCase())) {
                 LOGGER.warn("API '{}' is retired - skipping configuration", apiName);
 
+            } else if (isApiConfigUnchanged(declarativeApi, orgName, apiName, apiVersion)) {
+                LOGGER.info("API '{}' version '{}' configuration unchanged", apiName, apiVersion);
+
             } else {
                 configureApi(declarativeApi, apiClient, orgName, apiName, apiVersion);
             }
@@ -341,14 +712,15 @@ public class ApplyCommand extends AbstractFinalCommand {
     /**
      * Return the current state of the API.
      *
-     * @param apiClient
      * @param orgName
      * @param apiName
      * @param apiVersion
      * @return the API state
      */
-    private String fetchCurrentState(VersionAgnosticApi apiClient, String orgName, String apiName, String apiVersion) {
-        final String apiState = ofNullable(apiClient.fetchVersion(orgName, apiName, apiVersion).getStatus()).orElse("");
+    private String fetchCurrentState(String orgName, String apiName, String apiVersion) {
+        final String apiState = remoteState.fetchApiVersion(orgName, apiName, apiVersion)
+                .map(Api::getStatus)
+                .orElse("");
         LOGGER.debug("API '{}' state: {}", apiName, apiState);
         return apiState;
     }
@@ -367,6 +739,16 @@ public class ApplyCommand extends AbstractFinalCommand {
 
         LOGGER.info("Configuring API: {}", apiName);
 
+        apiClient.configure(orgName, apiName, apiVersion, buildApiConfig(declarativeApi));
+        remoteState.markApiVersionConfigured(orgName, apiName, apiVersion);
+        changedVersions.add(buildVersionPath(orgName, apiName, apiVersion));
+    }
+
+    /**
+     * @param declarativeApi the declared API
+     * @return the configuration of the API version
+     */
+    private static ApiConfig buildApiConfig(DeclarativeApi declarativeApi) {
         final ApiConfig apiConfig = MappingUtil.map(declarativeApi.getConfig(), ApiConfig.class);
 
         // map security configuration to endpoint properties
@@ -374,32 +756,82 @@ public class ApplyCommand extends AbstractFinalCommand {
                 .ifPresent(securityConfig -> apiConfig.setEndpointProperties(
                         MappingUtil.map(securityConfig, EndpointProperties.class)));
 
-        apiClient.configure(orgName, apiName, apiVersion, apiConfig);
+        return apiConfig;
+    }
+
+    /**
+     * Compare the configuration of an existing API version on the server with its declared configuration, as
+     * canonical JSON.
+     *
+     * @return <code>true</code> if the configurations are equivalent
+     */
+    private boolean isApiConfigUnchanged(DeclarativeApi declarativeApi, String orgName, String apiName,
+                                         String apiVersion) {
+
+        if (changedVersions.contains(buildVersionPath(orgName, apiName, apiVersion))) {
+            // created by this run
+            return false;
+        }
+
+        final Optional<Api> existing = remoteState.fetchApiVersionConfig(orgName, apiName, apiVersion);
+        if (!existing.isPresent()) {
+            return false;
+        }
+        final Map<String, Object> existingProperties = Maps.newHashMap(existing.get().getOtherProperties());
+
+        // the server holds an empty map when there are no endpoint properties
+        if (existingProperties.get("endpointProperties") instanceof Map
+                && ((Map<?, ?>) existingProperties.get("endpointProperties")).isEmpty()) {
+            existingProperties.remove("endpointProperties");
+        }
+
+        final ApiConfig existingConfig = HashUtil.CANONICAL_MAPPER.convertValue(existingProperties, ApiConfig.class);
+        return HashUtil.canonicaliseValue(existingConfig).equals(
+                HashUtil.canonicaliseValue(buildApiConfig(declarativeApi)));
     }
 
     /**
-     * Add policies to the API if they are not present.
+     * Add policies to the API if they are not present, and put them in their declared order.
      *
      * @param apiClient
      * @param declarativeApi
      * @param orgName
      * @param apiName
      * @param apiVersion
+     * @param versionPath
+     * @return the content hash of the policies
      */
-    private void applyPolicies(VersionAgnosticApi apiClient, DeclarativeApi declarativeApi, String orgName,
-                               String apiName, String apiVersion) {
+    private String applyPolicies(VersionAgnosticApi apiClient, DeclarativeApi declarativeApi, String orgName,
+                                 String apiName, String apiVersion, String versionPath) {
+
+        final List<DeclarativePolicy> declarativePolicies = ofNullable(declarativeApi.getPolicies())
+                .orElse(Collections.emptyList());
+
+        // shared policies are compiled once, however many APIs reference them
+        final List<CompiledPolicy> compiledPolicies = declarativePolicies.stream()
+                .map(policyCompiler::compile)
+                .collect(Collectors.toList());
+
+        // only apply the policies changed since the last apply
+        final List<CompiledPolicy> changedPolicies = Lists.newArrayList();
+        compiledPolicies.forEach(compiledPolicy -> {
+            if (stateFile.isUnchanged(buildPolicyKey(versionPath, compiledPolicy), compiledPolicy.getHash())) {
+                LOGGER.info("Policy '{}' unchanged since last apply for API: {}", compiledPolicy.getName(), apiName);
+                stateFile.record(buildPolicyKey(versionPath, compiledPolicy), compiledPolicy.getHash());
+            } else {
+                changedPolicies.add(compiledPolicy);
+            }
+        });
 
-        ofNullable(declarativeApi.getPolicies()).ifPresent(declarativePolicies -> {
+        if (!changedPolicies.isEmpty()) {
             LOGGER.debug("Applying policies to API: {}", apiName);
 
             // existing policies for the API
-            final List<ApiPolicy> apiPolicies = apiClient.fetchPolicies(orgName, apiName, apiVersion);
-
-            declarativePolicies.forEach(declarativePolicy -> {
-                final String policyName = declarativePolicy.getName();
+            final List<ApiPolicy> apiPolicies = remoteState.fetchPolicies(orgName, apiName, apiVersion);
 
-                final ApiPolicy apiPolicy = new ApiPolicy(
-                        MappingUtil.safeWriteValueAsJson(declarativePolicy.getConfig()));
+            changedPolicies.forEach(compiledPolicy -> {
+                final String policyName = compiledPolicy.getName();
+                final ApiPolicy apiPolicy = new ApiPolicy(compiledPolicy.getConfiguration());
 
                 // determine if the policy already exists for this API
                 final Optional<ApiPolicy> existingPolicy = apiPolicies.stream()
@@ -408,11 +840,22 @@ public class ApplyCommand extends AbstractFinalCommand {
 
                 if (existingPolicy.isPresent()) {
                     if (ManagementApiVersion.v12x.equals(serverVersion)) {
-                        // update the existing policy config
-                        LOGGER.info("Updating existing policy '{}' configuration for API: {}", policyName, apiName);
-
                         final Long policyId = existingPolicy.get().getId();
-                        apiClient.configurePolicy(orgName, apiName, apiVersion, policyId, apiPolicy);
+
+                        if (isPolicyConfigUnchanged(orgName, apiName, apiVersion, existingPolicy.get(),
+                                compiledPolicy)) {
+                            LOGGER.info("Policy '{}' configuration unchanged for API: {}", policyName, apiName);
+                            policiesUnchanged.incrementAndGet();
+
+                        } else {
+                            // update the existing policy config
+                            LOGGER.info("Updating existing policy '{}' configuration for API: {}", policyName, apiName);
+
+                            apiClient.configurePolicy(orgName, apiName, apiVersion, policyId, apiPolicy);
+                            remoteState.markPoliciesChanged(orgName, apiName, apiVersion);
+                            changedVersions.add(versionPath);
+                            policiesConfigured.incrementAndGet();
+                        }
 
                     } else {
                         LOGGER.info("Policy '{}' already exists for API '{}' - skipping configuration update", policyName, apiName);
@@ -424,9 +867,98 @@ public class ApplyCommand extends AbstractFinalCommand {
 
                     apiPolicy.setDefinitionId(policyName);
                     apiClient.addPolicy(orgName, apiName, apiVersion, apiPolicy);
+                    remoteState.markPoliciesChanged(orgName, apiName, apiVersion);
+                    changedVersions.add(versionPath);
+                    policiesAdded.incrementAndGet();
                 }
+
+                stateFile.record(buildPolicyKey(versionPath, compiledPolicy), compiledPolicy.getHash());
             });
-        });
+        }
+
+        // reconcile the order of the chain, if the policies or their declared order changed since the last apply
+        final List<String> policyNames = compiledPolicies.stream()
+                .map(CompiledPolicy::getName)
+                .collect(Collectors.toList());
+
+        if (policyNames.size() > 1) {
+            final String orderKey = "policy-order:" + versionPath;
+            final String orderHash = HashUtil.hash(policyNames);
+
+            if (!changedPolicies.isEmpty() || !stateFile.isUnchanged(orderKey, orderHash)) {
+                reorderPolicies(apiClient, orgName, apiName, apiVersion, versionPath, policyNames);
+            }
+            stateFile.record(orderKey, orderHash);
+        }
+
+        return HashUtil.hash(compiledPolicies.stream().map(CompiledPolicy::getHash).collect(Collectors.toList()));
+    }
+
+    /**
+     * Move the policies on the server into their declared order, if they are not already, in a single request.
+     *
+     * @param policyNames the policy definition IDs of the declared policies, in declared order
+     */
+    private void reorderPolicies(VersionAgnosticApi apiClient, String orgName, String apiName, String apiVersion,
+                                 String versionPath, List<String> policyNames) {
+
+        final PolicyChainReorder reorder = PolicyChainReorder.of(policyNames,
+                remoteState.fetchPolicies(orgName, apiName, apiVersion));
+
+        if (reorder.isRequired()) {
+            LOGGER.info("Reordering policies for API: {} - moving {} of {} policies", apiName, reorder.getMoves(),
+                    reorder.getChain().size());
+
+            apiClient.reorderPolicies(orgName, apiName, apiVersion, new ApiPolicyChain(reorder.getChain()));
+            remoteState.markPoliciesChanged(orgName, apiName, apiVersion);
+            changedVersions.add(versionPath);
+            policyChainsReordered.incrementAndGet();
+
+        } else {
+            LOGGER.debug("Policies already in declared order for API: {}", apiName);
+        }
+    }
+
+    /**
+     * Compare the configuration of a policy on the server with its declared configuration, as canonical JSON.
+     * If the policy was listed without its configuration, it is looked up.
+     *
+     * @return <code>true</code> if the configurations are equivalent
+     */
+    private boolean isPolicyConfigUnchanged(String orgName, String apiName, String apiVersion,
+                                            ApiPolicy existingPolicy, CompiledPolicy compiledPolicy) {
+
+        final String existingConfig = ofNullable(existingPolicy.getConfiguration()).orElseGet(() ->
+                remoteState.fetchPolicyConfiguration(orgName, apiName, apiVersion, existingPolicy.getId()));
+
+        return compiledPolicy.getConfiguration().equals(HashUtil.canonicaliseJson(existingConfig));
+    }
+
+    /**
+     * Compare the definition on the server with the one to be set, unless the state file records that the
+     * last apply set the same definition.
+     */
+    private boolean isDefinitionUnchanged(String orgName, String apiName, String apiVersion, String versionPath,
+                                          String definitionSha256) {
+
+        if (stateFile.isUnchanged(buildDefinitionSha256Key(versionPath), definitionSha256)) {
+            return true;
+        }
+        return remoteState.fetchDefinitionSha256(orgName, apiName, apiVersion)
+                .map(definitionSha256::equals)
+                .orElse(false);
+    }
+
+    private static String buildVersionPath(String orgName, String apiName, String apiVersion) {
+        return String.format("%s/%s/%s", orgName, apiName, apiVersion);
+    }
+
+    private static String buildDefinitionSha256Key(String versionPath) {
+        return "definition-sha256:" + versionPath;
+    }
+
+    private static String buildPolicyKey(String versionPath, CompiledPolicy compiledPolicy) {
+        return String.format("policy:%s/%s", versionPath, compiledPolicy.getName());
     }
 
     /**
@@ -437,50 +969,77 @@ public class ApplyCommand extends AbstractFinalCommand {
      * @param orgName
      * @param apiName
      * @param apiVersion
+     * @param versionPath
+     * @return the content hash of the definition, or <code>null</code> if there is no definition
      */
-    private void applyDefinition(VersionAgnosticApi apiClient, DeclarativeApi declarativeApi, String orgName,
-                                 String apiName, String apiVersion) {
+    private String applyDefinition(VersionAgnosticApi apiClient, DeclarativeApi declarativeApi, String orgName,
+                                   String apiName, String apiVersion, String versionPath) {
+
+        final DeclarativeApiDefinition declarativeApiDefinition = declarativeApi.getDefinition();
+        if (null == declarativeApiDefinition
+                || (StringUtils.isEmpty(declarativeApiDefinition.getFile())
+                && StringUtils.isEmpty(declarativeApiDefinition.getBody()))) {
+            return null;
+        }
 
-        ofNullable(declarativeApi.getDefinition()).ifPresent(declarativeApiDefinition -> {
+        final String definitionType = declarativeApiDefinition.getType();
+        final TypedOutput definitionBody;
+        final String definitionSha256;
+        try {
+            if (StringUtils.isNotEmpty(declarativeApiDefinition.getFile())) {
+                definitionBody = DefinitionUtil.buildDefinitionBody(
+                        Paths.get(declarativeApiDefinition.getFile()), definitionType);
+            } else {
+                definitionBody = new TypedByteArray(definitionType,
+                        declarativeApiDefinition.getBody().getBytes(StandardCharsets.UTF_8));
+            }
+            definitionSha256 = HashUtil.sha256(definitionBody);
 
-            if (StringUtils.isNotEmpty(declarativeApiDefinition.getFile())
-                    || StringUtils.isNotEmpty(declarativeApiDefinition.getBody())) {
-                LOGGER.debug("Applying definition to API: {}", apiName);
-                String definition = "";
-                if (StringUtils.isNotEmpty(declarativeApiDefinition.getFile())) {
-                    try (InputStream is = Files.newInputStream(Paths.get(declarativeApiDefinition.getFile()), StandardOpenOption.READ)) {
-                        definition = CharStreams.toString(new InputStreamReader(is));
-                    } catch (IOException e) {
-                        LOGGER.error("Failed to apply api definition, invalid file: " + declarativeApiDefinition.getFile(), e);
-                    }
-                } else {
-                    definition = declarativeApiDefinition.getBody();
-                }
+        } catch (IOException e) {
+            throw new DeclarativeException(String.format("Failed to read definition for API '%s' from file: %s",
+                    apiName, declarativeApiDefinition.getFile()), e);
+        }
+
+        final String definitionHash = HashUtil.hash(definitionType, definitionSha256);
 
-                apiClient.setDefinition(orgName, apiName, apiVersion, declarativeApiDefinition.getType(), new TypedString(definition));
+        applyIfChanged("definition:" + versionPath, definitionHash, () -> {
+            LOGGER.debug("Applying definition to API: {}", apiName);
 
-                LOGGER.info("Setting definition for API: {}", apiName);
+            if (!changedVersions.contains(versionPath)
+                    && isDefinitionUnchanged(orgName, apiName, apiVersion, versionPath, definitionSha256)) {
+                LOGGER.info("Definition unchanged for API: {}", apiName);
+                return;
             }
 
+            apiClient.setDefinition(orgName, apiName, apiVersion, definitionType, definitionBody);
+            remoteState.markDefinitionChanged(orgName, apiName, apiVersion);
+            changedVersions.add(versionPath);
+
+            LOGGER.info("Setting definition for API: {}", apiName);
         });
 
+        // the definition on the server now has this content
+        stateFile.record(buildDefinitionSha256Key(versionPath), definitionSha256);
+
+        return definitionHash;
     }
 
     /**
-     * Publish the API, if it is in the 'Ready' state.
+     * Publish the API, if it is in the 'Ready' state, or republish it, if it is published and has been
+     * changed by this run.
      *
-     * @param apiClient
+     * @param actionClient
      * @param orgName
      * @param apiName
      * @param apiVersion
      */
-    private void publish(VersionAgnosticApi apiClient, String orgName, String apiName, String apiVersion) {
+    private void publish(ActionApi actionClient, String orgName, String apiName, String apiVersion) {
         LOGGER.debug("Attempting to publish API: {}", apiName);
-        final String apiState = fetchCurrentState(apiClient, orgName, apiName, apiVersion);
+        final String apiState = fetchCurrentState(orgName, apiName, apiVersion);
 
         switch (apiState.toUpperCase()) {
             case STATE_READY:
-                performPublish(orgName, apiName, apiVersion);
+                performPublish(actionClient, orgName, apiName, apiVersion);
                 break;
 
             case STATE_PUBLISHED:
@@ -490,8 +1049,12 @@ public class ApplyCommand extends AbstractFinalCommand {
                         break;
 
                     case v12x:
-                        LOGGER.info("Republishing API: {}", apiName);
-                        performPublish(orgName, apiName, apiVersion);
+                        if (forceRepublish || changedVersions.contains(buildVersionPath(orgName, apiName, apiVersion))) {
+                            LOGGER.info("Republishing API: {}", apiName);
+                            performPublish(actionClient, orgName, apiName, apiVersion);
+                        } else {
+                            LOGGER.info("API '{}' already published and unchanged - skipping republish", apiName);
+                        }
                         break;
                 }
                 break;
@@ -505,17 +1068,37 @@ public class ApplyCommand extends AbstractFinalCommand {
     /**
      * Trigger the publish action for the given API.
      *
+     * @param actionClient
      * @param orgName
      * @param apiName
      * @param apiVersion
      */
-    private void performPublish(String orgName, String apiName, String apiVersion) {
+    private void performPublish(ActionApi actionClient, String orgName, String apiName, String apiVersion) {
         LOGGER.info("Publishing API: {}", apiName);
-        ServerActionUtil.publishApi(orgName, apiName, apiVersion, serverVersion, buildServerApiClient(ActionApi.class));
+        ServerActionUtil.publishApi(orgName, apiName, apiVersion, serverVersion, actionClient);
+        remoteState.markApiVersionPublished(orgName, apiName, apiVersion);
+    }
+
+    /**
+     * @return the plan made by the last apply with {@code --plan}, or <code>null</code>
+     */
+    ApplyPlan getPlan() {
+        return plan;
+    }
+
+    /**
+     * @return the view of the server state used by the last apply
+     */
+    RemoteState getRemoteState() {
+        return remoteState;
     }
 
     public void setDeclarationFile(Path declarationFile) {
-        this.declarationFile = declarationFile;
+        this.declarationFiles = Collections.singletonList(declarationFile.toString());
+    }
+
+    public void setDeclarationFiles(List<String> declarationFiles) {
+        this.declarationFiles = declarationFiles;
     }
 
     public void setProperties(List<String> properties) {
@@ -533,4 +1116,52 @@ public class ApplyCommand extends AbstractFinalCommand {
     public void setServerVersion(ManagementApiVersion serverVersion) {
         this.serverVersion = serverVersion;
     }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    public void setPlanOnly(boolean planOnly) {
+        this.planOnly = planOnly;
+    }
+
+    public void setStateFilePath(Path stateFilePath) {
+        this.stateFilePath = stateFilePath;
+    }
+
+    public void setRefresh(boolean refresh) {
+        this.refresh = refresh;
+    }
+
+    public void setForceRepublish(boolean forceRepublish) {
+        this.forceRepublish = forceRepublish;
+    }
+
+    public void setPrune(boolean prune) {
+        this.prune = prune;
+    }
+
+    public void setPruneSystem(boolean pruneSystem) {
+        this.pruneSystem = pruneSystem;
+    }
+
+    public void setMaxDeletions(int maxDeletions) {
+        this.maxDeletions = maxDeletions;
+    }
+
+    public void setJournalPath(Path journalPath) {
+        this.journalPath = journalPath;
+    }
+
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
+    public void setDeadlineSeconds(long deadlineSeconds) {
+        this.deadlineSeconds = deadlineSeconds;
+    }
 }
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.executor;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of the tasks in a group, such as those applying an org.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class GroupResult {
+    /**
+     * The outcome of a task.
+     */
+    enum State {
+        COMPLETED,
+        FAILED,
+
+        /**
+         * Not started, because a task it depends on, or another task in its group, failed.
+         */
+        SKIPPED
+    }
+
+    private final String group;
+    private int completed;
+    private int failed;
+    private int skipped;
+    private long firstStartNanos = Long.MAX_VALUE;
+    private long lastEndNanos = Long.MIN_VALUE;
+    private Throwable failure;
+
+    GroupResult(String group) {
+        this.group = group;
+    }
+
+    void add(State state, long startNanos, long endNanos, Throwable taskFailure) {
+        switch (state) {
+            case COMPLETED:
+                completed++;
+                break;
+            case FAILED:
+                failed++;
+                if (null == failure) {
+                    failure = taskFailure;
+                }
+                break;
+            default:
+                skipped++;
+                return;
+        }
+        firstStartNanos = Math.min(firstStartNanos, startNanos);
+        lastEndNanos = Math.max(lastEndNanos, endNanos);
+    }
+
+    public String getGroup() {
+        return group;
+    }
+
+    public int getCompleted() {
+        return completed;
+    }
+
+    public int getFailed() {
+        return failed;
+    }
+
+    public int getSkipped() {
+        return skipped;
+    }
+
+    /**
+     * @return <code>true</code> if every task in the group completed
+     */
+    public boolean isSuccessful() {
+        return 0 == failed && 0 == skipped;
+    }
+
+    /**
+     * @return the first failure in the group, or <code>null</code>
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    /**
+     * @return the time from the first task in the group starting to the last finishing
+     */
+    public long getElapsedMillis() {
+        return firstStartNanos > lastEndNanos ? 0 : TimeUnit.NANOSECONDS.toMillis(lastEndNanos - firstStartNanos);
+    }
+}
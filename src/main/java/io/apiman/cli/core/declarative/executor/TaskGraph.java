@@ -0,0 +1,416 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.executor;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.apiman.cli.exception.DeclarativeException;
+import io.apiman.cli.management.metrics.MetricsUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * A directed acyclic graph of tasks, executed on a bounded pool of workers.
+ * <p>
+ * A task is started only once all of the tasks it depends on have completed. As dependencies must be
+ * added to the graph before their dependents, the graph cannot contain cycles, and the order in which
+ * tasks were added is always a valid execution order.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class TaskGraph {
+    private static final Logger LOGGER = LogManager.getLogger(TaskGraph.class);
+
+    /**
+     * Tasks, in the order in which they were added.
+     */
+    private final Map<String, Task> tasks = Maps.newLinkedHashMap();
+
+    /**
+     * The {@link System#nanoTime()} after which no further tasks are started; <code>null</code> for none.
+     */
+    private Long deadlineNanos;
+
+    private boolean deadlineReached;
+
+    /**
+     * Add a task with no dependencies.
+     *
+     * @param taskId the unique ID of the task
+     * @param action the work to perform
+     * @return the task ID
+     */
+    public String addTask(String taskId, Runnable action) {
+        return addTask(taskId, action, Collections.emptyList());
+    }
+
+    /**
+     * Add a task that must not start until all of its {@code dependencies} have completed.
+     *
+     * @param taskId       the unique ID of the task
+     * @param action       the work to perform
+     * @param dependencies the IDs of tasks already in the graph
+     * @return the task ID
+     */
+    public String addTask(String taskId, Runnable action, Collection<String> dependencies) {
+        return addTask(taskId, null, action, dependencies);
+    }
+
+    /**
+     * Add a task, belonging to a group, that must not start until all of its {@code dependencies} have
+     * completed.
+     * <p>
+     * Ready tasks are started in turn from each group, so a group with many tasks does not delay the others.
+     * If a task in a group fails, no further tasks in that group are started, but other groups continue. If
+     * a task without a group fails, no further tasks are started at all.
+     *
+     * @param taskId       the unique ID of the task
+     * @param group        the group, such as the org the task applies to, or <code>null</code>
+     * @param action       the work to perform
+     * @param dependencies the IDs of tasks already in the graph
+     * @return the task ID
+     */
+    public synchronized String addTask(String taskId, String group, Runnable action, Collection<String> dependencies) {
+        if (tasks.containsKey(taskId)) {
+            throw new DeclarativeException(String.format("Duplicate task: %s", taskId));
+        }
+
+        final Task task = new Task(taskId, group, action);
+        dependencies.forEach(dependencyId -> {
+            final Task dependency = ofNullable(tasks.get(dependencyId)).orElseThrow(() -> new DeclarativeException(
+                    String.format("Task '%s' depends on unknown task: %s", taskId, dependencyId)));
+
+            if (!task.dependencies.contains(dependency)) {
+                task.dependencies.add(dependency);
+                dependency.dependents.add(task);
+            }
+        });
+
+        tasks.put(taskId, task);
+        return taskId;
+    }
+
+    /**
+     * Stop starting tasks once the deadline has passed. Tasks already running are allowed to finish, and
+     * the tasks not started are reported as skipped.
+     *
+     * @param deadlineNanos the {@link System#nanoTime()} after which no further tasks are started
+     */
+    public synchronized void setDeadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * @return <code>true</code> if the last execution stopped starting tasks because its deadline passed
+     */
+    public synchronized boolean isDeadlineReached() {
+        return deadlineReached;
+    }
+
+    /**
+     * @return the number of tasks in the graph
+     */
+    public synchronized int size() {
+        return tasks.size();
+    }
+
+    /**
+     * Execute all tasks, running up to {@code parallelism} tasks at the same time. Returns once every
+     * task has completed.
+     * <p>
+     * If a task fails, no further tasks in its group are started, nor any that depend on it; tasks already
+     * running are allowed to finish, then the first failure is rethrown.
+     *
+     * @param parallelism the maximum number of tasks to run concurrently
+     */
+    public synchronized void execute(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be at least 1");
+        }
+
+        tasks.values().forEach(Task::reset);
+        deadlineReached = false;
+        final Execution execution = new Execution();
+        if (1 == parallelism || tasks.size() <= 1) {
+            // insertion order is a valid topological order
+            LOGGER.debug("Executing {} tasks sequentially", tasks.size());
+            tasks.values().forEach(task -> {
+                if (execution.canStart(task) && task.dependencies.stream().allMatch(Task::isCompleted)) {
+                    execution.run(task);
+                }
+            });
+            execution.complete();
+            return;
+        }
+
+        LOGGER.debug("Executing {} tasks with parallelism {}", tasks.size(), parallelism);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(Math.min(parallelism, tasks.size()),
+                new ThreadFactoryBuilder().setNameFormat("apply-worker-%d").setDaemon(true).build());
+
+        try {
+            schedule(new ExecutorCompletionService<>(executor), parallelism, execution);
+        } finally {
+            executor.shutdownNow();
+        }
+        execution.complete();
+    }
+
+    /**
+     * The outcome of the tasks in each group, from the last execution. Tasks without a group are not
+     * included.
+     *
+     * @return the results, keyed by group, in the order in which the groups were added
+     */
+    public synchronized Map<String, GroupResult> getGroupResults() {
+        final Map<String, GroupResult> results = Maps.newLinkedHashMap();
+        tasks.values().stream()
+                .filter(task -> null != task.group)
+                .forEach(task -> results.computeIfAbsent(task.group, GroupResult::new).add(task.state,
+                        task.startNanos, task.endNanos, task.failure));
+
+        return results;
+    }
+
+    /**
+     * Submit tasks as their dependencies complete, keeping at most {@code parallelism} in flight.
+     *
+     * @param completionService the service to which tasks are submitted
+     * @param parallelism       the maximum number of tasks to run concurrently
+     * @param execution         tracks failures
+     */
+    private void schedule(CompletionService<Task> completionService, int parallelism, Execution execution) {
+        final Map<Task, Integer> pendingDependencies = Maps.newHashMap();
+        final FairQueue ready = new FairQueue();
+
+        tasks.values().forEach(task -> {
+            pendingDependencies.put(task, task.dependencies.size());
+            if (task.dependencies.isEmpty()) {
+                ready.add(task);
+            }
+        });
+
+        final Map<Future<Task>, Task> inFlight = Maps.newHashMap();
+        while (true) {
+            while (inFlight.size() < parallelism && !ready.isEmpty()) {
+                final Task task = ready.poll();
+                if (execution.canStart(task)) {
+                    inFlight.put(completionService.submit(task::run, task), task);
+                }
+            }
+            if (inFlight.isEmpty()) {
+                break;
+            }
+
+            final Future<Task> result;
+            try {
+                result = completionService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DeclarativeException("Interrupted whilst waiting for tasks to complete", e);
+            }
+            final Task task = inFlight.remove(result);
+
+            try {
+                result.get();
+                LOGGER.trace("Task complete: {}", task.taskId);
+
+                task.dependents.forEach(dependent -> {
+                    final int remaining = pendingDependencies.merge(dependent, -1, Integer::sum);
+                    if (0 == remaining) {
+                        ready.add(dependent);
+                    }
+                });
+
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new DeclarativeException("Interrupted whilst waiting for tasks to complete", e);
+
+            } catch (ExecutionException e) {
+                execution.failed(task, e.getCause());
+            }
+        }
+    }
+
+    /**
+     * Tracks the failures during an execution, and which tasks may still start.
+     */
+    private class Execution {
+        private final Set<String> failedGroups = Sets.newHashSet();
+        private boolean stopped;
+        private Throwable failure;
+
+        private boolean canStart(Task task) {
+            if (!stopped && null != deadlineNanos && System.nanoTime() - deadlineNanos >= 0) {
+                LOGGER.debug("Deadline reached - no further tasks will be started");
+                deadlineReached = true;
+                stopped = true;
+            }
+            return !stopped && (null == task.group || !failedGroups.contains(task.group));
+        }
+
+        /**
+         * Run the task on the calling thread.
+         */
+        private void run(Task task) {
+            try {
+                task.run();
+            } catch (RuntimeException | Error e) {
+                failed(task, e);
+            }
+        }
+
+        /**
+         * Record the failure of a task, stopping its group, or every group if it has none.
+         */
+        private void failed(Task task, Throwable cause) {
+            if (null == task.group) {
+                stopped = true;
+            } else {
+                LOGGER.debug("Task failed - no further tasks will be started for: {}", task.group);
+                failedGroups.add(task.group);
+            }
+
+            if (null == failure) {
+                failure = cause;
+            } else {
+                LOGGER.debug("Suppressing subsequent task failure", cause);
+            }
+        }
+
+        /**
+         * Rethrow the first failure, if any.
+         */
+        private void complete() {
+            if (null != failure) {
+                LOGGER.debug("{} of {} tasks completed before failure",
+                        tasks.values().stream().filter(Task::isCompleted).count(), tasks.size());
+
+                if (failure instanceof RuntimeException) {
+                    throw (RuntimeException) failure;
+                } else if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                throw new DeclarativeException(failure);
+            }
+        }
+    }
+
+    /**
+     * Ready tasks, taken from each group in turn, and in the order they became ready within a group.
+     */
+    private static class FairQueue {
+        private final Map<String, Deque<Task>> groups = Maps.newHashMap();
+        private final Deque<String> turns = Lists.newLinkedList();
+
+        private void add(Task task) {
+            final String group = ofNullable(task.group).orElse("");
+            final Deque<Task> groupTasks = groups.computeIfAbsent(group, g -> Lists.newLinkedList());
+            if (groupTasks.isEmpty()) {
+                turns.add(group);
+            }
+            groupTasks.add(task);
+        }
+
+        private boolean isEmpty() {
+            return turns.isEmpty();
+        }
+
+        private Task poll() {
+            final String group = turns.poll();
+            final Deque<Task> groupTasks = groups.get(group);
+            final Task task = groupTasks.poll();
+
+            if (!groupTasks.isEmpty()) {
+                turns.add(group);
+            }
+            return task;
+        }
+    }
+
+    /**
+     * A unit of work and its position in the graph.
+     */
+    private static class Task {
+        private final String taskId;
+        private final String group;
+        private final Runnable action;
+        private final List<Task> dependencies = Lists.newArrayList();
+        private final List<Task> dependents = Lists.newArrayList();
+        private volatile GroupResult.State state = GroupResult.State.SKIPPED;
+        private volatile Throwable failure;
+        private volatile long startNanos;
+        private volatile long endNanos;
+
+        private Task(String taskId, String group, Runnable action) {
+            this.taskId = taskId;
+            this.group = group;
+            this.action = action;
+        }
+
+        private boolean isCompleted() {
+            return GroupResult.State.COMPLETED == state;
+        }
+
+        private void reset() {
+            state = GroupResult.State.SKIPPED;
+            failure = null;
+            startNanos = 0;
+            endNanos = 0;
+        }
+
+        /**
+         * Run the task, recording its latency as a step named after the prefix of its ID, such as
+         * <code>api</code> for <code>api:org/name/1.0</code>.
+         */
+        private void run() {
+            startNanos = System.nanoTime();
+            try {
+                action.run();
+                state = GroupResult.State.COMPLETED;
+
+            } catch (RuntimeException | Error e) {
+                failure = e;
+                state = GroupResult.State.FAILED;
+                throw e;
+
+            } finally {
+                endNanos = System.nanoTime();
+                final int separator = taskId.indexOf(':');
+                MetricsUtil.recordStep(separator > 0 ? taskId.substring(0, separator) : taskId,
+                        endNanos - startNanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.loader;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
+import io.apiman.cli.core.declarative.model.Declaration;
+import io.apiman.cli.exception.DeclarativeException;
+import io.apiman.cli.util.DeclarativeUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.PathMatcher;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Loads a declaration from one or more locations, each of which may be a file, a directory, a glob or
+ * <code>-</code> for standard input. Each file may contain more than one YAML document.
+ * <p>
+ * Files are parsed in parallel, on the common fork-join pool, then merged by {@link DeclarationMerger} in
+ * the order in which they were given. The files in a directory, or matching a glob, are ordered by path.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class DeclarationLoader {
+    private static final Logger LOGGER = LogManager.getLogger(DeclarationLoader.class);
+    private static final String STDIN = "-";
+    private static final List<String> EXTENSIONS = Arrays.asList(".yml", ".yaml", ".json");
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final Pattern GLOB_CHARACTERS = Pattern.compile("[*?\\[{]");
+
+    private final Map<String, String> properties;
+    private final InputStream stdin;
+    private ByteSource stdinSource;
+
+    /**
+     * @param properties the property placeholders
+     */
+    public DeclarationLoader(Map<String, String> properties) {
+        this(properties, System.in);
+    }
+
+    /**
+     * @param properties the property placeholders
+     * @param stdin      the stream read for the location <code>-</code>
+     */
+    DeclarationLoader(Map<String, String> properties, InputStream stdin) {
+        this.properties = properties;
+        this.stdin = stdin;
+    }
+
+    /**
+     * @param locations files, directories, globs or <code>-</code> for standard input
+     * @return the merged Declaration
+     */
+    public Declaration load(List<String> locations) {
+        final Map<String, DeclarationSource> sources = resolveSources(locations);
+        if (sources.isEmpty()) {
+            throw new DeclarativeException(String.format("No declaration files found in: %s", locations));
+        }
+        LOGGER.debug("Loading {} declaration files", sources.size());
+
+        final List<Declaration> declarations = sources.values().parallelStream()
+                .flatMap(DeclarationSource::load)
+                .collect(Collectors.toList());
+
+        return DeclarationMerger.merge(declarations);
+    }
+
+    /**
+     * @param locations files, directories, globs or <code>-</code> for standard input
+     * @return the sources, keyed by name, without duplicates
+     */
+    private Map<String, DeclarationSource> resolveSources(List<String> locations) {
+        final Map<String, DeclarationSource> sources = new LinkedHashMap<>();
+
+        locations.forEach(location -> {
+            if (STDIN.equals(location)) {
+                final ByteSource source = readStdin();
+                sources.put(STDIN, new DeclarationSource(STDIN, source, DeclarativeUtil.detectMapper(source)));
+                return;
+            }
+
+            final List<Path> paths;
+            if (GLOB_CHARACTERS.matcher(location).find() && !Files.exists(Paths.get(location))) {
+                paths = expandGlob(location);
+            } else {
+                final Path path = Paths.get(location);
+                if (Files.isDirectory(path)) {
+                    paths = listDeclarations(path);
+                } else if (Files.isRegularFile(path)) {
+                    paths = Collections.singletonList(path);
+                } else {
+                    throw new DeclarativeException(String.format("Declaration file not found: %s", location));
+                }
+            }
+
+            paths.forEach(path -> sources.putIfAbsent(path.toAbsolutePath().normalize().toString(),
+                    new DeclarationSource(path.toString(), com.google.common.io.Files.asByteSource(path.toFile()),
+                            DeclarativeUtil.getMapper(path))));
+        });
+
+        return sources;
+    }
+
+    /**
+     * Standard input can only be read once, so it is held in memory.
+     */
+    private ByteSource readStdin() {
+        if (null == stdinSource) {
+            try {
+                stdinSource = ByteSource.wrap(ByteStreams.toByteArray(stdin));
+            } catch (IOException e) {
+                throw new DeclarativeException("Error reading declaration from standard input", e);
+            }
+        }
+        return stdinSource;
+    }
+
+    /**
+     * @param directory the directory
+     * @return the declaration files in the directory and its subdirectories, ordered by path
+     */
+    private static List<Path> listDeclarations(Path directory) {
+        try (Stream<Path> files = Files.walk(directory)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(DeclarationLoader::isDeclaration)
+                    .sorted()
+                    .collect(Collectors.toList());
+
+        } catch (IOException | UncheckedIOException e) {
+            throw new DeclarativeException(String.format("Error listing declaration files in: %s", directory), e);
+        }
+    }
+
+    private static boolean isDeclaration(Path path) {
+        final String fileName = path.getFileName().toString().toLowerCase();
+        final String uncompressed = fileName.endsWith(GZIP_EXTENSION)
+                ? fileName.substring(0, fileName.length() - GZIP_EXTENSION.length()) : fileName;
+
+        return EXTENSIONS.stream().anyMatch(uncompressed::endsWith);
+    }
+
+    /**
+     * @param glob the glob, such as <code>apis/*.yml</code>
+     * @return the files matching the glob, ordered by path
+     */
+    private static List<Path> expandGlob(String glob) {
+        // walk from the deepest directory without glob characters
+        final String normalised = glob.replace('\\', '/');
+        final Matcher globCharacter = GLOB_CHARACTERS.matcher(normalised);
+        globCharacter.find();
+        final int baseEnd = normalised.lastIndexOf('/', globCharacter.start());
+
+        final Path base = Paths.get(baseEnd < 0 ? "." : (0 == baseEnd ? "/" : normalised.substring(0, baseEnd)));
+        final PathMatcher matcher = FileSystems.getDefault().getPathMatcher("glob:" + normalised.substring(baseEnd + 1));
+
+        if (!Files.isDirectory(base)) {
+            return Collections.emptyList();
+        }
+
+        try (Stream<Path> files = Files.walk(base)) {
+            return files.filter(Files::isRegularFile)
+                    .filter(file -> matcher.matches(base.relativize(file)))
+                    .map(Path::normalize)
+                    .sorted()
+                    .collect(Collectors.toList());
+
+        } catch (IOException | UncheckedIOException e) {
+            throw new DeclarativeException(String.format("Error listing declaration files matching: %s", glob), e);
+        }
+    }
+
+    /**
+     * A file, or standard input, containing one or more declarations.
+     */
+    private class DeclarationSource {
+        private final String name;
+        private final ByteSource bytes;
+        private final ObjectMapper mapper;
+
+        DeclarationSource(String name, ByteSource bytes, ObjectMapper mapper) {
+            this.name = name;
+            this.bytes = bytes;
+            this.mapper = mapper;
+        }
+
+        Stream<Declaration> load() {
+            LOGGER.trace("Loading declaration file: {}", name);
+            try {
+                return DeclarativeUtil.compileDeclarations(bytes, mapper).stream()
+                        .map(template -> template.render(properties))
+                        .collect(Collectors.toList())
+                        .stream();
+
+            } catch (DeclarativeException e) {
+                throw new DeclarativeException(String.format("Error loading declaration file: %s", name), e);
+            }
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.loader;
+
+import io.apiman.cli.core.declarative.model.Declaration;
+import io.apiman.cli.core.declarative.model.DeclarativeApi;
+import io.apiman.cli.core.declarative.model.DeclarativeGateway;
+import io.apiman.cli.core.declarative.model.DeclarativeOrg;
+import io.apiman.cli.core.declarative.model.DeclarativePolicy;
+import io.apiman.cli.core.declarative.model.DeclarativeSystem;
+import io.apiman.cli.core.declarative.model.SharedItems;
+import io.apiman.cli.core.plugin.model.Plugin;
+import io.apiman.cli.exception.DeclarativeException;
+import io.apiman.cli.util.HashUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Merges the declarations loaded from several files or documents into one.
+ * <p>
+ * Gateways, plugins and shared policies may be declared in more than one declaration, as long as each
+ * declaration of the same item is identical; they are then applied once. Each declaration may contain any
+ * number of orgs, and the APIs of an org may be spread across declarations, but each version of an API may
+ * only be declared once. The merged Declaration lists every org in {@link Declaration#getOrgs()}, and each
+ * reference to a shared policy resolves to a single instance.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class DeclarationMerger {
+    private static final Logger LOGGER = LogManager.getLogger(DeclarationMerger.class);
+
+    private final Map<String, DeclarativeGateway> gateways = new LinkedHashMap<>();
+    private final Map<String, Plugin> plugins = new LinkedHashMap<>();
+    private final Map<String, DeclarativePolicy> sharedPolicies = new LinkedHashMap<>();
+    private final Map<String, String> sharedProperties = new LinkedHashMap<>();
+    private final Map<String, DeclarativeOrg> orgs = new LinkedHashMap<>();
+    private final Map<String, Map<String, DeclarativeApi>> orgApis = new LinkedHashMap<>();
+    private int duplicates;
+
+    private DeclarationMerger() {
+    }
+
+    /**
+     * @param declarations the declarations to merge, in the order in which they were declared
+     * @return the merged Declaration
+     */
+    public static Declaration merge(List<Declaration> declarations) {
+        final DeclarationMerger merger = new DeclarationMerger();
+        declarations.forEach(merger::add);
+        return merger.build();
+    }
+
+    /**
+     * @param plugin the plugin
+     * @return the key identifying the plugin, including its classifier
+     */
+    public static String getPluginKey(Plugin plugin) {
+        return String.format("%s:%s:%s:%s", plugin.getGroupId(), plugin.getArtifactId(), plugin.getVersion(),
+                plugin.getClassifier());
+    }
+
+    private void add(Declaration declaration) {
+        ofNullable(declaration.getSystem()).ifPresent(system -> {
+            addAll("Gateway", system.getGateways(), DeclarativeGateway::getName, gateways);
+            addAll("Plugin", system.getPlugins(), DeclarationMerger::getPluginKey, plugins);
+        });
+
+        ofNullable(declaration.getShared()).ifPresent(shared -> {
+            addAll("Shared policy", shared.getPolicies(), DeclarativePolicy::getId, sharedPolicies);
+            ofNullable(shared.getProperties()).ifPresent(sharedProperties::putAll);
+        });
+
+        declaration.getAllOrgs().forEach(declarativeOrg -> {
+            final String orgName = declarativeOrg.getName();
+            orgs.putIfAbsent(orgName, declarativeOrg);
+            final Map<String, DeclarativeApi> apis = orgApis.computeIfAbsent(orgName, o -> new LinkedHashMap<>());
+
+            ofNullable(declarativeOrg.getApis()).ifPresent(declarativeApis -> declarativeApis.forEach(api -> {
+                final String apiKey = String.format("%s/%s", api.getName(),
+                        ofNullable(api.getVersion()).orElse(api.getInitialVersion()));
+
+                if (null != apis.putIfAbsent(apiKey, api)) {
+                    throw new DeclarativeException(String.format("API '%s/%s' is declared more than once",
+                            orgName, apiKey));
+                }
+                ofNullable(api.getPolicies()).ifPresent(policies -> policies.replaceAll(this::resolveShared));
+            }));
+        });
+    }
+
+    /**
+     * Add the items, skipping those already added with identical content.
+     */
+    private <T> void addAll(String kind, List<T> items, Function<T, String> keyFunction, Map<String, T> added) {
+        ofNullable(items).ifPresent(i -> i.forEach(item -> {
+            final String key = keyFunction.apply(item);
+            final T existing = added.putIfAbsent(key, item);
+
+            if (null != existing) {
+                if (!HashUtil.hash(existing).equals(HashUtil.hash(item))) {
+                    throw new DeclarativeException(String.format(
+                            "%s '%s' is declared more than once, with different configuration", kind, key));
+                }
+                duplicates++;
+            }
+        }));
+    }
+
+    /**
+     * A shared policy declared in more than one file is parsed once per file; resolve each reference to the
+     * first instance, so that the policy is compiled once, however many APIs reference it.
+     */
+    private DeclarativePolicy resolveShared(DeclarativePolicy policy) {
+        return ofNullable(policy.getId()).map(sharedPolicies::get).orElse(policy);
+    }
+
+    private Declaration build() {
+        LOGGER.debug("Merged declarations - skipped {} duplicate gateways, plugins and shared policies", duplicates);
+
+        final Declaration declaration = new Declaration();
+
+        final DeclarativeSystem system = new DeclarativeSystem();
+        system.setGateways(new ArrayList<>(gateways.values()));
+        system.setPlugins(new ArrayList<>(plugins.values()));
+        declaration.setSystem(system);
+
+        final SharedItems shared = new SharedItems();
+        shared.setPolicies(new ArrayList<>(sharedPolicies.values()));
+        shared.setProperties(sharedProperties);
+        declaration.setShared(shared);
+
+        orgs.forEach((orgName, org) -> org.setApis(new ArrayList<>(orgApis.get(orgName).values())));
+        declaration.setOrgs(new ArrayList<>(orgs.values()));
+        return declaration;
+    }
+}
@@ -16,10 +16,15 @@
 
 package io.apiman.cli.core.declarative.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import com.fasterxml.jackson.databind.annotation.JsonSerialize;
 
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+
 /**
  * Represents an API environment declaration.
  *
@@ -37,6 +42,9 @@ public class Declaration {
     @JsonProperty
     private DeclarativeOrg org;
 
+    @JsonProperty
+    private List<DeclarativeOrg> orgs;
+
     public DeclarativeSystem getSystem() {
         return system;
     }
@@ -53,7 +61,34 @@ public class Declaration {
         this.org = org;
     }
 
+    public List<DeclarativeOrg> getOrgs() {
+        return orgs;
+    }
+
+    public void setOrgs(List<DeclarativeOrg> orgs) {
+        this.orgs = orgs;
+    }
+
+    /**
+     * @return the org, if declared, followed by the orgs
+     */
+    @JsonIgnore
+    public List<DeclarativeOrg> getAllOrgs() {
+        final List<DeclarativeOrg> allOrgs = newArrayList();
+        if (null != org) {
+            allOrgs.add(org);
+        }
+        if (null != orgs) {
+            allOrgs.addAll(orgs);
+        }
+        return allOrgs;
+    }
+
     public SharedItems getShared() {
         return shared;
     }
+
+    public void setShared(SharedItems shared) {
+        this.shared = shared;
+    }
 }
@@ -38,6 +38,10 @@ public class DeclarativePolicy {
     @JsonProperty
     private Map<String, Object> config;
 
+    public String getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
@@ -40,7 +40,19 @@ public class SharedItems {
     @JsonProperty
     private Map<String, String> properties;
 
+    public List<DeclarativePolicy> getPolicies() {
+        return policies;
+    }
+
+    public void setPolicies(List<DeclarativePolicy> policies) {
+        this.policies = policies;
+    }
+
     public Map<String, String> getProperties() {
         return properties;
     }
+
+    public void setProperties(Map<String, String> properties) {
+        this.properties = properties;
+    }
 }
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.plan;
+
+import com.google.common.collect.Lists;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * The changes that applying a declaration would make to the server, recorded instead of being sent.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ApplyPlan {
+    /**
+     * The kinds of change that can be planned.
+     */
+    public enum ChangeType {
+        CREATE("+", "to create"),
+        UPDATE("~", "to update"),
+        POLICY("*", "policy changes"),
+        PUBLISH("^", "to publish"),
+        DELETE("-", "to delete");
+
+        private final String symbol;
+        private final String summary;
+
+        ChangeType(String symbol, String summary) {
+            this.symbol = symbol;
+            this.summary = summary;
+        }
+    }
+
+    /**
+     * A single write that would be made to the server.
+     */
+    public static class PlannedChange {
+        private final ChangeType type;
+        private final String description;
+
+        PlannedChange(ChangeType type, String description) {
+            this.type = type;
+            this.description = description;
+        }
+
+        public ChangeType getType() {
+            return type;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %s", type.symbol, description);
+        }
+    }
+
+    private final List<PlannedChange> changes = Collections.synchronizedList(Lists.newArrayList());
+
+    /**
+     * Record a write that would be made to the server.
+     *
+     * @param type        the kind of change
+     * @param description a description of the change
+     */
+    public void record(ChangeType type, String description) {
+        changes.add(new PlannedChange(type, description));
+    }
+
+    /**
+     * @return the planned changes, in the order they were recorded
+     */
+    public List<PlannedChange> getChanges() {
+        synchronized (changes) {
+            return Lists.newArrayList(changes);
+        }
+    }
+
+    /**
+     * @param type the kind of change
+     * @return the number of planned changes of the given type
+     */
+    public int count(ChangeType type) {
+        return (int) getChanges().stream().filter(change -> type.equals(change.getType())).count();
+    }
+
+    /**
+     * Describe the plan, along with the number of requests applying it would make.
+     *
+     * @param prefetchReads the number of reads made when applying with the server state prefetched
+     * @param liveReads     the number of reads made when checking each item individually
+     * @return the lines of the description
+     */
+    public List<String> describe(int prefetchReads, int liveReads) {
+        final List<PlannedChange> plannedChanges = getChanges();
+        final List<String> lines = Lists.newArrayList();
+
+        if (plannedChanges.isEmpty()) {
+            lines.add("No changes - the server matches the declaration");
+        } else {
+            lines.add("Plan: " + Lists.newArrayList(ChangeType.values()).stream()
+                    .map(type -> String.format("%d %s", count(type), type.summary))
+                    .collect(Collectors.joining(", ")));
+
+            plannedChanges.forEach(change -> lines.add("  " + change));
+        }
+
+        final int writes = plannedChanges.size();
+        lines.add(String.format("Requests with --prefetch: %d reads, %d writes (%d total)",
+                prefetchReads, writes, prefetchReads + writes));
+        lines.add(String.format("Requests without --prefetch: %d reads, %d writes (%d total)",
+                liveReads, writes, liveReads + writes));
+
+        return lines;
+    }
+}
@@ -0,0 +1,262 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.plan;
+
+import io.apiman.cli.core.api.VersionAgnosticApi;
+import io.apiman.cli.core.api.model.*;
+import io.apiman.cli.core.common.ActionApi;
+import io.apiman.cli.core.common.util.ServerActionUtil;
+import io.apiman.cli.core.declarative.plan.ApplyPlan.ChangeType;
+import io.apiman.cli.core.gateway.GatewayApi;
+import io.apiman.cli.core.gateway.model.Gateway;
+import io.apiman.cli.core.gateway.model.GatewayTestResponse;
+import io.apiman.cli.core.org.OrgApi;
+import io.apiman.cli.core.org.model.Org;
+import io.apiman.cli.core.plugin.PluginApi;
+import io.apiman.cli.core.plugin.model.Plugin;
+import retrofit.client.Response;
+import retrofit.mime.TypedOutput;
+
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.List;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Management API clients that record writes in an {@link ApplyPlan} instead of sending them to the server.
+ * Reads are passed through to the real client.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class DryRunClients {
+    /**
+     * Wrap the given client, so its writes are recorded in the plan.
+     *
+     * @param clazz  the Class of the client
+     * @param client the real client
+     * @param plan   the plan in which to record writes
+     * @param <T>    the client type
+     * @return the dry run client
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T wrap(Class<T> clazz, T client, ApplyPlan plan) {
+        if (GatewayApi.class.equals(clazz)) {
+            return (T) gatewayApi((GatewayApi) client, plan);
+        } else if (PluginApi.class.equals(clazz)) {
+            return (T) pluginApi((PluginApi) client, plan);
+        } else if (OrgApi.class.equals(clazz)) {
+            return (T) orgApi((OrgApi) client, plan);
+        } else if (VersionAgnosticApi.class.equals(clazz)) {
+            return (T) versionAgnosticApi((VersionAgnosticApi) client, plan);
+        } else if (ActionApi.class.equals(clazz)) {
+            return (T) actionApi(plan);
+        }
+        throw new IllegalArgumentException(String.format("No dry run client for: %s", clazz.getSimpleName()));
+    }
+
+    /**
+     * @return the response returned in place of a write
+     */
+    private static Response notSent() {
+        return new Response("", HttpURLConnection.HTTP_NO_CONTENT, "Not sent", Collections.emptyList(), null);
+    }
+
+    private static GatewayApi gatewayApi(GatewayApi delegate, ApplyPlan plan) {
+        return new GatewayApi() {
+            @Override
+            public Response create(Gateway gateway) {
+                plan.record(ChangeType.CREATE, "create gateway " + gateway.getName());
+                return notSent();
+            }
+
+            @Override
+            public List<Gateway> list() {
+                return delegate.list();
+            }
+
+            @Override
+            public Gateway fetch(String gatewayId) {
+                return delegate.fetch(gatewayId);
+            }
+
+            @Override
+            public GatewayTestResponse test(Gateway gateway) {
+                return delegate.test(gateway);
+            }
+
+            @Override
+            public Response delete(String gatewayId) {
+                plan.record(ChangeType.DELETE, "delete gateway " + gatewayId);
+                return notSent();
+            }
+        };
+    }
+
+    private static PluginApi pluginApi(PluginApi delegate, ApplyPlan plan) {
+        return new PluginApi() {
+            @Override
+            public Response create(Plugin plugin) {
+                plan.record(ChangeType.CREATE, String.format("install plugin %s:%s:%s%s", plugin.getGroupId(),
+                        plugin.getArtifactId(), plugin.getVersion(),
+                        ofNullable(plugin.getClassifier()).map(classifier -> ":" + classifier).orElse("")));
+                return notSent();
+            }
+
+            @Override
+            public List<Plugin> list() {
+                return delegate.list();
+            }
+
+            @Override
+            public Plugin fetch(String pluginId) {
+                return delegate.fetch(pluginId);
+            }
+
+            @Override
+            public Response delete(Long pluginId) {
+                plan.record(ChangeType.DELETE, "delete plugin " + pluginId);
+                return notSent();
+            }
+        };
+    }
+
+    private static OrgApi orgApi(OrgApi delegate, ApplyPlan plan) {
+        return new OrgApi() {
+            @Override
+            public Response create(Org organisation) {
+                plan.record(ChangeType.CREATE, "create org " + organisation.getName());
+                return notSent();
+            }
+
+            @Override
+            public Org fetch(String orgName) {
+                return delegate.fetch(orgName);
+            }
+        };
+    }
+
+    private static VersionAgnosticApi versionAgnosticApi(VersionAgnosticApi delegate, ApplyPlan plan) {
+        return new VersionAgnosticApi() {
+            @Override
+            public Response create(String orgName, Api api) {
+                plan.record(ChangeType.CREATE, String.format("create API %s/%s", orgName, api.getName()));
+                return notSent();
+            }
+
+            @Override
+            public Response createVersion(String orgName, String apiName, ApiVersion apiVersion) {
+                plan.record(ChangeType.CREATE, String.format("create API version %s/%s/%s",
+                        orgName, apiName, apiVersion.getVersion()));
+                return notSent();
+            }
+
+            @Override
+            public List<Api> list(String orgName) {
+                return delegate.list(orgName);
+            }
+
+            @Override
+            public Api fetch(String orgName, String apiName) {
+                return delegate.fetch(orgName, apiName);
+            }
+
+            @Override
+            public List<Api> listVersions(String orgName, String apiName) {
+                return delegate.listVersions(orgName, apiName);
+            }
+
+            @Override
+            public Api fetchVersion(String orgName, String apiName, String version) {
+                return delegate.fetchVersion(orgName, apiName, version);
+            }
+
+            @Override
+            public Response configure(String orgName, String apiName, String version, ApiConfig config) {
+                plan.record(ChangeType.UPDATE, String.format("configure API %s/%s/%s",
+                        orgName, apiName, version));
+                return notSent();
+            }
+
+            @Override
+            public Response addPolicy(String orgName, String apiName, String version, ApiPolicy policyConfig) {
+                plan.record(ChangeType.POLICY, String.format("add policy %s to API %s/%s/%s",
+                        policyConfig.getDefinitionId(), orgName, apiName, version));
+                return notSent();
+            }
+
+            @Override
+            public Response setDefinition(String orgName, String apiName, String version, String definitionType,
+                                          TypedOutput definition) {
+                plan.record(ChangeType.UPDATE, String.format("set definition of API %s/%s/%s (%s)",
+                        orgName, apiName, version, definitionType));
+                return notSent();
+            }
+
+            @Override
+            public Response fetchDefinition(String orgName, String apiName, String version) {
+                return delegate.fetchDefinition(orgName, apiName, version);
+            }
+
+            @Override
+            public List<ApiPolicy> fetchPolicies(String orgName, String serviceName, String version) {
+                return delegate.fetchPolicies(orgName, serviceName, version);
+            }
+
+            @Override
+            public ApiPolicy fetchPolicy(String orgName, String apiName, String apiVersion, Long policyId) {
+                return delegate.fetchPolicy(orgName, apiName, apiVersion, policyId);
+            }
+
+            @Override
+            public Response configurePolicy(String orgName, String apiName, String apiVersion, Long policyId,
+                                            ApiPolicy policyConfig) {
+                plan.record(ChangeType.POLICY, String.format("configure policy %d of API %s/%s/%s",
+                        policyId, orgName, apiName, apiVersion));
+                return notSent();
+            }
+
+            @Override
+            public Response removePolicy(String orgName, String apiName, String apiVersion, Long policyId) {
+                plan.record(ChangeType.DELETE, String.format("remove policy %d from API %s/%s/%s",
+                        policyId, orgName, apiName, apiVersion));
+                return notSent();
+            }
+
+            @Override
+            public Response reorderPolicies(String orgName, String apiName, String apiVersion,
+                                            ApiPolicyChain policyChain) {
+                plan.record(ChangeType.POLICY, String.format("reorder policies of API %s/%s/%s",
+                        orgName, apiName, apiVersion));
+                return notSent();
+            }
+        };
+    }
+
+    private static ActionApi actionApi(ApplyPlan plan) {
+        return action -> {
+            if (ServerActionUtil.isRetire(action)) {
+                plan.record(ChangeType.DELETE, String.format("retire API %s/%s/%s",
+                        action.getOrganizationId(), action.getEntityId(), action.getEntityVersion()));
+            } else {
+                plan.record(ChangeType.PUBLISH, String.format("publish API %s/%s/%s",
+                        action.getOrganizationId(), action.getEntityId(), action.getEntityVersion()));
+            }
+            return notSent();
+        };
+    }
+}
@@ -0,0 +1,295 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.plan;
+
+import io.apiman.cli.core.api.model.Api;
+import io.apiman.cli.core.api.model.ApiPolicy;
+import io.apiman.cli.core.declarative.remote.RemoteState;
+import io.apiman.cli.core.declarative.remote.SnapshotRemoteState;
+import io.apiman.cli.core.gateway.model.Gateway;
+import io.apiman.cli.core.org.model.Org;
+import io.apiman.cli.core.plugin.model.Plugin;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Answers lookups from a snapshot of the server state, simulating the changes that would be made by
+ * applying the declaration, as those changes are never sent to the server.
+ * <p>
+ * Also counts the reads the real apply would make. When each item is checked individually, that is one read
+ * per lookup, except that installed plugins are listed only once. When the state is prefetched, it is the
+ * requests made to load the snapshot, plus one re-read of each item whose state has changed.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PlanningRemoteState implements RemoteState {
+    private static final String STATUS_CREATED = "Created";
+    private static final String STATUS_READY = "Ready";
+    private static final String STATUS_PUBLISHED = "Published";
+
+    private final SnapshotRemoteState snapshot;
+
+    /**
+     * API versions whose status has been changed by the plan, keyed by org, API and version.
+     */
+    private final Map<List<String>, Api> simulatedVersions = new ConcurrentHashMap<>();
+
+    /**
+     * API versions the real snapshot would re-read from the server on next lookup.
+     */
+    private final Set<List<String>> staleVersions = ConcurrentHashMap.newKeySet();
+
+    /**
+     * API versions whose configuration has been looked up, and those the real snapshot would re-read from the
+     * server on next lookup, as their state has changed since.
+     */
+    private final Set<List<String>> versionConfigs = ConcurrentHashMap.newKeySet();
+    private final Set<List<String>> staleVersionConfigs = ConcurrentHashMap.newKeySet();
+
+    /**
+     * API version policies the real snapshot would re-read from the server on next lookup.
+     */
+    private final Set<List<String>> stalePolicies = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Policy configurations a real apply would hold, keyed by org, API, version and policy ID, as both the
+     * live state and the snapshot fetch each once, until the policies of its API version change.
+     */
+    private final Set<List<Object>> policyConfigurations = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Policy configurations the real snapshot would re-read from the server on next lookup.
+     */
+    private final Set<List<Object>> stalePolicyConfigurations = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Whether the installed plugins have been looked up; the live state lists them once, then indexes them.
+     */
+    private final AtomicBoolean pluginsIndexed = new AtomicBoolean();
+
+    private final AtomicInteger lookupCount = new AtomicInteger();
+    private final AtomicInteger rereadCount = new AtomicInteger();
+
+    public PlanningRemoteState(SnapshotRemoteState snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    @Override
+    public Optional<Gateway> fetchGateway(String gatewayName) {
+        lookupCount.incrementAndGet();
+        return snapshot.fetchGateway(gatewayName);
+    }
+
+    @Override
+    public List<Gateway> listGateways() {
+        lookupCount.incrementAndGet();
+        return snapshot.listGateways();
+    }
+
+    @Override
+    public boolean isPluginInstalled(Plugin plugin) {
+        if (pluginsIndexed.compareAndSet(false, true)) {
+            lookupCount.incrementAndGet();
+        }
+        return snapshot.isPluginInstalled(plugin);
+    }
+
+    @Override
+    public List<Plugin> listPlugins() {
+        lookupCount.incrementAndGet();
+        return snapshot.listPlugins();
+    }
+
+    @Override
+    public Optional<Org> fetchOrg(String orgName) {
+        lookupCount.incrementAndGet();
+        return snapshot.fetchOrg(orgName);
+    }
+
+    @Override
+    public Optional<Api> fetchApi(String orgName, String apiName) {
+        lookupCount.incrementAndGet();
+        return snapshot.fetchApi(orgName, apiName);
+    }
+
+    @Override
+    public Optional<Api> fetchApiVersion(String orgName, String apiName, String apiVersion) {
+        lookupCount.incrementAndGet();
+        final List<String> versionKey = buildVersionKey(orgName, apiName, apiVersion);
+        if (staleVersions.remove(versionKey)) {
+            rereadCount.incrementAndGet();
+        }
+
+        final Api simulated = simulatedVersions.get(versionKey);
+        return null != simulated ? Optional.of(simulated) : snapshot.fetchApiVersion(orgName, apiName, apiVersion);
+    }
+
+    @Override
+    public List<Api> listApiVersions(String orgName, String apiName) {
+        lookupCount.incrementAndGet();
+        return snapshot.listApiVersions(orgName, apiName);
+    }
+
+    @Override
+    public Optional<Api> fetchApiVersionConfig(String orgName, String apiName, String apiVersion) {
+        lookupCount.incrementAndGet();
+        final List<String> versionKey = buildVersionKey(orgName, apiName, apiVersion);
+        versionConfigs.add(versionKey);
+        if (staleVersionConfigs.remove(versionKey)) {
+            rereadCount.incrementAndGet();
+        }
+        return snapshot.fetchApiVersionConfig(orgName, apiName, apiVersion);
+    }
+
+    @Override
+    public List<ApiPolicy> fetchPolicies(String orgName, String apiName, String apiVersion) {
+        lookupCount.incrementAndGet();
+        if (stalePolicies.remove(buildVersionKey(orgName, apiName, apiVersion))) {
+            rereadCount.incrementAndGet();
+        }
+        return snapshot.fetchPolicies(orgName, apiName, apiVersion);
+    }
+
+    @Override
+    public String fetchPolicyConfiguration(String orgName, String apiName, String apiVersion, Long policyId) {
+        final List<Object> policyKey = Arrays.asList(orgName, apiName, apiVersion, policyId);
+        if (policyConfigurations.add(policyKey)) {
+            lookupCount.incrementAndGet();
+            if (stalePolicyConfigurations.remove(policyKey)) {
+                rereadCount.incrementAndGet();
+            }
+        }
+        return snapshot.fetchPolicyConfiguration(orgName, apiName, apiVersion, policyId);
+    }
+
+    @Override
+    public Optional<String> fetchDefinitionSha256(String orgName, String apiName, String apiVersion) {
+        lookupCount.incrementAndGet();
+        return snapshot.fetchDefinitionSha256(orgName, apiName, apiVersion);
+    }
+
+    @Override
+    public void markGatewayCreated(String gatewayName) {
+        snapshot.markGatewayCreated(gatewayName);
+    }
+
+    @Override
+    public void markPluginInstalled(Plugin plugin) {
+        snapshot.markPluginInstalled(plugin);
+    }
+
+    @Override
+    public void markOrgCreated(String orgName) {
+        snapshot.markOrgCreated(orgName);
+    }
+
+    @Override
+    public void markApiCreated(String orgName, String apiName) {
+        snapshot.markApiCreated(orgName, apiName);
+    }
+
+    @Override
+    public void markApiVersionCreated(String orgName, String apiName, String apiVersion) {
+        // a new version has no policies
+        snapshot.markApiVersionCreated(orgName, apiName, apiVersion);
+        simulateStatus(orgName, apiName, apiVersion, STATUS_CREATED);
+
+        // the snapshot re-reads the configuration of a new version itself
+        staleVersionConfigs.remove(buildVersionKey(orgName, apiName, apiVersion));
+    }
+
+    @Override
+    public void markApiVersionConfigured(String orgName, String apiName, String apiVersion) {
+        final String status = fetchSimulatedStatus(orgName, apiName, apiVersion);
+
+        // assumes the declaration provides the configuration required for the version to become ready
+        simulateStatus(orgName, apiName, apiVersion,
+                STATUS_CREATED.equalsIgnoreCase(status) ? STATUS_READY : status);
+    }
+
+    @Override
+    public void markApiVersionPublished(String orgName, String apiName, String apiVersion) {
+        simulateStatus(orgName, apiName, apiVersion, STATUS_PUBLISHED);
+    }
+
+    @Override
+    public void markPoliciesChanged(String orgName, String apiName, String apiVersion) {
+        final List<String> versionKey = buildVersionKey(orgName, apiName, apiVersion);
+        stalePolicies.add(versionKey);
+
+        policyConfigurations.removeIf(policyKey -> {
+            if (policyKey.subList(0, 3).equals(versionKey)) {
+                stalePolicyConfigurations.add(policyKey);
+                return true;
+            }
+            return false;
+        });
+    }
+
+    @Override
+    public void markDefinitionChanged(String orgName, String apiName, String apiVersion) {
+        // the snapshot re-reads the hash on next lookup, as the real snapshot would
+        snapshot.markDefinitionChanged(orgName, apiName, apiVersion);
+    }
+
+    /**
+     * @return the number of reads the apply would make when checking each item individually
+     */
+    public int getLiveRequestCount() {
+        return lookupCount.get();
+    }
+
+    /**
+     * @return the number of reads the apply would make with the server state prefetched
+     */
+    public int getPrefetchRequestCount() {
+        return snapshot.getRequestCount() + rereadCount.get();
+    }
+
+    private String fetchSimulatedStatus(String orgName, String apiName, String apiVersion) {
+        final Api simulated = simulatedVersions.get(buildVersionKey(orgName, apiName, apiVersion));
+        if (null != simulated) {
+            return simulated.getStatus();
+        }
+        return snapshot.fetchApiVersion(orgName, apiName, apiVersion).map(Api::getStatus).orElse(null);
+    }
+
+    private void simulateStatus(String orgName, String apiName, String apiVersion, String status) {
+        final List<String> versionKey = buildVersionKey(orgName, apiName, apiVersion);
+        if (versionConfigs.remove(versionKey)) {
+            staleVersionConfigs.add(versionKey);
+        }
+
+        final Api simulated = new Api(apiName, null, null);
+        simulated.setVersion(apiVersion);
+        simulated.setStatus(status);
+
+        simulatedVersions.put(versionKey, simulated);
+        staleVersions.add(versionKey);
+    }
+
+    private static List<String> buildVersionKey(String orgName, String apiName, String apiVersion) {
+        return Arrays.asList(orgName, apiName, apiVersion);
+    }
+}
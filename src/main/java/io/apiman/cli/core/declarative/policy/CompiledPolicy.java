@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.policy;
+
+/**
+ * The immutable, compiled form of a declared policy, ready to be sent to the server and compared with
+ * the policies already there.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public final class CompiledPolicy {
+    private final String name;
+    private final String configuration;
+    private final String hash;
+
+    CompiledPolicy(String name, String configuration, String hash) {
+        this.name = name;
+        this.configuration = configuration;
+        this.hash = hash;
+    }
+
+    /**
+     * @return the policy definition ID
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return the configuration, as canonical JSON
+     */
+    public String getConfiguration() {
+        return configuration;
+    }
+
+    /**
+     * @return the content hash of the name and configuration
+     */
+    public String getHash() {
+        return hash;
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.policy;
+
+import io.apiman.cli.core.api.model.ApiPolicy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Reconciles the order of the policy chain of an API on the server with the declared order.
+ * <p>
+ * Each declared policy is matched to a policy on the server with the same definition, in chain order. The
+ * matched policies already in the declared relative order - the longest increasing subsequence of their
+ * positions on the server - stay where they are, and the rest are moved. Policies on the server that are not
+ * declared keep their positions.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public final class PolicyChainReorder {
+    private final List<ApiPolicy> chain;
+    private final int moves;
+    private final List<ApiPolicy> undeclared;
+
+    private PolicyChainReorder(List<ApiPolicy> chain, int moves, List<ApiPolicy> undeclared) {
+        this.chain = chain;
+        this.moves = moves;
+        this.undeclared = undeclared;
+    }
+
+    /**
+     * @param declaredNames    the policy definition IDs of the declared policies, in declared order
+     * @param existingPolicies the policies on the server, in chain order
+     * @return the reconciled chain
+     */
+    public static PolicyChainReorder of(List<String> declaredNames, List<ApiPolicy> existingPolicies) {
+        final Map<String, Deque<Integer>> positionsByName = new HashMap<>();
+        for (int i = 0; i < existingPolicies.size(); i++) {
+            positionsByName.computeIfAbsent(existingPolicies.get(i).getPolicyDefinitionId(),
+                    name -> new ArrayDeque<>()).add(i);
+        }
+
+        // the position on the server of each declared policy, in declared order
+        final int[] positions = new int[declaredNames.size()];
+        int matched = 0;
+        for (String declaredName : declaredNames) {
+            final Deque<Integer> candidates = positionsByName.get(declaredName);
+            if (null != candidates && !candidates.isEmpty()) {
+                positions[matched++] = candidates.poll();
+            }
+        }
+        final int[] declaredPositions = Arrays.copyOf(positions, matched);
+
+        // the policies left unmatched, in chain order
+        final List<ApiPolicy> undeclared = positionsByName.values().stream()
+                .flatMap(Collection::stream)
+                .sorted()
+                .map(existingPolicies::get)
+                .collect(Collectors.toList());
+
+        // the declared policies take the positions of the matched policies, in declared order
+        final int[] slots = declaredPositions.clone();
+        Arrays.sort(slots);
+
+        final List<ApiPolicy> chain = new ArrayList<>(existingPolicies);
+        for (int i = 0; i < slots.length; i++) {
+            chain.set(slots[i], existingPolicies.get(declaredPositions[i]));
+        }
+
+        return new PolicyChainReorder(Collections.unmodifiableList(chain),
+                matched - longestIncreasingSubsequence(declaredPositions), Collections.unmodifiableList(undeclared));
+    }
+
+    /**
+     * @param sequence distinct values
+     * @return the length of the longest strictly increasing subsequence, in O(n log n)
+     */
+    static int longestIncreasingSubsequence(int[] sequence) {
+        // tails[k] is the smallest last value of an increasing subsequence of length k + 1
+        final int[] tails = new int[sequence.length];
+        int length = 0;
+
+        for (int value : sequence) {
+            int index = Arrays.binarySearch(tails, 0, length, value);
+            if (index < 0) {
+                index = -(index + 1);
+            }
+            tails[index] = value;
+            if (index == length) {
+                length++;
+            }
+        }
+        return length;
+    }
+
+    /**
+     * @return <code>true</code> if any policy must be moved
+     */
+    public boolean isRequired() {
+        return moves > 0;
+    }
+
+    /**
+     * @return the number of policies that must be moved
+     */
+    public int getMoves() {
+        return moves;
+    }
+
+    /**
+     * @return every policy on the server, in the reconciled order
+     */
+    public List<ApiPolicy> getChain() {
+        return chain;
+    }
+
+    /**
+     * @return the policies on the server that are not declared
+     */
+    public List<ApiPolicy> getUndeclared() {
+        return undeclared;
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.policy;
+
+import io.apiman.cli.core.declarative.model.DeclarativePolicy;
+import io.apiman.cli.util.HashUtil;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles declared policies, once per policy.
+ * <p>
+ * A shared policy is a single {@link DeclarativePolicy} instance, referenced by every API that uses it, so
+ * its configuration is serialised and hashed once, however many APIs reference it.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PolicyCompiler {
+    /**
+     * Keyed by instance, as {@link DeclarativePolicy} does not override {@link Object#equals(Object)}.
+     */
+    private final Map<DeclarativePolicy, CompiledPolicy> compiled = new ConcurrentHashMap<>();
+
+    /**
+     * @param declarativePolicy the declared policy
+     * @return the compiled policy
+     */
+    public CompiledPolicy compile(DeclarativePolicy declarativePolicy) {
+        return compiled.computeIfAbsent(declarativePolicy, policy -> new CompiledPolicy(
+                policy.getName(),
+                HashUtil.canonicaliseValue(policy.getConfig()),
+                HashUtil.hash(policy.getName(), policy.getConfig())));
+    }
+
+    /**
+     * @return the number of policies compiled
+     */
+    public int size() {
+        return compiled.size();
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.prune;
+
+import io.apiman.cli.core.api.VersionAgnosticApi;
+import io.apiman.cli.core.common.ActionApi;
+import io.apiman.cli.core.common.model.ManagementApiVersion;
+import io.apiman.cli.core.common.util.ServerActionUtil;
+import io.apiman.cli.core.declarative.executor.TaskGraph;
+import io.apiman.cli.core.declarative.loader.DeclarationMerger;
+import io.apiman.cli.core.declarative.model.Declaration;
+import io.apiman.cli.core.declarative.model.DeclarativeApi;
+import io.apiman.cli.core.declarative.model.DeclarativeGateway;
+import io.apiman.cli.core.declarative.model.DeclarativePolicy;
+import io.apiman.cli.core.declarative.policy.PolicyChainReorder;
+import io.apiman.cli.core.declarative.remote.RemoteState;
+import io.apiman.cli.core.gateway.GatewayApi;
+import io.apiman.cli.core.plugin.PluginApi;
+import io.apiman.cli.exception.DeclarativeException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Removes the items on the server that are not in a declaration: the policies of each declared API version
+ * that are not declared, and the published versions of each declared API that are not declared, which are
+ * retired. Optionally, gateways and plugins that are not declared are deleted too.
+ * <p>
+ * Every item to remove is found before any is removed, so if there are more than the permitted number,
+ * nothing is removed. The removals are independent of each other, so they are made concurrently. Items are
+ * listed through the {@link RemoteState}, so a prefetched snapshot is reused, and a plan counts the reads.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class Pruner {
+    private static final Logger LOGGER = LogManager.getLogger(Pruner.class);
+    private static final String STATE_PUBLISHED = "PUBLISHED";
+
+    /**
+     * The kinds of item that can be pruned.
+     */
+    public enum Kind {
+        POLICY,
+        API_VERSION,
+        GATEWAY,
+        PLUGIN
+    }
+
+    private final RemoteState remoteState;
+    private final VersionAgnosticApi apiClient;
+    private final ActionApi actionClient;
+    private final GatewayApi gatewayClient;
+    private final PluginApi pluginClient;
+    private final ManagementApiVersion serverVersion;
+
+    private final Map<Kind, Integer> pruned = new EnumMap<>(Kind.class);
+
+    /**
+     * The API versions, as org, API and version, from which policies were removed.
+     */
+    private final Set<List<String>> prunedPolicyVersions = ConcurrentHashMap.newKeySet();
+
+    public Pruner(RemoteState remoteState, VersionAgnosticApi apiClient, ActionApi actionClient,
+                  GatewayApi gatewayClient, PluginApi pluginClient, ManagementApiVersion serverVersion) {
+        this.remoteState = remoteState;
+        this.apiClient = apiClient;
+        this.actionClient = actionClient;
+        this.gatewayClient = gatewayClient;
+        this.pluginClient = pluginClient;
+        this.serverVersion = serverVersion;
+    }
+
+    /**
+     * Remove the items on the server that are not in the declaration.
+     *
+     * @param declaration  the Declaration that was applied
+     * @param pruneSystem  whether to delete gateways and plugins that are not declared
+     * @param maxDeletions the maximum number of items to remove
+     * @param parallelism  the maximum number of items to remove concurrently
+     */
+    public void prune(Declaration declaration, boolean pruneSystem, int maxDeletions, int parallelism) {
+        final TaskGraph taskGraph = new TaskGraph();
+        schedulePolicies(declaration, taskGraph);
+        scheduleApiVersions(declaration, taskGraph);
+        if (pruneSystem) {
+            scheduleGateways(declaration, taskGraph);
+            schedulePlugins(declaration, taskGraph);
+        }
+
+        if (taskGraph.size() > maxDeletions) {
+            throw new DeclarativeException(String.format(
+                    "Pruning would remove %d items, more than the maximum of %d - nothing was removed",
+                    taskGraph.size(), maxDeletions));
+        }
+
+        LOGGER.debug("Pruning {} items", taskGraph.size());
+        try {
+            taskGraph.execute(parallelism);
+        } finally {
+            // each kind is a group, so a failure to remove one kind of item does not stop the others
+            taskGraph.getGroupResults().forEach((kind, result) -> pruned.put(Kind.valueOf(kind), result.getCompleted()));
+        }
+    }
+
+    /**
+     * Remove the policies of each declared API version that are not declared.
+     */
+    private void schedulePolicies(Declaration declaration, TaskGraph taskGraph) {
+        declaration.getAllOrgs().forEach(declarativeOrg -> ofNullable(declarativeOrg.getApis()).ifPresent(apis ->
+                apis.forEach(declarativeApi -> {
+                    final String orgName = declarativeOrg.getName();
+                    final String apiName = declarativeApi.getName();
+                    final String apiVersion = getVersion(declarativeApi);
+
+                    if (!remoteState.fetchApiVersion(orgName, apiName, apiVersion).isPresent()) {
+                        return;
+                    }
+
+                    final List<String> policyNames = ofNullable(declarativeApi.getPolicies())
+                            .orElse(Collections.emptyList()).stream()
+                            .map(DeclarativePolicy::getName)
+                            .collect(Collectors.toList());
+
+                    PolicyChainReorder.of(policyNames, remoteState.fetchPolicies(orgName, apiName, apiVersion))
+                            .getUndeclared()
+                            .forEach(policy -> taskGraph.addTask(
+                                    String.format("prune-policy:%s/%s/%s/%d", orgName, apiName, apiVersion, policy.getId()),
+                                    Kind.POLICY.name(), () -> {
+                                        LOGGER.info("Removing policy '{}' from API: {}",
+                                                policy.getPolicyDefinitionId(), apiName);
+
+                                        apiClient.removePolicy(orgName, apiName, apiVersion, policy.getId());
+                                        remoteState.markPoliciesChanged(orgName, apiName, apiVersion);
+                                        prunedPolicyVersions.add(Arrays.asList(orgName, apiName, apiVersion));
+                                    }, Collections.emptyList()));
+                })));
+    }
+
+    /**
+     * Retire the published versions of each declared API that are not declared. Versions that are not
+     * published do not serve requests, and cannot be deleted, so they are left.
+     */
+    private void scheduleApiVersions(Declaration declaration, TaskGraph taskGraph) {
+        declaration.getAllOrgs().forEach(declarativeOrg -> {
+            final String orgName = declarativeOrg.getName();
+
+            // the declared versions of each API
+            final Map<String, Set<String>> declaredVersions = new LinkedHashMap<>();
+            ofNullable(declarativeOrg.getApis()).ifPresent(apis -> apis.forEach(declarativeApi ->
+                    declaredVersions.computeIfAbsent(declarativeApi.getName(), apiName -> new LinkedHashSet<>())
+                            .add(getVersion(declarativeApi))));
+
+            declaredVersions.forEach((apiName, versions) -> remoteState.listApiVersions(orgName, apiName).stream()
+                    .filter(existing -> !versions.contains(existing.getVersion()))
+                    .forEach(existing -> {
+                        final String apiVersion = existing.getVersion();
+
+                        if (STATE_PUBLISHED.equalsIgnoreCase(existing.getStatus())) {
+                            taskGraph.addTask(String.format("prune-version:%s/%s/%s", orgName, apiName, apiVersion),
+                                    Kind.API_VERSION.name(), () -> {
+                                        LOGGER.info("Retiring API: {} version {}", apiName, apiVersion);
+                                        ServerActionUtil.retireApi(orgName, apiName, apiVersion, serverVersion,
+                                                actionClient);
+                                    }, Collections.emptyList());
+                        } else {
+                            LOGGER.debug("API '{}' version {} is not declared, but is not published - leaving it",
+                                    apiName, apiVersion);
+                        }
+                    }));
+        });
+    }
+
+    private void scheduleGateways(Declaration declaration, TaskGraph taskGraph) {
+        final Set<String> declaredGateways = ofNullable(declaration.getSystem().getGateways())
+                .orElse(Collections.emptyList()).stream()
+                .map(DeclarativeGateway::getName)
+                .collect(Collectors.toSet());
+
+        remoteState.listGateways().stream()
+                .filter(gateway -> !declaredGateways.contains(gateway.getId())
+                        && !declaredGateways.contains(gateway.getName()))
+                .forEach(gateway -> taskGraph.addTask("prune-gateway:" + gateway.getId(), Kind.GATEWAY.name(), () -> {
+                    LOGGER.info("Deleting gateway: {}", gateway.getName());
+                    gatewayClient.delete(gateway.getId());
+                }, Collections.emptyList()));
+    }
+
+    private void schedulePlugins(Declaration declaration, TaskGraph taskGraph) {
+        final Set<String> declaredPlugins = ofNullable(declaration.getSystem().getPlugins())
+                .orElse(Collections.emptyList()).stream()
+                .map(DeclarationMerger::getPluginKey)
+                .collect(Collectors.toSet());
+
+        remoteState.listPlugins().stream()
+                .filter(plugin -> !declaredPlugins.contains(DeclarationMerger.getPluginKey(plugin)))
+                .forEach(plugin -> taskGraph.addTask("prune-plugin:" + plugin.getId(), Kind.PLUGIN.name(), () -> {
+                    LOGGER.info("Deleting plugin: {}", plugin.getName());
+                    pluginClient.delete(plugin.getId());
+                }, Collections.emptyList()));
+    }
+
+    private static String getVersion(DeclarativeApi declarativeApi) {
+        return ofNullable(declarativeApi.getVersion()).orElse(declarativeApi.getInitialVersion());
+    }
+
+    /**
+     * @param kind the kind of item
+     * @return the number of items of that kind removed
+     */
+    public int getPruned(Kind kind) {
+        return pruned.getOrDefault(kind, 0);
+    }
+
+    /**
+     * @return the API versions, as org, API and version, from which policies were removed
+     */
+    public Set<List<String>> getPrunedPolicyVersions() {
+        return prunedPolicyVersions;
+    }
+}
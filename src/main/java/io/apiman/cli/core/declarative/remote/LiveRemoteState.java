@@ -0,0 +1,223 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.remote;
+
+import io.apiman.cli.core.api.VersionAgnosticApi;
+import io.apiman.cli.core.api.model.Api;
+import io.apiman.cli.core.api.model.ApiPolicy;
+import io.apiman.cli.core.common.util.DefinitionUtil;
+import io.apiman.cli.core.gateway.GatewayApi;
+import io.apiman.cli.core.gateway.model.Gateway;
+import io.apiman.cli.core.org.OrgApi;
+import io.apiman.cli.core.org.model.Org;
+import io.apiman.cli.core.plugin.PluginApi;
+import io.apiman.cli.core.plugin.model.Plugin;
+import io.apiman.cli.exception.DeclarativeException;
+import io.apiman.cli.util.DeclarativeUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Checks each item individually against the server, every time it is looked up.
+ * <p>
+ * The exception is plugins: the server can only list all installed plugins, so the list is fetched once,
+ * on first lookup, and indexed by coordinates. Plugins installed afterwards are added to the index. The
+ * configuration of each policy is also fetched once, until the policies of its API version change.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class LiveRemoteState implements RemoteState {
+    private static final Logger LOGGER = LogManager.getLogger(LiveRemoteState.class);
+
+    private final GatewayApi gatewayClient;
+    private final PluginApi pluginClient;
+    private final OrgApi orgClient;
+    private final VersionAgnosticApi apiClient;
+
+    /**
+     * Installed plugin coordinates; <code>null</code> until first looked up.
+     */
+    private volatile Set<List<String>> installedPlugins;
+
+    /**
+     * Policy configurations, keyed by org, API and version, then by policy ID.
+     */
+    private final Map<List<String>, Map<Long, Optional<String>>> policyConfigurations = new ConcurrentHashMap<>();
+
+    public LiveRemoteState(GatewayApi gatewayClient, PluginApi pluginClient, OrgApi orgClient,
+                           VersionAgnosticApi apiClient) {
+        this.gatewayClient = gatewayClient;
+        this.pluginClient = pluginClient;
+        this.orgClient = orgClient;
+        this.apiClient = apiClient;
+    }
+
+    @Override
+    public Optional<Gateway> fetchGateway(String gatewayName) {
+        return DeclarativeUtil.checkExists(() -> gatewayClient.fetch(gatewayName));
+    }
+
+    @Override
+    public List<Gateway> listGateways() {
+        return DeclarativeUtil.checkExists(gatewayClient::list).orElse(Collections.emptyList());
+    }
+
+    @Override
+    public boolean isPluginInstalled(Plugin plugin) {
+        return loadInstalledPlugins().contains(buildPluginKey(plugin));
+    }
+
+    private Set<List<String>> loadInstalledPlugins() {
+        Set<List<String>> loaded = installedPlugins;
+        if (null == loaded) {
+            synchronized (this) {
+                loaded = installedPlugins;
+                if (null == loaded) {
+                    final Set<List<String>> index = ConcurrentHashMap.newKeySet();
+                    listPlugins().forEach(installedPlugin -> index.add(buildPluginKey(installedPlugin)));
+
+                    LOGGER.debug("Indexed {} installed plugins", index.size());
+                    installedPlugins = loaded = index;
+                }
+            }
+        }
+        return loaded;
+    }
+
+    @Override
+    public List<Plugin> listPlugins() {
+        return DeclarativeUtil.checkExists(pluginClient::list).orElse(Collections.emptyList());
+    }
+
+    @Override
+    public Optional<Org> fetchOrg(String orgName) {
+        return DeclarativeUtil.checkExists(() -> orgClient.fetch(orgName));
+    }
+
+    @Override
+    public Optional<Api> fetchApi(String orgName, String apiName) {
+        return DeclarativeUtil.checkExists(() -> apiClient.fetch(orgName, apiName));
+    }
+
+    @Override
+    public Optional<Api> fetchApiVersion(String orgName, String apiName, String apiVersion) {
+        return DeclarativeUtil.checkExists(() -> apiClient.fetchVersion(orgName, apiName, apiVersion));
+    }
+
+    @Override
+    public List<Api> listApiVersions(String orgName, String apiName) {
+        return DeclarativeUtil.checkExists(() -> apiClient.listVersions(orgName, apiName))
+                .orElse(Collections.emptyList());
+    }
+
+    @Override
+    public Optional<Api> fetchApiVersionConfig(String orgName, String apiName, String apiVersion) {
+        // a fetched version includes its configuration
+        return fetchApiVersion(orgName, apiName, apiVersion);
+    }
+
+    @Override
+    public List<ApiPolicy> fetchPolicies(String orgName, String apiName, String apiVersion) {
+        return apiClient.fetchPolicies(orgName, apiName, apiVersion);
+    }
+
+    @Override
+    public String fetchPolicyConfiguration(String orgName, String apiName, String apiVersion, Long policyId) {
+        return policyConfigurations
+                .computeIfAbsent(Arrays.asList(orgName, apiName, apiVersion), versionKey -> new ConcurrentHashMap<>())
+                .computeIfAbsent(policyId, id -> ofNullable(
+                        apiClient.fetchPolicy(orgName, apiName, apiVersion, id).getConfiguration()))
+                .orElse(null);
+    }
+
+    @Override
+    public Optional<String> fetchDefinitionSha256(String orgName, String apiName, String apiVersion) {
+        try {
+            return DefinitionUtil.fetchDefinitionSha256(apiClient, orgName, apiName, apiVersion);
+        } catch (IOException e) {
+            throw new DeclarativeException(String.format("Failed to read existing definition for API: %s",
+                    apiName), e);
+        }
+    }
+
+    @Override
+    public void markGatewayCreated(String gatewayName) {
+        // no-op - always checked against the server
+    }
+
+    @Override
+    public void markPluginInstalled(Plugin plugin) {
+        final Set<List<String>> loaded = installedPlugins;
+        if (null != loaded) {
+            loaded.add(buildPluginKey(plugin));
+        }
+    }
+
+    @Override
+    public void markOrgCreated(String orgName) {
+        // no-op - always checked against the server
+    }
+
+    @Override
+    public void markApiCreated(String orgName, String apiName) {
+        // no-op - always checked against the server
+    }
+
+    @Override
+    public void markApiVersionCreated(String orgName, String apiName, String apiVersion) {
+        // no-op - always checked against the server
+    }
+
+    @Override
+    public void markApiVersionConfigured(String orgName, String apiName, String apiVersion) {
+        // no-op - always checked against the server
+    }
+
+    @Override
+    public void markApiVersionPublished(String orgName, String apiName, String apiVersion) {
+        // no-op - always checked against the server
+    }
+
+    @Override
+    public void markPoliciesChanged(String orgName, String apiName, String apiVersion) {
+        policyConfigurations.remove(Arrays.asList(orgName, apiName, apiVersion));
+    }
+
+    @Override
+    public void markDefinitionChanged(String orgName, String apiName, String apiVersion) {
+        // no-op - always checked against the server
+    }
+
+    /**
+     * @param plugin the plugin
+     * @return the coordinates identifying the plugin, including its classifier
+     */
+    static List<String> buildPluginKey(Plugin plugin) {
+        return Arrays.asList(plugin.getGroupId(), plugin.getArtifactId(), plugin.getVersion(), plugin.getClassifier());
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.remote;
+
+import io.apiman.cli.core.api.model.Api;
+import io.apiman.cli.core.api.model.ApiPolicy;
+import io.apiman.cli.core.gateway.model.Gateway;
+import io.apiman.cli.core.org.model.Org;
+import io.apiman.cli.core.plugin.model.Plugin;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Answers questions about the items that exist on the Management API server, when applying a declaration.
+ * <p>
+ * Implementations must be safe for use by multiple threads. Changes made to the server during the apply
+ * are reported using the {@code mark...} methods, so that subsequent lookups reflect them.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public interface RemoteState {
+    Optional<Gateway> fetchGateway(String gatewayName);
+
+    List<Gateway> listGateways();
+
+    boolean isPluginInstalled(Plugin plugin);
+
+    List<Plugin> listPlugins();
+
+    Optional<Org> fetchOrg(String orgName);
+
+    Optional<Api> fetchApi(String orgName, String apiName);
+
+    Optional<Api> fetchApiVersion(String orgName, String apiName, String apiVersion);
+
+    List<Api> listApiVersions(String orgName, String apiName);
+
+    /**
+     * Unlike {@link #fetchApiVersion(String, String, String)}, the result always includes the configuration
+     * of the version, such as its endpoint, which is not included when versions are listed.
+     *
+     * @return the API version, including its configuration
+     */
+    Optional<Api> fetchApiVersionConfig(String orgName, String apiName, String apiVersion);
+
+    List<ApiPolicy> fetchPolicies(String orgName, String apiName, String apiVersion);
+
+    /**
+     * The policy list does not include the configuration of each policy, so it is looked up separately.
+     *
+     * @return the configuration of the policy, or <code>null</code> if it has none
+     */
+    String fetchPolicyConfiguration(String orgName, String apiName, String apiVersion, Long policyId);
+
+    /**
+     * @return the hex encoded SHA-256 hash of the definition of the API version, or empty if it has none
+     */
+    Optional<String> fetchDefinitionSha256(String orgName, String apiName, String apiVersion);
+
+    void markGatewayCreated(String gatewayName);
+
+    void markPluginInstalled(Plugin plugin);
+
+    void markOrgCreated(String orgName);
+
+    void markApiCreated(String orgName, String apiName);
+
+    void markApiVersionCreated(String orgName, String apiName, String apiVersion);
+
+    /**
+     * Indicates that the API version has been configured, so its status on the server may have changed.
+     */
+    void markApiVersionConfigured(String orgName, String apiName, String apiVersion);
+
+    /**
+     * Indicates that the API version has been published, so its status on the server may have changed.
+     */
+    void markApiVersionPublished(String orgName, String apiName, String apiVersion);
+
+    void markPoliciesChanged(String orgName, String apiName, String apiVersion);
+
+    void markDefinitionChanged(String orgName, String apiName, String apiVersion);
+}
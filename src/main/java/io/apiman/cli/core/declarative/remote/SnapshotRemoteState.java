@@ -0,0 +1,444 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.remote;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import io.apiman.cli.core.api.VersionAgnosticApi;
+import io.apiman.cli.core.api.model.Api;
+import io.apiman.cli.core.api.model.ApiPolicy;
+import io.apiman.cli.core.declarative.executor.TaskGraph;
+import io.apiman.cli.core.declarative.model.Declaration;
+import io.apiman.cli.core.declarative.model.DeclarativeApi;
+import io.apiman.cli.core.gateway.GatewayApi;
+import io.apiman.cli.core.gateway.model.Gateway;
+import io.apiman.cli.core.org.OrgApi;
+import io.apiman.cli.core.org.model.Org;
+import io.apiman.cli.core.plugin.PluginApi;
+import io.apiman.cli.core.plugin.model.Plugin;
+import io.apiman.cli.util.DeclarativeUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static java.util.Optional.empty;
+import static java.util.Optional.ofNullable;
+
+/**
+ * Loads the server state relevant to a declaration up front, then answers lookups from the resulting
+ * in-memory snapshot.
+ * <p>
+ * The gateway list, plugin list, org, API list, and the versions and policies of each declared API are
+ * fetched concurrently. The lists are kept, so that pruning can find undeclared items without listing them
+ * again, unless an item has been added since. Items that are not covered by the snapshot, and API versions
+ * whose state may have changed during the apply, are looked up individually. The configurations of API
+ * versions and policies, and the hashes of definitions, are only needed for items changed since the last
+ * apply, so each is fetched on first lookup, then kept in the snapshot until the item changes.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SnapshotRemoteState implements RemoteState {
+    private static final Logger LOGGER = LogManager.getLogger(SnapshotRemoteState.class);
+
+    private final VersionAgnosticApi apiClient;
+
+    /**
+     * Used for items not covered by the snapshot.
+     */
+    private final LiveRemoteState live;
+
+    /**
+     * The number of requests made to the server.
+     */
+    private final AtomicInteger requestCount = new AtomicInteger();
+
+    /**
+     * Gateway IDs and names; <code>null</code> if not loaded.
+     */
+    private volatile Set<String> gateways;
+
+    /**
+     * The gateways listed by the server; <code>null</code> if not loaded, or if a gateway has been created since.
+     */
+    private volatile List<Gateway> gatewayList;
+
+    /**
+     * Installed plugin coordinates; <code>null</code> if not loaded.
+     */
+    private volatile Set<List<String>> plugins;
+
+    /**
+     * The plugins listed by the server; <code>null</code> if not loaded, or if a plugin has been installed since.
+     */
+    private volatile List<Plugin> pluginList;
+
+    private final Map<String, Optional<Org>> orgs = new ConcurrentHashMap<>();
+
+    /**
+     * APIs, keyed by org, then by API ID and name.
+     */
+    private final Map<String, Map<String, Api>> apis = new ConcurrentHashMap<>();
+
+    /**
+     * API versions, keyed by org, API and version.
+     */
+    private final Map<List<String>, Optional<Api>> apiVersions = new ConcurrentHashMap<>();
+
+    /**
+     * The versions listed by the server for each declared API, keyed by org and API.
+     */
+    private final Map<List<String>, List<Api>> apiVersionLists = new ConcurrentHashMap<>();
+
+    /**
+     * API versions including their configuration, keyed by org, API and version.
+     */
+    private final Map<List<String>, Optional<Api>> apiVersionConfigs = new ConcurrentHashMap<>();
+
+    /**
+     * API version policies, keyed by org, API and version.
+     */
+    private final Map<List<String>, List<ApiPolicy>> policies = new ConcurrentHashMap<>();
+
+    /**
+     * Policy configurations, keyed by org, API and version, then by policy ID.
+     */
+    private final Map<List<String>, Map<Long, Optional<String>>> policyConfigurations = new ConcurrentHashMap<>();
+
+    /**
+     * Definition hashes, keyed by org, API and version.
+     */
+    private final Map<List<String>, Optional<String>> definitionHashes = new ConcurrentHashMap<>();
+
+    public SnapshotRemoteState(GatewayApi gatewayClient, PluginApi pluginClient, OrgApi orgClient,
+                               VersionAgnosticApi apiClient) {
+        this.apiClient = apiClient;
+        this.live = new LiveRemoteState(gatewayClient, pluginClient, orgClient, apiClient);
+    }
+
+    /**
+     * Load the server state for the items in the Declaration.
+     *
+     * @param declaration the Declaration to be applied
+     * @param parallelism the maximum number of concurrent requests
+     * @return this snapshot
+     */
+    public SnapshotRemoteState load(Declaration declaration, int parallelism) {
+        LOGGER.debug("Loading server state");
+        final TaskGraph taskGraph = new TaskGraph();
+
+        ofNullable(declaration.getSystem()).ifPresent(system -> {
+            ofNullable(system.getGateways()).ifPresent(declarativeGateways ->
+                    taskGraph.addTask("gateways", this::loadGateways));
+
+            ofNullable(system.getPlugins()).ifPresent(declarativePlugins ->
+                    taskGraph.addTask("plugins", this::loadPlugins));
+        });
+
+        declaration.getAllOrgs().forEach(declarativeOrg -> {
+            final String orgName = declarativeOrg.getName();
+            taskGraph.addTask("org:" + orgName, () -> loadOrg(orgName));
+            final String apisTask = taskGraph.addTask("apis:" + orgName, () -> loadApis(orgName));
+
+            // group the declared versions by API
+            final Map<String, List<String>> declaredVersions = Maps.newLinkedHashMap();
+            ofNullable(declarativeOrg.getApis()).ifPresent(declarativeApis -> declarativeApis.forEach(declarativeApi ->
+                    declaredVersions.computeIfAbsent(declarativeApi.getName(), apiName -> Lists.newArrayList())
+                            .add(getDeclaredVersion(declarativeApi))));
+
+            declaredVersions.forEach((apiName, versions) -> {
+                final String versionsTask = taskGraph.addTask("versions:" + orgName + "/" + apiName,
+                        () -> loadVersions(orgName, apiName, versions), Collections.singletonList(apisTask));
+
+                Sets.newLinkedHashSet(versions).forEach(apiVersion -> taskGraph.addTask(
+                        "policies:" + orgName + "/" + apiName + "/" + apiVersion,
+                        () -> loadPolicies(orgName, apiName, apiVersion),
+                        Collections.singletonList(versionsTask)));
+            });
+        });
+
+        taskGraph.execute(parallelism);
+
+        LOGGER.info("Loaded server state using {} requests", requestCount.get());
+        return this;
+    }
+
+    private void loadGateways() {
+        final Set<String> loaded = ConcurrentHashMap.newKeySet();
+        final List<Gateway> listed = request(live::listGateways);
+        listed.forEach(gateway -> {
+            ofNullable(gateway.getId()).ifPresent(loaded::add);
+            ofNullable(gateway.getName()).ifPresent(loaded::add);
+        });
+
+        LOGGER.debug("Loaded {} gateways", listed.size());
+        gatewayList = listed;
+        gateways = loaded;
+    }
+
+    private void loadPlugins() {
+        final Set<List<String>> loaded = ConcurrentHashMap.newKeySet();
+        final List<Plugin> listed = request(live::listPlugins);
+        listed.forEach(plugin -> loaded.add(LiveRemoteState.buildPluginKey(plugin)));
+
+        LOGGER.debug("Loaded {} plugins", loaded.size());
+        pluginList = listed;
+        plugins = loaded;
+    }
+
+    private void loadOrg(String orgName) {
+        orgs.put(orgName, request(() -> live.fetchOrg(orgName)));
+    }
+
+    private void loadApis(String orgName) {
+        final Map<String, Api> loaded = new ConcurrentHashMap<>();
+        DeclarativeUtil.checkExists(() -> request(() -> apiClient.list(orgName))).ifPresent(apiList ->
+                apiList.forEach(api -> {
+                    ofNullable(api.getId()).ifPresent(apiId -> loaded.put(apiId, api));
+                    ofNullable(api.getName()).ifPresent(apiName -> loaded.put(apiName, api));
+                }));
+
+        LOGGER.debug("Loaded {} APIs for org: {}", loaded.size(), orgName);
+        apis.put(orgName, loaded);
+    }
+
+    private void loadVersions(String orgName, String apiName, List<String> declaredVersions) {
+        final Map<String, Api> loaded = Maps.newHashMap();
+
+        // a new API has no versions
+        final List<Api> listed = apis.get(orgName).containsKey(apiName)
+                ? request(() -> live.listApiVersions(orgName, apiName)) : Collections.emptyList();
+
+        listed.forEach(version -> loaded.put(version.getVersion(), version));
+        apiVersionLists.put(Arrays.asList(orgName, apiName), listed);
+
+        declaredVersions.forEach(apiVersion ->
+                apiVersions.put(buildVersionKey(orgName, apiName, apiVersion), ofNullable(loaded.get(apiVersion))));
+    }
+
+    private void loadPolicies(String orgName, String apiName, String apiVersion) {
+        final List<String> versionKey = buildVersionKey(orgName, apiName, apiVersion);
+
+        if (apiVersions.get(versionKey).isPresent()) {
+            policies.put(versionKey, request(() -> apiClient.fetchPolicies(orgName, apiName, apiVersion)));
+        } else {
+            policies.put(versionKey, Collections.emptyList());
+        }
+    }
+
+    @Override
+    public Optional<Gateway> fetchGateway(String gatewayName) {
+        if (null == gateways) {
+            return request(() -> live.fetchGateway(gatewayName));
+        }
+        return gateways.contains(gatewayName) ? Optional.of(new Gateway(gatewayName, null, null, null)) : empty();
+    }
+
+    @Override
+    public List<Gateway> listGateways() {
+        List<Gateway> listed = gatewayList;
+        if (null == listed) {
+            gatewayList = listed = request(live::listGateways);
+        }
+        return listed;
+    }
+
+    @Override
+    public boolean isPluginInstalled(Plugin plugin) {
+        if (null == plugins) {
+            return request(() -> live.isPluginInstalled(plugin));
+        }
+        return plugins.contains(LiveRemoteState.buildPluginKey(plugin));
+    }
+
+    @Override
+    public List<Plugin> listPlugins() {
+        List<Plugin> listed = pluginList;
+        if (null == listed) {
+            pluginList = listed = request(live::listPlugins);
+        }
+        return listed;
+    }
+
+    @Override
+    public Optional<Org> fetchOrg(String orgName) {
+        return lookup(orgs, orgName, () -> live.fetchOrg(orgName));
+    }
+
+    @Override
+    public Optional<Api> fetchApi(String orgName, String apiName) {
+        return ofNullable(apis.get(orgName))
+                .map(orgApis -> ofNullable(orgApis.get(apiName)))
+                .orElseGet(() -> request(() -> live.fetchApi(orgName, apiName)));
+    }
+
+    @Override
+    public Optional<Api> fetchApiVersion(String orgName, String apiName, String apiVersion) {
+        return lookup(apiVersions, buildVersionKey(orgName, apiName, apiVersion),
+                () -> live.fetchApiVersion(orgName, apiName, apiVersion));
+    }
+
+    @Override
+    public List<Api> listApiVersions(String orgName, String apiName) {
+        return lookup(apiVersionLists, Arrays.asList(orgName, apiName), () -> live.listApiVersions(orgName, apiName));
+    }
+
+    @Override
+    public Optional<Api> fetchApiVersionConfig(String orgName, String apiName, String apiVersion) {
+        return lookup(apiVersionConfigs, buildVersionKey(orgName, apiName, apiVersion),
+                () -> live.fetchApiVersionConfig(orgName, apiName, apiVersion));
+    }
+
+    @Override
+    public List<ApiPolicy> fetchPolicies(String orgName, String apiName, String apiVersion) {
+        return lookup(policies, buildVersionKey(orgName, apiName, apiVersion),
+                () -> live.fetchPolicies(orgName, apiName, apiVersion));
+    }
+
+    @Override
+    public String fetchPolicyConfiguration(String orgName, String apiName, String apiVersion, Long policyId) {
+        final Map<Long, Optional<String>> configurations = policyConfigurations.computeIfAbsent(
+                buildVersionKey(orgName, apiName, apiVersion), versionKey -> new ConcurrentHashMap<>());
+
+        return lookup(configurations, policyId, () -> ofNullable(
+                apiClient.fetchPolicy(orgName, apiName, apiVersion, policyId).getConfiguration())).orElse(null);
+    }
+
+    @Override
+    public Optional<String> fetchDefinitionSha256(String orgName, String apiName, String apiVersion) {
+        return lookup(definitionHashes, buildVersionKey(orgName, apiName, apiVersion),
+                () -> live.fetchDefinitionSha256(orgName, apiName, apiVersion));
+    }
+
+    @Override
+    public void markGatewayCreated(String gatewayName) {
+        ofNullable(gateways).ifPresent(loaded -> loaded.add(gatewayName));
+        gatewayList = null;
+    }
+
+    @Override
+    public void markPluginInstalled(Plugin plugin) {
+        ofNullable(plugins).ifPresent(loaded -> loaded.add(LiveRemoteState.buildPluginKey(plugin)));
+        pluginList = null;
+    }
+
+    @Override
+    public void markOrgCreated(String orgName) {
+        orgs.put(orgName, Optional.of(new Org(orgName, null)));
+    }
+
+    @Override
+    public void markApiCreated(String orgName, String apiName) {
+        ofNullable(apis.get(orgName)).ifPresent(orgApis -> orgApis.put(apiName, new Api(apiName, null, null)));
+        apiVersionLists.remove(Arrays.asList(orgName, apiName));
+    }
+
+    @Override
+    public void markApiVersionCreated(String orgName, String apiName, String apiVersion) {
+        final List<String> versionKey = buildVersionKey(orgName, apiName, apiVersion);
+
+        // state is determined by the server, but a new version has no policies
+        apiVersions.remove(versionKey);
+        apiVersionConfigs.remove(versionKey);
+        apiVersionLists.remove(Arrays.asList(orgName, apiName));
+        policies.put(versionKey, Collections.emptyList());
+    }
+
+    @Override
+    public void markApiVersionConfigured(String orgName, String apiName, String apiVersion) {
+        final List<String> versionKey = buildVersionKey(orgName, apiName, apiVersion);
+        apiVersions.remove(versionKey);
+        apiVersionConfigs.remove(versionKey);
+    }
+
+    @Override
+    public void markApiVersionPublished(String orgName, String apiName, String apiVersion) {
+        final List<String> versionKey = buildVersionKey(orgName, apiName, apiVersion);
+        apiVersions.remove(versionKey);
+        apiVersionConfigs.remove(versionKey);
+    }
+
+    @Override
+    public void markPoliciesChanged(String orgName, String apiName, String apiVersion) {
+        final List<String> versionKey = buildVersionKey(orgName, apiName, apiVersion);
+        policies.remove(versionKey);
+        policyConfigurations.remove(versionKey);
+    }
+
+    @Override
+    public void markDefinitionChanged(String orgName, String apiName, String apiVersion) {
+        definitionHashes.remove(buildVersionKey(orgName, apiName, apiVersion));
+    }
+
+    /**
+     * @return the number of requests made to the server by this instance
+     */
+    public int getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * Make a request to the server, counting it.
+     *
+     * @param request the request
+     * @param <T>     the type of the result
+     * @return the result of the request
+     */
+    private <T> T request(Supplier<T> request) {
+        requestCount.incrementAndGet();
+        return request.get();
+    }
+
+    /**
+     * Return the item in the snapshot, or make a request for it and store the result if it is not present.
+     * The request is made outside of any lock, so concurrent lookups of the same key may both make a request.
+     *
+     * @param snapshot the snapshot items
+     * @param key      the item key
+     * @param request  the request for the item
+     * @param <K>      the type of the key
+     * @param <V>      the type of the item
+     * @return the item
+     */
+    private <K, V> V lookup(Map<K, V> snapshot, K key, Supplier<V> request) {
+        final V existing = snapshot.get(key);
+        if (null != existing) {
+            return existing;
+        }
+
+        final V loaded = request(request);
+        snapshot.put(key, loaded);
+        return loaded;
+    }
+
+    private static String getDeclaredVersion(DeclarativeApi declarativeApi) {
+        return ofNullable(declarativeApi.getVersion()).orElse(declarativeApi.getInitialVersion());
+    }
+
+    private static List<String> buildVersionKey(String orgName, String apiName, String apiVersion) {
+        return Arrays.asList(orgName, apiName, apiVersion);
+    }
+}
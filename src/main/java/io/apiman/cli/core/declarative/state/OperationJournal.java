@@ -0,0 +1,284 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.state;
+
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import io.apiman.cli.core.declarative.state.model.JournalRecord;
+import io.apiman.cli.exception.DeclarativeException;
+import io.apiman.cli.util.MappingUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An append-only journal of the operations completed by an apply, so that an apply which is interrupted, or
+ * stops at its deadline, can be resumed without repeating them.
+ * <p>
+ * The journal is keyed by the content hash of the declaration, so it is only resumed for the same
+ * declaration and server. Records are synced to disk in batches, and in the background while the journal is
+ * open; if the process dies, the operations completed since the last sync are repeated when resumed, which is
+ * safe, as applying an item is idempotent.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class OperationJournal implements AutoCloseable {
+    private static final Logger LOGGER = LogManager.getLogger(OperationJournal.class);
+    private static final ObjectWriter RECORD_WRITER = MappingUtil.JSON_MAPPER.writer()
+            .without(SerializationFeature.INDENT_OUTPUT);
+
+    /**
+     * Sync once this many records are unsynced, and at this interval while any are.
+     */
+    static final int SYNC_BATCH_SIZE = 64;
+    static final long SYNC_INTERVAL_MILLIS = 500;
+
+    /**
+     * The journal location; <code>null</code> if operations are not journalled.
+     */
+    private final Path path;
+
+    /**
+     * Operations completed by previous runs.
+     */
+    private final Set<String> previous;
+
+    private final FileChannel channel;
+
+    /**
+     * Syncs records that were not synced by a full batch; <code>null</code> if operations are not journalled.
+     */
+    private final ScheduledExecutorService syncExecutor;
+    private int unsynced;
+
+    private OperationJournal(Path path, Set<String> previous, FileChannel channel) {
+        this.path = path;
+        this.previous = previous;
+        this.channel = channel;
+
+        if (null == channel) {
+            syncExecutor = null;
+        } else {
+            syncExecutor = Executors.newSingleThreadScheduledExecutor(
+                    new ThreadFactoryBuilder().setNameFormat("journal-sync").setDaemon(true).build());
+            syncExecutor.scheduleWithFixedDelay(this::syncUnsynced, SYNC_INTERVAL_MILLIS, SYNC_INTERVAL_MILLIS,
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * @return an OperationJournal that records nothing, and in which no operation has completed
+     */
+    public static OperationJournal disabled() {
+        return new OperationJournal(null, Collections.emptySet(), null);
+    }
+
+    /**
+     * Open the journal, starting a new one unless resuming a journal of the same declaration.
+     *
+     * @param path            the journal location
+     * @param declarationHash the content hash of the declaration
+     * @param server          the Management API endpoint to which the declaration is applied
+     * @param serverVersion   the Management API server version
+     * @param resume          whether to resume from the operations already in the journal
+     * @return the OperationJournal
+     */
+    public static OperationJournal open(Path path, String declarationHash, String server, String serverVersion,
+                                        boolean resume) {
+        final JournalRecord header = new JournalRecord(declarationHash, server, serverVersion);
+        try {
+            if (resume && Files.exists(path)) {
+                final Set<String> completed = ConcurrentHashMap.newKeySet();
+                final long validLength = read(path, header, completed);
+
+                if (validLength > 0) {
+                    LOGGER.info("Resuming - skipping {} operations completed by the previous apply", completed.size());
+
+                    // discard any partly written record, then append
+                    final FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE);
+                    channel.truncate(validLength);
+                    channel.position(validLength);
+                    return new OperationJournal(path, completed, channel);
+                }
+                LOGGER.warn("Journal {} was written for a different declaration or server - starting over", path);
+
+            } else if (resume) {
+                LOGGER.info("No journal found at {} - starting from the beginning", path);
+            }
+
+            final FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+            final OperationJournal journal = new OperationJournal(path, Collections.emptySet(), channel);
+            journal.append(header);
+            journal.sync();
+            return journal;
+
+        } catch (IOException e) {
+            throw new DeclarativeException(String.format("Error opening journal: %s", path), e);
+        }
+    }
+
+    /**
+     * Read the completed operations from the journal, if its header matches.
+     *
+     * @return the length of the journal up to the end of the last complete record, or 0 if the header does
+     * not match
+     */
+    private static long read(Path path, JournalRecord expected, Set<String> completed) throws IOException {
+        final byte[] content = Files.readAllBytes(path);
+        long validLength = 0;
+        int lineStart = 0;
+
+        for (int i = 0; i < content.length; i++) {
+            if ('\n' != content[i]) {
+                continue;
+            }
+            final JournalRecord record;
+            try {
+                record = MappingUtil.JSON_MAPPER.readValue(content, lineStart, i - lineStart, JournalRecord.class);
+            } catch (IOException e) {
+                LOGGER.debug("Ignoring unreadable journal record at offset {}", lineStart);
+                break;
+            }
+
+            if (0 == validLength) {
+                if (!Objects.equals(expected.getDeclaration(), record.getDeclaration())
+                        || !Objects.equals(expected.getServer(), record.getServer())
+                        || !Objects.equals(expected.getServerVersion(), record.getServerVersion())) {
+                    return 0;
+                }
+            } else if (null != record.getCompleted()) {
+                completed.add(record.getCompleted());
+            }
+
+            lineStart = i + 1;
+            validLength = lineStart;
+        }
+        return validLength;
+    }
+
+    /**
+     * @param operationId the operation ID
+     * @return <code>true</code> if a previous run completed the operation
+     */
+    public boolean isCompleted(String operationId) {
+        return previous.contains(operationId);
+    }
+
+    /**
+     * Record that the operation has completed, syncing the journal if a full batch of records has built up
+     * since the last sync. Smaller batches are synced in the background.
+     *
+     * @param operationId the operation ID
+     */
+    public synchronized void record(String operationId) {
+        if (null == channel) {
+            return;
+        }
+        try {
+            append(new JournalRecord(operationId));
+            if (++unsynced >= SYNC_BATCH_SIZE) {
+                sync();
+            }
+        } catch (IOException e) {
+            throw new DeclarativeException(String.format("Error writing journal: %s", path), e);
+        }
+    }
+
+    private void append(JournalRecord record) throws IOException {
+        final byte[] line = (RECORD_WRITER.writeValueAsString(record) + "\n").getBytes(StandardCharsets.UTF_8);
+        final ByteBuffer buffer = ByteBuffer.wrap(line);
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private void sync() throws IOException {
+        channel.force(false);
+        unsynced = 0;
+    }
+
+    /**
+     * Sync any records written since the last sync. Called periodically while the journal is open.
+     */
+    private synchronized void syncUnsynced() {
+        if (0 == unsynced || !channel.isOpen()) {
+            return;
+        }
+        try {
+            sync();
+        } catch (IOException e) {
+            LOGGER.warn("Error syncing journal: {}", path, e);
+        }
+    }
+
+    /**
+     * @return the number of records written since the last sync
+     */
+    synchronized int getUnsynced() {
+        return unsynced;
+    }
+
+    /**
+     * Sync and close the journal, leaving it to be resumed.
+     */
+    @Override
+    public synchronized void close() {
+        if (null == channel || !channel.isOpen()) {
+            return;
+        }
+        // don't interrupt a sync in progress, as that would close the channel
+        syncExecutor.shutdown();
+        try {
+            sync();
+            channel.close();
+        } catch (IOException e) {
+            throw new DeclarativeException(String.format("Error closing journal: %s", path), e);
+        }
+    }
+
+    /**
+     * Close and delete the journal, once every operation has completed, as there is nothing to resume.
+     */
+    public synchronized void delete() {
+        if (null == channel) {
+            return;
+        }
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            throw new DeclarativeException(String.format("Error deleting journal: %s", path), e);
+        }
+        LOGGER.debug("Deleted journal: {}", path);
+    }
+}
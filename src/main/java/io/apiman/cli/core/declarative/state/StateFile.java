@@ -0,0 +1,176 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.state;
+
+import io.apiman.cli.core.declarative.state.model.AppliedState;
+import io.apiman.cli.exception.DeclarativeException;
+import io.apiman.cli.util.MappingUtil;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Tracks the content hash of each item applied to the server, so that items which have not changed since
+ * the previous apply can be skipped.
+ * <p>
+ * Only the items applied (or skipped as unchanged) by the current run are saved, so items that fail to
+ * apply, or are no longer declared, are applied in full next time.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class StateFile {
+    private static final Logger LOGGER = LogManager.getLogger(StateFile.class);
+
+    /**
+     * The state file location; <code>null</code> if state is not tracked.
+     */
+    private final Path path;
+
+    private final String server;
+    private final String serverVersion;
+
+    /**
+     * Item hashes from the previous apply.
+     */
+    private final Map<String, String> previous;
+
+    /**
+     * Item hashes from this apply.
+     */
+    private final Map<String, String> current = new ConcurrentHashMap<>();
+
+    /**
+     * Whether to keep the items from the previous apply that this apply does not record.
+     */
+    private volatile boolean carryForward;
+
+    private StateFile(Path path, String server, String serverVersion, Map<String, String> previous) {
+        this.path = path;
+        this.server = server;
+        this.serverVersion = serverVersion;
+        this.previous = previous;
+    }
+
+    /**
+     * @return a StateFile that treats every item as changed, and is never saved
+     */
+    public static StateFile disabled() {
+        return new StateFile(null, null, null, Collections.emptyMap());
+    }
+
+    /**
+     * Load the state file, if it exists.
+     *
+     * @param path          the state file location
+     * @param server        the Management API endpoint to which the declaration is applied
+     * @param serverVersion the Management API server version
+     * @param refresh       whether to ignore the previous state, verifying every item against the server
+     * @return the StateFile
+     */
+    public static StateFile load(Path path, String server, String serverVersion, boolean refresh) {
+        if (refresh) {
+            LOGGER.info("Refreshing - all items will be verified against the server");
+            return new StateFile(path, server, serverVersion, Collections.emptyMap());
+        }
+
+        if (!Files.exists(path)) {
+            LOGGER.debug("No state file found at: {}", path);
+            return new StateFile(path, server, serverVersion, Collections.emptyMap());
+        }
+
+        final AppliedState appliedState;
+        try {
+            appliedState = MappingUtil.JSON_MAPPER.readValue(path.toFile(), AppliedState.class);
+        } catch (IOException e) {
+            throw new DeclarativeException(String.format("Error loading state file: %s", path), e);
+        }
+
+        if (!Objects.equals(server, appliedState.getServer())
+                || !Objects.equals(serverVersion, appliedState.getServerVersion())) {
+            LOGGER.warn("State file {} was written for a different server - ignoring", path);
+            return new StateFile(path, server, serverVersion, Collections.emptyMap());
+        }
+
+        final Map<String, String> items = ofNullable(appliedState.getItems()).orElse(Collections.emptyMap());
+        LOGGER.debug("Loaded {} items from state file: {}", items.size(), path);
+        return new StateFile(path, server, serverVersion, items);
+    }
+
+    /**
+     * @param itemKey the item key
+     * @param hash    the current content hash of the item
+     * @return <code>true</code> if the item was applied by the previous run with the same content
+     */
+    public boolean isUnchanged(String itemKey, String hash) {
+        return hash.equals(previous.get(itemKey));
+    }
+
+    /**
+     * Record that the item has been applied, or is unchanged.
+     *
+     * @param itemKey the item key
+     * @param hash    the current content hash of the item
+     */
+    public void record(String itemKey, String hash) {
+        current.put(itemKey, hash);
+    }
+
+    /**
+     * Keep the items from the previous apply that this apply does not record, such as those skipped when
+     * resuming an unfinished apply, when the state file is saved.
+     */
+    public void carryForward() {
+        carryForward = true;
+    }
+
+    /**
+     * Write the items recorded by this run to the state file.
+     */
+    public void save() {
+        if (null == path) {
+            return;
+        }
+
+        final Map<String, String> items = new TreeMap<>(carryForward ? previous : Collections.emptyMap());
+        items.putAll(current);
+
+        final AppliedState appliedState = new AppliedState(server, serverVersion, items);
+        try {
+            // replace the previous state in a single step, so an interrupted write does not corrupt it
+            final Path tempFile = path.resolveSibling(path.getFileName() + ".tmp");
+
+            MappingUtil.JSON_MAPPER.writeValue(tempFile.toFile(), appliedState);
+            Files.move(tempFile, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException e) {
+            throw new DeclarativeException(String.format("Error saving state file: %s", path), e);
+        }
+
+        LOGGER.debug("Saved {} items to state file: {}", items.size(), path);
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.state.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.Map;
+
+/**
+ * The content hashes of the items applied to a server, as stored in a state file.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+public class AppliedState {
+    /**
+     * The Management API endpoint to which the items were applied.
+     */
+    @JsonProperty
+    private String server;
+
+    @JsonProperty
+    private String serverVersion;
+
+    /**
+     * Item hashes, keyed by item.
+     */
+    @JsonProperty
+    private Map<String, String> items;
+
+    public AppliedState() {
+    }
+
+    public AppliedState(String server, String serverVersion, Map<String, String> items) {
+        this.server = server;
+        this.serverVersion = serverVersion;
+        this.items = items;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public String getServerVersion() {
+        return serverVersion;
+    }
+
+    public Map<String, String> getItems() {
+        return items;
+    }
+}
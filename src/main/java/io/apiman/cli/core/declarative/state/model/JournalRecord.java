@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.state.model;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+/**
+ * A line of an operation journal. The first line identifies the declaration and server; each subsequent
+ * line records a completed operation.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+@JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+public class JournalRecord {
+    /**
+     * The content hash of the declaration being applied.
+     */
+    @JsonProperty
+    private String declaration;
+
+    /**
+     * The Management API endpoint to which the declaration is applied.
+     */
+    @JsonProperty
+    private String server;
+
+    @JsonProperty
+    private String serverVersion;
+
+    /**
+     * The ID of the completed operation.
+     */
+    @JsonProperty
+    private String completed;
+
+    public JournalRecord() {
+    }
+
+    public JournalRecord(String declaration, String server, String serverVersion) {
+        this.declaration = declaration;
+        this.server = server;
+        this.serverVersion = serverVersion;
+    }
+
+    public JournalRecord(String completed) {
+        this.completed = completed;
+    }
+
+    public String getDeclaration() {
+        return declaration;
+    }
+
+    public String getServer() {
+        return server;
+    }
+
+    public String getServerVersion() {
+        return serverVersion;
+    }
+
+    public String getCompleted() {
+        return completed;
+    }
+}
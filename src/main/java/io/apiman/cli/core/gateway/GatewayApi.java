@@ -38,4 +38,7 @@ public interface GatewayApi {
 
     @PUT("/gateways")
     GatewayTestResponse test(@Body Gateway gateway);
+
+    @DELETE("/gateways/{gatewayId}")
+    Response delete(@Path("gatewayId") String gatewayId);
 }
@@ -28,6 +28,12 @@ import com.fasterxml.jackson.annotation.JsonProperty;
 @JsonInclude(JsonInclude.Include.NON_NULL)
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class Gateway {
+    /**
+     * This is a response property.
+     */
+    @JsonProperty
+    private String id;
+
     @JsonProperty
     private String name;
 
@@ -54,6 +60,10 @@ public class Gateway {
         this.configuration = configuration;
     }
 
+    public String getId() {
+        return id;
+    }
+
     public String getName() {
         return name;
     }
@@ -34,4 +34,7 @@ public interface PluginApi {
 
     @GET("/plugins/{pluginId}")
     Plugin fetch(@Path("pluginId") String pluginId);
+
+    @DELETE("/plugins/{pluginId}")
+    Response delete(@Path("pluginId") Long pluginId);
 }
@@ -24,6 +24,7 @@ import io.apiman.cli.core.common.model.ManagementApiVersion;
 import io.apiman.cli.exception.CommandException;
 import io.apiman.cli.management.binding.ManagementApiBindings;
 import io.apiman.cli.management.factory.ManagementApiFactory;
+import io.apiman.cli.management.metrics.MetricsUtil;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import retrofit.RetrofitError;
@@ -33,6 +34,10 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Supplier;
 
 /**
@@ -42,8 +47,13 @@ import java.util.function.Supplier;
  */
 public class ManagementApiUtil {
     private static final Logger LOGGER = LogManager.getLogger(ManagementApiUtil.class);
-    private static boolean factoriesInitialised;
-    private static Injector apiFactories;
+    private static volatile Injector apiFactories;
+
+    /**
+     * Clients, keyed by API class, endpoint, credentials, debug logging and server version. Cleared when the
+     * transport is reconfigured.
+     */
+    private static final Map<List<Object>, Object> CLIENT_CACHE = new ConcurrentHashMap<>();
 
     public static void invokeAndCheckResponse(Supplier<Response> request) throws CommandException {
         invokeAndCheckResponse(HttpURLConnection.HTTP_OK, request);
@@ -84,7 +94,11 @@ public class ManagementApiUtil {
     }
 
     /**
+     * Return a client for the given Class. Clients are cached, so calls with the same arguments return the
+     * same instance, which is safe for use by multiple threads.
+     *
      * @param clazz         the Class for which to build a client
+     * @param endpoint      the management API endpoint
      * @param username      the management API username
      * @param password      the management API password
      * @param debugLogging  whether debug logging should be enabled
@@ -96,16 +110,25 @@ public class ManagementApiUtil {
     public static <T> T buildServerApiClient(Class<T> clazz, String endpoint, String username,
                                              String password, boolean debugLogging, ManagementApiVersion serverVersion) {
 
-        if (!factoriesInitialised) {
-            LOGGER.trace("Initialising API factories");
-            apiFactories = Guice.createInjector(new ManagementApiFactoryModule());
-            factoriesInitialised = true;
-        }
+        final List<Object> cacheKey = Arrays.asList(clazz, endpoint, username, password, debugLogging, serverVersion);
+        return (T) CLIENT_CACHE.computeIfAbsent(cacheKey, key -> MetricsUtil.meter(clazz,
+                (T) buildClient(clazz, endpoint, username, password, debugLogging, serverVersion)));
+    }
+
+    /**
+     * Discard all cached clients, so that clients built after this call use the current transport.
+     */
+    public static void clearClientCache() {
+        CLIENT_CACHE.clear();
+    }
+
+    private static Object buildClient(Class<?> clazz, String endpoint, String username, String password,
+                                      boolean debugLogging, ManagementApiVersion serverVersion) {
 
         // locate the Management API factory
         final ManagementApiFactory managementApiFactory;
         try {
-            managementApiFactory = apiFactories.getInstance(
+            managementApiFactory = getApiFactories().getInstance(
                     Key.get(ManagementApiFactory.class, ManagementApiBindings.boundTo(clazz, serverVersion)));
 
         } catch (Exception e) {
@@ -117,6 +140,24 @@ public class ManagementApiUtil {
                 managementApiFactory.getClass(), clazz, serverVersion);
 
         // use the factory to construct the Management API client
-        return (T) managementApiFactory.build(endpoint, username, password, debugLogging);
+        return managementApiFactory.build(endpoint, username, password, debugLogging);
+    }
+
+    /**
+     * @return the Management API factories, initialising them on first use
+     */
+    private static Injector getApiFactories() {
+        Injector factories = apiFactories;
+        if (null == factories) {
+            synchronized (ManagementApiUtil.class) {
+                factories = apiFactories;
+                if (null == factories) {
+                    LOGGER.trace("Initialising API factories");
+                    factories = Guice.createInjector(new ManagementApiFactoryModule());
+                    apiFactories = factories;
+                }
+            }
+        }
+        return factories;
     }
 }
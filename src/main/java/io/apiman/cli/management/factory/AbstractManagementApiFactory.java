@@ -16,12 +16,11 @@
 
 package io.apiman.cli.management.factory;
 
+import io.apiman.cli.management.transport.TransportUtil;
 import io.apiman.cli.util.AuthUtil;
 import retrofit.RestAdapter;
-import retrofit.converter.JacksonConverter;
 
 import static io.apiman.cli.util.AuthUtil.HEADER_AUTHORIZATION;
-import static io.apiman.cli.util.MappingUtil.JSON_MAPPER;
 
 /**
  * Builds a Management API client proxy for a given API interface.
@@ -40,7 +39,8 @@ public abstract class AbstractManagementApiFactory<T, A> implements ManagementAp
      */
     protected A buildClient(Class<A> apiClass, String endpoint, String username, String password, boolean debugLogging) {
         final RestAdapter.Builder builder = new RestAdapter.Builder() //
-                .setConverter(new JacksonConverter(JSON_MAPPER))
+                .setConverter(WireConverter.INSTANCE)
+                .setClient(TransportUtil.getClient())
                 .setEndpoint(endpoint)
                 .setRequestInterceptor(request -> {
                     request.addHeader(HEADER_AUTHORIZATION, AuthUtil.buildAuthString(username, password));
@@ -0,0 +1,67 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.management.factory;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import io.apiman.cli.util.MappingUtil;
+import retrofit.converter.ConversionException;
+import retrofit.converter.Converter;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Type;
+
+/**
+ * Converts Management API request and response bodies using compact JSON, reusing the reader or writer
+ * built for each type.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class WireConverter implements Converter {
+    private static final String MIME_TYPE = "application/json; charset=UTF-8";
+
+    /**
+     * Shared by all clients, so readers and writers are only built once.
+     */
+    public static final WireConverter INSTANCE = new WireConverter();
+
+    private WireConverter() {
+    }
+
+    @Override
+    public Object fromBody(TypedInput body, Type type) throws ConversionException {
+        try (InputStream in = body.in()) {
+            return MappingUtil.getWireReader(type).readValue(in);
+
+        } catch (IOException e) {
+            throw new ConversionException(e);
+        }
+    }
+
+    @Override
+    public TypedOutput toBody(Object object) {
+        try {
+            return new TypedByteArray(MIME_TYPE, MappingUtil.getWireWriter(object.getClass()).writeValueAsBytes(object));
+
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.metrics;
+
+/**
+ * The logical operation in progress on a thread, and the outcome of its most recent request.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+class CallContext {
+    private final OperationMetrics operation;
+    private volatile String lastOutcome;
+
+    CallContext(OperationMetrics operation) {
+        this.operation = operation;
+    }
+
+    OperationMetrics getOperation() {
+        return operation;
+    }
+
+    String getLastOutcome() {
+        return lastOutcome;
+    }
+
+    void setLastOutcome(String lastOutcome) {
+        this.lastOutcome = lastOutcome;
+    }
+}
@@ -0,0 +1,130 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.metrics;
+
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedInput;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Records the outcome of each request, and the bytes sent and received, against the operation in progress
+ * on the calling thread.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class MeteredClient implements Client {
+    private final Client delegate;
+
+    public MeteredClient(Client delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        final CallContext call = MetricsUtil.currentCall();
+        if (null == call) {
+            return delegate.execute(request);
+        }
+
+        final OperationMetrics operation = call.getOperation();
+        if (null != request.getBody() && request.getBody().length() > 0) {
+            operation.recordBytesSent(request.getBody().length());
+        }
+
+        final Response response;
+        try {
+            response = delegate.execute(request);
+        } catch (IOException e) {
+            call.setLastOutcome(e.getClass().getSimpleName());
+            throw e;
+        }
+
+        call.setLastOutcome(String.valueOf(response.getStatus()));
+
+        final TypedInput body = response.getBody();
+        if (null == body) {
+            return response;
+        }
+        if (body.length() >= 0) {
+            operation.recordBytesReceived(body.length());
+            return response;
+        }
+
+        // the length is not known until the body is read
+        return new Response(response.getUrl(), response.getStatus(), response.getReason(), response.getHeaders(),
+                new CountingTypedInput(body, operation));
+    }
+
+    /**
+     * Records the number of bytes read from a response body when it is closed.
+     */
+    private static class CountingTypedInput implements TypedInput {
+        private final TypedInput delegate;
+        private final OperationMetrics operation;
+
+        CountingTypedInput(TypedInput delegate, OperationMetrics operation) {
+            this.delegate = delegate;
+            this.operation = operation;
+        }
+
+        @Override
+        public String mimeType() {
+            return delegate.mimeType();
+        }
+
+        @Override
+        public long length() {
+            return delegate.length();
+        }
+
+        @Override
+        public InputStream in() throws IOException {
+            return new FilterInputStream(delegate.in()) {
+                private long count;
+
+                @Override
+                public int read() throws IOException {
+                    final int b = super.read();
+                    if (b >= 0) {
+                        count++;
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    final int read = super.read(b, off, len);
+                    if (read > 0) {
+                        count += read;
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    operation.recordBytesReceived(count);
+                    count = 0;
+                    super.close();
+                }
+            };
+        }
+    }
+}
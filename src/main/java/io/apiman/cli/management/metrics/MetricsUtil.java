@@ -0,0 +1,279 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.metrics;
+
+import io.apiman.cli.management.metrics.model.LatencySummary;
+import io.apiman.cli.management.metrics.model.MetricsReport;
+import io.apiman.cli.management.metrics.model.OperationReport;
+import io.apiman.cli.management.transport.AdaptiveLimiter;
+import io.apiman.cli.management.transport.RetryMetrics;
+import io.apiman.cli.management.transport.TransportUtil;
+import io.apiman.cli.util.MappingUtil;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+import retrofit.RetrofitError;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+import static io.apiman.cli.util.LogUtil.LINE_SEPARATOR;
+
+/**
+ * Records the latency and outcome of Management API calls, and the wall time of each phase of a command.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class MetricsUtil {
+    private static final Map<String, OperationMetrics> OPERATIONS = new ConcurrentHashMap<>();
+
+    /**
+     * Wall time in nanoseconds, keyed by phase, in the order the phases completed.
+     */
+    private static final Map<String, Long> PHASES = new LinkedHashMap<>();
+
+    /**
+     * Latency in microseconds of each step of a command, keyed by the kind of step.
+     */
+    private static final Map<String, Histogram> STEPS = new ConcurrentHashMap<>();
+
+    private static final ThreadLocal<CallContext> CURRENT_CALL = new ThreadLocal<>();
+
+    /**
+     * Discard all recorded metrics.
+     */
+    public static void reset() {
+        OPERATIONS.clear();
+        STEPS.clear();
+        synchronized (PHASES) {
+            PHASES.clear();
+        }
+    }
+
+    /**
+     * Run a phase of a command, recording its wall time. If a phase with the same name has already completed,
+     * the times are added together.
+     *
+     * @param name  the name of the phase
+     * @param phase the phase to run
+     */
+    public static void timePhase(String name, Runnable phase) {
+        timePhase(name, () -> {
+            phase.run();
+            return null;
+        });
+    }
+
+    /**
+     * Run a phase of a command that produces a result, recording its wall time.
+     *
+     * @param name  the name of the phase
+     * @param phase the phase to run
+     * @param <T>   the type of the result
+     * @return the result of the phase
+     */
+    public static <T> T timePhase(String name, Supplier<T> phase) {
+        final long startNanos = System.nanoTime();
+        try {
+            return phase.get();
+        } finally {
+            recordPhase(name, System.nanoTime() - startNanos);
+        }
+    }
+
+    private static void recordPhase(String name, long elapsedNanos) {
+        synchronized (PHASES) {
+            PHASES.merge(name, elapsedNanos, Long::sum);
+        }
+    }
+
+    /**
+     * Record the latency of a step of a command, such as applying a single API version. Unlike phases,
+     * steps may run concurrently, so their latencies are recorded individually.
+     *
+     * @param kind         the kind of step
+     * @param elapsedNanos the duration of the step
+     */
+    public static void recordStep(String kind, long elapsedNanos) {
+        STEPS.computeIfAbsent(kind, k -> new ConcurrentHistogram(OperationMetrics.SIGNIFICANT_DIGITS))
+                .recordValue(TimeUnit.NANOSECONDS.toMicros(elapsedNanos));
+    }
+
+    /**
+     * Wrap a Management API client, recording each call against an operation named after the API interface
+     * and method, such as <code>VersionAgnosticApi.fetchVersion</code>.
+     *
+     * @param apiClass the API interface
+     * @param client   the client to wrap
+     * @param <T>      the API interface
+     * @return the wrapped client
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T meter(Class<T> apiClass, T client) {
+        return (T) Proxy.newProxyInstance(apiClass.getClassLoader(), new Class<?>[]{apiClass}, (proxy, method, args) -> {
+            if (Object.class.equals(method.getDeclaringClass())) {
+                return invoke(client, method, args);
+            }
+
+            final OperationMetrics operation = OPERATIONS.computeIfAbsent(
+                    apiClass.getSimpleName() + "." + method.getName(), OperationMetrics::new);
+
+            final CallContext previousCall = CURRENT_CALL.get();
+            final CallContext call = new CallContext(operation);
+            CURRENT_CALL.set(call);
+
+            final long startNanos = System.nanoTime();
+            Throwable error = null;
+            try {
+                return invoke(client, method, args);
+
+            } catch (Throwable e) {
+                error = e;
+                throw e;
+
+            } finally {
+                operation.recordCall(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanos),
+                        determineOutcome(call, error));
+                CURRENT_CALL.set(previousCall);
+            }
+        });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * @return the status of the last response, or the type of error if there was no response
+     */
+    private static String determineOutcome(CallContext call, Throwable error) {
+        if (null != call.getLastOutcome()) {
+            return call.getLastOutcome();
+        }
+        if (error instanceof RetrofitError && null != ((RetrofitError) error).getResponse()) {
+            return String.valueOf(((RetrofitError) error).getResponse().getStatus());
+        }
+        return null != error ? error.getClass().getSimpleName() : "none";
+    }
+
+    /**
+     * @return the operation in progress on the current thread, or <code>null</code>
+     */
+    static CallContext currentCall() {
+        return CURRENT_CALL.get();
+    }
+
+    /**
+     * @return a snapshot of the metrics recorded so far
+     */
+    public static MetricsReport buildReport() {
+        final Map<String, Long> phases = new LinkedHashMap<>();
+        synchronized (PHASES) {
+            PHASES.forEach((name, nanos) -> phases.put(name, TimeUnit.NANOSECONDS.toMillis(nanos)));
+        }
+
+        final Map<String, LatencySummary> steps = new TreeMap<>();
+        STEPS.forEach((kind, histogram) -> steps.put(kind, OperationMetrics.summarise(histogram)));
+
+        final List<OperationReport> operations = OPERATIONS.values().stream()
+                .map(OperationMetrics::toReport)
+                .sorted(Comparator.comparing(OperationReport::getName))
+                .collect(Collectors.toList());
+
+        final RetryMetrics retryMetrics = TransportUtil.getRetryMetrics();
+        final Optional<AdaptiveLimiter> limiter = TransportUtil.getLimiter();
+
+        return new MetricsReport(phases, steps, operations, retryMetrics.getRetriesByReason(),
+                retryMetrics.getCircuitOpened(), retryMetrics.getRejected(),
+                limiter.map(AdaptiveLimiter::getLimit).orElse(null),
+                limiter.map(AdaptiveLimiter::getPeakQueueDepth).orElse(null));
+    }
+
+    /**
+     * @param report the report
+     * @param format the format
+     * @return the report in the given format
+     */
+    public static String render(MetricsReport report, MetricsFormat format) {
+        switch (format) {
+            case json:
+                return MappingUtil.safeWriteValueAsJson(report);
+
+            default:
+                return renderText(report);
+        }
+    }
+
+    private static String renderText(MetricsReport report) {
+        final StringBuilder sb = new StringBuilder();
+
+        sb.append(String.format("%-40s %10s", "Phase", "Wall ms")).append(LINE_SEPARATOR);
+        report.getPhases().forEach((name, millis) ->
+                sb.append(String.format("%-40s %10d", name, millis)).append(LINE_SEPARATOR));
+
+        if (!report.getSteps().isEmpty()) {
+            sb.append(LINE_SEPARATOR);
+            sb.append(String.format("%-40s %7s %8s %8s %8s %8s", "Step", "Count",
+                    "p50 ms", "p95 ms", "p99 ms", "max ms")).append(LINE_SEPARATOR);
+
+            report.getSteps().forEach((kind, latency) -> sb.append(String.format("%-40s %7d %8.1f %8.1f %8.1f %8.1f",
+                    kind, latency.getCount(), latency.getP50(), latency.getP95(), latency.getP99(), latency.getMax()))
+                    .append(LINE_SEPARATOR));
+        }
+
+        sb.append(LINE_SEPARATOR);
+        sb.append(String.format("%-40s %7s %8s %8s %8s %8s %10s %10s  %s", "Operation", "Calls",
+                "p50 ms", "p95 ms", "p99 ms", "max ms", "Sent", "Received", "Statuses")).append(LINE_SEPARATOR);
+
+        report.getOperations().forEach(operation -> {
+            final LatencySummary latency = operation.getLatency();
+            final String statuses = operation.getStatuses().entrySet().stream()
+                    .map(status -> status.getKey() + "=" + status.getValue().getCount())
+                    .collect(Collectors.joining(" "));
+
+            sb.append(String.format("%-40s %7d %8.1f %8.1f %8.1f %8.1f %10d %10d  %s", operation.getName(),
+                    latency.getCount(), latency.getP50(), latency.getP95(), latency.getP99(), latency.getMax(),
+                    operation.getBytesSent(), operation.getBytesReceived(), statuses)).append(LINE_SEPARATOR);
+        });
+
+        sb.append(LINE_SEPARATOR);
+        sb.append(String.format("Retries: %d %s, circuit breaker opened %d times, %d requests rejected",
+                report.getRetries().values().stream().mapToLong(Long::longValue).sum(), report.getRetries(),
+                report.getCircuitBreakerOpened(), report.getRejectedRequests()));
+
+        if (null != report.getConcurrencyLimit()) {
+            sb.append(LINE_SEPARATOR);
+            sb.append(String.format("Concurrency limit: %d, peak queue depth %d",
+                    report.getConcurrencyLimit(), report.getPeakQueueDepth()));
+        }
+
+        return sb.toString();
+    }
+}
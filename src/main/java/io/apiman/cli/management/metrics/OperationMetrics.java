@@ -0,0 +1,91 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.metrics;
+
+import io.apiman.cli.management.metrics.model.LatencySummary;
+import io.apiman.cli.management.metrics.model.OperationReport;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Records the latency of calls to a single Management API operation, overall and by outcome, and the bytes
+ * sent and received by its requests.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class OperationMetrics {
+    /**
+     * Latencies are recorded in microseconds, to three significant digits.
+     */
+    static final int SIGNIFICANT_DIGITS = 3;
+    private static final double MICROS_PER_MILLI = 1000.0;
+
+    private final String name;
+    private final Histogram latency = new ConcurrentHistogram(SIGNIFICANT_DIGITS);
+    private final Map<String, Histogram> latencyByOutcome = new ConcurrentHashMap<>();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+
+    OperationMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param latencyMicros the duration of the call
+     * @param outcome       the final response status, or the type of error if there was no response
+     */
+    void recordCall(long latencyMicros, String outcome) {
+        latency.recordValue(latencyMicros);
+        latencyByOutcome.computeIfAbsent(outcome, o -> new ConcurrentHistogram(SIGNIFICANT_DIGITS))
+                .recordValue(latencyMicros);
+    }
+
+    void recordBytesSent(long bytes) {
+        bytesSent.add(bytes);
+    }
+
+    void recordBytesReceived(long bytes) {
+        bytesReceived.add(bytes);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return a snapshot of the metrics
+     */
+    public OperationReport toReport() {
+        final Map<String, LatencySummary> statuses = new TreeMap<>();
+        latencyByOutcome.forEach((outcome, histogram) -> statuses.put(outcome, summarise(histogram)));
+
+        return new OperationReport(name, summarise(latency), statuses, bytesSent.sum(), bytesReceived.sum());
+    }
+
+    static LatencySummary summarise(Histogram histogram) {
+        final Histogram copy = histogram.copy();
+        return new LatencySummary(copy.getTotalCount(),
+                copy.getValueAtPercentile(50) / MICROS_PER_MILLI,
+                copy.getValueAtPercentile(95) / MICROS_PER_MILLI,
+                copy.getValueAtPercentile(99) / MICROS_PER_MILLI,
+                copy.getMaxValue() / MICROS_PER_MILLI);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.metrics.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+/**
+ * The number of calls and their latency percentiles, in milliseconds.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class LatencySummary {
+    @JsonProperty
+    private long count;
+
+    @JsonProperty
+    private double p50;
+
+    @JsonProperty
+    private double p95;
+
+    @JsonProperty
+    private double p99;
+
+    @JsonProperty
+    private double max;
+
+    public LatencySummary() {
+    }
+
+    public LatencySummary(long count, double p50, double p95, double p99, double max) {
+        this.count = count;
+        this.p50 = p50;
+        this.p95 = p95;
+        this.p99 = p99;
+        this.max = max;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getP50() {
+        return p50;
+    }
+
+    public double getP95() {
+        return p95;
+    }
+
+    public double getP99() {
+        return p99;
+    }
+
+    public double getMax() {
+        return max;
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.metrics.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The Management API calls made by a command, and the time spent in each of its phases and steps.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+@JsonSerialize(include = JsonSerialize.Inclusion.NON_NULL)
+public class MetricsReport {
+    /**
+     * Wall time in milliseconds, keyed by phase, in the order the phases completed.
+     */
+    @JsonProperty
+    private Map<String, Long> phases;
+
+    /**
+     * Latency of the steps of a command, keyed by the kind of step.
+     */
+    @JsonProperty
+    private Map<String, LatencySummary> steps;
+
+    @JsonProperty
+    private List<OperationReport> operations;
+
+    /**
+     * The number of retries, keyed by reason.
+     */
+    @JsonProperty
+    private Map<String, Long> retries;
+
+    @JsonProperty
+    private long circuitBreakerOpened;
+
+    @JsonProperty
+    private long rejectedRequests;
+
+    /**
+     * The final adaptive concurrency limit, if enabled.
+     */
+    @JsonProperty
+    private Integer concurrencyLimit;
+
+    @JsonProperty
+    private Integer peakQueueDepth;
+
+    public MetricsReport() {
+    }
+
+    public MetricsReport(Map<String, Long> phases, Map<String, LatencySummary> steps,
+                         List<OperationReport> operations, Map<String, Long> retries, long circuitBreakerOpened,
+                         long rejectedRequests, Integer concurrencyLimit, Integer peakQueueDepth) {
+        this.phases = phases;
+        this.steps = steps;
+        this.operations = operations;
+        this.retries = retries;
+        this.circuitBreakerOpened = circuitBreakerOpened;
+        this.rejectedRequests = rejectedRequests;
+        this.concurrencyLimit = concurrencyLimit;
+        this.peakQueueDepth = peakQueueDepth;
+    }
+
+    public Map<String, Long> getPhases() {
+        return phases;
+    }
+
+    public Map<String, LatencySummary> getSteps() {
+        return steps;
+    }
+
+    public List<OperationReport> getOperations() {
+        return operations;
+    }
+
+    public Map<String, Long> getRetries() {
+        return retries;
+    }
+
+    public long getCircuitBreakerOpened() {
+        return circuitBreakerOpened;
+    }
+
+    public long getRejectedRequests() {
+        return rejectedRequests;
+    }
+
+    public Integer getConcurrencyLimit() {
+        return concurrencyLimit;
+    }
+
+    public Integer getPeakQueueDepth() {
+        return peakQueueDepth;
+    }
+}
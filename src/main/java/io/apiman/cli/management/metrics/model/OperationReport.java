@@ -0,0 +1,80 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.metrics.model;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.Map;
+
+/**
+ * The calls made to a single Management API operation.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class OperationReport {
+    /**
+     * The API interface and method, such as <code>VersionAgnosticApi.fetchVersion</code>.
+     */
+    @JsonProperty
+    private String name;
+
+    @JsonProperty
+    private LatencySummary latency;
+
+    /**
+     * Latency, keyed by the final response status of each call, or the type of error if there was no response.
+     */
+    @JsonProperty
+    private Map<String, LatencySummary> statuses;
+
+    @JsonProperty
+    private long bytesSent;
+
+    @JsonProperty
+    private long bytesReceived;
+
+    public OperationReport() {
+    }
+
+    public OperationReport(String name, LatencySummary latency, Map<String, LatencySummary> statuses,
+                           long bytesSent, long bytesReceived) {
+        this.name = name;
+        this.latency = latency;
+        this.statuses = statuses;
+        this.bytesSent = bytesSent;
+        this.bytesReceived = bytesReceived;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public LatencySummary getLatency() {
+        return latency;
+    }
+
+    public Map<String, LatencySummary> getStatuses() {
+        return statuses;
+    }
+
+    public long getBytesSent() {
+        return bytesSent;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+}
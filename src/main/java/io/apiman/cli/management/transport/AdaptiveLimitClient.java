@@ -0,0 +1,62 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.transport;
+
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+
+/**
+ * Limits the number of requests in flight using an {@link AdaptiveLimiter}. Requests that fail, or receive a
+ * <code>429</code> or <code>5xx</code> response, cut the limit.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class AdaptiveLimitClient implements Client {
+    private static final int HTTP_TOO_MANY_REQUESTS = 429;
+
+    private final Client delegate;
+    private final AdaptiveLimiter limiter;
+
+    public AdaptiveLimitClient(Client delegate, AdaptiveLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        final long startNanos;
+        try {
+            startNanos = limiter.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to send request to: " + request.getUrl());
+        }
+
+        boolean overloaded = true;
+        try {
+            final Response response = delegate.execute(request);
+            overloaded = HTTP_TOO_MANY_REQUESTS == response.getStatus() || response.getStatus() >= 500;
+            return response;
+
+        } finally {
+            limiter.release(startNanos, overloaded);
+        }
+    }
+}
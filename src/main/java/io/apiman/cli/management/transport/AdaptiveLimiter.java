@@ -0,0 +1,194 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.transport;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Limits the number of requests in flight, adjusting the limit using additive increase/multiplicative
+ * decrease (AIMD).
+ * <p>
+ * The limit grows by one for each limit's worth of successful requests, provided the limit is being used and
+ * latency remains close to its long-term average. It is cut when a request fails, the server signals
+ * overload, or latency rises well above its average.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class AdaptiveLimiter {
+    private static final int MIN_LIMIT = 1;
+
+    /**
+     * The factor by which the limit is cut.
+     */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /**
+     * Latency above this multiple of the long-term average is treated as a sign of overload.
+     */
+    private static final double RTT_TOLERANCE = 2.0;
+
+    /**
+     * The weight of each sample in the long-term average latency.
+     */
+    private static final double RTT_SMOOTHING = 0.05;
+
+    private final int maxLimit;
+    private final ReentrantLock lock = new ReentrantLock(true);
+    private final Condition permitAvailable = lock.newCondition();
+
+    private volatile double limit;
+    private int inFlight;
+    private int queueDepth;
+    private int peakLimit;
+    private int peakQueueDepth;
+    private double averageRttNanos;
+
+    /**
+     * @param initialLimit the limit before any requests have completed
+     * @param maxLimit     the limit will not grow beyond this value
+     */
+    public AdaptiveLimiter(int initialLimit, int maxLimit) {
+        this.maxLimit = maxLimit;
+        this.limit = Math.max(MIN_LIMIT, Math.min(initialLimit, maxLimit));
+        this.peakLimit = (int) limit;
+    }
+
+    /**
+     * Wait until a request is permitted.
+     *
+     * @return the start time of the request, to be passed to {@link #release(long, boolean)}
+     * @throws InterruptedException if the thread is interrupted while waiting
+     */
+    public long acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            if (inFlight >= getLimit()) {
+                queueDepth++;
+                peakQueueDepth = Math.max(peakQueueDepth, queueDepth);
+                try {
+                    while (inFlight >= getLimit()) {
+                        permitAvailable.await();
+                    }
+                } finally {
+                    queueDepth--;
+                }
+            }
+            inFlight++;
+            return System.nanoTime();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Complete a request, and adjust the limit based on its outcome.
+     *
+     * @param startNanos the value returned by {@link #acquire()}
+     * @param overloaded whether the request failed in a way that indicates the server is overloaded
+     */
+    public void release(long startNanos, boolean overloaded) {
+        release(startNanos, System.nanoTime() - startNanos, overloaded);
+    }
+
+    /**
+     * @param startNanos the value returned by {@link #acquire()}
+     * @param rttNanos   the time taken by the request
+     * @param overloaded whether the request failed in a way that indicates the server is overloaded
+     */
+    void release(long startNanos, long rttNanos, boolean overloaded) {
+        lock.lock();
+        try {
+            final boolean limitInUse = inFlight * 2 >= limit;
+            inFlight--;
+
+            final boolean slow = averageRttNanos > 0 && rttNanos > averageRttNanos * RTT_TOLERANCE;
+            averageRttNanos = averageRttNanos > 0
+                    ? averageRttNanos + (rttNanos - averageRttNanos) * RTT_SMOOTHING
+                    : rttNanos;
+
+            if (overloaded || slow) {
+                limit = Math.max(MIN_LIMIT, limit * BACKOFF_RATIO);
+            } else if (limitInUse) {
+                limit = Math.min(maxLimit, limit + 1 / limit);
+                peakLimit = Math.max(peakLimit, getLimit());
+            }
+
+            permitAvailable.signalAll();
+
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the current limit on requests in flight
+     */
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    /**
+     * @return the number of requests in flight
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of requests waiting for a permit
+     */
+    public int getQueueDepth() {
+        lock.lock();
+        try {
+            return queueDepth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the largest number of requests that have waited for a permit at once
+     */
+    public int getPeakQueueDepth() {
+        lock.lock();
+        try {
+            return peakQueueDepth;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return a one line summary
+     */
+    public String describe() {
+        lock.lock();
+        try {
+            return String.format("Concurrency limit: %d (peak %d), peak queue depth %d, average latency %dms",
+                    getLimit(), peakLimit, peakQueueDepth, TimeUnit.NANOSECONDS.toMillis((long) averageRttNanos));
+        } finally {
+            lock.unlock();
+        }
+    }
+}
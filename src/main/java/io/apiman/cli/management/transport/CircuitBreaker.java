@@ -0,0 +1,73 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.transport;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Opens after a number of consecutive failures, rejecting requests until a cool-down period has elapsed.
+ * After that, requests are allowed again; a further failure reopens the breaker immediately, and a success
+ * closes it.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+class CircuitBreaker {
+    private final int failureThreshold;
+    private final long openMillis;
+    private final RetryMetrics metrics;
+    private final AtomicInteger consecutiveFailures = new AtomicInteger();
+    private volatile long openUntil;
+
+    /**
+     * @param failureThreshold the number of consecutive failures after which to open, or 0 to never open
+     * @param openMillis       the time for which to reject requests once open
+     * @param metrics          records the number of times the breaker opens
+     */
+    CircuitBreaker(int failureThreshold, long openMillis, RetryMetrics metrics) {
+        this.failureThreshold = failureThreshold;
+        this.openMillis = openMillis;
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param url the URL of the request
+     * @throws CircuitBreakerOpenException if the breaker is open
+     */
+    void checkAllowed(String url) throws CircuitBreakerOpenException {
+        final long remainingMillis = openUntil - System.currentTimeMillis();
+        if (remainingMillis > 0) {
+            metrics.recordRejected();
+            throw new CircuitBreakerOpenException(String.format(
+                    "Not sending request to %s - too many consecutive failures, retry in %dms", url, remainingMillis));
+        }
+    }
+
+    void recordSuccess() {
+        consecutiveFailures.set(0);
+    }
+
+    void recordFailure() {
+        if (failureThreshold <= 0) {
+            return;
+        }
+        if (consecutiveFailures.incrementAndGet() >= failureThreshold) {
+            // remain one failure from the threshold, so a failure after the cool-down reopens immediately
+            consecutiveFailures.set(failureThreshold - 1);
+            openUntil = System.currentTimeMillis() + openMillis;
+            metrics.recordCircuitOpened();
+        }
+    }
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.management.transport;
+
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedInput;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.URI;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Limits the number of requests in flight to each host, and so the number of connections a pooled client
+ * opens to it.
+ * <p>
+ * A request holds its permit until its response body has been read to the end or closed, so the connection is
+ * returned to the pool before another request to the same host is allowed to proceed. Bodies are streamed, not
+ * buffered, so large responses, such as API definitions, are not held in memory.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class HostLimitedClient implements Client {
+    private final Client delegate;
+    private final int maxRequestsPerHost;
+    private final Map<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+
+    public HostLimitedClient(Client delegate, int maxRequestsPerHost) {
+        this.delegate = delegate;
+        this.maxRequestsPerHost = maxRequestsPerHost;
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        final Semaphore permits = hostPermits.computeIfAbsent(getAuthority(request.getUrl()),
+                authority -> new Semaphore(maxRequestsPerHost, true));
+
+        try {
+            permits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a connection to: " + request.getUrl());
+        }
+
+        final Response response;
+        try {
+            response = delegate.execute(request);
+        } catch (IOException | RuntimeException e) {
+            permits.release();
+            throw e;
+        }
+
+        final TypedInput body = response.getBody();
+        if (null == body || 0 == body.length()) {
+            permits.release();
+            return response;
+        }
+
+        return new Response(response.getUrl(), response.getStatus(), response.getReason(), response.getHeaders(),
+                new PermitReleasingTypedInput(body, permits));
+    }
+
+    /**
+     * Releases the request's permit once its body has been read to the end or closed.
+     */
+    private static class PermitReleasingTypedInput implements TypedInput {
+        private final TypedInput delegate;
+        private final Semaphore permits;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        PermitReleasingTypedInput(TypedInput delegate, Semaphore permits) {
+            this.delegate = delegate;
+            this.permits = permits;
+        }
+
+        @Override
+        public String mimeType() {
+            return delegate.mimeType();
+        }
+
+        @Override
+        public long length() {
+            return delegate.length();
+        }
+
+        @Override
+        public InputStream in() throws IOException {
+            return new FilterInputStream(delegate.in()) {
+                @Override
+                public int read() throws IOException {
+                    final int b = super.read();
+                    if (b < 0) {
+                        release();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    final int read = super.read(b, off, len);
+                    if (read < 0) {
+                        release();
+                    }
+                    return read;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    try {
+                        super.close();
+                    } finally {
+                        release();
+                    }
+                }
+            };
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                permits.release();
+            }
+        }
+    }
+
+    private static String getAuthority(String url) {
+        final URI uri = URI.create(url);
+        return uri.getScheme() + "://" + uri.getAuthority();
+    }
+}
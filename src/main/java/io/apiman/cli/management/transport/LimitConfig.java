@@ -0,0 +1,58 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.transport;
+
+/**
+ * Configures the adaptive limit on the number of concurrent Management API requests.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class LimitConfig {
+    public static final int DEFAULT_INITIAL_LIMIT = 4;
+    public static final int DEFAULT_MAX_LIMIT = 64;
+
+    /**
+     * No limit is applied, other than by the number of threads making requests.
+     */
+    public static final LimitConfig DISABLED = new LimitConfig(false, DEFAULT_INITIAL_LIMIT, DEFAULT_MAX_LIMIT);
+
+    private final boolean enabled;
+    private final int initialLimit;
+    private final int maxLimit;
+
+    /**
+     * @param enabled      whether to limit concurrent requests
+     * @param initialLimit the limit before any requests have completed
+     * @param maxLimit     the limit will not grow beyond this value
+     */
+    public LimitConfig(boolean enabled, int initialLimit, int maxLimit) {
+        this.enabled = enabled;
+        this.initialLimit = initialLimit;
+        this.maxLimit = maxLimit;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+}
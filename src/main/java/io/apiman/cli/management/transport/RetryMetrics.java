@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.transport;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Counts the retries made by {@link RetryingClient}, and the activity of its circuit breaker.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class RetryMetrics {
+    private final Map<String, LongAdder> retriesByReason = new ConcurrentHashMap<>();
+    private final LongAdder circuitOpened = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    /**
+     * @param reason the reason for the retry, such as the response status or exception type
+     */
+    void recordRetry(String reason) {
+        retriesByReason.computeIfAbsent(reason, r -> new LongAdder()).increment();
+    }
+
+    void recordCircuitOpened() {
+        circuitOpened.increment();
+    }
+
+    void recordRejected() {
+        rejected.increment();
+    }
+
+    /**
+     * @return the total number of retries
+     */
+    public long getRetries() {
+        return retriesByReason.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    /**
+     * @return the number of retries, keyed by reason
+     */
+    public Map<String, Long> getRetriesByReason() {
+        return retriesByReason.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getKey, e -> e.getValue().sum(), (a, b) -> a, TreeMap::new));
+    }
+
+    /**
+     * @return the number of times the circuit breaker opened
+     */
+    public long getCircuitOpened() {
+        return circuitOpened.sum();
+    }
+
+    /**
+     * @return the number of requests rejected because the circuit breaker was open
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return <code>true</code> if any request was retried or rejected
+     */
+    public boolean hasActivity() {
+        return getRetries() > 0 || getCircuitOpened() > 0 || getRejected() > 0;
+    }
+
+    /**
+     * @return a one line summary
+     */
+    public String describe() {
+        return String.format("Retries: %d %s, circuit breaker opened %d times, %d requests rejected",
+                getRetries(), getRetriesByReason(), getCircuitOpened(), getRejected());
+    }
+}
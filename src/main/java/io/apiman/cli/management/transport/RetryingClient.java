@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.transport;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Closeables;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedInput;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ConnectException;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retries requests that fail with an I/O error or a transient server error, with exponential backoff and
+ * full jitter, honouring any <code>Retry-After</code> header sent by the server.
+ * <p>
+ * Idempotent requests are always retried. Other requests, such as <code>POST</code>s, are only retried
+ * when the server cannot have acted on them: the connection was refused, or the server responded that it
+ * was too busy.
+ * <p>
+ * A circuit breaker rejects requests without sending them once a number of consecutive requests have failed.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class RetryingClient implements Client {
+    private static final Logger LOGGER = LogManager.getLogger(RetryingClient.class);
+    private static final String HEADER_RETRY_AFTER = "Retry-After";
+
+    private static final Set<String> IDEMPOTENT_METHODS = ImmutableSet.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+
+    /**
+     * Responses indicating the request may succeed if repeated.
+     */
+    private static final Set<Integer> TRANSIENT_STATUSES = ImmutableSet.of(429, 502, 503, 504);
+
+    /**
+     * Responses indicating the request was not acted on, so it is safe to repeat a non-idempotent request.
+     */
+    private static final Set<Integer> NOT_PROCESSED_STATUSES = ImmutableSet.of(429, 503);
+
+    private final Client delegate;
+    private final RetryConfig config;
+    private final RetryMetrics metrics;
+    private final CircuitBreaker circuitBreaker;
+
+    public RetryingClient(Client delegate, RetryConfig config, RetryMetrics metrics) {
+        this.delegate = delegate;
+        this.config = config;
+        this.metrics = metrics;
+        this.circuitBreaker = new CircuitBreaker(config.getFailureThreshold(), config.getOpenMillis(), metrics);
+    }
+
+    @Override
+    public Response execute(Request request) throws IOException {
+        final boolean idempotent = IDEMPOTENT_METHODS.contains(request.getMethod());
+
+        for (int attempt = 0; ; attempt++) {
+            circuitBreaker.checkAllowed(request.getUrl());
+
+            final Response response;
+            try {
+                response = delegate.execute(request);
+
+            } catch (IOException e) {
+                circuitBreaker.recordFailure();
+
+                if (attempt >= config.getMaxRetries() || !(idempotent || e instanceof ConnectException)) {
+                    throw e;
+                }
+                retryAfter(request, attempt, e.getClass().getSimpleName(), null);
+                continue;
+            }
+
+            if (!TRANSIENT_STATUSES.contains(response.getStatus())) {
+                circuitBreaker.recordSuccess();
+                return response;
+            }
+
+            circuitBreaker.recordFailure();
+            if (attempt >= config.getMaxRetries() || !(idempotent || NOT_PROCESSED_STATUSES.contains(response.getStatus()))) {
+                return response;
+            }
+
+            discardBody(response);
+            retryAfter(request, attempt, "HTTP " + response.getStatus(), getHeader(response, HEADER_RETRY_AFTER));
+        }
+    }
+
+    /**
+     * Wait before retrying the request.
+     *
+     * @param request    the request
+     * @param attempt    the zero-based number of the attempt that failed
+     * @param reason     the reason for the retry
+     * @param retryAfter the value of the <code>Retry-After</code> response header, or <code>null</code>
+     * @throws InterruptedIOException if the thread is interrupted while waiting
+     */
+    private void retryAfter(Request request, int attempt, String reason, String retryAfter) throws InterruptedIOException {
+        final long delayMillis = Math.min(config.getMaxBackoffMillis(),
+                Math.max(computeBackoffMillis(attempt), parseRetryAfterMillis(retryAfter, System.currentTimeMillis())));
+
+        LOGGER.debug("Retrying {} {} after {} in {}ms (retry {} of {})", request.getMethod(), request.getUrl(),
+                reason, delayMillis, attempt + 1, config.getMaxRetries());
+
+        metrics.recordRetry(reason);
+
+        try {
+            Thread.sleep(delayMillis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting to retry: " + request.getUrl());
+        }
+    }
+
+    /**
+     * @param attempt the zero-based number of the attempt that failed
+     * @return a random delay up to the exponential backoff for the attempt
+     */
+    private long computeBackoffMillis(int attempt) {
+        final long ceiling = Math.min(config.getMaxBackoffMillis(),
+                config.getInitialBackoffMillis() << Math.min(attempt, 30));
+
+        return ceiling > 0 ? ThreadLocalRandom.current().nextLong(ceiling + 1) : 0;
+    }
+
+    /**
+     * @param retryAfter the value of the <code>Retry-After</code> header, either in seconds or an HTTP date
+     * @param nowMillis  the current time
+     * @return the delay requested by the server, or 0 if none was requested or it cannot be parsed
+     */
+    static long parseRetryAfterMillis(String retryAfter, long nowMillis) {
+        if (null == retryAfter || retryAfter.trim().isEmpty()) {
+            return 0;
+        }
+        try {
+            return Math.max(0, Long.parseLong(retryAfter.trim()) * 1000);
+
+        } catch (NumberFormatException e) {
+            try {
+                final ZonedDateTime date = ZonedDateTime.parse(retryAfter.trim(), DateTimeFormatter.RFC_1123_DATE_TIME);
+                return Math.max(0, date.toInstant().toEpochMilli() - nowMillis);
+
+            } catch (DateTimeParseException dtpe) {
+                LOGGER.trace("Ignoring invalid Retry-After header: {}", retryAfter);
+                return 0;
+            }
+        }
+    }
+
+    private static String getHeader(Response response, String name) {
+        return response.getHeaders().stream()
+                .filter(header -> name.equalsIgnoreCase(header.getName()))
+                .map(Header::getValue)
+                .findFirst()
+                .orElse(null);
+    }
+
+    /**
+     * Release the connection used by a response that will not be returned.
+     */
+    private static void discardBody(Response response) {
+        final TypedInput body = response.getBody();
+        if (null != body) {
+            LOGGER.trace("Discarding body of response from: {}", response.getUrl());
+            try {
+                Closeables.closeQuietly(body.in());
+            } catch (IOException e) {
+                LOGGER.trace("Error discarding response body", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.management.transport;
+
+/**
+ * Configures the HTTP transport used by Management API clients.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class TransportConfig {
+    public static final int DEFAULT_MAX_CONNECTIONS_PER_HOST = 5;
+    public static final int DEFAULT_KEEP_ALIVE_SECONDS = 300;
+
+    /**
+     * The JDK HTTP client, as used when no transport is configured.
+     */
+    public static final TransportConfig DEFAULT = new TransportConfig(TransportType.DEFAULT_TRANSPORT,
+            DEFAULT_MAX_CONNECTIONS_PER_HOST, DEFAULT_KEEP_ALIVE_SECONDS, false);
+
+    private final TransportType type;
+    private final int maxConnectionsPerHost;
+    private final int keepAliveSeconds;
+    private final boolean http2;
+    private final RetryConfig retryConfig;
+    private final LimitConfig limitConfig;
+
+    /**
+     * @param type                  the transport type
+     * @param maxConnectionsPerHost the maximum number of concurrent connections to each host
+     * @param keepAliveSeconds      the time for which idle connections are kept open
+     * @param http2                 whether to negotiate HTTP/2, where supported by the server
+     */
+    public TransportConfig(TransportType type, int maxConnectionsPerHost, int keepAliveSeconds, boolean http2) {
+        this(type, maxConnectionsPerHost, keepAliveSeconds, http2, RetryConfig.DEFAULT, LimitConfig.DISABLED);
+    }
+
+    /**
+     * @param type                  the transport type
+     * @param maxConnectionsPerHost the maximum number of concurrent connections to each host
+     * @param keepAliveSeconds      the time for which idle connections are kept open
+     * @param http2                 whether to negotiate HTTP/2, where supported by the server
+     * @param retryConfig           the retry and circuit breaker configuration
+     * @param limitConfig           the adaptive concurrency limit configuration
+     */
+    public TransportConfig(TransportType type, int maxConnectionsPerHost, int keepAliveSeconds, boolean http2,
+                           RetryConfig retryConfig, LimitConfig limitConfig) {
+        this.type = type;
+        this.maxConnectionsPerHost = maxConnectionsPerHost;
+        this.keepAliveSeconds = keepAliveSeconds;
+        this.http2 = http2;
+        this.retryConfig = retryConfig;
+        this.limitConfig = limitConfig;
+    }
+
+    public TransportType getType() {
+        return type;
+    }
+
+    public int getMaxConnectionsPerHost() {
+        return maxConnectionsPerHost;
+    }
+
+    public int getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public RetryConfig getRetryConfig() {
+        return retryConfig;
+    }
+
+    public LimitConfig getLimitConfig() {
+        return limitConfig;
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.management.transport;
+
+/**
+ * The supported HTTP transports for Management API clients.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public enum TransportType {
+    /**
+     * The JDK HTTP client, with its default keep-alive behaviour.
+     */
+    standard,
+
+    /**
+     * A connection pool shared by all clients, with optional HTTP/2 support.
+     */
+    pooled;
+
+    public static final TransportType DEFAULT_TRANSPORT = standard;
+}
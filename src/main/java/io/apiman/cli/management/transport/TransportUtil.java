@@ -0,0 +1,149 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.management.transport;
+
+import com.squareup.okhttp.ConnectionPool;
+import com.squareup.okhttp.OkHttpClient;
+import com.squareup.okhttp.Protocol;
+import io.apiman.cli.management.ManagementApiUtil;
+import io.apiman.cli.management.metrics.MeteredClient;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+import retrofit.client.Client;
+import retrofit.client.OkClient;
+import retrofit.client.UrlConnectionClient;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Configures the HTTP transport shared by all Management API clients.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class TransportUtil {
+    private static final Logger LOGGER = LogManager.getLogger(TransportUtil.class);
+
+    /**
+     * Match the timeouts Retrofit uses for its own OkHttp client.
+     */
+    private static final int CONNECT_TIMEOUT_SECONDS = 15;
+    private static final int READ_TIMEOUT_SECONDS = 20;
+
+    private static volatile TransportConfig config = TransportConfig.DEFAULT;
+    private static volatile RetryMetrics retryMetrics = new RetryMetrics();
+    private static volatile Optional<AdaptiveLimiter> limiter = Optional.empty();
+    private static volatile Client client = buildClient(TransportConfig.DEFAULT, retryMetrics, limiter);
+
+    /**
+     * Configure the transport used by Management API clients built after this call.
+     *
+     * @param transportConfig the transport configuration
+     */
+    public static synchronized void configure(TransportConfig transportConfig) {
+        LOGGER.debug("Using {} transport", transportConfig.getType());
+        retryMetrics = new RetryMetrics();
+        final LimitConfig limitConfig = transportConfig.getLimitConfig();
+        limiter = limitConfig.isEnabled()
+                ? Optional.of(new AdaptiveLimiter(limitConfig.getInitialLimit(), limitConfig.getMaxLimit()))
+                : Optional.empty();
+        client = buildClient(transportConfig, retryMetrics, limiter);
+        config = transportConfig;
+
+        // cached clients hold the replaced transport and its connection pool
+        ManagementApiUtil.clearClientCache();
+    }
+
+    /**
+     * @return the current transport configuration
+     */
+    public static TransportConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the shared client
+     */
+    public static Client getClient() {
+        return client;
+    }
+
+    /**
+     * @return the retries made by the shared client since it was configured
+     */
+    public static RetryMetrics getRetryMetrics() {
+        return retryMetrics;
+    }
+
+    /**
+     * @return the adaptive concurrency limiter used by the shared client, if enabled
+     */
+    public static Optional<AdaptiveLimiter> getLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Retries are outermost, so each attempt is subject to the concurrency limit, and no permit is held while
+     * waiting to retry. Each attempt is metered.
+     */
+    private static Client buildClient(TransportConfig transportConfig, RetryMetrics metrics,
+                                      Optional<AdaptiveLimiter> adaptiveLimiter) {
+        final Client httpClient = new MeteredClient(buildHttpClient(transportConfig));
+
+        final Client limitedClient = adaptiveLimiter
+                .<Client>map(l -> new AdaptiveLimitClient(httpClient, l))
+                .orElse(httpClient);
+
+        return new RetryingClient(limitedClient, transportConfig.getRetryConfig(), metrics);
+    }
+
+    private static Client buildHttpClient(TransportConfig transportConfig) {
+        switch (transportConfig.getType()) {
+            case pooled:
+                return new HostLimitedClient(new OkClient(buildOkHttpClient(transportConfig)),
+                        transportConfig.getMaxConnectionsPerHost());
+
+            default:
+                // explicitly chosen, as Retrofit would otherwise prefer OkHttp when it is on the classpath
+                return new UrlConnectionClient();
+        }
+    }
+
+    /**
+     * Build an OkHttp client with its own connection pool. The Management API is a single host, so the pool
+     * is sized to keep all of that host's connections alive between requests.
+     *
+     * @param transportConfig the transport configuration
+     * @return the OkHttp client
+     */
+    private static OkHttpClient buildOkHttpClient(TransportConfig transportConfig) {
+        final OkHttpClient okHttpClient = new OkHttpClient();
+        okHttpClient.setConnectTimeout(CONNECT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        okHttpClient.setReadTimeout(READ_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        okHttpClient.setConnectionPool(new ConnectionPool(transportConfig.getMaxConnectionsPerHost(),
+                TimeUnit.SECONDS.toMillis(transportConfig.getKeepAliveSeconds())));
+
+        // HTTP/2 is negotiated using ALPN, so falls back to HTTP/1.1 if either end does not support it
+        okHttpClient.setProtocols(transportConfig.isHttp2()
+                ? Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1)
+                : Collections.singletonList(Protocol.HTTP_1_1));
+
+        return okHttpClient;
+    }
+}
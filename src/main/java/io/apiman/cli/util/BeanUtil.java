@@ -16,8 +16,6 @@
 
 package io.apiman.cli.util;
 
-import org.apache.commons.lang3.text.StrSubstitutor;
-
 import java.util.Collection;
 import java.util.Map;
 import java.util.stream.Collectors;
@@ -60,9 +58,10 @@ public class BeanUtil {
      * @param original     the input String, containing placeholders in the form <code>Example ${placeholder} text.</code>
      * @param replacements the Map of placeholders and their values
      * @return the {@code original} string with {@code replacements}
+     * @see PlaceholderTemplate
      */
     public static String resolvePlaceholders(String original, Map<String, String> replacements) {
-        return StrSubstitutor.replace(original, replacements);
+        return PlaceholderTemplate.compile(original).render(PlaceholderResolver.of(replacements));
     }
 
     /**
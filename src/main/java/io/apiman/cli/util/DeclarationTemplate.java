@@ -0,0 +1,215 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.util;
+
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import io.apiman.cli.core.declarative.model.Declaration;
+import io.apiman.cli.core.declarative.model.SharedItems;
+import io.apiman.cli.exception.DeclarativeException;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * A declaration that has been parsed, but whose placeholders have not been resolved. It can be rendered
+ * with different properties, such as for each environment, without parsing the file again.
+ * <p>
+ * Placeholders are resolved from, in order of precedence:
+ * <ol>
+ * <li>the properties provided when rendering</li>
+ * <li>the shared properties in the declaration</li>
+ * <li>environment variables</li>
+ * <li>Java system properties</li>
+ * </ol>
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public final class DeclarationTemplate {
+    private static final Logger LOGGER = LogManager.getLogger(DeclarationTemplate.class);
+
+    private final ObjectMapper mapper;
+
+    /**
+     * The tokens of the declaration, with {@link PlaceholderValue}s in place of strings containing
+     * placeholders; <code>null</code> if the declaration is resolved as text.
+     */
+    private final TokenBuffer tokens;
+
+    /**
+     * The shared properties in the declaration.
+     */
+    private final Map<String, String> sharedProperties;
+
+    /**
+     * The text of a declaration that cannot be parsed until its placeholders are resolved; otherwise
+     * <code>null</code>.
+     */
+    private final PlaceholderTemplate text;
+
+    private DeclarationTemplate(ObjectMapper mapper, TokenBuffer tokens, Map<String, String> sharedProperties,
+                                PlaceholderTemplate text) {
+        this.mapper = mapper;
+        this.tokens = tokens;
+        this.sharedProperties = sharedProperties;
+        this.text = text;
+    }
+
+    /**
+     * @param mapper           the Mapper to bind the declaration with
+     * @param tokens           the tokens of the declaration
+     * @param sharedProperties the shared properties in the declaration
+     * @return the template
+     */
+    static DeclarationTemplate ofTokens(ObjectMapper mapper, TokenBuffer tokens, Map<String, String> sharedProperties) {
+        return new DeclarationTemplate(mapper, tokens, sharedProperties, null);
+    }
+
+    /**
+     * @param mapper the Mapper to parse the declaration with, once resolved
+     * @param text   the text of the declaration
+     * @return the template
+     */
+    static DeclarationTemplate ofText(ObjectMapper mapper, String text) {
+        return new DeclarationTemplate(mapper, null, Collections.emptyMap(), PlaceholderTemplate.compile(text));
+    }
+
+    /**
+     * Resolve the placeholders in the declaration, then build the Declaration.
+     *
+     * @param properties the property placeholders
+     * @return the Declaration
+     */
+    public Declaration render(Map<String, String> properties) {
+        try {
+            return null != tokens ? renderTokens(properties) : renderText(properties);
+        } catch (IOException e) {
+            throw new DeclarativeException(e);
+        }
+    }
+
+    private static PlaceholderResolver buildResolver(Map<String, String> properties,
+                                                     Map<String, String> sharedProperties) {
+        return PlaceholderResolver.of(properties)
+                .withFallback(sharedProperties)
+                .withFallback(PlaceholderResolver.ENVIRONMENT)
+                .withFallback(PlaceholderResolver.SYSTEM_PROPERTIES);
+    }
+
+    private Declaration renderTokens(Map<String, String> properties) throws IOException {
+        final PlaceholderResolver resolver = buildResolver(properties, sharedProperties);
+        final TokenBuffer resolved = new TokenBuffer(null, false);
+
+        try (JsonParser parser = tokens.asParser()) {
+            JsonToken token;
+            while (null != (token = parser.nextToken())) {
+                if (JsonToken.VALUE_EMBEDDED_OBJECT == token && parser.getEmbeddedObject() instanceof PlaceholderValue) {
+                    writeResolved(resolved, (PlaceholderValue) parser.getEmbeddedObject(), resolver);
+
+                } else if (JsonToken.FIELD_NAME == token && parser.getCurrentName().contains("${")) {
+                    resolved.writeFieldName(PlaceholderTemplate.compile(parser.getCurrentName()).render(resolver));
+
+                } else {
+                    resolved.copyCurrentEvent(parser);
+                }
+            }
+        }
+
+        try (JsonParser parser = resolved.asParser(mapper)) {
+            return mapper.readValue(parser, Declaration.class);
+        }
+    }
+
+    /**
+     * Write the resolved value. The type of a plain YAML scalar is inferred from its resolved text, so
+     * <code>ttl: ${ttl}</code> is a number if the property is a number.
+     */
+    private static void writeResolved(TokenBuffer resolved, PlaceholderValue value,
+                                      PlaceholderResolver resolver) throws IOException {
+
+        final String text = value.template.render(resolver);
+
+        if (value.plain && !text.equals(value.template.getText())) {
+            try (JsonParser scalarParser = MappingUtil.YAML_MAPPER.getFactory().createParser(text)) {
+                final JsonToken token = scalarParser.nextToken();
+                if (null == token) {
+                    resolved.writeNull();
+                    return;
+                }
+                if (token.isScalarValue() && JsonToken.VALUE_STRING != token) {
+                    final TokenBuffer scalar = new TokenBuffer(null, false);
+                    scalar.copyCurrentEvent(scalarParser);
+
+                    // only a single scalar is typed, anything more is a string
+                    if (null == scalarParser.nextToken()) {
+                        scalar.serialize(resolved);
+                        return;
+                    }
+                }
+            } catch (JsonParseException e) {
+                LOGGER.trace("Treating resolved value as a string: {}", text);
+            }
+        }
+
+        resolved.writeString(text);
+    }
+
+    /**
+     * Resolve the placeholders in the text, then parse it. If the declaration contains shared properties,
+     * it is resolved and parsed again with those properties.
+     */
+    private Declaration renderText(Map<String, String> properties) throws IOException {
+        final Declaration declaration = parseText(buildResolver(properties, Collections.emptyMap()));
+
+        // check for the presence of shared properties in the declaration
+        final Map<String, String> textSharedProperties = ofNullable(declaration.getShared())
+                .map(SharedItems::getProperties)
+                .orElse(Collections.emptyMap());
+
+        if (textSharedProperties.isEmpty()) {
+            return declaration;
+        }
+        return parseText(buildResolver(properties, textSharedProperties));
+    }
+
+    private Declaration parseText(PlaceholderResolver resolver) throws IOException {
+        final String resolved = text.render(resolver);
+        LOGGER.trace("Declaration file after resolving placeholders: {}", resolved);
+        return mapper.readValue(resolved, Declaration.class);
+    }
+
+    /**
+     * A string containing placeholders, with whether it was written as a plain YAML scalar.
+     */
+    static class PlaceholderValue {
+        private final PlaceholderTemplate template;
+        private final boolean plain;
+
+        PlaceholderValue(PlaceholderTemplate template, boolean plain) {
+            this.template = template;
+            this.plain = plain;
+        }
+    }
+}
@@ -16,26 +16,41 @@
 
 package io.apiman.cli.util;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonStreamContext;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
+import com.google.common.io.ByteSource;
+import com.google.common.io.ByteStreams;
 import com.google.common.io.CharStreams;
+import com.google.common.io.Files;
 import io.apiman.cli.core.declarative.model.Declaration;
-import io.apiman.cli.core.declarative.model.SharedItems;
 import io.apiman.cli.exception.DeclarativeException;
+import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 import retrofit.RetrofitError;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
-import java.nio.file.Files;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Path;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Supplier;
+import java.util.zip.GZIPInputStream;
 
 import static java.util.Optional.empty;
 import static java.util.Optional.ofNullable;
@@ -47,37 +62,83 @@ import static java.util.Optional.ofNullable;
  */
 public class DeclarativeUtil {
     private static final Logger LOGGER = LogManager.getLogger(DeclarativeUtil.class);
+    private static final String JSON_EXTENSION = ".json";
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final byte[] GZIP_MAGIC = {(byte) 0x1f, (byte) 0x8b};
+    private static final String PLACEHOLDER_PREFIX = "${";
+    private static final String SHARED_FIELD = "shared";
+    private static final String PROPERTIES_FIELD = "properties";
+    private static final JsonFactory SCALAR_STYLE_YAML_FACTORY = new ScalarStyleYamlFactory();
 
     /**
-     * Load the Declaration from the given Path, using the mapper provided.
+     * Load the Declaration from the given Path, using the mapper provided. The file may be gzip compressed.
      *
      * @param path       the Path to the declaration
      * @param mapper     the Mapper to use
      * @param properties property placeholders to resolve
      * @return the Declaration
+     * @see #compileDeclaration(Path, ObjectMapper)
      */
     public static Declaration loadDeclaration(Path path, ObjectMapper mapper, Map<String, String> properties) {
-        try (InputStream is = Files.newInputStream(path)) {
-            String fileContents = CharStreams.toString(new InputStreamReader(is));
-            LOGGER.trace("Declaration file raw: {}", fileContents);
+        return compileDeclaration(path, mapper).render(properties);
+    }
+
+    /**
+     * Parse the declaration at the given Path, using the mapper provided, without resolving its placeholders.
+     * The file may be gzip compressed. If the file contains more than one document, only the first is used.
+     *
+     * @param path   the Path to the declaration
+     * @param mapper the Mapper to use
+     * @return the template, to render with properties
+     * @see #compileDeclarations(ByteSource, ObjectMapper)
+     */
+    public static DeclarationTemplate compileDeclaration(Path path, ObjectMapper mapper) {
+        final List<DeclarationTemplate> templates = compileDeclarations(
+                Files.asByteSource(path.toFile()), mapper, false);
+
+        if (templates.isEmpty()) {
+            throw new DeclarativeException(String.format("No declaration found in: %s", path));
+        }
+        return templates.get(0);
+    }
 
-            Declaration declaration = loadDeclaration(mapper, fileContents, properties);
+    /**
+     * Parse each document in the declaration, using the mapper provided, without resolving its placeholders.
+     * The declaration may be gzip compressed.
+     * <p>
+     * The declaration is parsed once, into a token buffer per document, collecting any shared properties on
+     * the way. Placeholders are resolved token by token when a template is rendered. A placeholder written as
+     * a plain YAML scalar takes the type of its value, as if the value had been written in its place. Shared
+     * properties apply only to the document in which they are declared.
+     * <p>
+     * A declaration that cannot be parsed until its placeholders are replaced, such as JSON containing
+     * unquoted placeholders, is resolved as text instead. Only its first document is used.
+     *
+     * @param source the declaration
+     * @param mapper the Mapper to use
+     * @return a template for each document, to render with properties
+     */
+    public static List<DeclarationTemplate> compileDeclarations(ByteSource source, ObjectMapper mapper) {
+        return compileDeclarations(source, mapper, true);
+    }
 
-            // check for the presence of shared properties in the declaration
-            final Map<String, String> sharedProperties = ofNullable(declaration.getShared())
-                    .map(SharedItems::getProperties)
-                    .orElse(Collections.emptyMap());
+    private static List<DeclarationTemplate> compileDeclarations(ByteSource source, ObjectMapper mapper,
+                                                                 boolean allDocuments) {
+        try {
+            try {
+                return bufferDeclarations(source, mapper, allDocuments);
 
-            if (sharedProperties.size() > 0) {
-                LOGGER.trace("Resolving {} shared placeholders", sharedProperties.size());
-                final Map<String, String> mutableProperties = Maps.newHashMap(properties);
-                mutableProperties.putAll(sharedProperties);
+            } catch (JsonParseException e) {
+                LOGGER.debug("Unable to parse declaration before resolving placeholders - resolving as text", e);
+            }
 
-                // this is not very efficient, as it requires parsing the declaration twice
-                declaration = loadDeclaration(mapper, fileContents, mutableProperties);
+            final String fileContents;
+            try (InputStream is = openDeclaration(source)) {
+                fileContents = CharStreams.toString(new InputStreamReader(is, StandardCharsets.UTF_8));
             }
+            LOGGER.trace("Declaration file raw: {}", fileContents);
 
-            return declaration;
+            return Collections.singletonList(DeclarationTemplate.ofText(mapper, fileContents));
 
         } catch (IOException e) {
             throw new DeclarativeException(e);
@@ -85,20 +146,144 @@ public class DeclarativeUtil {
     }
 
     /**
-     * Parses the {@link Declaration} from the {@code fileContents}, using the specified {@code properties}.
+     * @param path the Path to the declaration
+     * @return the mapper for the format of the declaration, determined by its file extension
+     */
+    public static ObjectMapper getMapper(Path path) {
+        final String fileName = StringUtils.removeEnd(path.getFileName().toString(), GZIP_EXTENSION);
+        return fileName.endsWith(JSON_EXTENSION) ? MappingUtil.JSON_MAPPER : MappingUtil.YAML_MAPPER;
+    }
+
+    /**
+     * @param source the declaration, which may be gzip compressed
+     * @return the JSON mapper if the declaration starts with a JSON object or array, otherwise the YAML mapper
+     */
+    public static ObjectMapper detectMapper(ByteSource source) {
+        try (InputStream in = openDeclaration(source)) {
+            int next;
+            do {
+                next = in.read();
+            } while (Character.isWhitespace(next));
+
+            return '{' == next || '[' == next ? MappingUtil.JSON_MAPPER : MappingUtil.YAML_MAPPER;
+
+        } catch (IOException e) {
+            throw new DeclarativeException(e);
+        }
+    }
+
+    /**
+     * Open the declaration, decompressing it if it starts with the gzip header.
      *
-     * @param mapper     the Mapper to use
-     * @param unresolved the contents of the file
-     * @param properties the property placeholders
-     * @return the Declaration
+     * @param source the declaration
+     * @return the contents of the declaration
      * @throws IOException
      */
-    private static Declaration loadDeclaration(ObjectMapper mapper, String unresolved,
-                                               Map<String, String> properties) throws IOException {
+    private static InputStream openDeclaration(ByteSource source) throws IOException {
+        final InputStream in = new BufferedInputStream(source.openStream());
+        try {
+            in.mark(GZIP_MAGIC.length);
+            final byte[] header = new byte[GZIP_MAGIC.length];
+            final int read = ByteStreams.read(in, header, 0, header.length);
+            in.reset();
+
+            return read == header.length && Arrays.equals(GZIP_MAGIC, header) ? new GZIPInputStream(in) : in;
+
+        } catch (IOException e) {
+            in.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Parse the documents in the declaration into token buffers. Strings containing placeholders are
+     * buffered as {@link DeclarationTemplate.PlaceholderValue}s, to be resolved once all shared properties
+     * have been read.
+     *
+     * @param source       the declaration
+     * @param mapper       the Mapper whose format to parse
+     * @param allDocuments whether to parse every document, rather than only the first
+     * @return a template for each document
+     * @throws IOException
+     */
+    private static List<DeclarationTemplate> bufferDeclarations(ByteSource source, ObjectMapper mapper,
+                                                                boolean allDocuments) throws IOException {
+
+        final JsonFactory factory = mapper.getFactory() instanceof YAMLFactory
+                ? SCALAR_STYLE_YAML_FACTORY : mapper.getFactory();
+
+        final List<DeclarationTemplate> templates = Lists.newArrayList();
+
+        try (InputStream in = openDeclaration(source);
+             JsonParser parser = factory.createParser(in)) {
+
+            // no codec, so placeholder values are buffered as embedded objects, rather than serialised
+            TokenBuffer tokens = new TokenBuffer(null, false);
+            Map<String, String> sharedProperties = Maps.newHashMap();
+
+            int depth = 0;
+            JsonToken token;
+            while (null != (token = nextToken(parser))) {
+                if (JsonToken.VALUE_STRING == token && parser.getText().contains(PLACEHOLDER_PREFIX)) {
+                    tokens.writeObject(new DeclarationTemplate.PlaceholderValue(
+                            PlaceholderTemplate.compile(parser.getText()), isPlainScalar(parser)));
+                } else {
+                    tokens.copyCurrentEvent(parser);
+                }
+
+                if (token.isScalarValue() && isSharedProperty(parser.getParsingContext())) {
+                    sharedProperties.put(parser.getCurrentName(), parser.getText());
+                }
+
+                if (token.isStructStart()) {
+                    depth++;
+                } else if (token.isStructEnd()) {
+                    depth--;
+                }
+
+                if (0 == depth) {
+                    // end of a document
+                    if (JsonToken.VALUE_NULL != token) {
+                        templates.add(DeclarationTemplate.ofTokens(mapper, tokens, sharedProperties));
+                    }
+                    if (!allDocuments) {
+                        break;
+                    }
+                    tokens = new TokenBuffer(null, false);
+                    sharedProperties = Maps.newHashMap();
+                }
+            }
+        }
+
+        return templates;
+    }
+
+    /**
+     * The YAML parser returns <code>null</code> at the end of each document, so the end of the input is
+     * reached when it returns <code>null</code> twice in a row.
+     */
+    private static JsonToken nextToken(JsonParser parser) throws IOException {
+        final JsonToken token = parser.nextToken();
+        return null != token ? token : parser.nextToken();
+    }
+
+    private static boolean isPlainScalar(JsonParser parser) {
+        return parser instanceof ScalarStyleYamlFactory.ScalarStyleYamlParser
+                && ((ScalarStyleYamlFactory.ScalarStyleYamlParser) parser).isPlainScalar();
+    }
+
+    /**
+     * @param context the context of the current value
+     * @return <code>true</code> if the value is a member of <code>shared.properties</code>
+     */
+    private static boolean isSharedProperty(JsonStreamContext context) {
+        final JsonStreamContext properties = context.getParent();
+        final JsonStreamContext shared = null != properties ? properties.getParent() : null;
 
-        final String resolved = BeanUtil.resolvePlaceholders(unresolved, properties);
-        LOGGER.trace("Declaration file after resolving {} placeholders: {}", properties.size(), resolved);
-        return mapper.readValue(resolved, Declaration.class);
+        return context.inObject()
+                && null != shared && shared.inObject() && shared.getParent().inRoot()
+                && SHARED_FIELD.equals(shared.getCurrentName())
+                && PROPERTIES_FIELD.equals(properties.getCurrentName());
     }
 
     /**
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.MapperFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.DecimalNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Funnels;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedOutput;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Computes stable content hashes of POJOs.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class HashUtil {
+    /**
+     * POJO -> canonical JSON, with properties and map entries in key order and no whitespace.
+     */
+    public static final ObjectMapper CANONICAL_MAPPER;
+
+    static {
+        CANONICAL_MAPPER = new ObjectMapper();
+        CANONICAL_MAPPER.enable(MapperFeature.SORT_PROPERTIES_ALPHABETICALLY);
+        CANONICAL_MAPPER.enable(SerializationFeature.ORDER_MAP_ENTRIES_BY_KEYS);
+        CANONICAL_MAPPER.enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+    }
+
+    /**
+     * @param obj the Object to write
+     * @return the {@code obj} as canonical JSON
+     */
+    public static String writeCanonicalJson(Object obj) {
+        try {
+            return CANONICAL_MAPPER.writeValueAsString(obj);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException(String.format("Error writing value as canonical JSON: %s", obj), e);
+        }
+    }
+
+    /**
+     * Canonicalise a JSON document, so that documents differing only in whitespace, object key order or
+     * number formatting, such as <code>1</code>, <code>1.0</code> and <code>1e0</code>, are equal.
+     *
+     * @param json the JSON document
+     * @return the canonical JSON, or <code>null</code> if {@code json} is <code>null</code> or not valid JSON
+     */
+    public static String canonicaliseJson(String json) {
+        if (null == json) {
+            return null;
+        }
+        try {
+            return CANONICAL_MAPPER.writeValueAsString(canonicalise(CANONICAL_MAPPER.readTree(json)));
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * @param obj the Object to write
+     * @return the {@code obj} as canonical JSON, as per {@link #canonicaliseJson(String)}
+     */
+    public static String canonicaliseValue(Object obj) {
+        return canonicaliseJson(writeCanonicalJson(obj));
+    }
+
+    private static JsonNode canonicalise(JsonNode node) {
+        if (null == node) {
+            return null;
+
+        } else if (node.isObject()) {
+            final List<String> fieldNames = Lists.newArrayList(node.fieldNames());
+            Collections.sort(fieldNames);
+
+            final ObjectNode sorted = JsonNodeFactory.instance.objectNode();
+            fieldNames.forEach(fieldName -> sorted.set(fieldName, canonicalise(node.get(fieldName))));
+            return sorted;
+
+        } else if (node.isArray()) {
+            final ArrayNode elements = JsonNodeFactory.instance.arrayNode();
+            node.forEach(element -> elements.add(canonicalise(element)));
+            return elements;
+
+        } else if (node.isNumber()) {
+            BigDecimal number = node.decimalValue().stripTrailingZeros();
+            if (number.scale() < 0) {
+                number = number.setScale(0);
+            }
+            return DecimalNode.valueOf(number);
+        }
+        return node;
+    }
+
+    /**
+     * Compute the SHA-256 hash of the canonical JSON form of the given items. Equal content produces the
+     * same hash, regardless of property or map entry order.
+     *
+     * @param items the items to hash
+     * @return the hex encoded hash
+     */
+    public static String hash(Object... items) {
+        return Hashing.sha256().hashString(writeCanonicalJson(Arrays.asList(items)), StandardCharsets.UTF_8).toString();
+    }
+
+    /**
+     * Compute the SHA-256 hash of a request body, such as a file, as it is written, without holding it in memory.
+     *
+     * @param body the request body
+     * @return the hex encoded hash
+     * @throws IOException if the body cannot be read
+     */
+    public static String sha256(TypedOutput body) throws IOException {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        body.writeTo(Funnels.asOutputStream(hasher));
+        return hasher.hash().toString();
+    }
+
+    /**
+     * Compute the SHA-256 hash of a response body, as it is read.
+     *
+     * @param body the response body
+     * @return the hex encoded hash
+     * @throws IOException if the body cannot be read
+     */
+    public static String sha256(TypedInput body) throws IOException {
+        final Hasher hasher = Hashing.sha256().newHasher();
+        try (InputStream in = body.in()) {
+            ByteStreams.copy(in, Funnels.asOutputStream(hasher));
+        }
+        return hasher.hash().toString();
+    }
+}
@@ -18,6 +18,8 @@ package io.apiman.cli.util;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import com.google.common.collect.Lists;
@@ -34,6 +36,10 @@ import org.apache.logging.log4j.Logger;
 import org.modelmapper.ModelMapper;
 import org.modelmapper.config.Configuration;
 
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Shared POJO/JSON/YAML mapping utility methods.
  *
@@ -43,10 +49,15 @@ public class MappingUtil {
     private static final Logger LOGGER = LogManager.getLogger(MappingUtil.class);
 
     /**
-     * JSON -> POJO
+     * JSON -> POJO, writing indented output for display to the user.
      */
     public static final ObjectMapper JSON_MAPPER;
 
+    /**
+     * JSON -> POJO, writing compact output for requests to the Management API.
+     */
+    public static final ObjectMapper WIRE_MAPPER;
+
     /**
      * YAML -> POJO
      */
@@ -57,10 +68,18 @@ public class MappingUtil {
      */
     public static final ModelMapper MODEL_MAPPER;
 
+    /**
+     * Readers and writers are immutable and thread safe, so are built once per type.
+     */
+    private static final Map<Type, ObjectReader> WIRE_READERS = new ConcurrentHashMap<>();
+    private static final Map<Class<?>, ObjectWriter> WIRE_WRITERS = new ConcurrentHashMap<>();
+
     static {
         JSON_MAPPER = new ObjectMapper();
         JSON_MAPPER.enable(SerializationFeature.INDENT_OUTPUT);
 
+        WIRE_MAPPER = new ObjectMapper();
+
         YAML_MAPPER = new ObjectMapper(new YAMLFactory());
         YAML_MAPPER.enable(SerializationFeature.INDENT_OUTPUT);
 
@@ -81,6 +100,37 @@ public class MappingUtil {
         }
     }
 
+    /**
+     * @param obj the Object to write as a compact JSON String, for sending to the Management API
+     * @return the {@code obj} as JSON, or {@code null} if an error occurs
+     */
+    public static String safeWriteValueAsWireJson(Object obj) {
+        try {
+            return getWireWriter(null == obj ? Object.class : obj.getClass()).writeValueAsString(obj);
+
+        } catch (JsonProcessingException e) {
+            LOGGER.trace(String.format("Error writing value as JSON string: %s", obj), e);
+            return null;
+        }
+    }
+
+    /**
+     * @param type the type to read
+     * @return a reader of compact JSON for the given type
+     */
+    public static ObjectReader getWireReader(Type type) {
+        return WIRE_READERS.computeIfAbsent(type,
+                t -> WIRE_MAPPER.reader(WIRE_MAPPER.getTypeFactory().constructType(t)));
+    }
+
+    /**
+     * @param clazz the type to write
+     * @return a writer of compact JSON for the given type
+     */
+    public static ObjectWriter getWireWriter(Class<?> clazz) {
+        return WIRE_WRITERS.computeIfAbsent(clazz, WIRE_MAPPER::writerWithType);
+    }
+
     /**
      * Return an instance of {@code destinationClass} with a copy of identical fields to those found
      * in {@code source}.
@@ -130,7 +180,7 @@ public class MappingUtil {
         // PostConverter for DeclarativeGateway -> Gateway
         mapper.createTypeMap(DeclarativeGateway.class, Gateway.class).setPostConverter(context -> {
             final Gateway gateway = context.getDestination();
-            gateway.setConfiguration(safeWriteValueAsJson(context.getSource().getConfig()));
+            gateway.setConfiguration(safeWriteValueAsWireJson(context.getSource().getConfig()));
             return gateway;
         });
 
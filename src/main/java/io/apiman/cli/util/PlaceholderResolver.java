@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.util;
+
+import io.apiman.cli.exception.DeclarativeException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import static java.util.Optional.ofNullable;
+
+/**
+ * Resolves placeholder values from a chain of sources, the first of which to contain a name taking
+ * precedence. Values may themselves contain placeholders, which are resolved in turn.
+ * <p>
+ * Each name is resolved at most once, so nested placeholders and values shared between many templates are
+ * not looked up again. A value that refers back to itself, directly or indirectly, is reported as an error.
+ * <p>
+ * This class is thread safe.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PlaceholderResolver {
+    /**
+     * Resolves names from environment variables.
+     */
+    public static final Function<String, String> ENVIRONMENT = System::getenv;
+
+    /**
+     * Resolves names from Java system properties.
+     */
+    public static final Function<String, String> SYSTEM_PROPERTIES = System::getProperty;
+
+    private final List<Function<String, String>> sources;
+    private final ConcurrentMap<String, Optional<String>> resolved = new ConcurrentHashMap<>();
+
+    private PlaceholderResolver(List<Function<String, String>> sources) {
+        this.sources = sources;
+    }
+
+    /**
+     * @param properties the placeholders and their values
+     * @return a resolver using only the given properties
+     */
+    public static PlaceholderResolver of(Map<String, String> properties) {
+        return new PlaceholderResolver(Collections.singletonList(
+                ofNullable(properties).<Function<String, String>>map(p -> p::get).orElse(name -> null)));
+    }
+
+    /**
+     * @param source a source of values, used for names not resolved by the sources of this resolver
+     * @return a new resolver, with the additional source
+     */
+    public PlaceholderResolver withFallback(Function<String, String> source) {
+        final List<Function<String, String>> fallbackSources = new ArrayList<>(sources);
+        fallbackSources.add(source);
+        return new PlaceholderResolver(fallbackSources);
+    }
+
+    /**
+     * @param properties the placeholders and their values, used for names not resolved by the sources of
+     *                   this resolver
+     * @return a new resolver, with the additional properties
+     */
+    public PlaceholderResolver withFallback(Map<String, String> properties) {
+        return withFallback(properties::get);
+    }
+
+    /**
+     * @param name      the name of the placeholder
+     * @param resolving the names of the placeholders being resolved, outermost first
+     * @return the resolved value, or <code>null</code> if no source contains the name
+     */
+    String resolve(String name, Deque<String> resolving) {
+        if (name.isEmpty()) {
+            return null;
+        }
+
+        final Optional<String> cached = resolved.get(name);
+        if (null != cached) {
+            return cached.orElse(null);
+        }
+
+        if (resolving.contains(name)) {
+            final List<String> cycle = new ArrayList<>(resolving);
+            cycle.subList(0, cycle.indexOf(name)).clear();
+            cycle.add(name);
+            throw new DeclarativeException(String.format("Placeholder cycle: %s", String.join(" -> ", cycle)));
+        }
+
+        final String raw = lookup(name);
+        final String value;
+        if (null == raw) {
+            value = null;
+        } else {
+            resolving.addLast(name);
+            try {
+                value = PlaceholderTemplate.compile(raw).render(this, resolving);
+            } finally {
+                resolving.removeLast();
+            }
+        }
+
+        resolved.putIfAbsent(name, ofNullable(value));
+        return value;
+    }
+
+    private String lookup(String name) {
+        for (Function<String, String> source : sources) {
+            final String value = source.apply(name);
+            if (null != value) {
+                return value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,242 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.util;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * A String compiled into literal and placeholder segments, so it can be rendered repeatedly without being
+ * scanned again.
+ * <p>
+ * Placeholders take the form <code>${name}</code>, or <code>${name:-default}</code> to use a default value
+ * if the name cannot be resolved. Names and default values may themselves contain placeholders, such as
+ * <code>${endpoint.${env}}</code>. Placeholders that cannot be resolved, and have no default value, are
+ * left as they are. A placeholder is escaped by doubling the dollar sign: <code>$${name}</code> renders as
+ * <code>${name}</code>.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public final class PlaceholderTemplate {
+    private static final char ESCAPE = '$';
+    private static final String PREFIX = "${";
+    private static final char SUFFIX = '}';
+    private static final String DEFAULT_DELIMITER = ":-";
+
+    private final String text;
+    private final List<Segment> segments;
+    private final boolean placeholders;
+
+    private PlaceholderTemplate(String text, List<Segment> segments) {
+        this.text = text;
+        this.segments = segments;
+        this.placeholders = segments.stream().anyMatch(segment -> segment instanceof Placeholder);
+    }
+
+    /**
+     * Compile the given text.
+     *
+     * @param text the text, which may contain placeholders
+     * @return the template
+     */
+    public static PlaceholderTemplate compile(String text) {
+        if (!text.contains(PREFIX)) {
+            return new PlaceholderTemplate(text, Collections.singletonList(new Literal(text)));
+        }
+        return new PlaceholderTemplate(text, parse(text, 0, text.length()));
+    }
+
+    /**
+     * @return the text from which the template was compiled
+     */
+    public String getText() {
+        return text;
+    }
+
+    /**
+     * @return <code>true</code> if rendering the template may give something other than its text
+     */
+    public boolean hasPlaceholders() {
+        return placeholders;
+    }
+
+    /**
+     * Render the template, resolving its placeholders.
+     *
+     * @param resolver the source of placeholder values
+     * @return the rendered text
+     */
+    public String render(PlaceholderResolver resolver) {
+        if (1 == segments.size() && segments.get(0) instanceof Literal) {
+            return ((Literal) segments.get(0)).text;
+        }
+        return render(resolver, new ArrayDeque<>());
+    }
+
+    /**
+     * @param resolver  the source of placeholder values
+     * @param resolving the names of the placeholders being resolved, outermost first
+     * @return the rendered text
+     */
+    String render(PlaceholderResolver resolver, Deque<String> resolving) {
+        final StringBuilder sb = new StringBuilder(text.length());
+        segments.forEach(segment -> segment.render(sb, resolver, resolving));
+        return sb.toString();
+    }
+
+    /**
+     * Split the text between {@code start} and {@code end} into segments.
+     */
+    private static List<Segment> parse(String text, int start, int end) {
+        final List<Segment> segments = newArrayList();
+        final StringBuilder literal = new StringBuilder();
+
+        int position = start;
+        while (position < end) {
+            final int prefix = text.indexOf(PREFIX, position);
+            if (prefix < 0 || prefix >= end) {
+                literal.append(text, position, end);
+                break;
+            }
+
+            if (prefix > position && ESCAPE == text.charAt(prefix - 1)) {
+                // escaped - drop the escape character and keep the prefix as text
+                literal.append(text, position, prefix - 1).append(PREFIX);
+                position = prefix + PREFIX.length();
+                continue;
+            }
+
+            final int suffix = findSuffix(text, prefix + PREFIX.length(), end);
+            if (suffix < 0) {
+                // unterminated, so not a placeholder
+                literal.append(text, position, end);
+                break;
+            }
+
+            literal.append(text, position, prefix);
+            if (literal.length() > 0) {
+                segments.add(new Literal(literal.toString()));
+                literal.setLength(0);
+            }
+            segments.add(parsePlaceholder(text, prefix, suffix));
+            position = suffix + 1;
+        }
+
+        if (literal.length() > 0) {
+            segments.add(new Literal(literal.toString()));
+        }
+        return segments;
+    }
+
+    /**
+     * @return the index of the suffix closing a placeholder whose name starts at {@code start}, allowing for
+     * nested placeholders, or <code>-1</code> if it is unterminated
+     */
+    private static int findSuffix(String text, int start, int end) {
+        int depth = 0;
+        for (int i = start; i < end; i++) {
+            if (text.startsWith(PREFIX, i)) {
+                depth++;
+                i++;
+            } else if (SUFFIX == text.charAt(i)) {
+                if (0 == depth) {
+                    return i;
+                }
+                depth--;
+            }
+        }
+        return -1;
+    }
+
+    private static Placeholder parsePlaceholder(String text, int prefix, int suffix) {
+        final int nameStart = prefix + PREFIX.length();
+
+        // the default value starts at the first delimiter outside a nested placeholder
+        int delimiter = -1;
+        int depth = 0;
+        for (int i = nameStart; i < suffix && delimiter < 0; i++) {
+            if (text.startsWith(PREFIX, i)) {
+                depth++;
+                i++;
+            } else if (SUFFIX == text.charAt(i)) {
+                depth--;
+            } else if (0 == depth && text.startsWith(DEFAULT_DELIMITER, i)) {
+                delimiter = i;
+            }
+        }
+
+        final int nameEnd = delimiter < 0 ? suffix : delimiter;
+        final PlaceholderTemplate name = new PlaceholderTemplate(text.substring(nameStart, nameEnd),
+                parse(text, nameStart, nameEnd));
+
+        final PlaceholderTemplate defaultValue;
+        if (delimiter < 0) {
+            defaultValue = null;
+        } else {
+            final int defaultStart = delimiter + DEFAULT_DELIMITER.length();
+            defaultValue = new PlaceholderTemplate(text.substring(defaultStart, suffix),
+                    parse(text, defaultStart, suffix));
+        }
+
+        return new Placeholder(text.substring(prefix, suffix + 1), name, defaultValue);
+    }
+
+    private interface Segment {
+        void render(StringBuilder sb, PlaceholderResolver resolver, Deque<String> resolving);
+    }
+
+    private static class Literal implements Segment {
+        private final String text;
+
+        Literal(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void render(StringBuilder sb, PlaceholderResolver resolver, Deque<String> resolving) {
+            sb.append(text);
+        }
+    }
+
+    private static class Placeholder implements Segment {
+        private final String source;
+        private final PlaceholderTemplate name;
+        private final PlaceholderTemplate defaultValue;
+
+        Placeholder(String source, PlaceholderTemplate name, PlaceholderTemplate defaultValue) {
+            this.source = source;
+            this.name = name;
+            this.defaultValue = defaultValue;
+        }
+
+        @Override
+        public void render(StringBuilder sb, PlaceholderResolver resolver, Deque<String> resolving) {
+            final String value = resolver.resolve(name.render(resolver, resolving), resolving);
+            if (null != value) {
+                sb.append(value);
+            } else if (null != defaultValue) {
+                sb.append(defaultValue.render(resolver, resolving));
+            } else {
+                sb.append(source);
+            }
+        }
+    }
+}
@@ -0,0 +1,75 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.util;
+
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.ObjectCodec;
+import com.fasterxml.jackson.core.io.IOContext;
+import com.fasterxml.jackson.core.util.BufferRecycler;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import com.fasterxml.jackson.dataformat.yaml.YAMLParser;
+import com.fasterxml.jackson.dataformat.yaml.snakeyaml.events.ScalarEvent;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+
+/**
+ * Creates YAML parsers that report whether the current scalar was written plain (unquoted), in which case
+ * its type is inferred from its text, or quoted, in which case it is always a string.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+class ScalarStyleYamlFactory extends YAMLFactory {
+    @Override
+    protected YAMLParser _createParser(InputStream in, IOContext ctxt) throws IOException {
+        return new ScalarStyleYamlParser(ctxt, _getBufferRecycler(), _parserFeatures, _yamlParserFeatures,
+                _objectCodec, _createReader(in, null, ctxt));
+    }
+
+    @Override
+    protected YAMLParser _createParser(Reader r, IOContext ctxt) throws IOException {
+        return new ScalarStyleYamlParser(ctxt, _getBufferRecycler(), _parserFeatures, _yamlParserFeatures,
+                _objectCodec, r);
+    }
+
+    /**
+     * A YAML parser that records the style of the last scalar it read.
+     */
+    static class ScalarStyleYamlParser extends YAMLParser {
+        private boolean plainScalar;
+
+        ScalarStyleYamlParser(IOContext ctxt, BufferRecycler br, int parserFeatures, int formatFeatures,
+                              ObjectCodec codec, Reader reader) {
+            super(ctxt, br, parserFeatures, formatFeatures, codec, reader);
+        }
+
+        @Override
+        protected JsonToken _decodeScalar(ScalarEvent scalar) {
+            // an untagged plain scalar is the only kind whose type is inferred from its text
+            plainScalar = null == scalar.getTag() && scalar.getImplicit().canOmitTagInPlainScalar();
+            return super._decodeScalar(scalar);
+        }
+
+        /**
+         * @return <code>true</code> if the current token is an untagged, unquoted scalar
+         */
+        boolean isPlainScalar() {
+            return plainScalar;
+        }
+    }
+}
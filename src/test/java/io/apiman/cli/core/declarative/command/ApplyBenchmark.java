@@ -0,0 +1,276 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.command;
+
+import io.apiman.cli.core.common.model.ManagementApiVersion;
+import io.apiman.cli.management.metrics.MetricsUtil;
+import io.apiman.cli.management.metrics.model.LatencySummary;
+import io.apiman.cli.management.transport.TransportConfig;
+import io.apiman.cli.management.transport.TransportType;
+import io.apiman.cli.management.transport.TransportUtil;
+import io.apiman.cli.support.DeclarationGenerator;
+import io.apiman.cli.support.ManagementApiStub;
+import io.apiman.cli.util.MappingUtil;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * Measures how the apply command scales with the size of a declaration, the number of items applied
+ * concurrently and the latency of the server, against a {@link ManagementApiStub}.
+ * <p>
+ * Each combination of parameters is applied twice: cold, to an empty server, then warm, with nothing changed.
+ * Each run reports the API versions applied per second, the requests made per API version, the 99th
+ * percentile latency of applying a single API version, and the peak heap used, which includes the stub's state.
+ * <p>
+ * Usage: <code>ApplyBenchmark [name=value...]</code>, where lists are comma separated:
+ * <ul>
+ * <li><code>apis</code> - numbers of APIs in the declaration (default <code>100,1000</code>)</li>
+ * <li><code>versionsPerApi</code> - numbers of versions of each API (default <code>2</code>)</li>
+ * <li><code>policiesPerApi</code> - numbers of policies of each API version (default <code>1,5</code>)</li>
+ * <li><code>parallelism</code> - numbers of items applied concurrently (default <code>1,8</code>)</li>
+ * <li><code>latencyMillis</code> - server latencies (default <code>0,5</code>)</li>
+ * <li><code>jitterMillis</code> - maximum random latency added to each response (default <code>0</code>)</li>
+ * <li><code>prefetch</code> - whether to load the server state up front (default <code>false</code>)</li>
+ * <li><code>format</code> - <code>csv</code> or <code>json</code> (default <code>csv</code>)</li>
+ * <li><code>output</code> - the file to write results to (default standard output)</li>
+ * </ul>
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ApplyBenchmark {
+    private static final int WARM_UP_APIS = 100;
+    private static final long HEAP_SAMPLE_MILLIS = 10;
+    private static final double BYTES_PER_MB = 1024 * 1024;
+
+    public static void main(String... args) throws Exception {
+        final Map<String, String> params = parseArgs(args);
+        final List<Integer> apiCounts = parseInts(params.getOrDefault("apis", "100,1000"));
+        final List<Integer> versionCounts = parseInts(params.getOrDefault("versionsPerApi", "2"));
+        final List<Integer> policyCounts = parseInts(params.getOrDefault("policiesPerApi", "1,5"));
+        final List<Integer> parallelisms = parseInts(params.getOrDefault("parallelism", "1,8"));
+        final List<Integer> latencies = parseInts(params.getOrDefault("latencyMillis", "0,5"));
+        final int jitterMillis = Integer.parseInt(params.getOrDefault("jitterMillis", "0"));
+        final List<Boolean> prefetches = Arrays.stream(params.getOrDefault("prefetch", "false").split(","))
+                .map(Boolean::parseBoolean)
+                .collect(Collectors.toList());
+        final String format = params.getOrDefault("format", "csv");
+
+        Configurator.setRootLevel(Level.WARN);
+
+        final List<Map<String, Object>> results = newArrayList();
+        try (ManagementApiStub stub = new ManagementApiStub()) {
+            warmUp(stub);
+
+            for (int apiCount : apiCounts) {
+                for (int versionCount : versionCounts) {
+                    for (int policyCount : policyCounts) {
+                        final DeclarationGenerator generator = new DeclarationGenerator()
+                                .withApis(apiCount)
+                                .withVersions(versionCount)
+                                .withPolicies(policyCount);
+
+                        final Path declaration = generator.write(".yml");
+                        try {
+                            for (int parallelism : parallelisms) {
+                                for (int latency : latencies) {
+                                    for (boolean prefetch : prefetches) {
+                                        stub.reset();
+                                        stub.withDefaultBehaviour(new ManagementApiStub.Behaviour(latency, jitterMillis, 0));
+
+                                        final Map<String, Object> runParams = new LinkedHashMap<>();
+                                        runParams.put("apis", apiCount);
+                                        runParams.put("versionsPerApi", versionCount);
+                                        runParams.put("policiesPerApi", policyCount);
+                                        runParams.put("parallelism", parallelism);
+                                        runParams.put("latencyMillis", latency);
+                                        runParams.put("jitterMillis", jitterMillis);
+                                        runParams.put("prefetch", prefetch);
+
+                                        for (String run : Arrays.asList("cold", "warm")) {
+                                            final Map<String, Object> result = new LinkedHashMap<>(runParams);
+                                            result.put("run", run);
+                                            result.putAll(measure(stub, declaration, generator.getApiVersionCount(),
+                                                    parallelism, prefetch));
+
+                                            System.err.println(result);
+                                            results.add(result);
+                                        }
+                                    }
+                                }
+                            }
+                        } finally {
+                            Files.deleteIfExists(declaration);
+                        }
+                    }
+                }
+            }
+        } finally {
+            TransportUtil.configure(TransportConfig.DEFAULT);
+        }
+
+        final String rendered = "json".equals(format)
+                ? MappingUtil.JSON_MAPPER.writeValueAsString(results)
+                : renderCsv(results);
+
+        if (params.containsKey("output")) {
+            Files.write(Paths.get(params.get("output")), rendered.getBytes());
+        } else {
+            System.out.println(rendered);
+        }
+    }
+
+    /**
+     * Apply a small declaration, untimed, so the first measured run is not slowed by class loading and
+     * compilation.
+     */
+    private static void warmUp(ManagementApiStub stub) throws Exception {
+        final Path declaration = new DeclarationGenerator().withApis(WARM_UP_APIS).write(".yml");
+        try {
+            measure(stub, declaration, WARM_UP_APIS, 1, false);
+            measure(stub, declaration, WARM_UP_APIS, 1, false);
+        } finally {
+            Files.deleteIfExists(declaration);
+        }
+    }
+
+    /**
+     * Apply the declaration once, measuring the run.
+     */
+    private static Map<String, Object> measure(ManagementApiStub stub, Path declaration, int apiVersionCount,
+                                               int parallelism, boolean prefetch) throws Exception {
+
+        // connections are limited per host, so allow one for each item applied concurrently
+        TransportUtil.configure(new TransportConfig(TransportType.pooled, parallelism,
+                TransportConfig.DEFAULT_KEEP_ALIVE_SECONDS, false));
+        MetricsUtil.reset();
+        stub.resetCounters();
+
+        final ApplyCommand command = new ApplyCommand();
+        command.setDeclarationFile(declaration);
+        command.setServerAddress(stub.getAddress());
+        command.setServerVersion(ManagementApiVersion.v12x);
+        command.setParallelism(parallelism);
+        command.setPrefetch(prefetch);
+
+        System.gc();
+        final HeapSampler heapSampler = new HeapSampler();
+
+        final long startNanos = System.nanoTime();
+        try {
+            command.applyDeclaration();
+        } finally {
+            heapSampler.stop();
+        }
+        final long elapsedNanos = System.nanoTime() - startNanos;
+
+        final LatencySummary stepLatency = MetricsUtil.buildReport().getSteps().get("api");
+
+        final Map<String, Object> result = new LinkedHashMap<>();
+        result.put("elapsedMillis", TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+        result.put("apisPerSecond", round(apiVersionCount / (elapsedNanos / 1e9)));
+        result.put("requests", stub.getRequests());
+        result.put("requestsPerApi", round((double) stub.getRequests() / apiVersionCount));
+        result.put("peakInFlight", stub.getPeakInFlight());
+        result.put("p99StepMillis", null != stepLatency ? stepLatency.getP99() : 0);
+        result.put("peakHeapMb", round(heapSampler.getPeakBytes() / BYTES_PER_MB));
+        return result;
+    }
+
+    private static Map<String, String> parseArgs(String... args) {
+        final Map<String, String> params = new LinkedHashMap<>();
+        for (String arg : args) {
+            final int separator = arg.indexOf('=');
+            if (separator < 1) {
+                throw new IllegalArgumentException("Expected name=value: " + arg);
+            }
+            params.put(arg.substring(0, separator), arg.substring(separator + 1));
+        }
+        return params;
+    }
+
+    private static List<Integer> parseInts(String values) {
+        return Arrays.stream(values.split(","))
+                .map(String::trim)
+                .map(Integer::valueOf)
+                .collect(Collectors.toList());
+    }
+
+    private static double round(double value) {
+        return Math.round(value * 100) / 100.0;
+    }
+
+    private static String renderCsv(List<Map<String, Object>> results) {
+        if (results.isEmpty()) {
+            return "";
+        }
+
+        final StringBuilder sb = new StringBuilder();
+        sb.append(String.join(",", results.get(0).keySet())).append(System.lineSeparator());
+        results.forEach(result -> sb.append(result.values().stream()
+                .map(String::valueOf)
+                .collect(Collectors.joining(","))).append(System.lineSeparator()));
+
+        return sb.toString();
+    }
+
+    /**
+     * Samples the heap in use until stopped, keeping the largest value seen.
+     */
+    private static class HeapSampler {
+        private final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        private final AtomicLong peakBytes = new AtomicLong();
+        private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            final Thread thread = new Thread(r, "heap-sampler");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        HeapSampler() {
+            executor.scheduleAtFixedRate(this::sample, 0, HEAP_SAMPLE_MILLIS, TimeUnit.MILLISECONDS);
+        }
+
+        private void sample() {
+            peakBytes.accumulateAndGet(memory.getHeapMemoryUsage().getUsed(), Math::max);
+        }
+
+        void stop() {
+            executor.shutdownNow();
+            sample();
+        }
+
+        long getPeakBytes() {
+            return peakBytes.get();
+        }
+    }
+}
@@ -0,0 +1,650 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.command;
+
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.apiman.cli.core.common.model.ManagementApiVersion;
+import io.apiman.cli.core.declarative.plan.PlanningRemoteState;
+import io.apiman.cli.exception.CommandException;
+import io.apiman.cli.management.transport.LimitConfig;
+import io.apiman.cli.management.transport.RetryConfig;
+import io.apiman.cli.management.transport.TransportConfig;
+import io.apiman.cli.management.transport.TransportType;
+import io.apiman.cli.management.transport.TransportUtil;
+import io.apiman.cli.support.DeclarationGenerator;
+import io.apiman.cli.support.ManagementApiStub;
+import io.apiman.cli.support.ManagementApiStub.Behaviour;
+import io.apiman.cli.support.ManagementApiStub.Endpoint;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link ApplyCommand}, against a {@link ManagementApiStub}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ApplyCommandTest {
+    private ManagementApiStub stub;
+
+    @Before
+    public void setUp() throws Exception {
+        stub = new ManagementApiStub();
+
+        // retry quickly, so injected errors do not slow the tests down
+        TransportUtil.configure(new TransportConfig(TransportType.pooled, 8,
+                TransportConfig.DEFAULT_KEEP_ALIVE_SECONDS, false,
+                new RetryConfig(2, 1, 5, RetryConfig.DEFAULT_FAILURE_THRESHOLD, RetryConfig.DEFAULT_OPEN_MILLIS),
+                LimitConfig.DISABLED));
+    }
+
+    @After
+    public void tearDown() {
+        stub.close();
+        TransportUtil.configure(TransportConfig.DEFAULT);
+    }
+
+    /**
+     * Expect that applying a declaration to an empty server creates and publishes each item.
+     */
+    @Test
+    public void testApply_Cold() throws Exception {
+        // test
+        buildCommand(getResource("/simple-full.yml"), ManagementApiVersion.v12x).applyDeclaration();
+
+        // assertions
+        assertEquals(1, stub.getGateways().size());
+        assertEquals(1, stub.getPlugins().size());
+        assertEquals(1, stub.getOrgs().size());
+        assertEquals(1, stub.getApis().size());
+        assertEquals("Published", stub.getApiVersionStatus("test", "example", "1.0"));
+
+        final List<ObjectNode> policies = stub.getPolicies("test", "example", "1.0");
+        assertNotNull(policies);
+        assertEquals(1, policies.size());
+        assertEquals("CachingPolicy", policies.get(0).get("policyDefinitionId").asText());
+
+        assertEquals(1, stub.getRequests(Endpoint.ACTION));
+        assertEquals(0, stub.getInjectedErrors());
+    }
+
+    /**
+     * Expect that reapplying an unchanged declaration creates nothing further, leaves the API configuration
+     * and policy configuration, which are unchanged, alone, and does not republish the API.
+     */
+    @Test
+    public void testApply_Warm() throws Exception {
+        // test data
+        final Path declaration = getResource("/simple-full.yml");
+        buildCommand(declaration, ManagementApiVersion.v12x).applyDeclaration();
+        stub.resetCounters();
+
+        // test
+        buildCommand(declaration, ManagementApiVersion.v12x).applyDeclaration();
+
+        // assertions
+        assertEquals(0, stub.getRequests(Endpoint.GATEWAY_CREATE));
+        assertEquals(0, stub.getRequests(Endpoint.PLUGIN_CREATE));
+        assertEquals(0, stub.getRequests(Endpoint.ORG_CREATE));
+        assertEquals(0, stub.getRequests(Endpoint.API_CREATE));
+        assertEquals(0, stub.getRequests(Endpoint.API_VERSION_CREATE));
+        assertEquals(0, stub.getRequests(Endpoint.API_VERSION_CONFIGURE));
+        assertEquals(0, stub.getRequests(Endpoint.POLICY_ADD));
+        assertEquals(1, stub.getRequests(Endpoint.POLICY_FETCH));
+        assertEquals(0, stub.getRequests(Endpoint.POLICY_CONFIGURE));
+        assertEquals(0, stub.getRequests(Endpoint.ACTION));
+        assertEquals(1, stub.getPolicies("test", "example", "1.0").size());
+    }
+
+    /**
+     * Expect that an unchanged API is republished when forced.
+     */
+    @Test
+    public void testApply_ForceRepublish() throws Exception {
+        // test data
+        final Path declaration = getResource("/simple-full.yml");
+        buildCommand(declaration, ManagementApiVersion.v12x).applyDeclaration();
+        stub.resetCounters();
+
+        final ApplyCommand command = buildCommand(declaration, ManagementApiVersion.v12x);
+        command.setForceRepublish(true);
+
+        // test
+        command.applyDeclaration();
+
+        // assertions
+        assertEquals(0, stub.getRequests(Endpoint.API_VERSION_CONFIGURE));
+        assertEquals(1, stub.getRequests(Endpoint.ACTION));
+    }
+
+    /**
+     * Expect that an existing policy is reconfigured when its configuration changes.
+     */
+    @Test
+    public void testApply_PolicyChanged() throws Exception {
+        // test data
+        final Path directory = Files.createTempDirectory("declarations");
+        final String declaration = new String(Files.readAllBytes(getResource("/simple-full.yml")), StandardCharsets.UTF_8);
+        final Path changed = directory.resolve("changed.yml");
+        Files.write(changed, declaration.replace("ttl: 60", "ttl: 120").getBytes(StandardCharsets.UTF_8));
+
+        buildCommand(getResource("/simple-full.yml"), ManagementApiVersion.v12x).applyDeclaration();
+        stub.resetCounters();
+
+        try {
+            // test
+            buildCommand(changed, ManagementApiVersion.v12x).applyDeclaration();
+
+            // assertions
+            assertEquals(1, stub.getRequests(Endpoint.POLICY_CONFIGURE));
+            assertEquals(1, stub.getRequests(Endpoint.ACTION));
+            assertEquals("{\"ttl\":120}",
+                    stub.getPolicies("test", "example", "1.0").get(0).path("configuration").asText());
+
+        } finally {
+            Files.deleteIfExists(changed);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Expect that policies on the server are put into their declared order with a single request, and that a
+     * chain already in order is left alone.
+     */
+    @Test
+    public void testApply_PolicyOrder() throws Exception {
+        // test data
+        final Path directory = Files.createTempDirectory("declarations");
+        final String declaration = new String(Files.readAllBytes(getResource("/simple-full.yml")), StandardCharsets.UTF_8);
+        final Path original = directory.resolve("original.yml");
+        final Path reordered = directory.resolve("reordered.yml");
+        Files.write(original, declaration.replace("policies:\n",
+                "policies:\n" + buildPolicy("RateLimitingPolicy") + buildPolicy("IPWhitelistPolicy"))
+                .getBytes(StandardCharsets.UTF_8));
+        Files.write(reordered, declaration.replace("policies:\n",
+                "policies:\n" + buildPolicy("IPWhitelistPolicy") + buildPolicy("RateLimitingPolicy"))
+                .getBytes(StandardCharsets.UTF_8));
+
+        buildCommand(original, ManagementApiVersion.v12x).applyDeclaration();
+        assertEquals(0, stub.getRequests(Endpoint.POLICY_REORDER));
+        stub.resetCounters();
+
+        try {
+            // test
+            buildCommand(reordered, ManagementApiVersion.v12x).applyDeclaration();
+
+            // assertions
+            assertEquals(1, stub.getRequests(Endpoint.POLICY_REORDER));
+            assertEquals(0, stub.getRequests(Endpoint.POLICY_ADD));
+            assertEquals(1, stub.getRequests(Endpoint.ACTION));
+            assertEquals(Arrays.asList("IPWhitelistPolicy", "RateLimitingPolicy", "CachingPolicy"),
+                    stub.getPolicies("test", "example", "1.0").stream()
+                            .map(policy -> policy.path("policyDefinitionId").asText())
+                            .collect(Collectors.toList()));
+
+        } finally {
+            Files.deleteIfExists(original);
+            Files.deleteIfExists(reordered);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Expect that policies, published API versions and gateways that are no longer declared are removed,
+     * and that the API is republished.
+     */
+    @Test
+    public void testApply_Prune() throws Exception {
+        // test data
+        final Path directory = Files.createTempDirectory("declarations");
+        final Path stale = writeStaleDeclaration(directory);
+        buildCommand(stale, ManagementApiVersion.v12x).applyDeclaration();
+        stub.resetCounters();
+
+        final ApplyCommand command = buildCommand(getResource("/simple-full.yml"), ManagementApiVersion.v12x);
+        command.setPrune(true);
+        command.setPruneSystem(true);
+
+        try {
+            // test
+            command.applyDeclaration();
+
+            // assertions
+            assertEquals(2, stub.getRequests(Endpoint.POLICY_DELETE));
+            assertEquals(1, stub.getRequests(Endpoint.GATEWAY_DELETE));
+            assertEquals(0, stub.getRequests(Endpoint.PLUGIN_DELETE));
+            assertEquals(2, stub.getRequests(Endpoint.ACTION));
+            assertEquals(1, stub.getPolicies("test", "example", "1.0").size());
+            assertEquals("Retired", stub.getApiVersionStatus("test", "example", "0.9"));
+            assertEquals("Published", stub.getApiVersionStatus("test", "example", "1.0"));
+            assertEquals(1, stub.getGateways().size());
+
+        } finally {
+            Files.deleteIfExists(stale);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Expect that nothing is removed if more items would be removed than permitted.
+     */
+    @Test
+    public void testApply_PruneMaxDeletions() throws Exception {
+        // test data
+        final Path directory = Files.createTempDirectory("declarations");
+        final Path stale = writeStaleDeclaration(directory);
+        buildCommand(stale, ManagementApiVersion.v12x).applyDeclaration();
+        stub.resetCounters();
+
+        final ApplyCommand command = buildCommand(getResource("/simple-full.yml"), ManagementApiVersion.v12x);
+        command.setPrune(true);
+        command.setMaxDeletions(2);
+
+        try {
+            // test
+            command.applyDeclaration();
+            fail("Expected a CommandException");
+
+        } catch (CommandException e) {
+            // assertions
+            assertEquals("Pruning would remove 3 items, more than the maximum of 2 - nothing was removed",
+                    e.getCause().getMessage());
+            assertEquals(0, stub.getRequests(Endpoint.POLICY_DELETE));
+            assertEquals(3, stub.getPolicies("test", "example", "1.0").size());
+            assertEquals("Published", stub.getApiVersionStatus("test", "example", "0.9"));
+
+        } finally {
+            Files.deleteIfExists(stale);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Expect that the 1.1.x paths are served from the same state.
+     */
+    @Test
+    public void testApply_Version11x() throws Exception {
+        // test
+        buildCommand(getResource("/simple-full.yml"), ManagementApiVersion.v11x).applyDeclaration();
+
+        // assertions
+        assertEquals("Published", stub.getApiVersionStatus("test", "example", "1.0"));
+        assertEquals(1, stub.getPolicies("test", "example", "1.0").size());
+    }
+
+    /**
+     * Expect that latency is applied per endpoint, and that APIs are applied concurrently.
+     */
+    @Test
+    public void testApply_Latency() throws Exception {
+        // test data
+        final DeclarationGenerator generator = new DeclarationGenerator().withApis(8).withPolicies(2);
+        final Path declaration = generator.write(".yml");
+        stub.withBehaviour(Endpoint.API_VERSION_CONFIGURE, new Behaviour(50, 10, 0));
+
+        try {
+            final ApplyCommand command = buildCommand(declaration, ManagementApiVersion.v12x);
+            command.setParallelism(4);
+
+            // test
+            command.applyDeclaration();
+
+            // assertions
+            assertEquals(generator.getApiVersionCount(), stub.getApis().size());
+            assertEquals(8, stub.getRequests(Endpoint.API_VERSION_CONFIGURE));
+            assertTrue("Expected concurrent requests", stub.getPeakInFlight() > 1);
+
+        } finally {
+            Files.deleteIfExists(declaration);
+        }
+    }
+
+    /**
+     * Expect that injected errors are retried, then fail the apply.
+     */
+    @Test
+    public void testApply_InjectedErrors() throws Exception {
+        // test data
+        stub.withBehaviour(Endpoint.API_VERSION_CONFIGURE, new Behaviour(0, 0, 1));
+
+        // test
+        try {
+            buildCommand(getResource("/simple-full.yml"), ManagementApiVersion.v12x).applyDeclaration();
+            fail("Expected the apply to fail");
+
+        } catch (RuntimeException e) {
+            // assertions
+            assertEquals(3, stub.getRequests(Endpoint.API_VERSION_CONFIGURE));
+            assertEquals(3, stub.getInjectedErrors());
+            assertEquals("Created", stub.getApiVersionStatus("test", "example", "1.0"));
+        }
+    }
+
+    /**
+     * Expect that a directory of declarations is applied as one, with the gateway and plugin that each
+     * declares checked once.
+     */
+    @Test
+    public void testApply_Directory() throws Exception {
+        // test data
+        final Path directory = Files.createTempDirectory("declarations");
+        final String declaration = new String(Files.readAllBytes(getResource("/simple-full.yml")), StandardCharsets.UTF_8);
+        Files.write(directory.resolve("a.yml"), declaration.getBytes(StandardCharsets.UTF_8));
+        Files.write(directory.resolve("b.yml"), declaration.replace("\"example\"", "\"example2\"")
+                .getBytes(StandardCharsets.UTF_8));
+
+        try {
+            // test
+            buildCommand(directory, ManagementApiVersion.v12x).applyDeclaration();
+
+            // assertions
+            assertEquals(1, stub.getRequests(Endpoint.GATEWAY_FETCH));
+            assertEquals(1, stub.getRequests(Endpoint.GATEWAY_CREATE));
+            assertEquals(1, stub.getRequests(Endpoint.PLUGIN_CREATE));
+            assertEquals(2, stub.getApis().size());
+            assertEquals("Published", stub.getApiVersionStatus("test", "example", "1.0"));
+            assertEquals("Published", stub.getApiVersionStatus("test", "example2", "1.0"));
+
+        } finally {
+            Files.deleteIfExists(directory.resolve("a.yml"));
+            Files.deleteIfExists(directory.resolve("b.yml"));
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Expect that the gateway is created once, and that each org and its APIs are applied.
+     */
+    @Test
+    public void testApply_MultipleOrgs() throws Exception {
+        // test data
+        final ApplyCommand command = buildCommand(getResource("/multiple-orgs.yml"), ManagementApiVersion.v12x);
+        command.setParallelism(4);
+
+        // test
+        command.applyDeclaration();
+
+        // assertions
+        assertEquals(1, stub.getRequests(Endpoint.GATEWAY_CREATE));
+        assertEquals(2, stub.getOrgs().size());
+        assertEquals(3, stub.getApis().size());
+        assertEquals("Published", stub.getApiVersionStatus("first", "example", "1.0"));
+        assertEquals("Published", stub.getApiVersionStatus("second", "example", "1.0"));
+        assertEquals("Ready", stub.getApiVersionStatus("second", "other", "1.0"));
+    }
+
+    /**
+     * Expect that a definition file is uploaded, that it is not uploaded again while it matches the definition
+     * on the server, and that it is uploaded again once it changes.
+     */
+    @Test
+    public void testApply_DefinitionFile() throws Exception {
+        // test data
+        final Path directory = Files.createTempDirectory("declarations");
+        final Path definitionFile = directory.resolve("swagger.json");
+        Files.write(definitionFile, "{\"swagger\": \"2.0\"}".getBytes(StandardCharsets.UTF_8));
+
+        final String declaration = new String(Files.readAllBytes(getResource("/simple-full.yml")), StandardCharsets.UTF_8)
+                .replace("        policies:", "        definition:\n" +
+                        "          file: \"" + definitionFile.toString().replace("\\", "/") + "\"\n" +
+                        "        policies:");
+        final Path declarationFile = directory.resolve("declaration.yml");
+        Files.write(declarationFile, declaration.getBytes(StandardCharsets.UTF_8));
+
+        try {
+            // test
+            buildCommand(declarationFile, ManagementApiVersion.v12x).applyDeclaration();
+            assertEquals(1, stub.getRequests(Endpoint.API_DEFINITION_SET));
+            assertEquals("{\"swagger\": \"2.0\"}", stub.getDefinition("test", "example", "1.0"));
+
+            stub.resetCounters();
+            buildCommand(declarationFile, ManagementApiVersion.v12x).applyDeclaration();
+            assertEquals(1, stub.getRequests(Endpoint.API_DEFINITION_FETCH));
+            assertEquals(0, stub.getRequests(Endpoint.API_DEFINITION_SET));
+            assertEquals(0, stub.getRequests(Endpoint.ACTION));
+
+            stub.resetCounters();
+            Files.write(definitionFile, "{\"swagger\": \"2.0\", \"info\": {}}".getBytes(StandardCharsets.UTF_8));
+            buildCommand(declarationFile, ManagementApiVersion.v12x).applyDeclaration();
+
+            // assertions
+            assertEquals(1, stub.getRequests(Endpoint.API_DEFINITION_SET));
+            assertEquals(1, stub.getRequests(Endpoint.ACTION));
+            assertEquals("{\"swagger\": \"2.0\", \"info\": {}}", stub.getDefinition("test", "example", "1.0"));
+
+        } finally {
+            Files.deleteIfExists(declarationFile);
+            Files.deleteIfExists(definitionFile);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Expect that the definition on the server is not downloaded when the state file records that the last
+     * apply set the same definition, even though the definition item has changed.
+     */
+    @Test
+    public void testApply_DefinitionStateFile() throws Exception {
+        // test data
+        final Path directory = Files.createTempDirectory("declarations");
+        final Path stateFile = directory.resolve(".apiman-state.json");
+        final String declaration = new String(Files.readAllBytes(getResource("/simple-full.yml")), StandardCharsets.UTF_8)
+                .replace("        policies:", "        definition:\n" +
+                        "          body: \"{\\\"swagger\\\": \\\"2.0\\\"}\"\n" +
+                        "        policies:");
+        final Path declarationFile = directory.resolve("declaration.yml");
+        Files.write(declarationFile, declaration.getBytes(StandardCharsets.UTF_8));
+
+        final Path changedFile = directory.resolve("changed.yml");
+        Files.write(changedFile, declaration.replace("        definition:\n",
+                "        definition:\n          type: \"application/vnd.oai.openapi+json\"\n")
+                .getBytes(StandardCharsets.UTF_8));
+
+        try {
+            final ApplyCommand first = buildCommand(declarationFile, ManagementApiVersion.v12x);
+            first.setStateFilePath(stateFile);
+            first.applyDeclaration();
+            assertEquals(1, stub.getRequests(Endpoint.API_DEFINITION_SET));
+            stub.resetCounters();
+
+            final ApplyCommand second = buildCommand(changedFile, ManagementApiVersion.v12x);
+            second.setStateFilePath(stateFile);
+
+            // test
+            second.applyDeclaration();
+
+            // assertions
+            assertEquals(0, stub.getRequests(Endpoint.API_DEFINITION_FETCH));
+            assertEquals(0, stub.getRequests(Endpoint.API_DEFINITION_SET));
+            assertEquals("{\"swagger\": \"2.0\"}", stub.getDefinition("test", "example", "1.0"));
+
+        } finally {
+            Files.deleteIfExists(stateFile);
+            Files.deleteIfExists(changedFile);
+            Files.deleteIfExists(declarationFile);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Expect that a resumed apply skips the items completed by the apply that failed, and deletes the
+     * journal once every item has been applied.
+     */
+    @Test
+    public void testApply_Resume() throws Exception {
+        // test data
+        final Path directory = Files.createTempDirectory("journal");
+        final Path journalPath = directory.resolve("apply.journal");
+        stub.withBehaviour(Endpoint.ACTION, new Behaviour(0, 0, 1));
+
+        try {
+            final ApplyCommand first = buildCommand(getResource("/simple-full.yml"), ManagementApiVersion.v12x);
+            first.setJournalPath(journalPath);
+            try {
+                first.applyDeclaration();
+                fail("Expected the apply to fail");
+            } catch (CommandException ignored) {
+            }
+
+            final String journal = new String(Files.readAllBytes(journalPath), StandardCharsets.UTF_8);
+            assertTrue(journal.contains("gateway:test-gw"));
+            assertTrue(journal.contains("org:test"));
+
+            // mock behaviour
+            stub.withBehaviour(Endpoint.ACTION, Behaviour.NONE);
+            stub.resetCounters();
+
+            final ApplyCommand second = buildCommand(getResource("/simple-full.yml"), ManagementApiVersion.v12x);
+            second.setJournalPath(journalPath);
+            second.setResume(true);
+
+            // test
+            second.applyDeclaration();
+
+            // assertions
+            assertEquals(0, stub.getRequests(Endpoint.GATEWAY_CREATE));
+            assertEquals(0, stub.getRequests(Endpoint.PLUGIN_CREATE));
+            assertEquals(0, stub.getRequests(Endpoint.ORG_CREATE));
+            assertEquals(1, stub.getRequests(Endpoint.ACTION));
+            assertEquals("Published", stub.getApiVersionStatus("test", "example", "1.0"));
+            assertFalse(Files.exists(journalPath));
+
+        } finally {
+            Files.deleteIfExists(journalPath);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Expect that the reads and writes counted by a plan are those made by the apply that follows it,
+     * checking each item individually.
+     */
+    @Test
+    public void testPlan_RequestCounts() throws Exception {
+        assertPlannedRequests(false);
+    }
+
+    /**
+     * Expect that the reads and writes counted by a plan are those made by the apply that follows it, with
+     * the server state prefetched.
+     */
+    @Test
+    public void testPlan_RequestCountsPrefetch() throws Exception {
+        assertPlannedRequests(true);
+    }
+
+    /**
+     * Plan, then apply, a declaration that adds a definition, removes policies, a version and a gateway, and
+     * leaves an existing policy, whose configuration is fetched, unchanged.
+     */
+    private void assertPlannedRequests(boolean prefetch) throws Exception {
+        // test data
+        final Path directory = Files.createTempDirectory("declarations");
+        final Path stale = writeStaleDeclaration(directory);
+        final Path declarationFile = directory.resolve("declaration.yml");
+        Files.write(declarationFile, new String(Files.readAllBytes(getResource("/simple-full.yml")), StandardCharsets.UTF_8)
+                .replace("        policies:", "        definition:\n" +
+                        "          body: \"{\\\"swagger\\\": \\\"2.0\\\"}\"\n" +
+                        "        policies:").getBytes(StandardCharsets.UTF_8));
+
+        try {
+            buildCommand(stale, ManagementApiVersion.v12x).applyDeclaration();
+
+            final ApplyCommand planCommand = buildPruneCommand(declarationFile, prefetch);
+            planCommand.setPlanOnly(true);
+            planCommand.applyDeclaration();
+            stub.resetCounters();
+
+            // test
+            buildPruneCommand(declarationFile, prefetch).applyDeclaration();
+
+            // assertions
+            final PlanningRemoteState planningState = (PlanningRemoteState) planCommand.getRemoteState();
+            final long reads = Arrays.stream(Endpoint.values())
+                    .filter(endpoint -> "GET".equals(endpoint.getMethod()))
+                    .mapToLong(stub::getRequests)
+                    .sum();
+
+            assertEquals(1, stub.getRequests(Endpoint.POLICY_FETCH));
+            assertEquals(1, stub.getRequests(Endpoint.API_DEFINITION_FETCH));
+            assertEquals(prefetch ? planningState.getPrefetchRequestCount() : planningState.getLiveRequestCount(),
+                    reads);
+            assertEquals(planCommand.getPlan().getChanges().size(), stub.getRequests() - reads);
+
+        } finally {
+            Files.deleteIfExists(declarationFile);
+            Files.deleteIfExists(stale);
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    private ApplyCommand buildPruneCommand(Path declaration, boolean prefetch) {
+        final ApplyCommand command = buildCommand(declaration, ManagementApiVersion.v12x);
+        command.setPrefetch(prefetch);
+        command.setPrune(true);
+        command.setPruneSystem(true);
+        return command;
+    }
+
+    private ApplyCommand buildCommand(Path declaration, ManagementApiVersion serverVersion) {
+        final ApplyCommand command = new ApplyCommand();
+        command.setDeclarationFile(declaration);
+        command.setServerAddress(stub.getAddress());
+        command.setServerVersion(serverVersion);
+        return command;
+    }
+
+    /**
+     * Write a declaration with an extra gateway, extra policies and an extra published version of the API.
+     */
+    private static Path writeStaleDeclaration(Path directory) throws Exception {
+        final String declaration = new String(Files.readAllBytes(getResource("/simple-full.yml")), StandardCharsets.UTF_8);
+        final String staleVersion = declaration.substring(declaration.indexOf("      - name: \"example\""))
+                .replace("version: \"1.0\"", "version: \"0.9\"");
+
+        final Path stale = directory.resolve("stale.yml");
+        Files.write(stale, (declaration
+                .replace("    plugins:\n", "      - name: \"old-gw\"\n        type: \"REST\"\n        config:\n" +
+                        "          endpoint: \"http://localhost:8080/old\"\n    plugins:\n")
+                .replace("policies:\n", "policies:\n" + buildPolicy("RateLimitingPolicy") + buildPolicy("IPWhitelistPolicy"))
+                + staleVersion).getBytes(StandardCharsets.UTF_8));
+        return stale;
+    }
+
+    private static String buildPolicy(String name) {
+        return "          - name: \"" + name + "\"\n            config:\n              enabled: true\n";
+    }
+
+    private static Path getResource(String name) throws URISyntaxException {
+        return Paths.get(ApplyCommandTest.class.getResource(name).toURI());
+    }
+}
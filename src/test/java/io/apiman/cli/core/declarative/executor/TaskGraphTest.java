@@ -0,0 +1,240 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.executor;
+
+import com.google.common.collect.Lists;
+import io.apiman.cli.exception.DeclarativeException;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link TaskGraph}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class TaskGraphTest {
+    private TaskGraph taskGraph;
+
+    private List<String> executed;
+
+    @Before
+    public void setUp() {
+        taskGraph = new TaskGraph();
+        executed = Collections.synchronizedList(Lists.newArrayList());
+    }
+
+    /**
+     * Expect that tasks run in insertion order when executed sequentially.
+     */
+    @Test
+    public void testExecute_Sequential() throws Exception {
+        // test data
+        taskGraph.addTask("a", () -> executed.add("a"));
+        taskGraph.addTask("b", () -> executed.add("b"));
+        taskGraph.addTask("c", () -> executed.add("c"), Lists.newArrayList("a"));
+
+        // test
+        taskGraph.execute(1);
+
+        // assertions
+        assertEquals(Lists.newArrayList("a", "b", "c"), executed);
+    }
+
+    /**
+     * Expect that a task does not start until all of its dependencies have completed.
+     */
+    @Test
+    public void testExecute_RespectsDependencies() throws Exception {
+        // test data
+        taskGraph.addTask("gateway", () -> executed.add("gateway"));
+        taskGraph.addTask("plugin", () -> executed.add("plugin"));
+        taskGraph.addTask("org", () -> executed.add("org"), Lists.newArrayList("gateway", "plugin"));
+
+        for (int i = 0; i < 20; i++) {
+            final String apiTask = "api" + i;
+            taskGraph.addTask(apiTask, () -> executed.add(apiTask), Lists.newArrayList("org"));
+        }
+
+        // test
+        taskGraph.execute(4);
+
+        // assertions
+        assertEquals(23, executed.size());
+        assertTrue(executed.indexOf("org") > executed.indexOf("gateway"));
+        assertTrue(executed.indexOf("org") > executed.indexOf("plugin"));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(executed.indexOf("api" + i) > executed.indexOf("org"));
+        }
+    }
+
+    /**
+     * Expect that independent tasks run concurrently.
+     */
+    @Test
+    public void testExecute_Concurrent() throws Exception {
+        // test data
+        final CountDownLatch latch = new CountDownLatch(3);
+        for (int i = 0; i < 3; i++) {
+            taskGraph.addTask("task" + i, () -> {
+                latch.countDown();
+                try {
+                    // only completes if all three tasks are running at the same time
+                    if (!latch.await(5, TimeUnit.SECONDS)) {
+                        throw new IllegalStateException("Tasks did not run concurrently");
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        }
+
+        // test
+        taskGraph.execute(3);
+
+        // assertions
+        assertEquals(0, latch.getCount());
+    }
+
+    /**
+     * Expect that no further tasks are started once a task fails, and that the failure is rethrown.
+     */
+    @Test
+    public void testExecute_Failure() throws Exception {
+        // test data
+        final AtomicInteger dependentRuns = new AtomicInteger();
+        taskGraph.addTask("failing", () -> {
+            throw new DeclarativeException("Test failure");
+        });
+        taskGraph.addTask("dependent", dependentRuns::incrementAndGet, Lists.newArrayList("failing"));
+
+        // test
+        try {
+            taskGraph.execute(2);
+            fail(DeclarativeException.class + " expected");
+
+        } catch (DeclarativeException e) {
+            // assertions
+            assertEquals("Test failure", e.getMessage());
+            assertEquals(0, dependentRuns.get());
+        }
+    }
+
+    /**
+     * Expect that ready tasks are started from each group in turn, so a large group does not delay a small one.
+     */
+    @Test
+    public void testExecute_FairBetweenGroups() throws Exception {
+        // test data
+        taskGraph.addTask("system", () -> executed.add("system"));
+        for (int i = 0; i < 6; i++) {
+            final String taskId = "large" + i;
+            taskGraph.addTask(taskId, "large", () -> executed.add(taskId), Lists.newArrayList("system"));
+        }
+        taskGraph.addTask("small0", "small", () -> executed.add("small0"), Lists.newArrayList("system"));
+
+        // test
+        taskGraph.execute(2);
+
+        // assertions
+        assertEquals(8, executed.size());
+        assertTrue(executed.indexOf("small0") <= 3);
+    }
+
+    /**
+     * Expect that a failure stops only the group in which it occurred, that other groups are applied,
+     * and that the failure is reported for its group and rethrown.
+     */
+    @Test
+    public void testExecute_GroupFailure() throws Exception {
+        // test data
+        taskGraph.addTask("system", () -> executed.add("system"));
+        taskGraph.addTask("bad:org", "bad", () -> {
+            throw new DeclarativeException("Test failure");
+        }, Lists.newArrayList("system"));
+        taskGraph.addTask("bad:api", "bad", () -> executed.add("bad:api"), Lists.newArrayList("bad:org"));
+        taskGraph.addTask("good:org", "good", () -> executed.add("good:org"), Lists.newArrayList("system"));
+        taskGraph.addTask("good:api", "good", () -> executed.add("good:api"), Lists.newArrayList("good:org"));
+
+        // test
+        try {
+            taskGraph.execute(2);
+            fail(DeclarativeException.class + " expected");
+
+        } catch (DeclarativeException e) {
+            // assertions
+            assertEquals("Test failure", e.getMessage());
+            assertEquals(Lists.newArrayList("system", "good:org", "good:api"), executed);
+
+            final Map<String, GroupResult> results = taskGraph.getGroupResults();
+            assertEquals(Lists.newArrayList("bad", "good"), Lists.newArrayList(results.keySet()));
+
+            final GroupResult bad = results.get("bad");
+            assertFalse(bad.isSuccessful());
+            assertEquals(1, bad.getFailed());
+            assertEquals(1, bad.getSkipped());
+            assertEquals("Test failure", bad.getFailure().getMessage());
+
+            final GroupResult good = results.get("good");
+            assertTrue(good.isSuccessful());
+            assertEquals(2, good.getCompleted());
+        }
+    }
+
+    /**
+     * Expect that a task cannot depend on a task that has not been added.
+     */
+    /**
+     * Expect that no task is started once the deadline has passed, and that the tasks not started are
+     * reported as skipped.
+     */
+    @Test
+    public void testExecute_Deadline() throws Exception {
+        // test data
+        taskGraph.addTask("a", "org", () -> {
+            executed.add("a");
+            taskGraph.setDeadline(System.nanoTime());
+        }, Collections.emptyList());
+        taskGraph.addTask("b", "org", () -> executed.add("b"), Lists.newArrayList("a"));
+        taskGraph.addTask("c", "other", () -> executed.add("c"), Collections.emptyList());
+
+        // test
+        taskGraph.execute(1);
+
+        // assertions
+        assertTrue(taskGraph.isDeadlineReached());
+        assertEquals(Lists.newArrayList("a"), executed);
+        assertEquals(1, taskGraph.getGroupResults().get("org").getSkipped());
+        assertEquals(1, taskGraph.getGroupResults().get("other").getSkipped());
+    }
+
+    @Test(expected = DeclarativeException.class)
+    public void testAddTask_UnknownDependency() throws Exception {
+        taskGraph.addTask("a", () -> executed.add("a"), Lists.newArrayList("missing"));
+    }
+}
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.loader;
+
+import com.google.common.collect.ImmutableMap;
+import io.apiman.cli.core.declarative.model.Declaration;
+import io.apiman.cli.core.declarative.model.DeclarativeApi;
+import io.apiman.cli.exception.DeclarativeException;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link DeclarationLoader} and {@link DeclarationMerger}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class DeclarationLoaderTest {
+    private static final String SYSTEM = "system:\n" +
+            "  gateways:\n" +
+            "    - name: \"test-gw\"\n" +
+            "      type: \"REST\"\n" +
+            "      config:\n" +
+            "        endpoint: \"http://localhost:8080/apiman-gateway-api\"\n" +
+            "  plugins:\n" +
+            "    - groupId: \"io.apiman.plugins\"\n" +
+            "      artifactId: \"apiman-plugins-test-policy\"\n" +
+            "      version: \"1.2.4.Final\"\n";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File apisDir;
+
+    @Before
+    public void setUp() throws Exception {
+        apisDir = folder.newFolder("apis");
+        write(apisDir, "b.yml", SYSTEM + buildOrg("api2", "api3"));
+        write(apisDir, "a.yml", SYSTEM + buildOrg("api1"));
+        write(apisDir, "notes.txt", "not a declaration");
+    }
+
+    /**
+     * Expect that the declaration files in a directory are merged in path order, and that the gateways and
+     * plugins they both declare are applied once.
+     */
+    @Test
+    public void testLoad_Directory() throws Exception {
+        // test
+        final Declaration declaration = new DeclarationLoader(Collections.emptyMap())
+                .load(Collections.singletonList(apisDir.toString()));
+
+        // assertions
+        assertEquals(1, declaration.getSystem().getGateways().size());
+        assertEquals(1, declaration.getSystem().getPlugins().size());
+        assertEquals("test", declaration.getOrgs().get(0).getName());
+        assertEquals(Arrays.asList("api1", "api2", "api3"), getApiNames(declaration));
+    }
+
+    @Test
+    public void testLoad_Glob() throws Exception {
+        // test
+        final Declaration declaration = new DeclarationLoader(Collections.emptyMap())
+                .load(Collections.singletonList(apisDir + File.separator + "b*.yml"));
+
+        // assertions
+        assertEquals(Arrays.asList("api2", "api3"), getApiNames(declaration));
+    }
+
+    /**
+     * Expect that each document in a file is loaded, with its own shared properties.
+     */
+    @Test
+    public void testLoad_MultipleDocuments() throws Exception {
+        // test data
+        final File file = write(folder.getRoot(), "multi.yml", SYSTEM +
+                "shared:\n  properties:\n    apiName: \"first\"\n" +
+                buildOrg("${apiName}") +
+                "---\n" +
+                "shared:\n  properties:\n    apiName: \"second\"\n" +
+                buildOrg("${apiName}"));
+
+        // test
+        final Declaration declaration = new DeclarationLoader(Collections.emptyMap())
+                .load(Collections.singletonList(file.toString()));
+
+        // assertions
+        assertEquals(Arrays.asList("first", "second"), getApiNames(declaration));
+    }
+
+    @Test
+    public void testLoad_Stdin() throws Exception {
+        // test data
+        final String json = "{\"org\": {\"name\": \"test\", \"apis\": [{\"name\": \"${apiName}\", \"version\": \"1.0\"}]}}";
+        final DeclarationLoader loader = new DeclarationLoader(ImmutableMap.of("apiName", "stdin"),
+                new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)));
+
+        // test
+        final Declaration declaration = loader.load(Arrays.asList("-", apisDir + File.separator + "a.yml"));
+
+        // assertions
+        assertEquals(Arrays.asList("stdin", "api1"), getApiNames(declaration));
+    }
+
+    /**
+     * Expect that a gateway declared differently in two files is reported.
+     */
+    @Test
+    public void testLoad_ConflictingGateway() throws Exception {
+        // test data
+        write(apisDir, "c.yml", SYSTEM.replace("8080", "9090"));
+
+        // test
+        try {
+            new DeclarationLoader(Collections.emptyMap()).load(Collections.singletonList(apisDir.toString()));
+            fail("Expected a DeclarativeException");
+
+        } catch (DeclarativeException e) {
+            // assertions
+            assertTrue(e.getMessage().contains("test-gw"));
+        }
+    }
+
+    @Test
+    public void testLoad_DuplicateApi() throws Exception {
+        // test data
+        write(apisDir, "c.yml", buildOrg("api1"));
+
+        // test
+        try {
+            new DeclarationLoader(Collections.emptyMap()).load(Collections.singletonList(apisDir.toString()));
+            fail("Expected a DeclarativeException");
+
+        } catch (DeclarativeException e) {
+            // assertions
+            assertEquals("API 'test/api1/1.0' is declared more than once", e.getMessage());
+        }
+    }
+
+    /**
+     * Expect that orgs may be listed, and that the APIs of an org may be spread across files.
+     */
+    @Test
+    public void testLoad_MultipleOrgs() throws Exception {
+        // test data
+        write(apisDir, "c.yml", "orgs:\n" +
+                "  - name: \"test\"\n    apis:\n      - name: \"api4\"\n        version: \"1.0\"\n" +
+                "  - name: \"other\"\n    apis:\n      - name: \"api1\"\n        version: \"1.0\"\n");
+
+        // test
+        final Declaration declaration = new DeclarationLoader(Collections.emptyMap())
+                .load(Collections.singletonList(apisDir.toString()));
+
+        // assertions
+        assertEquals(2, declaration.getOrgs().size());
+        assertEquals("test", declaration.getOrgs().get(0).getName());
+        assertEquals("other", declaration.getOrgs().get(1).getName());
+        assertEquals(Arrays.asList("api1", "api2", "api3", "api4", "api1"), getApiNames(declaration));
+    }
+
+    /**
+     * Expect that a shared policy declared in two files resolves to a single instance.
+     */
+    @Test
+    public void testLoad_SharedPolicy() throws Exception {
+        // test data
+        final String shared = "shared:\n  policies:\n    - $id: \"sharedPolicy\"\n      name: \"CachingPolicy\"\n" +
+                "      config:\n        ttl: 60\n";
+        write(apisDir, "a.yml", shared + buildOrg("api1").replace("1.0\"\n", "1.0\"\n      policies:\n        - \"sharedPolicy\"\n"));
+        write(apisDir, "b.yml", shared + buildOrg("api2").replace("1.0\"\n", "1.0\"\n      policies:\n        - \"sharedPolicy\"\n"));
+
+        // test
+        final Declaration declaration = new DeclarationLoader(Collections.emptyMap())
+                .load(Collections.singletonList(apisDir.toString()));
+
+        // assertions
+        final List<DeclarativeApi> apis = declaration.getOrgs().get(0).getApis();
+        assertEquals(1, declaration.getShared().getPolicies().size());
+        assertSame(apis.get(0).getPolicies().get(0), apis.get(1).getPolicies().get(0));
+    }
+
+    private static String buildOrg(String... apiNames) {
+        final StringBuilder sb = new StringBuilder("org:\n  name: \"test\"\n  apis:\n");
+        for (String apiName : apiNames) {
+            sb.append("    - name: \"").append(apiName).append("\"\n")
+                    .append("      version: \"1.0\"\n");
+        }
+        return sb.toString();
+    }
+
+    private static File write(File dir, String fileName, String content) throws Exception {
+        final Path file = dir.toPath().resolve(fileName);
+        Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+        return file.toFile();
+    }
+
+    private static List<String> getApiNames(Declaration declaration) {
+        return declaration.getAllOrgs().stream()
+                .flatMap(org -> org.getApis().stream())
+                .map(DeclarativeApi::getName)
+                .collect(Collectors.toList());
+    }
+}
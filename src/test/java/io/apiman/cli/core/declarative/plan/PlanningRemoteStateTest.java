@@ -0,0 +1,241 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.plan;
+
+import io.apiman.cli.core.api.VersionAgnosticApi;
+import io.apiman.cli.core.api.model.Api;
+import io.apiman.cli.core.api.model.ApiPolicy;
+import io.apiman.cli.core.api.model.ApiVersion;
+import io.apiman.cli.core.declarative.model.Declaration;
+import io.apiman.cli.core.declarative.remote.SnapshotRemoteState;
+import io.apiman.cli.core.gateway.GatewayApi;
+import io.apiman.cli.core.org.OrgApi;
+import io.apiman.cli.core.org.model.Org;
+import io.apiman.cli.core.plugin.PluginApi;
+import io.apiman.cli.core.plugin.model.Plugin;
+import io.apiman.cli.util.DeclarativeUtil;
+import io.apiman.cli.util.MappingUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.List;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+/**
+ * Tests for {@link PlanningRemoteState} and {@link DryRunClients}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PlanningRemoteStateTest {
+    @Mock
+    private GatewayApi gatewayClient;
+
+    @Mock
+    private PluginApi pluginClient;
+
+    @Mock
+    private OrgApi orgClient;
+
+    @Mock
+    private VersionAgnosticApi apiClient;
+
+    private PlanningRemoteState remoteState;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+
+        final Declaration declaration = DeclarativeUtil.loadDeclaration(
+                Paths.get(PlanningRemoteStateTest.class.getResource("/simple-full.yml").toURI()),
+                MappingUtil.YAML_MAPPER, Collections.emptyMap());
+
+        // mock behaviour
+        when(gatewayClient.list()).thenReturn(newArrayList());
+        when(pluginClient.list()).thenReturn(newArrayList());
+        when(orgClient.fetch("test")).thenReturn(new Org("test", null));
+        when(apiClient.list("test")).thenReturn(newArrayList());
+
+        remoteState = new PlanningRemoteState(
+                new SnapshotRemoteState(gatewayClient, pluginClient, orgClient, apiClient).load(declaration, 1));
+    }
+
+    /**
+     * Expect that the status of a new version is simulated through to publication, without requests.
+     */
+    @Test
+    public void testSimulatedStatus() throws Exception {
+        // test
+        assertFalse(remoteState.fetchApi("test", "example").isPresent());
+        assertFalse(remoteState.fetchApiVersion("test", "example", "1.0").isPresent());
+
+        remoteState.markApiCreated("test", "example");
+        remoteState.markApiVersionCreated("test", "example", "1.0");
+        assertEquals("Created", fetchStatus());
+
+        remoteState.markApiVersionConfigured("test", "example", "1.0");
+        assertEquals("Ready", fetchStatus());
+        assertTrue(remoteState.fetchPolicies("test", "example", "1.0").isEmpty());
+
+        remoteState.markPoliciesChanged("test", "example", "1.0");
+        remoteState.markApiVersionPublished("test", "example", "1.0");
+        assertEquals("Published", fetchStatus());
+        assertTrue(remoteState.fetchPolicies("test", "example", "1.0").isEmpty());
+
+        // assertions
+        verify(apiClient, never()).fetchVersion(anyString(), anyString(), anyString());
+        verify(apiClient, never()).fetchPolicies(anyString(), anyString(), anyString());
+
+        // one request per lookup when live; snapshot requests plus a re-read per change when prefetched
+        assertEquals(7, remoteState.getLiveRequestCount());
+        assertEquals(4 + 4, remoteState.getPrefetchRequestCount());
+    }
+
+    /**
+     * Expect that installed plugins are counted as a single read, however many plugins are looked up.
+     */
+    @Test
+    public void testPluginIndex() throws Exception {
+        // test
+        for (String artifactId : newArrayList("first-policy", "second-policy", "third-policy")) {
+            assertFalse(remoteState.isPluginInstalled(new Plugin("io.apiman.plugins", artifactId, null, "1.2.4.Final")));
+        }
+
+        // assertions
+        assertEquals(1, remoteState.getLiveRequestCount());
+        assertEquals(4, remoteState.getPrefetchRequestCount());
+    }
+
+    /**
+     * Expect that the lists used when pruning are answered from the snapshot, until an item is added, and are
+     * counted as reads when checking each item individually.
+     */
+    @Test
+    public void testLists() throws Exception {
+        // test
+        assertTrue(remoteState.listGateways().isEmpty());
+        assertTrue(remoteState.listPlugins().isEmpty());
+        assertTrue(remoteState.listApiVersions("test", "example").isEmpty());
+
+        remoteState.markGatewayCreated("test-gw");
+        remoteState.listGateways();
+
+        // assertions
+        verify(gatewayClient, times(2)).list();
+        verify(pluginClient, times(1)).list();
+        verify(apiClient, never()).listVersions(anyString(), anyString());
+        assertEquals(4, remoteState.getLiveRequestCount());
+        assertEquals(4 + 1, remoteState.getPrefetchRequestCount());
+    }
+
+    /**
+     * Expect that the configuration of a policy is fetched once, and counted as a read again only once the
+     * policies of its API version change.
+     */
+    @Test
+    public void testPolicyConfiguration() throws Exception {
+        // mock behaviour
+        when(apiClient.fetchPolicy("test", "example", "1.0", 1L)).thenReturn(new ApiPolicy("{\"ttl\": 60}"));
+
+        // test
+        assertEquals("{\"ttl\": 60}", remoteState.fetchPolicyConfiguration("test", "example", "1.0", 1L));
+        remoteState.fetchPolicyConfiguration("test", "example", "1.0", 1L);
+
+        remoteState.markPoliciesChanged("test", "example", "1.0");
+        remoteState.fetchPolicyConfiguration("test", "example", "1.0", 1L);
+
+        // assertions
+        verify(apiClient, times(1)).fetchPolicy("test", "example", "1.0", 1L);
+        assertEquals(2, remoteState.getLiveRequestCount());
+        assertEquals(4 + 1 + 1, remoteState.getPrefetchRequestCount());
+    }
+
+    /**
+     * Expect that the configuration of an API version is fetched once by the snapshot, and re-read once the
+     * version has been configured.
+     */
+    @Test
+    public void testApiVersionConfig() throws Exception {
+        // test data
+        final Api version = new Api("example", null, null);
+        version.setVersion("1.0");
+        version.setStatus("Ready");
+
+        // mock behaviour
+        when(apiClient.fetchVersion("test", "example", "1.0")).thenReturn(version);
+
+        // test
+        assertEquals("1.0", remoteState.fetchApiVersionConfig("test", "example", "1.0").map(Api::getVersion)
+                .orElse(null));
+        remoteState.fetchApiVersionConfig("test", "example", "1.0");
+
+        remoteState.markApiVersionConfigured("test", "example", "1.0");
+        remoteState.fetchApiVersionConfig("test", "example", "1.0");
+
+        // assertions
+        verify(apiClient, times(1)).fetchVersion("test", "example", "1.0");
+        assertEquals(3, remoteState.getLiveRequestCount());
+        assertEquals(4 + 1 + 1, remoteState.getPrefetchRequestCount());
+    }
+
+    /**
+     * Expect that writes are recorded in the plan instead of being sent.
+     */
+    @Test
+    public void testDryRunClients() throws Exception {
+        // test data
+        final ApplyPlan plan = new ApplyPlan();
+        final VersionAgnosticApi dryRunClient = DryRunClients.wrap(VersionAgnosticApi.class, apiClient, plan);
+
+        // test
+        dryRunClient.list("test");
+        dryRunClient.createVersion("test", "example", new ApiVersion("1.0"));
+        dryRunClient.configurePolicy("test", "example", "1.0", 1L, null);
+        dryRunClient.removePolicy("test", "example", "1.0", 2L);
+
+        // assertions
+        verify(apiClient, never()).createVersion(anyString(), anyString(), any(ApiVersion.class));
+        assertEquals(1, plan.count(ApplyPlan.ChangeType.CREATE));
+        assertEquals(1, plan.count(ApplyPlan.ChangeType.POLICY));
+        assertEquals(0, plan.count(ApplyPlan.ChangeType.PUBLISH));
+        assertEquals(1, plan.count(ApplyPlan.ChangeType.DELETE));
+
+        final List<String> description = plan.describe(3, 5);
+        assertEquals("Plan: 1 to create, 0 to update, 1 policy changes, 0 to publish, 1 to delete", description.get(0));
+        assertEquals("  + create API version test/example/1.0", description.get(1));
+        assertEquals("  - remove policy 2 from API test/example/1.0", description.get(3));
+        assertEquals("Requests with --prefetch: 3 reads, 3 writes (6 total)", description.get(4));
+        assertEquals("Requests without --prefetch: 5 reads, 3 writes (8 total)", description.get(5));
+    }
+
+    private String fetchStatus() {
+        return remoteState.fetchApiVersion("test", "example", "1.0").map(Api::getStatus).orElse(null);
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.policy;
+
+import io.apiman.cli.core.api.model.ApiPolicy;
+import io.apiman.cli.util.MappingUtil;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link PolicyChainReorder}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PolicyChainReorderTest {
+    @Test
+    public void testReorder_InOrder() throws Exception {
+        // test
+        final PolicyChainReorder reorder = PolicyChainReorder.of(Arrays.asList("A", "B", "C"),
+                buildChain("A", "B", "C"));
+
+        // assertions
+        assertFalse(reorder.isRequired());
+        assertEquals(Arrays.asList("A", "B", "C"), getNames(reorder.getChain()));
+    }
+
+    /**
+     * Expect that only the policies outside the longest run already in declared order are moved.
+     */
+    @Test
+    public void testReorder_MinimalMoves() throws Exception {
+        // test
+        final PolicyChainReorder reorder = PolicyChainReorder.of(Arrays.asList("A", "B", "C", "D", "E"),
+                buildChain("E", "A", "B", "D", "C"));
+
+        // assertions
+        assertTrue(reorder.isRequired());
+        assertEquals(2, reorder.getMoves());
+        assertEquals(Arrays.asList("A", "B", "C", "D", "E"), getNames(reorder.getChain()));
+    }
+
+    /**
+     * Expect that policies on the server that are not declared keep their positions, and that repeated
+     * policies are matched in chain order.
+     */
+    @Test
+    public void testReorder_UndeclaredAndRepeated() throws Exception {
+        // test
+        final PolicyChainReorder reorder = PolicyChainReorder.of(Arrays.asList("B", "A", "B", "missing"),
+                buildChain("A", "X", "B", "B"));
+
+        // assertions
+        assertEquals(1, reorder.getMoves());
+        assertEquals(Arrays.asList("B", "X", "A", "B"), getNames(reorder.getChain()));
+        assertEquals(Arrays.asList(3L, 2L, 1L, 4L), reorder.getChain().stream()
+                .map(ApiPolicy::getId)
+                .collect(Collectors.toList()));
+    }
+
+    @Test
+    public void testLongestIncreasingSubsequence() throws Exception {
+        // assertions
+        assertEquals(0, PolicyChainReorder.longestIncreasingSubsequence(new int[0]));
+        assertEquals(1, PolicyChainReorder.longestIncreasingSubsequence(new int[]{3, 2, 1, 0}));
+        assertEquals(4, PolicyChainReorder.longestIncreasingSubsequence(new int[]{0, 8, 4, 12, 2, 10, 6, 14}));
+    }
+
+    private static List<ApiPolicy> buildChain(String... names) {
+        final List<ApiPolicy> chain = new ArrayList<>();
+        for (String name : names) {
+            chain.add(MappingUtil.JSON_MAPPER.convertValue(MappingUtil.JSON_MAPPER.createObjectNode()
+                    .put("id", chain.size() + 1L)
+                    .put("policyDefinitionId", name), ApiPolicy.class));
+        }
+        return chain;
+    }
+
+    private static List<String> getNames(List<ApiPolicy> chain) {
+        return chain.stream().map(ApiPolicy::getPolicyDefinitionId).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,81 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.policy;
+
+import com.google.common.collect.ImmutableMap;
+import io.apiman.cli.core.declarative.model.DeclarativePolicy;
+import io.apiman.cli.util.HashUtil;
+import org.junit.Test;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Tests for {@link PolicyCompiler}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PolicyCompilerTest {
+    /**
+     * Expect that a policy referenced by several APIs is compiled once.
+     */
+    @Test
+    public void testCompile_Shared() throws Exception {
+        // test data
+        final PolicyCompiler compiler = new PolicyCompiler();
+        final DeclarativePolicy policy = buildPolicy(ImmutableMap.of("ttl", 60));
+
+        // test
+        final CompiledPolicy first = compiler.compile(policy);
+        final CompiledPolicy second = compiler.compile(policy);
+
+        // assertions
+        assertSame(first, second);
+        assertEquals(1, compiler.size());
+    }
+
+    /**
+     * Expect that the configuration is canonical, and that the hash matches that recorded in the state file.
+     */
+    @Test
+    public void testCompile_Canonical() throws Exception {
+        // test data
+        final Map<String, Object> config = new LinkedHashMap<>();
+        config.put("ttl", new BigDecimal("60.0"));
+        config.put("cacheName", "example");
+        final DeclarativePolicy policy = buildPolicy(config);
+
+        // test
+        final CompiledPolicy compiled = new PolicyCompiler().compile(policy);
+
+        // assertions
+        assertEquals("CachingPolicy", compiled.getName());
+        assertEquals("{\"cacheName\":\"example\",\"ttl\":60}", compiled.getConfiguration());
+        assertEquals(HashUtil.hash("CachingPolicy", config), compiled.getHash());
+    }
+
+    private static DeclarativePolicy buildPolicy(Map<String, Object> config) {
+        final DeclarativePolicy policy = new DeclarativePolicy();
+        policy.setName("CachingPolicy");
+        policy.setConfig(config);
+        return policy;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.remote;
+
+import io.apiman.cli.core.api.VersionAgnosticApi;
+import io.apiman.cli.core.gateway.GatewayApi;
+import io.apiman.cli.core.org.OrgApi;
+import io.apiman.cli.core.plugin.PluginApi;
+import io.apiman.cli.core.plugin.model.Plugin;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+/**
+ * Tests for {@link LiveRemoteState}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class LiveRemoteStateTest {
+    @Mock
+    private GatewayApi gatewayClient;
+
+    @Mock
+    private PluginApi pluginClient;
+
+    @Mock
+    private OrgApi orgClient;
+
+    @Mock
+    private VersionAgnosticApi apiClient;
+
+    private LiveRemoteState remoteState;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+        remoteState = new LiveRemoteState(gatewayClient, pluginClient, orgClient, apiClient);
+    }
+
+    /**
+     * Expect that the installed plugins are listed once, and matched by coordinates including the classifier.
+     */
+    @Test
+    public void testIsPluginInstalled() throws Exception {
+        // mock behaviour
+        when(pluginClient.list()).thenReturn(newArrayList(
+                new Plugin("io.apiman.plugins", "test-policy", null, "1.2.4.Final"),
+                new Plugin("io.apiman.plugins", "other-policy", "war", "1.0")));
+
+        // assertions
+        assertTrue(remoteState.isPluginInstalled(new Plugin("io.apiman.plugins", "test-policy", null, "1.2.4.Final")));
+        assertFalse(remoteState.isPluginInstalled(new Plugin("io.apiman.plugins", "test-policy", null, "1.2.5.Final")));
+        assertTrue(remoteState.isPluginInstalled(new Plugin("io.apiman.plugins", "other-policy", "war", "1.0")));
+        assertFalse(remoteState.isPluginInstalled(new Plugin("io.apiman.plugins", "other-policy", null, "1.0")));
+        verify(pluginClient, times(1)).list();
+    }
+
+    /**
+     * Expect that installed plugins are added to the index.
+     */
+    @Test
+    public void testMarkPluginInstalled() throws Exception {
+        // test data
+        final Plugin plugin = new Plugin("io.apiman.plugins", "test-policy", null, "1.2.4.Final");
+
+        // mock behaviour
+        when(pluginClient.list()).thenReturn(newArrayList());
+
+        // test
+        assertFalse(remoteState.isPluginInstalled(plugin));
+        remoteState.markPluginInstalled(plugin);
+
+        // assertions
+        assertTrue(remoteState.isPluginInstalled(plugin));
+        verify(pluginClient, times(1)).list();
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.remote;
+
+import io.apiman.cli.core.api.VersionAgnosticApi;
+import io.apiman.cli.core.api.model.Api;
+import io.apiman.cli.core.api.model.ApiPolicy;
+import io.apiman.cli.core.declarative.model.Declaration;
+import io.apiman.cli.core.gateway.GatewayApi;
+import io.apiman.cli.core.gateway.model.Gateway;
+import io.apiman.cli.core.org.OrgApi;
+import io.apiman.cli.core.org.model.Org;
+import io.apiman.cli.core.plugin.PluginApi;
+import io.apiman.cli.core.plugin.model.Plugin;
+import io.apiman.cli.util.DeclarativeUtil;
+import io.apiman.cli.util.MappingUtil;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mock;
+
+import java.nio.file.Paths;
+import java.util.Collections;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+/**
+ * Tests for {@link SnapshotRemoteState}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class SnapshotRemoteStateTest {
+    @Mock
+    private GatewayApi gatewayClient;
+
+    @Mock
+    private PluginApi pluginClient;
+
+    @Mock
+    private OrgApi orgClient;
+
+    @Mock
+    private VersionAgnosticApi apiClient;
+
+    private Declaration declaration;
+
+    private SnapshotRemoteState remoteState;
+
+    @Before
+    public void setUp() throws Exception {
+        initMocks(this);
+
+        declaration = DeclarativeUtil.loadDeclaration(
+                Paths.get(SnapshotRemoteStateTest.class.getResource("/simple-full.yml").toURI()),
+                MappingUtil.YAML_MAPPER, Collections.emptyMap());
+
+        remoteState = new SnapshotRemoteState(gatewayClient, pluginClient, orgClient, apiClient);
+    }
+
+    /**
+     * Expect that lookups for declared items are answered from the snapshot, without further requests.
+     */
+    @Test
+    public void testLoad_ExistingItems() throws Exception {
+        // test data
+        final Api version = new Api("example", null, null);
+        version.setVersion("1.0");
+
+        // mock behaviour
+        when(gatewayClient.list()).thenReturn(newArrayList(new Gateway("test-gw", null, null, null)));
+        when(pluginClient.list()).thenReturn(newArrayList());
+        when(orgClient.fetch("test")).thenReturn(new Org("test", null));
+        when(apiClient.list("test")).thenReturn(newArrayList(new Api("example", null, null)));
+        when(apiClient.listVersions("test", "example")).thenReturn(newArrayList(version));
+        when(apiClient.fetchPolicies("test", "example", "1.0")).thenReturn(newArrayList(new ApiPolicy("{}")));
+
+        // test
+        remoteState.load(declaration, 4);
+
+        // assertions
+        assertEquals(6, remoteState.getRequestCount());
+        assertTrue(remoteState.fetchGateway("test-gw").isPresent());
+        assertFalse(remoteState.fetchGateway("other-gw").isPresent());
+        assertFalse(remoteState.isPluginInstalled(declaration.getSystem().getPlugins().get(0)));
+        assertTrue(remoteState.fetchOrg("test").isPresent());
+        assertTrue(remoteState.fetchApi("test", "example").isPresent());
+        assertTrue(remoteState.fetchApiVersion("test", "example", "1.0").isPresent());
+        assertEquals(1, remoteState.fetchPolicies("test", "example", "1.0").size());
+        assertEquals(6, remoteState.getRequestCount());
+
+        verify(gatewayClient, never()).fetch(anyString());
+        verify(apiClient, never()).fetch(anyString(), anyString());
+        verify(apiClient, never()).fetchVersion(anyString(), anyString(), anyString());
+    }
+
+    /**
+     * Expect that changes made during the apply are reflected in subsequent lookups.
+     */
+    @Test
+    public void testLoad_MissingItems() throws Exception {
+        // mock behaviour
+        when(gatewayClient.list()).thenReturn(newArrayList());
+        when(pluginClient.list()).thenReturn(newArrayList());
+        when(orgClient.fetch("test")).thenReturn(new Org("test", null));
+        when(apiClient.list("test")).thenReturn(newArrayList());
+        when(apiClient.fetchVersion("test", "example", "1.0")).thenReturn(new Api("example", null, null));
+
+        // test
+        remoteState.load(declaration, 1);
+
+        // assertions
+        assertEquals(4, remoteState.getRequestCount());
+        verify(apiClient, never()).listVersions(anyString(), anyString());
+        verify(apiClient, never()).fetchPolicies(anyString(), anyString(), anyString());
+
+        final Plugin plugin = declaration.getSystem().getPlugins().get(0);
+        assertFalse(remoteState.isPluginInstalled(plugin));
+        remoteState.markPluginInstalled(plugin);
+        assertTrue(remoteState.isPluginInstalled(plugin));
+
+        assertFalse(remoteState.fetchApi("test", "example").isPresent());
+        remoteState.markApiCreated("test", "example");
+        assertTrue(remoteState.fetchApi("test", "example").isPresent());
+
+        assertFalse(remoteState.fetchApiVersion("test", "example", "1.0").isPresent());
+        remoteState.markApiVersionCreated("test", "example", "1.0");
+        assertTrue(remoteState.fetchPolicies("test", "example", "1.0").isEmpty());
+
+        // the state of a new version is determined by the server
+        assertTrue(remoteState.fetchApiVersion("test", "example", "1.0").isPresent());
+        assertTrue(remoteState.fetchApiVersion("test", "example", "1.0").isPresent());
+        verify(apiClient, times(1)).fetchVersion("test", "example", "1.0");
+        assertEquals(5, remoteState.getRequestCount());
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.state;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link OperationJournal}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class OperationJournalTest {
+    private static final String SERVER = "http://localhost:8080/apiman";
+
+    private Path journalDir;
+    private Path journalPath;
+
+    @Before
+    public void setUp() throws Exception {
+        journalDir = Files.createTempDirectory("apiman-journal");
+        journalPath = journalDir.resolve("apply.journal");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(journalPath);
+        Files.deleteIfExists(journalDir);
+    }
+
+    /**
+     * Expect that the operations recorded by one run are completed when resuming the same declaration.
+     */
+    @Test
+    public void testRecordAndResume() throws Exception {
+        // test data
+        try (OperationJournal first = OperationJournal.open(journalPath, "hash", SERVER, "v12x", false)) {
+            first.record("gateway:test-gw");
+            first.record("org:test");
+        }
+
+        // test
+        try (OperationJournal resumed = OperationJournal.open(journalPath, "hash", SERVER, "v12x", true)) {
+            // assertions
+            assertTrue(resumed.isCompleted("gateway:test-gw"));
+            assertTrue(resumed.isCompleted("org:test"));
+            assertFalse(resumed.isCompleted("api:test/example/1.0"));
+        }
+    }
+
+    /**
+     * Expect that a journal is not resumed for a different declaration, nor unless resuming.
+     */
+    @Test
+    public void testResume_DifferentDeclaration() throws Exception {
+        // test data
+        try (OperationJournal first = OperationJournal.open(journalPath, "hash", SERVER, "v12x", false)) {
+            first.record("org:test");
+        }
+
+        // test
+        try (OperationJournal changed = OperationJournal.open(journalPath, "other", SERVER, "v12x", true)) {
+            // assertions
+            assertFalse(changed.isCompleted("org:test"));
+        }
+        try (OperationJournal fresh = OperationJournal.open(journalPath, "other", SERVER, "v12x", false)) {
+            assertFalse(fresh.isCompleted("org:test"));
+        }
+    }
+
+    /**
+     * Expect that a partly written record is discarded, and that records appended after it are read.
+     */
+    @Test
+    public void testResume_PartialRecord() throws Exception {
+        // test data
+        try (OperationJournal first = OperationJournal.open(journalPath, "hash", SERVER, "v12x", false)) {
+            first.record("org:test");
+        }
+        Files.write(journalPath, "{\"completed\":\"org:par".getBytes(StandardCharsets.UTF_8),
+                StandardOpenOption.APPEND);
+
+        // test
+        try (OperationJournal second = OperationJournal.open(journalPath, "hash", SERVER, "v12x", true)) {
+            second.record("gateway:test-gw");
+        }
+
+        // assertions
+        try (OperationJournal third = OperationJournal.open(journalPath, "hash", SERVER, "v12x", true)) {
+            assertTrue(third.isCompleted("org:test"));
+            assertTrue(third.isCompleted("gateway:test-gw"));
+            assertFalse(third.isCompleted("org:par"));
+        }
+    }
+
+    /**
+     * Expect that records short of a full batch are synced in the background, without waiting for another record.
+     */
+    @Test
+    public void testRecord_TimedSync() throws Exception {
+        try (OperationJournal journal = OperationJournal.open(journalPath, "hash", SERVER, "v12x", false)) {
+            // test
+            journal.record("org:test");
+            assertEquals(1, journal.getUnsynced());
+
+            // assertions
+            final long deadline = System.currentTimeMillis() + OperationJournal.SYNC_INTERVAL_MILLIS * 10;
+            while (journal.getUnsynced() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(0, journal.getUnsynced());
+        }
+    }
+}
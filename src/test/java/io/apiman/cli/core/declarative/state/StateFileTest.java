@@ -0,0 +1,107 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.core.declarative.state;
+
+import com.google.common.collect.ImmutableMap;
+import io.apiman.cli.util.HashUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link StateFile}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class StateFileTest {
+    private static final String SERVER = "http://localhost:8080/apiman";
+
+    private Path stateDir;
+    private Path statePath;
+
+    @Before
+    public void setUp() throws Exception {
+        stateDir = Files.createTempDirectory("apiman-state");
+        statePath = stateDir.resolve(".apiman-state.json");
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        Files.deleteIfExists(statePath);
+        Files.deleteIfExists(stateDir);
+    }
+
+    /**
+     * Expect that items recorded by one run are unchanged for the next, unless their content differs.
+     */
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        // test data
+        final String hash = HashUtil.hash(ImmutableMap.of("a", 1, "b", 2));
+
+        // test
+        final StateFile first = StateFile.load(statePath, SERVER, "v12x", false);
+        assertFalse(first.isUnchanged("gateway:test-gw", hash));
+        first.record("gateway:test-gw", hash);
+        first.save();
+
+        final StateFile second = StateFile.load(statePath, SERVER, "v12x", false);
+
+        // assertions
+        assertTrue(second.isUnchanged("gateway:test-gw", HashUtil.hash(ImmutableMap.of("b", 2, "a", 1))));
+        assertFalse(second.isUnchanged("gateway:test-gw", HashUtil.hash(ImmutableMap.of("a", 1, "b", 3))));
+        assertFalse(second.isUnchanged("gateway:other-gw", hash));
+    }
+
+    /**
+     * Expect that the previous state is ignored when refreshing, or when it was written for another server.
+     */
+    @Test
+    public void testIgnoredState() throws Exception {
+        // test data
+        final StateFile first = StateFile.load(statePath, SERVER, "v12x", false);
+        first.record("org:test", "abc");
+        first.save();
+
+        // test
+        final StateFile refreshed = StateFile.load(statePath, SERVER, "v12x", true);
+        final StateFile otherServer = StateFile.load(statePath, "http://example.com/apiman", "v12x", false);
+        final StateFile otherVersion = StateFile.load(statePath, SERVER, "v11x", false);
+
+        // assertions
+        assertFalse(refreshed.isUnchanged("org:test", "abc"));
+        assertFalse(otherServer.isUnchanged("org:test", "abc"));
+        assertFalse(otherVersion.isUnchanged("org:test", "abc"));
+        assertTrue(StateFile.load(statePath, SERVER, "v12x", false).isUnchanged("org:test", "abc"));
+    }
+
+    /**
+     * Expect that the hash does not depend on property order.
+     */
+    @Test
+    public void testHashIsStable() throws Exception {
+        assertEquals(HashUtil.hash("x", ImmutableMap.of("a", 1, "b", "c")),
+                HashUtil.hash("x", ImmutableMap.of("b", "c", "a", 1)));
+    }
+}
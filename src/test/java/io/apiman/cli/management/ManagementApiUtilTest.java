@@ -19,6 +19,8 @@ package io.apiman.cli.management;
 import io.apiman.cli.core.common.model.ManagementApiVersion;
 import io.apiman.cli.core.org.OrgApi;
 import io.apiman.cli.exception.CommandException;
+import io.apiman.cli.management.transport.TransportConfig;
+import io.apiman.cli.management.transport.TransportUtil;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
@@ -32,6 +34,8 @@ import java.util.function.Supplier;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.Mockito.*;
@@ -144,4 +148,38 @@ public class ManagementApiUtilTest {
         assertNotNull(actual);
         assertTrue(OrgApi.class.isAssignableFrom(actual.getClass()));
     }
-}
\ No newline at end of file
+
+    /**
+     * Expect that clients are reused for the same arguments, but not for different ones.
+     */
+    @Test
+    public void testBuildApiClient_Cached() throws Exception {
+        // test
+        final OrgApi first = ManagementApiUtil.buildServerApiClient(OrgApi.class, URL, "username", "password", false, ManagementApiVersion.UNSPECIFIED);
+        final OrgApi second = ManagementApiUtil.buildServerApiClient(OrgApi.class, URL, "username", "password", false, ManagementApiVersion.UNSPECIFIED);
+        final OrgApi otherEndpoint = ManagementApiUtil.buildServerApiClient(OrgApi.class, URL + "/other", "username", "password", false, ManagementApiVersion.UNSPECIFIED);
+        final OrgApi otherUser = ManagementApiUtil.buildServerApiClient(OrgApi.class, URL, "other", "password", false, ManagementApiVersion.UNSPECIFIED);
+
+        // assertions
+        assertSame(first, second);
+        assertNotSame(first, otherEndpoint);
+        assertNotSame(first, otherUser);
+    }
+
+    /**
+     * Expect that clients built before the transport is reconfigured are not reused afterwards.
+     */
+    @Test
+    public void testBuildApiClient_TransportReconfigured() throws Exception {
+        // test data
+        final OrgApi before = ManagementApiUtil.buildServerApiClient(OrgApi.class, URL, "username", "password", false, ManagementApiVersion.UNSPECIFIED);
+
+        // test
+        TransportUtil.configure(TransportConfig.DEFAULT);
+        final OrgApi after = ManagementApiUtil.buildServerApiClient(OrgApi.class, URL, "username", "password", false, ManagementApiVersion.UNSPECIFIED);
+
+        // assertions
+        assertNotSame(before, after);
+        assertSame(after, ManagementApiUtil.buildServerApiClient(OrgApi.class, URL, "username", "password", false, ManagementApiVersion.UNSPECIFIED));
+    }
+}
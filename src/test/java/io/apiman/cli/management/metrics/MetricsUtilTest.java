@@ -0,0 +1,154 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.metrics;
+
+import io.apiman.cli.management.metrics.model.MetricsReport;
+import io.apiman.cli.management.metrics.model.OperationReport;
+import org.junit.Before;
+import org.junit.Test;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedString;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+import static com.google.common.util.concurrent.Uninterruptibles.sleepUninterruptibly;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link MetricsUtil}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class MetricsUtilTest {
+    private static final String URL = "http://localhost:8080/apiman/organizations";
+
+    /**
+     * A Management API interface.
+     */
+    public interface ExampleApi {
+        Response create(String body) throws IOException;
+    }
+
+    @Before
+    public void setUp() {
+        MetricsUtil.reset();
+    }
+
+    /**
+     * Expect that calls are recorded against the API method, with the status and bytes of the request made.
+     */
+    @Test
+    public void testMeter_RecordsCalls() throws Exception {
+        // test data
+        final MeteredClient client = new MeteredClient(request -> {
+            final int status = request.getUrl().endsWith("/bad") ? 409 : 201;
+            return new Response(request.getUrl(), status, "", Collections.emptyList(), new TypedString("{}"));
+        });
+
+        final ExampleApi api = MetricsUtil.meter(ExampleApi.class,
+                body -> client.execute(new Request("POST", URL + body, Collections.emptyList(), new TypedString("{}"))));
+
+        // test
+        api.create("/good");
+        api.create("/good");
+        api.create("/bad");
+
+        // assertions
+        final MetricsReport report = MetricsUtil.buildReport();
+        assertEquals(1, report.getOperations().size());
+
+        final OperationReport operation = report.getOperations().get(0);
+        assertEquals("ExampleApi.create", operation.getName());
+        assertEquals(3, operation.getLatency().getCount());
+        assertEquals(2, operation.getStatuses().get("201").getCount());
+        assertEquals(1, operation.getStatuses().get("409").getCount());
+        assertEquals(6, operation.getBytesSent());
+        assertEquals(6, operation.getBytesReceived());
+    }
+
+    /**
+     * Expect that a call that fails without a response is recorded with the type of error.
+     */
+    @Test
+    public void testMeter_RecordsErrors() throws Exception {
+        // test data
+        final MeteredClient client = new MeteredClient(request -> {
+            throw new IOException("Connection reset");
+        });
+
+        final ExampleApi api = MetricsUtil.meter(ExampleApi.class,
+                body -> client.execute(new Request("GET", URL, Collections.emptyList(), null)));
+
+        // test
+        try {
+            api.create("");
+            fail(IOException.class + " expected");
+        } catch (IOException ignored) {
+        }
+
+        // assertions
+        final OperationReport operation = MetricsUtil.buildReport().getOperations().get(0);
+        assertEquals(1, operation.getStatuses().get("IOException").getCount());
+    }
+
+    /**
+     * Expect that the wall times of phases with the same name are added together, and rendered.
+     */
+    @Test
+    public void testTimePhase() throws Exception {
+        // test
+        MetricsUtil.timePhase("apply", () -> sleepUninterruptibly(5, TimeUnit.MILLISECONDS));
+        final String result = MetricsUtil.timePhase("apply", () -> {
+            sleepUninterruptibly(5, TimeUnit.MILLISECONDS);
+            return "applied";
+        });
+
+        // assertions
+        final MetricsReport report = MetricsUtil.buildReport();
+        assertEquals("applied", result);
+        assertEquals(1, report.getPhases().size());
+        assertTrue(report.getPhases().get("apply") >= 10);
+
+        final String json = MetricsUtil.render(report, MetricsFormat.json);
+        assertNotNull(json);
+        assertTrue(json.contains("\"apply\""));
+        assertTrue(MetricsUtil.render(report, MetricsFormat.text).startsWith("Phase"));
+    }
+
+    /**
+     * Expect that the latencies of steps are recorded individually, keyed by the kind of step.
+     */
+    @Test
+    public void testRecordStep() throws Exception {
+        // test
+        MetricsUtil.recordStep("api", TimeUnit.MILLISECONDS.toNanos(10));
+        MetricsUtil.recordStep("api", TimeUnit.MILLISECONDS.toNanos(30));
+        MetricsUtil.recordStep("org", TimeUnit.MILLISECONDS.toNanos(5));
+
+        // assertions
+        final MetricsReport report = MetricsUtil.buildReport();
+        assertEquals(2, report.getSteps().size());
+        assertEquals(2, report.getSteps().get("api").getCount());
+        assertEquals(30, report.getSteps().get("api").getMax(), 0.1);
+        assertTrue(MetricsUtil.render(report, MetricsFormat.text).contains("Step"));
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.transport;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link AdaptiveLimiter}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class AdaptiveLimiterTest {
+    private static final long RTT_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    /**
+     * Expect that the limit grows while it is in use and latency is stable, up to the maximum.
+     */
+    @Test
+    public void testRelease_Grows() throws Exception {
+        // test data
+        final AdaptiveLimiter limiter = new AdaptiveLimiter(2, 4);
+
+        // test
+        for (int i = 0; i < 20; i++) {
+            runAtLimit(limiter, RTT_NANOS, false);
+        }
+
+        // assertions
+        assertEquals(4, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    /**
+     * Expect that the limit is cut when the server is overloaded.
+     */
+    @Test
+    public void testRelease_CutOnOverload() throws Exception {
+        // test data
+        final AdaptiveLimiter limiter = new AdaptiveLimiter(4, 4);
+
+        // test
+        limiter.release(limiter.acquire(), RTT_NANOS, true);
+
+        // assertions
+        assertEquals(3, limiter.getLimit());
+    }
+
+    /**
+     * Expect that the limit is cut when latency rises well above its average.
+     */
+    @Test
+    public void testRelease_CutOnRisingLatency() throws Exception {
+        // test data
+        final AdaptiveLimiter limiter = new AdaptiveLimiter(8, 8);
+        runAtLimit(limiter, RTT_NANOS, false);
+        assertEquals(8, limiter.getLimit());
+
+        // test
+        limiter.release(limiter.acquire(), RTT_NANOS * 5, false);
+
+        // assertions
+        assertEquals(7, limiter.getLimit());
+    }
+
+    /**
+     * Expect that requests beyond the limit wait, and are counted in the queue depth.
+     */
+    @Test
+    public void testAcquire_Queues() throws Exception {
+        // test data
+        final AdaptiveLimiter limiter = new AdaptiveLimiter(1, 1);
+        final long startNanos = limiter.acquire();
+        final CountDownLatch acquired = new CountDownLatch(1);
+
+        // test
+        final Thread waiter = new Thread(() -> {
+            try {
+                limiter.release(limiter.acquire(), RTT_NANOS, false);
+                acquired.countDown();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        waiter.start();
+
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (limiter.getQueueDepth() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+
+        // assertions
+        assertEquals(1, limiter.getQueueDepth());
+        assertEquals(1, acquired.getCount());
+
+        limiter.release(startNanos, RTT_NANOS, false);
+        assertTrue(acquired.await(5, TimeUnit.SECONDS));
+        assertEquals(0, limiter.getQueueDepth());
+    }
+
+    /**
+     * Acquire every permit, then release them all.
+     */
+    private static void runAtLimit(AdaptiveLimiter limiter, long rttNanos, boolean overloaded) throws Exception {
+        final int limit = limiter.getLimit();
+        final long[] starts = new long[limit];
+        for (int i = 0; i < limit; i++) {
+            starts[i] = limiter.acquire();
+        }
+        for (long start : starts) {
+            limiter.release(start, rttNanos, overloaded);
+        }
+    }
+}
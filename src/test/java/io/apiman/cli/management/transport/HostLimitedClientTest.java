@@ -0,0 +1,171 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.management.transport;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.ByteStreams;
+import io.apiman.cli.util.HashUtil;
+import org.junit.Test;
+import retrofit.client.Client;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedByteArray;
+import retrofit.mime.TypedInput;
+import retrofit.mime.TypedString;
+
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link HostLimitedClient}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class HostLimitedClientTest {
+    /**
+     * Expect that no more than the maximum number of requests to a host are in flight at once.
+     */
+    @Test
+    public void testExecute_LimitsRequestsPerHost() throws Exception {
+        // test data
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+
+        final Client delegate = request -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException ignored) {
+            } finally {
+                inFlight.decrementAndGet();
+            }
+            return new Response(request.getUrl(), HttpURLConnection.HTTP_OK, "OK", Collections.emptyList(),
+                    new TypedString("{}"));
+        };
+
+        final HostLimitedClient client = new HostLimitedClient(delegate, 2);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+        // test
+        // each body is read by the thread that made the request, as its permit is held until then
+        final List<Future<String>> responses = newArrayList();
+        for (int i = 0; i < 16; i++) {
+            responses.add(executor.submit(() -> new String(ByteStreams.toByteArray(client.execute(
+                    new Request("GET", "http://localhost:8080/apiman/gateways", Collections.emptyList(), null))
+                    .getBody().in()))));
+        }
+        for (Future<String> response : responses) {
+            assertEquals("{}", response.get());
+        }
+        executor.shutdown();
+
+        // assertions
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(2, maxInFlight.get());
+    }
+
+    /**
+     * Expect that a large response body is streamed to the caller, rather than buffered, and that the permit is
+     * released once the body has been read.
+     */
+    @Test
+    public void testExecute_StreamsBody() throws Exception {
+        // test data
+        final byte[] chunk = new byte[8192];
+        final int chunks = 1024;
+        final Hasher expected = Hashing.sha256().newHasher();
+        for (int i = 0; i < chunks; i++) {
+            expected.putBytes(chunk);
+        }
+
+        final AtomicInteger chunksRead = new AtomicInteger();
+        final Client delegate = request -> new Response(request.getUrl(), HttpURLConnection.HTTP_OK, "OK",
+                Collections.emptyList(), new TypedInput() {
+            @Override
+            public String mimeType() {
+                return "application/octet-stream";
+            }
+
+            @Override
+            public long length() {
+                return -1;
+            }
+
+            @Override
+            public InputStream in() {
+                return new InputStream() {
+                    private int position = chunk.length;
+
+                    @Override
+                    public int read() {
+                        throw new UnsupportedOperationException();
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) {
+                        if (position == chunk.length) {
+                            if (chunksRead.get() == chunks) {
+                                return -1;
+                            }
+                            chunksRead.incrementAndGet();
+                            position = 0;
+                        }
+                        final int read = Math.min(len, chunk.length - position);
+                        System.arraycopy(chunk, position, b, off, read);
+                        position += read;
+                        return read;
+                    }
+                };
+            }
+        });
+
+        final HostLimitedClient client = new HostLimitedClient(delegate, 1);
+        final Request request = new Request("GET", "http://localhost:8080/apiman/definition",
+                Collections.emptyList(), null);
+
+        // test
+        final Response response = client.execute(request);
+
+        // assertions
+        assertEquals(0, chunksRead.get());
+        assertFalse(response.getBody() instanceof TypedByteArray);
+        assertEquals(expected.hash().toString(), HashUtil.sha256(response.getBody()));
+        assertEquals(chunks, chunksRead.get());
+
+        // the permit has been released, so another request can proceed
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            assertEquals(HttpURLConnection.HTTP_OK,
+                    executor.submit(() -> client.execute(request)).get(5, TimeUnit.SECONDS).getStatus());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.management.transport;
+
+import org.junit.Before;
+import org.junit.Test;
+import retrofit.client.Client;
+import retrofit.client.Header;
+import retrofit.client.Request;
+import retrofit.client.Response;
+import retrofit.mime.TypedString;
+
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link RetryingClient}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class RetryingClientTest {
+    private static final String URL = "http://localhost:8080/apiman/gateways";
+
+    private RetryConfig retryConfig;
+    private RetryMetrics metrics;
+    private AtomicInteger attempts;
+
+    @Before
+    public void setUp() {
+        retryConfig = new RetryConfig(3, 1, 10, 0, 0);
+        metrics = new RetryMetrics();
+        attempts = new AtomicInteger();
+    }
+
+    /**
+     * Expect that a GET is retried after a transient server error, and that the retry is counted.
+     */
+    @Test
+    public void testExecute_RetriesGet() throws Exception {
+        // mock behaviour
+        final Client delegate = request -> attempts.incrementAndGet() < 3 ?
+                buildResponse(503, Collections.emptyList()) : buildResponse(200, Collections.emptyList());
+
+        // test
+        final Response response = new RetryingClient(delegate, retryConfig, metrics)
+                .execute(new Request("GET", URL, Collections.emptyList(), null));
+
+        // assertions
+        assertEquals(200, response.getStatus());
+        assertEquals(3, attempts.get());
+        assertEquals(2, metrics.getRetries());
+        assertEquals(Long.valueOf(2), metrics.getRetriesByReason().get("HTTP 503"));
+    }
+
+    /**
+     * Expect that the last response is returned once the retries are exhausted.
+     */
+    @Test
+    public void testExecute_RetriesExhausted() throws Exception {
+        // mock behaviour
+        final Client delegate = request -> {
+            attempts.incrementAndGet();
+            return buildResponse(502, Collections.emptyList());
+        };
+
+        // test
+        final Response response = new RetryingClient(delegate, retryConfig, metrics)
+                .execute(new Request("DELETE", URL, Collections.emptyList(), null));
+
+        // assertions
+        assertEquals(502, response.getStatus());
+        assertEquals(4, attempts.get());
+        assertEquals(3, metrics.getRetries());
+    }
+
+    /**
+     * Expect that a POST is not retried after a timeout, as the server may have acted on it.
+     */
+    @Test
+    public void testExecute_PostNotRetriedAfterTimeout() throws Exception {
+        // mock behaviour
+        final Client delegate = request -> {
+            attempts.incrementAndGet();
+            throw new SocketTimeoutException("Read timed out");
+        };
+
+        // test
+        try {
+            new RetryingClient(delegate, retryConfig, metrics)
+                    .execute(new Request("POST", URL, Collections.emptyList(), new TypedString("{}")));
+            fail(SocketTimeoutException.class + " expected");
+
+        } catch (SocketTimeoutException ignored) {
+        }
+
+        // assertions
+        assertEquals(1, attempts.get());
+        assertEquals(0, metrics.getRetries());
+    }
+
+    /**
+     * Expect that a POST is retried when the connection was refused, or the server was too busy.
+     */
+    @Test
+    public void testExecute_PostRetriedWhenNotProcessed() throws Exception {
+        // mock behaviour
+        final Client delegate = request -> {
+            switch (attempts.incrementAndGet()) {
+                case 1:
+                    throw new ConnectException("Connection refused");
+                case 2:
+                    return buildResponse(429, Collections.singletonList(new Header("Retry-After", "0")));
+                default:
+                    return buildResponse(201, Collections.emptyList());
+            }
+        };
+
+        // test
+        final Response response = new RetryingClient(delegate, retryConfig, metrics)
+                .execute(new Request("POST", URL, Collections.emptyList(), new TypedString("{}")));
+
+        // assertions
+        assertEquals(201, response.getStatus());
+        assertEquals(3, attempts.get());
+        assertEquals(Long.valueOf(1), metrics.getRetriesByReason().get("ConnectException"));
+        assertEquals(Long.valueOf(1), metrics.getRetriesByReason().get("HTTP 429"));
+    }
+
+    /**
+     * Expect that requests are rejected without being sent once the circuit breaker opens.
+     */
+    @Test
+    public void testExecute_CircuitBreakerOpens() throws Exception {
+        // test data
+        final RetryConfig breakerConfig = new RetryConfig(0, 1, 10, 2, 60000);
+
+        // mock behaviour
+        final Client delegate = request -> {
+            attempts.incrementAndGet();
+            throw new IOException("Connection reset");
+        };
+        final RetryingClient client = new RetryingClient(delegate, breakerConfig, metrics);
+
+        // test
+        int rejected = 0;
+        for (int i = 0; i < 5; i++) {
+            try {
+                client.execute(new Request("GET", URL, Collections.emptyList(), null));
+            } catch (CircuitBreakerOpenException e) {
+                rejected++;
+            } catch (IOException ignored) {
+            }
+        }
+
+        // assertions
+        assertEquals(2, attempts.get());
+        assertEquals(3, rejected);
+        assertEquals(1, metrics.getCircuitOpened());
+        assertEquals(3, metrics.getRejected());
+    }
+
+    /**
+     * Expect that Retry-After is parsed in both its forms.
+     */
+    @Test
+    public void testParseRetryAfterMillis() throws Exception {
+        assertEquals(0, RetryingClient.parseRetryAfterMillis(null, 0));
+        assertEquals(0, RetryingClient.parseRetryAfterMillis("soon", 0));
+        assertEquals(5000, RetryingClient.parseRetryAfterMillis("5", 0));
+        assertEquals(2000, RetryingClient.parseRetryAfterMillis("Thu, 01 Jan 1970 00:00:03 GMT", 1000));
+    }
+
+    private static Response buildResponse(int status, List<Header> headers) {
+        return new Response(URL, status, "", headers, new TypedString("{}"));
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.management.transport;
+
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsParameters;
+import com.sun.net.httpserver.HttpsServer;
+import io.apiman.cli.core.common.model.ManagementApiVersion;
+import io.apiman.cli.core.declarative.command.ApplyCommand;
+import io.apiman.cli.support.DeclarationGenerator;
+import org.apache.logging.log4j.Level;
+import org.apache.logging.log4j.core.config.Configurator;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.KeyStore;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the number of TLS handshakes and the elapsed time of applying a large declaration, using each
+ * transport, against a local HTTPS stub of the Management API.
+ * <p>
+ * Usage: <code>TransportBenchmark [apiCount] [parallelism]</code>
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class TransportBenchmark {
+    private static final String KEYSTORE_RESOURCE = "/stub-keystore.jks";
+    private static final String KEYSTORE_PASSWORD = "changeit";
+
+    public static void main(String... args) throws Exception {
+        final int apiCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        final int parallelism = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        Configurator.setRootLevel(Level.WARN);
+
+        // avoid delayed ACKs on small responses dominating the timings
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        // trust the stub certificate
+        final Path keystore = Files.createTempFile("stub-keystore", ".jks");
+        try (InputStream keystoreIn = TransportBenchmark.class.getResourceAsStream(KEYSTORE_RESOURCE)) {
+            Files.copy(keystoreIn, keystore, StandardCopyOption.REPLACE_EXISTING);
+        }
+        System.setProperty("javax.net.ssl.trustStore", keystore.toString());
+        System.setProperty("javax.net.ssl.trustStorePassword", KEYSTORE_PASSWORD);
+
+        final Path declaration = new DeclarationGenerator().withApis(apiCount).write(".yml");
+        final TlsStub stub = new TlsStub(keystore);
+
+        final List<TransportConfig> configs = Arrays.asList(
+                TransportConfig.DEFAULT,
+                new TransportConfig(TransportType.pooled, parallelism, TransportConfig.DEFAULT_KEEP_ALIVE_SECONDS, false),
+                new TransportConfig(TransportType.pooled, parallelism, TransportConfig.DEFAULT_KEEP_ALIVE_SECONDS, true));
+
+        System.out.printf("Applying %d APIs with parallelism %d%n", apiCount, parallelism);
+        System.out.printf("%-16s %10s %12s %10s%n", "transport", "requests", "handshakes", "millis");
+
+        try {
+            for (TransportConfig config : configs) {
+                TransportUtil.configure(config);
+                stub.reset();
+
+                final ApplyCommand applyCommand = new ApplyCommand();
+                applyCommand.setDeclarationFile(declaration);
+                applyCommand.setServerAddress(stub.getAddress());
+                applyCommand.setServerVersion(ManagementApiVersion.v12x);
+                applyCommand.setParallelism(parallelism);
+
+                final long start = System.nanoTime();
+                applyCommand.applyDeclaration();
+                final long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+                System.out.printf("%-16s %10d %12d %10d%n", config.getType() + (config.isHttp2() ? "+http2" : ""),
+                        stub.getRequests(), stub.getHandshakes(), elapsed);
+            }
+        } finally {
+            stub.stop();
+            Files.deleteIfExists(declaration);
+            Files.deleteIfExists(keystore);
+        }
+    }
+
+    /**
+     * Answers every request as though the item exists and is ready, counting requests and TLS handshakes.
+     */
+    private static class TlsStub {
+        private final HttpsServer server;
+        private final ExecutorService executor = Executors.newCachedThreadPool();
+        private final AtomicInteger requests = new AtomicInteger();
+        private final AtomicInteger handshakes = new AtomicInteger();
+
+        TlsStub(Path keystorePath) throws Exception {
+            final KeyStore keyStore = KeyStore.getInstance("JKS");
+            try (InputStream keystoreIn = Files.newInputStream(keystorePath)) {
+                keyStore.load(keystoreIn, KEYSTORE_PASSWORD.toCharArray());
+            }
+            final KeyManagerFactory keyManagerFactory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+            keyManagerFactory.init(keyStore, KEYSTORE_PASSWORD.toCharArray());
+
+            final SSLContext sslContext = SSLContext.getInstance("TLS");
+            sslContext.init(keyManagerFactory.getKeyManagers(), null, null);
+
+            server = HttpsServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+            server.setHttpsConfigurator(new HttpsConfigurator(sslContext) {
+                @Override
+                public void configure(HttpsParameters params) {
+                    // called for each new connection
+                    handshakes.incrementAndGet();
+                    params.setSSLParameters(getSSLContext().getDefaultSSLParameters());
+                }
+            });
+            server.createContext("/", this::handle);
+            server.setExecutor(executor);
+            server.start();
+        }
+
+        private void handle(HttpExchange exchange) throws IOException {
+            requests.incrementAndGet();
+            try (InputStream requestBody = exchange.getRequestBody()) {
+                ByteStreams.toByteArray(requestBody);
+            }
+
+            final String path = exchange.getRequestURI().getPath();
+            if ("POST".equals(exchange.getRequestMethod()) && path.endsWith("/actions")) {
+                exchange.sendResponseHeaders(HttpURLConnection.HTTP_NO_CONTENT, -1);
+                exchange.close();
+                return;
+            }
+
+            final String body;
+            if ("GET".equals(exchange.getRequestMethod())) {
+                body = path.endsWith("/policies") ? "[]" : "{\"status\":\"Ready\"}";
+            } else {
+                body = "{}";
+            }
+
+            final byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(HttpURLConnection.HTTP_OK, bytes.length);
+            try (OutputStream responseBody = exchange.getResponseBody()) {
+                responseBody.write(bytes);
+            }
+        }
+
+        String getAddress() {
+            return String.format("https://localhost:%d/apiman", server.getAddress().getPort());
+        }
+
+        int getRequests() {
+            return requests.get();
+        }
+
+        int getHandshakes() {
+            return handshakes.get();
+        }
+
+        void reset() {
+            requests.set(0);
+            handshakes.set(0);
+        }
+
+        void stop() {
+            server.stop(0);
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package io.apiman.cli.support;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.collect.ImmutableMap;
+import io.apiman.cli.util.MappingUtil;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static java.util.Collections.singletonList;
+
+/**
+ * Generates synthetic declarations of a given size, for benchmarks and load tests.
+ * <p>
+ * Each API has one or more versions, each with the same number of policies, cycling through a set of
+ * representative policy configurations. Endpoints can optionally be expressed as placeholders, with their
+ * values either returned by {@link #getProperties()} or declared as shared properties.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class DeclarationGenerator {
+    public static final String GATEWAY_NAME = "test-gw";
+    public static final String ORG_NAME = "test";
+
+    private static final List<Map<String, Object>> POLICIES = buildPolicies();
+
+    private int apiCount = 10;
+    private int versionsPerApi = 1;
+    private int policiesPerApi = 1;
+    private boolean placeholders;
+    private boolean sharedProperties;
+    private boolean sharedPolicies;
+
+    /**
+     * @param apiCount the number of distinct APIs
+     * @return this generator
+     */
+    public DeclarationGenerator withApis(int apiCount) {
+        this.apiCount = apiCount;
+        return this;
+    }
+
+    /**
+     * @param versionsPerApi the number of versions of each API
+     * @return this generator
+     */
+    public DeclarationGenerator withVersions(int versionsPerApi) {
+        this.versionsPerApi = versionsPerApi;
+        return this;
+    }
+
+    /**
+     * @param policiesPerApi the number of policies applied to each API version
+     * @return this generator
+     */
+    public DeclarationGenerator withPolicies(int policiesPerApi) {
+        this.policiesPerApi = policiesPerApi;
+        return this;
+    }
+
+    /**
+     * Express each API endpoint as a placeholder.
+     *
+     * @param sharedProperties whether to declare the placeholder values as shared properties, rather than
+     *                         returning them from {@link #getProperties()}
+     * @return this generator
+     */
+    public DeclarationGenerator withPlaceholders(boolean sharedProperties) {
+        this.placeholders = true;
+        this.sharedProperties = sharedProperties;
+        return this;
+    }
+
+    /**
+     * Declare the policies once as shared policies, referenced by each API.
+     *
+     * @return this generator
+     */
+    public DeclarationGenerator withSharedPolicies() {
+        this.sharedPolicies = true;
+        return this;
+    }
+
+    /**
+     * @return the total number of API versions in the declaration
+     */
+    public int getApiVersionCount() {
+        return apiCount * versionsPerApi;
+    }
+
+    /**
+     * @return the values of the placeholders in the declaration that are not declared as shared properties
+     */
+    public Map<String, String> getProperties() {
+        return placeholders && !sharedProperties ? buildProperties() : new LinkedHashMap<>();
+    }
+
+    /**
+     * @return the declaration as a tree of Maps and Lists
+     */
+    public Map<String, Object> generate() {
+        final Map<String, Object> declaration = new LinkedHashMap<>();
+
+        declaration.put("system", ImmutableMap.of("gateways", singletonList(ImmutableMap.of(
+                "name", GATEWAY_NAME,
+                "description", "Test Gateway",
+                "type", "REST",
+                "config", ImmutableMap.of(
+                        "endpoint", "http://localhost:8080/apiman-gateway-api",
+                        "username", "apimanager",
+                        "password", "apiman123!")))));
+
+        final Map<String, Object> shared = new LinkedHashMap<>();
+        if (placeholders && sharedProperties) {
+            shared.put("properties", buildProperties());
+        }
+        if (sharedPolicies) {
+            final List<Map<String, Object>> policies = new ArrayList<>();
+            for (int p = 0; p < policiesPerApi; p++) {
+                final Map<String, Object> policy = new LinkedHashMap<>();
+                policy.put("$id", "shared" + p);
+                policy.putAll(buildPolicy(p));
+                policies.add(policy);
+            }
+            shared.put("policies", policies);
+        }
+        if (!shared.isEmpty()) {
+            declaration.put("shared", shared);
+        }
+
+        final List<Map<String, Object>> apis = new ArrayList<>();
+        for (int a = 0; a < apiCount; a++) {
+            for (int v = 1; v <= versionsPerApi; v++) {
+                apis.add(buildApi(a, v));
+            }
+        }
+
+        final Map<String, Object> org = new LinkedHashMap<>();
+        org.put("name", ORG_NAME);
+        org.put("description", "Test organisation");
+        org.put("apis", apis);
+        declaration.put("org", org);
+
+        return declaration;
+    }
+
+    /**
+     * @return the declaration as YAML
+     */
+    public String toYaml() throws IOException {
+        return MappingUtil.YAML_MAPPER.writeValueAsString(generate());
+    }
+
+    /**
+     * @return the declaration as JSON
+     */
+    public String toJson() throws IOException {
+        return MappingUtil.JSON_MAPPER.writeValueAsString(generate());
+    }
+
+    /**
+     * Write the declaration to a temporary file, in the format indicated by the extension.
+     *
+     * @param extension the file extension, either <code>.yml</code> or <code>.json</code>
+     * @return the Path of the file
+     */
+    public Path write(String extension) throws IOException {
+        final ObjectMapper mapper = ".json".equals(extension) ? MappingUtil.JSON_MAPPER : MappingUtil.YAML_MAPPER;
+
+        final Path file = Files.createTempFile("declaration", extension);
+        mapper.writeValue(file.toFile(), generate());
+        return file;
+    }
+
+    private Map<String, Object> buildApi(int apiIndex, int version) {
+        final Map<String, Object> config = new LinkedHashMap<>();
+        config.put("endpoint", placeholders
+                ? "${" + endpointProperty(apiIndex) + "}/v" + version
+                : buildEndpoint(apiIndex) + "/v" + version);
+        config.put("endpointType", "rest");
+        config.put("public", true);
+        config.put("gateway", GATEWAY_NAME);
+
+        final List<Object> policies = new ArrayList<>();
+        for (int p = 0; p < policiesPerApi; p++) {
+            policies.add(sharedPolicies ? "shared" + p : buildPolicy(p));
+        }
+
+        final Map<String, Object> api = new LinkedHashMap<>();
+        api.put("name", "api" + apiIndex);
+        api.put("description", "Example API " + apiIndex);
+        api.put("version", version + ".0");
+        api.put("published", true);
+        api.put("config", config);
+        api.put("policies", policies);
+        return api;
+    }
+
+    private Map<String, String> buildProperties() {
+        final Map<String, String> properties = new LinkedHashMap<>();
+        for (int a = 0; a < apiCount; a++) {
+            properties.put(endpointProperty(a), buildEndpoint(a));
+        }
+        return properties;
+    }
+
+    private static String endpointProperty(int apiIndex) {
+        return "api" + apiIndex + ".endpoint";
+    }
+
+    private static String buildEndpoint(int apiIndex) {
+        return "http://backend" + (apiIndex % 10) + ".example.com/api" + apiIndex;
+    }
+
+    /**
+     * @param index the index of the policy within the API
+     * @return a policy, with a distinct name for each index
+     */
+    private static Map<String, Object> buildPolicy(int index) {
+        final Map<String, Object> template = POLICIES.get(index % POLICIES.size());
+        final int cycle = index / POLICIES.size();
+
+        final Map<String, Object> policy = new LinkedHashMap<>();
+        policy.put("name", cycle > 0 ? template.get("name") + String.valueOf(cycle) : template.get("name"));
+        policy.put("config", template.get("config"));
+        return policy;
+    }
+
+    private static List<Map<String, Object>> buildPolicies() {
+        final List<Map<String, Object>> policies = new ArrayList<>();
+        policies.add(ImmutableMap.of("name", "CachingPolicy",
+                "config", ImmutableMap.of("ttl", 60)));
+        policies.add(ImmutableMap.of("name", "RateLimitingPolicy",
+                "config", ImmutableMap.of("limit", 100, "granularity", "Api", "period", "Minute")));
+        policies.add(ImmutableMap.of("name", "IPWhitelistPolicy",
+                "config", ImmutableMap.of("ipList", singletonList("10.0.0.0/8"), "responseCode", 403)));
+        policies.add(ImmutableMap.of("name", "HeaderAllowDenyPolicy",
+                "config", ImmutableMap.of("rules", singletonList(ImmutableMap.of(
+                        "headerName", "X-Api-Key",
+                        "headerValueRegex", "^[a-f0-9]{32}$",
+                        "allowIfHeaderMissing", false,
+                        "allowIfNoRulesMatch", false)))));
+        return policies;
+    }
+}
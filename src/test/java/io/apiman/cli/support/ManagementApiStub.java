@@ -0,0 +1,771 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.support;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.io.ByteStreams;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.apiman.cli.util.MappingUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static com.google.common.collect.Lists.newArrayList;
+
+/**
+ * An in-process stand-in for the apiman Management API, holding its state in memory.
+ * <p>
+ * Implements the endpoints used by the CLI, for both the 1.1.x (<code>services</code>) and 1.2.x
+ * (<code>apis</code>) API paths. Each endpoint can be given a latency, jitter and error rate, and the stub
+ * counts the requests made to each endpoint and the peak number of requests in flight, so the behaviour of
+ * the CLI under load can be measured without a real server.
+ * <p>
+ * Usage: <code>ManagementApiStub [port]</code>
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class ManagementApiStub implements AutoCloseable {
+    private static final String CONTEXT_PATH = "/apiman";
+    private static final String STATUS_CREATED = "Created";
+    private static final String STATUS_READY = "Ready";
+    private static final String STATUS_PUBLISHED = "Published";
+    private static final String STATUS_RETIRED = "Retired";
+    private static final JsonNodeFactory NODES = JsonNodeFactory.instance;
+
+    /**
+     * The Management API endpoints implemented by the stub.
+     */
+    public enum Endpoint {
+        GATEWAY_CREATE("POST", "/gateways"),
+        GATEWAY_LIST("GET", "/gateways"),
+        GATEWAY_FETCH("GET", "/gateways/([^/]+)"),
+        GATEWAY_TEST("PUT", "/gateways"),
+        GATEWAY_DELETE("DELETE", "/gateways/([^/]+)"),
+        PLUGIN_CREATE("POST", "/plugins"),
+        PLUGIN_LIST("GET", "/plugins"),
+        PLUGIN_FETCH("GET", "/plugins/([^/]+)"),
+        PLUGIN_DELETE("DELETE", "/plugins/([^/]+)"),
+        ORG_CREATE("POST", "/organizations"),
+        ORG_FETCH("GET", "/organizations/([^/]+)"),
+        API_CREATE("POST", "/organizations/([^/]+)/(?:apis|services)"),
+        API_LIST("GET", "/organizations/([^/]+)/(?:apis|services)"),
+        API_FETCH("GET", "/organizations/([^/]+)/(?:apis|services)/([^/]+)"),
+        API_VERSION_CREATE("POST", "/organizations/([^/]+)/(?:apis|services)/([^/]+)/versions"),
+        API_VERSION_LIST("GET", "/organizations/([^/]+)/(?:apis|services)/([^/]+)/versions"),
+        API_VERSION_FETCH("GET", "/organizations/([^/]+)/(?:apis|services)/([^/]+)/versions/([^/]+)"),
+        API_VERSION_CONFIGURE("PUT", "/organizations/([^/]+)/(?:apis|services)/([^/]+)/versions/([^/]+)"),
+        API_DEFINITION_FETCH("GET", "/organizations/([^/]+)/(?:apis|services)/([^/]+)/versions/([^/]+)/definition"),
+        API_DEFINITION_SET("PUT", "/organizations/([^/]+)/(?:apis|services)/([^/]+)/versions/([^/]+)/definition"),
+        POLICY_ADD("POST", "/organizations/([^/]+)/(?:apis|services)/([^/]+)/versions/([^/]+)/policies"),
+        POLICY_LIST("GET", "/organizations/([^/]+)/(?:apis|services)/([^/]+)/versions/([^/]+)/policies"),
+        POLICY_FETCH("GET", "/organizations/([^/]+)/(?:apis|services)/([^/]+)/versions/([^/]+)/policies/([^/]+)"),
+        POLICY_CONFIGURE("PUT", "/organizations/([^/]+)/(?:apis|services)/([^/]+)/versions/([^/]+)/policies/([^/]+)"),
+        POLICY_DELETE("DELETE", "/organizations/([^/]+)/(?:apis|services)/([^/]+)/versions/([^/]+)/policies/([^/]+)"),
+        POLICY_REORDER("POST", "/organizations/([^/]+)/(?:apis|services)/([^/]+)/versions/([^/]+)/reorderPolicies"),
+        ACTION("POST", "/actions");
+
+        private final String method;
+        private final Pattern pattern;
+
+        Endpoint(String method, String pattern) {
+            this.method = method;
+            this.pattern = Pattern.compile(pattern);
+        }
+
+        public String getMethod() {
+            return method;
+        }
+    }
+
+    /**
+     * How the stub responds to requests to an endpoint.
+     */
+    public static class Behaviour {
+        public static final Behaviour NONE = new Behaviour(0, 0, 0);
+
+        private final long latencyMillis;
+        private final long jitterMillis;
+        private final double errorRate;
+        private final int errorStatus;
+
+        /**
+         * @param latencyMillis the delay before each response
+         * @param jitterMillis  the maximum random delay added to the latency
+         * @param errorRate     the fraction of requests, from 0 to 1, answered with a 503 instead of being handled
+         */
+        public Behaviour(long latencyMillis, long jitterMillis, double errorRate) {
+            this(latencyMillis, jitterMillis, errorRate, HttpURLConnection.HTTP_UNAVAILABLE);
+        }
+
+        /**
+         * @param latencyMillis the delay before each response
+         * @param jitterMillis  the maximum random delay added to the latency
+         * @param errorRate     the fraction of requests, from 0 to 1, answered with an error instead of being handled
+         * @param errorStatus   the HTTP status of injected errors
+         */
+        public Behaviour(long latencyMillis, long jitterMillis, double errorRate, int errorStatus) {
+            this.latencyMillis = latencyMillis;
+            this.jitterMillis = jitterMillis;
+            this.errorRate = errorRate;
+            this.errorStatus = errorStatus;
+        }
+    }
+
+    /**
+     * A response to a request.
+     */
+    private static class StubResponse {
+        private final int status;
+        private final JsonNode body;
+
+        /**
+         * Sent as-is instead of {@link #body}, if set.
+         */
+        private byte[] rawBody;
+
+        private StubResponse(int status, JsonNode body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+
+    /**
+     * An API version, with its policies.
+     */
+    private static class StubApiVersion {
+        private final ObjectNode version;
+        private final List<ObjectNode> policies = newArrayList();
+        private String definition;
+
+        private StubApiVersion(ObjectNode version) {
+            this.version = version;
+        }
+    }
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    private final Map<Endpoint, Behaviour> behaviours = new ConcurrentHashMap<>();
+    private volatile Behaviour defaultBehaviour = Behaviour.NONE;
+
+    private final Map<Endpoint, AtomicLong> requestCounts = new EnumMap<>(Endpoint.class);
+    private final AtomicLong unmatchedRequests = new AtomicLong();
+    private final AtomicLong injectedErrors = new AtomicLong();
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger peakInFlight = new AtomicInteger();
+
+    private final ConcurrentMap<String, ObjectNode> gateways = new ConcurrentHashMap<>();
+    private final ConcurrentMap<Long, ObjectNode> plugins = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ObjectNode> orgs = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, ObjectNode> apis = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, StubApiVersion> apiVersions = new ConcurrentHashMap<>();
+    private final AtomicLong pluginIds = new AtomicLong();
+    private final AtomicLong policyIds = new AtomicLong();
+
+    /**
+     * Start the stub on a free port.
+     */
+    public ManagementApiStub() throws IOException {
+        this(0);
+    }
+
+    /**
+     * Start the stub on the given port.
+     *
+     * @param port the port, or <code>0</code> for a free port
+     */
+    public ManagementApiStub(int port) throws IOException {
+        for (Endpoint endpoint : Endpoint.values()) {
+            requestCounts.put(endpoint, new AtomicLong());
+        }
+
+        // avoid delayed ACKs on small responses dominating the timings
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", port), 0);
+        server.createContext(CONTEXT_PATH, this::handle);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    public static void main(String... args) throws Exception {
+        final int port = args.length > 0 ? Integer.parseInt(args[0]) : 8080;
+        final ManagementApiStub stub = new ManagementApiStub(port);
+        Runtime.getRuntime().addShutdownHook(new Thread(stub::close));
+        System.out.printf("Management API stub listening on %s%n", stub.getAddress());
+    }
+
+    /**
+     * @return the Management API address, to be passed as the server address to the CLI
+     */
+    public String getAddress() {
+        return String.format("http://localhost:%d%s", server.getAddress().getPort(), CONTEXT_PATH);
+    }
+
+    /**
+     * Set the behaviour of all endpoints without their own behaviour.
+     *
+     * @param behaviour the behaviour
+     * @return this stub
+     */
+    public ManagementApiStub withDefaultBehaviour(Behaviour behaviour) {
+        this.defaultBehaviour = behaviour;
+        return this;
+    }
+
+    /**
+     * Set the behaviour of an endpoint.
+     *
+     * @param endpoint  the endpoint
+     * @param behaviour the behaviour
+     * @return this stub
+     */
+    public ManagementApiStub withBehaviour(Endpoint endpoint, Behaviour behaviour) {
+        behaviours.put(endpoint, behaviour);
+        return this;
+    }
+
+    /**
+     * @param endpoint the endpoint
+     * @return the number of requests made to the endpoint, including those answered with an injected error
+     */
+    public long getRequests(Endpoint endpoint) {
+        return requestCounts.get(endpoint).get();
+    }
+
+    /**
+     * @return the number of requests made to all endpoints, including those not implemented by the stub
+     */
+    public long getRequests() {
+        return requestCounts.values().stream().mapToLong(AtomicLong::get).sum() + unmatchedRequests.get();
+    }
+
+    /**
+     * @return the number of requests answered with an injected error
+     */
+    public long getInjectedErrors() {
+        return injectedErrors.get();
+    }
+
+    /**
+     * @return the largest number of requests in flight at once
+     */
+    public int getPeakInFlight() {
+        return peakInFlight.get();
+    }
+
+    /**
+     * Reset the request counters, leaving the server state intact.
+     */
+    public void resetCounters() {
+        requestCounts.values().forEach(count -> count.set(0));
+        unmatchedRequests.set(0);
+        injectedErrors.set(0);
+        peakInFlight.set(0);
+    }
+
+    /**
+     * Discard the server state and reset the request counters.
+     */
+    public void reset() {
+        gateways.clear();
+        plugins.clear();
+        orgs.clear();
+        apis.clear();
+        apiVersions.clear();
+        resetCounters();
+    }
+
+    public Collection<ObjectNode> getGateways() {
+        return gateways.values();
+    }
+
+    public Collection<ObjectNode> getPlugins() {
+        return plugins.values();
+    }
+
+    public Collection<ObjectNode> getOrgs() {
+        return orgs.values();
+    }
+
+    public Collection<ObjectNode> getApis() {
+        return apis.values();
+    }
+
+    /**
+     * @return the status of the API version, or <code>null</code> if it does not exist
+     */
+    public String getApiVersionStatus(String orgName, String apiName, String version) {
+        final StubApiVersion apiVersion = apiVersions.get(buildKey(orgName, apiName, version));
+        return null != apiVersion ? apiVersion.version.path("status").asText() : null;
+    }
+
+    /**
+     * @return the policies of the API version, or <code>null</code> if it does not exist
+     */
+    public List<ObjectNode> getPolicies(String orgName, String apiName, String version) {
+        final StubApiVersion apiVersion = apiVersions.get(buildKey(orgName, apiName, version));
+        if (null == apiVersion) {
+            return null;
+        }
+        synchronized (apiVersion) {
+            return newArrayList(apiVersion.policies);
+        }
+    }
+
+    /**
+     * @return the definition of the API version, or <code>null</code> if it does not exist or has none
+     */
+    public String getDefinition(String orgName, String apiName, String version) {
+        final StubApiVersion apiVersion = apiVersions.get(buildKey(orgName, apiName, version));
+        if (null == apiVersion) {
+            return null;
+        }
+        synchronized (apiVersion) {
+            return apiVersion.definition;
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        peakInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+        try {
+            final byte[] requestBody;
+            try (InputStream in = exchange.getRequestBody()) {
+                requestBody = ByteStreams.toByteArray(in);
+            }
+
+            final String method = exchange.getRequestMethod();
+            final String path = exchange.getRequestURI().getPath().substring(CONTEXT_PATH.length());
+
+            StubResponse response = null;
+            for (Endpoint endpoint : Endpoint.values()) {
+                final Matcher matcher = endpoint.pattern.matcher(path);
+                if (endpoint.method.equals(method) && matcher.matches()) {
+                    requestCounts.get(endpoint).incrementAndGet();
+                    response = respond(endpoint, matcher, requestBody);
+                    break;
+                }
+            }
+            if (null == response) {
+                unmatchedRequests.incrementAndGet();
+                response = error(HttpURLConnection.HTTP_NOT_FOUND, "No such endpoint: " + method + " " + path);
+            }
+
+            send(exchange, response);
+
+        } finally {
+            inFlight.decrementAndGet();
+            exchange.close();
+        }
+    }
+
+    private StubResponse respond(Endpoint endpoint, Matcher matcher, byte[] requestBody) throws IOException {
+        final Behaviour behaviour = behaviours.getOrDefault(endpoint, defaultBehaviour);
+        delay(behaviour);
+
+        if (behaviour.errorRate > 0 && ThreadLocalRandom.current().nextDouble() < behaviour.errorRate) {
+            injectedErrors.incrementAndGet();
+            return error(behaviour.errorStatus, "Injected error");
+        }
+
+        final JsonNode body = requestBody.length > 0 ? MappingUtil.WIRE_MAPPER.readTree(requestBody) : null;
+
+        switch (endpoint) {
+            case GATEWAY_CREATE:
+                // like the server, the ID defaults to the name
+                if (!body.hasNonNull("id") && body.hasNonNull("name")) {
+                    ((ObjectNode) body).set("id", body.get("name"));
+                }
+                return create(gateways, textOrNull(body, "id", "name"), (ObjectNode) body);
+            case GATEWAY_LIST:
+                return list(gateways.values());
+            case GATEWAY_FETCH:
+                return fetch(gateways.get(matcher.group(1)));
+            case GATEWAY_TEST:
+                return ok(NODES.objectNode().put("success", true));
+            case GATEWAY_DELETE:
+                return delete(gateways.remove(matcher.group(1)));
+
+            case PLUGIN_CREATE:
+                return createPlugin((ObjectNode) body);
+            case PLUGIN_LIST:
+                return list(plugins.values());
+            case PLUGIN_FETCH:
+                return fetch(plugins.get(parseId(matcher.group(1))));
+            case PLUGIN_DELETE:
+                return delete(plugins.remove(parseId(matcher.group(1))));
+
+            case ORG_CREATE:
+                return create(orgs, textOrNull(body, "name"), (ObjectNode) body);
+            case ORG_FETCH:
+                return fetch(orgs.get(matcher.group(1)));
+
+            case API_CREATE:
+                return createApi(matcher.group(1), (ObjectNode) body);
+            case API_LIST:
+                return listApis(matcher.group(1));
+            case API_FETCH:
+                return fetch(apis.get(buildKey(matcher.group(1), matcher.group(2))));
+
+            case API_VERSION_CREATE:
+                return createVersion(matcher.group(1), matcher.group(2), textOrNull(body, "version"));
+            case API_VERSION_LIST:
+                return listVersions(matcher.group(1), matcher.group(2));
+            case API_VERSION_FETCH:
+                return withVersion(matcher, apiVersion -> ok(apiVersion.version.deepCopy()));
+            case API_VERSION_CONFIGURE:
+                return withVersion(matcher, apiVersion -> configure(apiVersion, body));
+            case API_DEFINITION_FETCH:
+                return withVersion(matcher, apiVersion -> {
+                    if (null == apiVersion.definition) {
+                        return error(HttpURLConnection.HTTP_NOT_FOUND, "No definition");
+                    }
+                    final StubResponse response = ok(null);
+                    response.rawBody = apiVersion.definition.getBytes(StandardCharsets.UTF_8);
+                    return response;
+                });
+            case API_DEFINITION_SET:
+                return withVersion(matcher, apiVersion -> {
+                    apiVersion.definition = new String(requestBody, StandardCharsets.UTF_8);
+                    return ok(null);
+                });
+
+            case POLICY_ADD:
+                return withVersion(matcher, apiVersion -> addPolicy(apiVersion, body));
+            case POLICY_LIST:
+                // like the server, list summaries, without configuration
+                return withVersion(matcher, apiVersion -> list(apiVersion.policies.stream()
+                        .map(policy -> policy.deepCopy().without("configuration"))
+                        .collect(Collectors.toList())));
+            case POLICY_FETCH:
+                return withVersion(matcher, apiVersion -> fetchPolicy(apiVersion, parseId(matcher.group(4))));
+            case POLICY_CONFIGURE:
+                return withVersion(matcher, apiVersion -> configurePolicy(apiVersion, parseId(matcher.group(4)), body));
+            case POLICY_DELETE:
+                return withVersion(matcher, apiVersion -> delete(apiVersion.policies.stream()
+                        .filter(policy -> parseId(matcher.group(4)).equals(policy.path("id").asLong()))
+                        .findFirst()
+                        .filter(apiVersion.policies::remove)
+                        .orElse(null)));
+            case POLICY_REORDER:
+                return withVersion(matcher, apiVersion -> reorderPolicies(apiVersion, body));
+
+            case ACTION:
+                return performAction(body);
+
+            default:
+                throw new IllegalStateException("Unsupported endpoint: " + endpoint);
+        }
+    }
+
+    private StubResponse createPlugin(ObjectNode plugin) {
+        final boolean installed = plugins.values().stream().anyMatch(existing ->
+                existing.path("groupId").equals(plugin.path("groupId")) &&
+                        existing.path("artifactId").equals(plugin.path("artifactId")) &&
+                        existing.path("version").equals(plugin.path("version")) &&
+                        existing.path("classifier").equals(plugin.path("classifier")));
+
+        if (installed) {
+            return error(HttpURLConnection.HTTP_CONFLICT, "Plugin already exists");
+        }
+
+        final long pluginId = pluginIds.incrementAndGet();
+        plugin.put("id", pluginId);
+        plugins.put(pluginId, plugin);
+        return ok(plugin);
+    }
+
+    private StubResponse createApi(String orgName, ObjectNode api) {
+        if (!orgs.containsKey(orgName)) {
+            return error(HttpURLConnection.HTTP_NOT_FOUND, "Organization not found: " + orgName);
+        }
+
+        final String apiName = textOrNull(api, "name");
+        api.put("id", apiName);
+        api.put("organizationName", orgName);
+        return create(apis, buildKey(orgName, apiName), api);
+    }
+
+    private StubResponse listApis(String orgName) {
+        if (!orgs.containsKey(orgName)) {
+            return error(HttpURLConnection.HTTP_NOT_FOUND, "Organization not found: " + orgName);
+        }
+        return list(apis.values().stream()
+                .filter(api -> orgName.equals(api.path("organizationName").asText()))
+                .collect(Collectors.toList()));
+    }
+
+    private StubResponse createVersion(String orgName, String apiName, String version) {
+        final ObjectNode api = apis.get(buildKey(orgName, apiName));
+        if (null == api) {
+            return error(HttpURLConnection.HTTP_NOT_FOUND, "API not found: " + apiName);
+        }
+
+        final ObjectNode apiVersion = api.deepCopy();
+        apiVersion.put("version", version);
+        apiVersion.put("status", STATUS_CREATED);
+        final ObjectNode created = apiVersion.deepCopy();
+
+        final StubApiVersion existing = apiVersions.putIfAbsent(
+                buildKey(orgName, apiName, version), new StubApiVersion(apiVersion));
+
+        return null == existing ? ok(created) : error(HttpURLConnection.HTTP_CONFLICT, "API version already exists");
+    }
+
+    private StubResponse listVersions(String orgName, String apiName) {
+        if (!apis.containsKey(buildKey(orgName, apiName))) {
+            return error(HttpURLConnection.HTTP_NOT_FOUND, "API not found: " + apiName);
+        }
+
+        final String prefix = buildKey(orgName, apiName) + "/";
+        final List<JsonNode> versions = newArrayList();
+        apiVersions.forEach((key, apiVersion) -> {
+            if (key.startsWith(prefix)) {
+                synchronized (apiVersion) {
+                    versions.add(apiVersion.version.deepCopy());
+                }
+            }
+        });
+        return list(versions);
+    }
+
+    /**
+     * An API version becomes ready once it has an endpoint, and remains published once published.
+     */
+    private StubResponse configure(StubApiVersion apiVersion, JsonNode config) {
+        config.fields().forEachRemaining(field -> apiVersion.version.set(field.getKey(), field.getValue()));
+
+        if (STATUS_CREATED.equals(apiVersion.version.path("status").asText()) && config.hasNonNull("endpoint")) {
+            apiVersion.version.put("status", STATUS_READY);
+        }
+        return ok(apiVersion.version.deepCopy());
+    }
+
+    private StubResponse addPolicy(StubApiVersion apiVersion, JsonNode body) {
+        final ObjectNode policy = NODES.objectNode();
+        policy.put("id", policyIds.incrementAndGet());
+        policy.put("policyDefinitionId", body.path("definitionId").asText());
+        policy.set("configuration", body.get("configuration"));
+        apiVersion.policies.add(policy);
+        return ok(policy);
+    }
+
+    private StubResponse fetchPolicy(StubApiVersion apiVersion, Long policyId) {
+        for (ObjectNode policy : apiVersion.policies) {
+            if (policyId.equals(policy.path("id").asLong())) {
+                return ok(policy.deepCopy());
+            }
+        }
+        return error(HttpURLConnection.HTTP_NOT_FOUND, "Policy not found: " + policyId);
+    }
+
+    private StubResponse configurePolicy(StubApiVersion apiVersion, Long policyId, JsonNode body) {
+        for (ObjectNode policy : apiVersion.policies) {
+            if (policyId.equals(policy.path("id").asLong())) {
+                policy.set("configuration", body.get("configuration"));
+                return ok(null);
+            }
+        }
+        return error(HttpURLConnection.HTTP_NOT_FOUND, "Policy not found: " + policyId);
+    }
+
+    private StubResponse reorderPolicies(StubApiVersion apiVersion, JsonNode chain) {
+        final List<ObjectNode> reordered = newArrayList();
+        for (JsonNode summary : chain.path("policies")) {
+            final Optional<ObjectNode> policy = apiVersion.policies.stream()
+                    .filter(p -> summary.path("id").asLong() == p.path("id").asLong())
+                    .findFirst();
+            if (!policy.isPresent()) {
+                return error(HttpURLConnection.HTTP_NOT_FOUND, "Policy not found: " + summary.path("id"));
+            }
+            reordered.add(policy.get());
+        }
+        if (reordered.size() != apiVersion.policies.size()) {
+            return error(HttpURLConnection.HTTP_BAD_REQUEST, "Policy chain must include every policy");
+        }
+
+        apiVersion.policies.clear();
+        apiVersion.policies.addAll(reordered);
+        return ok(null);
+    }
+
+    private StubResponse performAction(JsonNode action) {
+        final String type = action.path("type").asText();
+        final boolean retire = "retireAPI".equals(type) || "retireService".equals(type);
+        if (!retire && !"publishAPI".equals(type) && !"publishService".equals(type)) {
+            return error(HttpURLConnection.HTTP_BAD_REQUEST, "Unsupported action: " + type);
+        }
+
+        final StubApiVersion apiVersion = apiVersions.get(buildKey(action.path("organizationId").asText(),
+                action.path("entityId").asText(), action.path("entityVersion").asText()));
+        if (null == apiVersion) {
+            return error(HttpURLConnection.HTTP_NOT_FOUND, "API version not found");
+        }
+
+        synchronized (apiVersion) {
+            final String status = apiVersion.version.path("status").asText();
+            if (retire) {
+                if (!STATUS_PUBLISHED.equals(status)) {
+                    return error(HttpURLConnection.HTTP_CONFLICT, "API version not published: " + status);
+                }
+                apiVersion.version.put("status", STATUS_RETIRED);
+                return new StubResponse(HttpURLConnection.HTTP_NO_CONTENT, null);
+            }
+            if (!STATUS_READY.equals(status) && !STATUS_PUBLISHED.equals(status)) {
+                return error(HttpURLConnection.HTTP_CONFLICT, "API version not ready: " + status);
+            }
+            apiVersion.version.put("status", STATUS_PUBLISHED);
+        }
+        return new StubResponse(HttpURLConnection.HTTP_NO_CONTENT, null);
+    }
+
+    private StubResponse withVersion(Matcher matcher, Function<StubApiVersion, StubResponse> handler) {
+        final StubApiVersion apiVersion = apiVersions.get(
+                buildKey(matcher.group(1), matcher.group(2), matcher.group(3)));
+
+        if (null == apiVersion) {
+            return error(HttpURLConnection.HTTP_NOT_FOUND, "API version not found: " + matcher.group(3));
+        }
+        synchronized (apiVersion) {
+            return handler.apply(apiVersion);
+        }
+    }
+
+    private static <K> StubResponse create(ConcurrentMap<K, ObjectNode> items, K key, ObjectNode item) {
+        if (null == key) {
+            return error(HttpURLConnection.HTTP_BAD_REQUEST, "Missing identifier");
+        }
+        return null == items.putIfAbsent(key, item)
+                ? ok(item)
+                : error(HttpURLConnection.HTTP_CONFLICT, "Already exists: " + key);
+    }
+
+    private static StubResponse list(Collection<? extends JsonNode> items) {
+        final ArrayNode array = NODES.arrayNode();
+        items.forEach(array::add);
+        return ok(array);
+    }
+
+    private static StubResponse fetch(ObjectNode item) {
+        return null != item ? ok(item) : error(HttpURLConnection.HTTP_NOT_FOUND, "Not found");
+    }
+
+    /**
+     * @param removed the item removed, or <code>null</code> if it did not exist
+     */
+    private static StubResponse delete(ObjectNode removed) {
+        return null != removed ? new StubResponse(HttpURLConnection.HTTP_NO_CONTENT, null)
+                : error(HttpURLConnection.HTTP_NOT_FOUND, "Not found");
+    }
+
+    private static StubResponse ok(JsonNode body) {
+        return new StubResponse(HttpURLConnection.HTTP_OK, body);
+    }
+
+    /**
+     * Errors take the same form as those returned by apiman.
+     */
+    private static StubResponse error(int status, String message) {
+        final ObjectNode body = NODES.objectNode();
+        body.put("type", "StubException");
+        body.put("errorCode", status);
+        body.put("message", message);
+        return new StubResponse(status, body);
+    }
+
+    private static void delay(Behaviour behaviour) {
+        long delayMillis = behaviour.latencyMillis;
+        if (behaviour.jitterMillis > 0) {
+            delayMillis += ThreadLocalRandom.current().nextLong(behaviour.jitterMillis + 1);
+        }
+        if (delayMillis > 0) {
+            try {
+                TimeUnit.MILLISECONDS.sleep(delayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private static void send(HttpExchange exchange, StubResponse response) throws IOException {
+        if (null == response.body && null == response.rawBody) {
+            exchange.sendResponseHeaders(response.status, -1);
+            return;
+        }
+
+        final byte[] bytes = null != response.rawBody ? response.rawBody
+                : MappingUtil.WIRE_MAPPER.writeValueAsBytes(response.body);
+        exchange.getResponseHeaders().add("Content-Type", null != response.rawBody
+                ? "application/octet-stream" : "application/json");
+        exchange.sendResponseHeaders(response.status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    private static String textOrNull(JsonNode node, String... fieldNames) {
+        for (String fieldName : fieldNames) {
+            if (null != node && node.hasNonNull(fieldName)) {
+                return node.get(fieldName).asText();
+            }
+        }
+        return null;
+    }
+
+    private static Long parseId(String id) {
+        try {
+            return Long.valueOf(id);
+        } catch (NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private static String buildKey(String... parts) {
+        return String.join("/", parts);
+    }
+}
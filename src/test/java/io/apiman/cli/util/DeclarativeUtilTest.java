@@ -19,15 +19,22 @@ package io.apiman.cli.util;
 import com.google.common.collect.ImmutableMap;
 import io.apiman.cli.command.DeclarativeTest;
 import io.apiman.cli.core.declarative.model.Declaration;
+import io.apiman.cli.core.declarative.model.DeclarativeApi;
 import io.apiman.cli.core.declarative.model.DeclarativeGateway;
+import io.apiman.cli.support.DeclarationGenerator;
 import org.junit.Test;
 
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Collections;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Tests for {@link DeclarativeUtil}.
@@ -118,6 +125,40 @@ public class DeclarativeUtilTest {
         assertEquals("value3", gateway.getConfig().getPassword());
     }
 
+    /**
+     * Expect that properties provided take precedence over shared properties, which take precedence over
+     * system properties, and that the same template can be rendered with different properties.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLoadDeclarationLayeredProperties() throws Exception {
+        System.setProperty("layered.username", "sysuser");
+
+        try {
+            final DeclarationTemplate template = DeclarativeUtil.compileDeclaration(
+                    Paths.get(DeclarativeTest.class.getResource("/layered-properties.yml").toURI()),
+                    MappingUtil.YAML_MAPPER);
+
+            final DeclarativeGateway overridden = template.render(
+                    ImmutableMap.of("host", "override.example.com")).getSystem().getGateways().get(0);
+
+            final DeclarativeGateway declared = template.render(
+                    Collections.emptyMap()).getSystem().getGateways().get(0);
+
+            // assert loaded with resolved placeholders
+            assertEquals("http://override.example.com/apiman-gateway-api", overridden.getConfig().getEndpoint());
+            assertEquals("sysuser", overridden.getConfig().getUsername());
+            assertEquals("changeme", overridden.getConfig().getPassword());
+
+            assertEquals("http://shared.example.com/apiman-gateway-api", declared.getConfig().getEndpoint());
+            assertEquals("sysuser", declared.getConfig().getUsername());
+
+        } finally {
+            System.clearProperty("layered.username");
+        }
+    }
+
     /**
      * Expect that the declarative model can be loaded from a JSON file with shared items.
      *
@@ -146,6 +187,100 @@ public class DeclarativeUtilTest {
         assertLoadedModel(declaration, 2);
     }
 
+    /**
+     * Expect that a generated declaration can be loaded in either format, with its placeholders resolved
+     * from shared properties.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLoadDeclarationGenerated() throws Exception {
+        final DeclarationGenerator generator = new DeclarationGenerator()
+                .withApis(5)
+                .withVersions(2)
+                .withPolicies(6)
+                .withPlaceholders(true);
+
+        for (String extension : new String[]{".yml", ".json"}) {
+            final Path declarationFile = generator.write(extension);
+            try {
+                final Declaration declaration = DeclarativeUtil.loadDeclaration(declarationFile,
+                        ".json".equals(extension) ? MappingUtil.JSON_MAPPER : MappingUtil.YAML_MAPPER,
+                        generator.getProperties());
+
+                assertEquals(generator.getApiVersionCount(), declaration.getOrg().getApis().size());
+
+                final DeclarativeApi api = declaration.getOrg().getApis().get(3);
+                assertEquals("api1", api.getName());
+                assertEquals("2.0", api.getVersion());
+                assertEquals("http://backend1.example.com/api1/v2", api.getConfig().getEndpoint());
+                assertEquals(6, api.getPolicies().size());
+
+            } finally {
+                Files.deleteIfExists(declarationFile);
+            }
+        }
+    }
+
+    /**
+     * Expect that a gzip compressed declaration is decompressed transparently.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLoadDeclarationGzip() throws Exception {
+        final Path declarationFile = Files.createTempFile("declaration", ".yml.gz");
+        try {
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(declarationFile))) {
+                Files.copy(Paths.get(DeclarativeTest.class.getResource("/simple-full.yml").toURI()), out);
+            }
+
+            final Declaration declaration = DeclarativeUtil.loadDeclaration(declarationFile,
+                    DeclarativeUtil.getMapper(declarationFile), Collections.emptyMap());
+
+            assertLoadedModel(declaration, 1);
+
+        } finally {
+            Files.deleteIfExists(declarationFile);
+        }
+    }
+
+    /**
+     * Expect that a placeholder written as a plain YAML scalar takes the type of its value, and that a
+     * quoted placeholder remains a string.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLoadDeclarationTypedPlaceholders() throws Exception {
+        final Declaration declaration = DeclarativeUtil.loadDeclaration(
+                Paths.get(DeclarativeTest.class.getResource("/typed-placeholders.yml").toURI()),
+                MappingUtil.YAML_MAPPER, ImmutableMap.of("api.public", "true", "cache.enabled", "yes"));
+
+        final DeclarativeApi api = declaration.getOrg().getApis().get(0);
+        assertTrue(api.getConfig().isMakePublic());
+
+        final Map<String, Object> policyConfig = api.getPolicies().get(0).getConfig();
+        assertEquals(60, policyConfig.get("ttl"));
+        assertEquals("60", policyConfig.get("label"));
+        assertEquals(true, policyConfig.get("enabled"));
+    }
+
+    /**
+     * Expect that a JSON declaration that is only valid once its placeholders are resolved can be loaded.
+     *
+     * @throws Exception
+     */
+    @Test
+    public void testLoadDeclarationUnquotedJsonPlaceholders() throws Exception {
+        final Path declarationFile = Paths.get(DeclarativeTest.class.getResource("/unquoted-placeholders.json").toURI());
+
+        final Declaration declaration = DeclarativeUtil.loadDeclaration(declarationFile,
+                DeclarativeUtil.getMapper(declarationFile), ImmutableMap.of("api.public", "true"));
+
+        assertTrue(declaration.getOrg().getApis().get(0).getConfig().isMakePublic());
+    }
+
     /**
      * Asserts the contents of the model.
      *
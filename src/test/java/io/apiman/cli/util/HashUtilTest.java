@@ -0,0 +1,72 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.util;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static com.google.common.collect.Maps.newLinkedHashMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Tests for {@link HashUtil}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class HashUtilTest {
+    /**
+     * Expect that key order, whitespace and number formatting do not affect the canonical form.
+     */
+    @Test
+    public void testCanonicaliseJson() throws Exception {
+        // test
+        final String actual = HashUtil.canonicaliseJson("{ \"b\": [1.50, 2e1, 0.0], \"a\": {\"y\": true, \"x\": 100} }");
+
+        // assertions
+        assertEquals("{\"a\":{\"x\":100,\"y\":true},\"b\":[1.5,20,0]}", actual);
+    }
+
+    @Test
+    public void testCanonicaliseJson_Invalid() throws Exception {
+        assertNull(HashUtil.canonicaliseJson(null));
+        assertNull(HashUtil.canonicaliseJson("{not json"));
+    }
+
+    /**
+     * Expect that a declared value is equal to the same configuration held as JSON by the server, but not to
+     * a configuration with a different value or type.
+     */
+    @Test
+    public void testCanonicaliseValue() throws Exception {
+        // test data
+        final Map<String, Object> config = newLinkedHashMap();
+        config.put("ttl", 60);
+        config.put("nested", Collections.singletonMap("ratio", 0.5));
+
+        // test
+        final String actual = HashUtil.canonicaliseValue(config);
+
+        // assertions
+        assertEquals(HashUtil.canonicaliseJson("{\"nested\":{\"ratio\":0.50},\"ttl\":60.0}"), actual);
+        assertNotEquals(HashUtil.canonicaliseJson("{\"nested\":{\"ratio\":0.5},\"ttl\":\"60\"}"), actual);
+        assertNotEquals(HashUtil.canonicaliseJson("{\"nested\":{\"ratio\":0.5},\"ttl\":61}"), actual);
+    }
+}
@@ -16,14 +16,19 @@
 
 package io.apiman.cli.util;
 
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
 import io.apiman.cli.support.TestModel;
 import org.junit.Test;
 
+import java.util.Collections;
 import java.util.Map;
 
 import static com.google.common.collect.Maps.newHashMap;
+import static com.google.common.collect.Maps.newLinkedHashMap;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
 
 /**
  * Tests for {@link MappingUtil}.
@@ -58,6 +63,37 @@ public class MappingUtilTest {
         assertEquals("null", actual);
     }
 
+    /**
+     * Expect that values written for the Management API contain no whitespace.
+     */
+    @Test
+    public void testSafeWriteValueAsWireJson() throws Exception {
+        // test data
+        final Map<String, Object> input = newLinkedHashMap();
+        input.put("key", "value");
+        input.put("nested", Collections.singletonMap("ttl", 60));
+
+        // test
+        final String actual = MappingUtil.safeWriteValueAsWireJson(input);
+
+        // assertions
+        assertEquals("{\"key\":\"value\",\"nested\":{\"ttl\":60}}", actual);
+    }
+
+    /**
+     * Expect that wire readers and writers are reused for the same type.
+     */
+    @Test
+    public void testWireReaderWriter_Cached() throws Exception {
+        // test
+        final ObjectReader reader = MappingUtil.getWireReader(TestModel.class);
+        final ObjectWriter writer = MappingUtil.getWireWriter(TestModel.class);
+
+        // assertions
+        assertSame(reader, MappingUtil.getWireReader(TestModel.class));
+        assertSame(writer, MappingUtil.getWireWriter(TestModel.class));
+    }
+
     @Test
     public void testMap() throws Exception {
         // test data
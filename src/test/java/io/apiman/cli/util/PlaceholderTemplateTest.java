@@ -0,0 +1,164 @@
+/*
+ * Copyright 2016 Pete Cornish
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package io.apiman.cli.util;
+
+import com.google.common.collect.ImmutableMap;
+import io.apiman.cli.exception.DeclarativeException;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests for {@link PlaceholderTemplate} and {@link PlaceholderResolver}.
+ *
+ * @author Pete Cornish {@literal <outofcoffee@gmail.com>}
+ */
+public class PlaceholderTemplateTest {
+    @Test
+    public void testRender_Literal() throws Exception {
+        // test
+        final PlaceholderTemplate template = PlaceholderTemplate.compile("No placeholders here.");
+
+        // assertions
+        assertFalse(template.hasPlaceholders());
+        assertEquals("No placeholders here.", template.render(PlaceholderResolver.of(Collections.emptyMap())));
+    }
+
+    @Test
+    public void testRender_Unresolved() throws Exception {
+        // test data
+        final PlaceholderTemplate template = PlaceholderTemplate.compile("a ${missing} b ${unterminated");
+
+        // test
+        final String actual = template.render(PlaceholderResolver.of(Collections.emptyMap()));
+
+        // assertions
+        assertTrue(template.hasPlaceholders());
+        assertEquals("a ${missing} b ${unterminated", actual);
+    }
+
+    @Test
+    public void testRender_Escaped() throws Exception {
+        // test
+        final String actual = PlaceholderTemplate.compile("$${key} ${key}")
+                .render(PlaceholderResolver.of(ImmutableMap.of("key", "value")));
+
+        // assertions
+        assertEquals("${key} value", actual);
+    }
+
+    @Test
+    public void testRender_DefaultValue() throws Exception {
+        // test data
+        final PlaceholderResolver resolver = PlaceholderResolver.of(ImmutableMap.of("fallback", "value"));
+
+        // test
+        final String actual = PlaceholderTemplate.compile("${missing:-default} ${missing:-${fallback}} ${fallback:-unused}")
+                .render(resolver);
+
+        // assertions
+        assertEquals("default value value", actual);
+    }
+
+    /**
+     * Expect that the name of a placeholder may itself contain placeholders, and that values are resolved
+     * recursively.
+     */
+    @Test
+    public void testRender_Nested() throws Exception {
+        // test data
+        final PlaceholderResolver resolver = PlaceholderResolver.of(ImmutableMap.of(
+                "env", "prod",
+                "endpoint.prod", "http://${host}/api",
+                "host", "prod.example.com"));
+
+        // test
+        final String actual = PlaceholderTemplate.compile("endpoint: ${endpoint.${env}}").render(resolver);
+
+        // assertions
+        assertEquals("endpoint: http://prod.example.com/api", actual);
+    }
+
+    /**
+     * Expect that earlier sources take precedence, and that each name is looked up once.
+     */
+    @Test
+    public void testRender_LayeredMemoized() throws Exception {
+        // test data
+        final AtomicInteger lookups = new AtomicInteger();
+        final PlaceholderResolver resolver = PlaceholderResolver.of(ImmutableMap.of("a", "first"))
+                .withFallback(ImmutableMap.of("a", "second", "b", "second"))
+                .withFallback(name -> {
+                    lookups.incrementAndGet();
+                    return "third";
+                });
+
+        final PlaceholderTemplate template = PlaceholderTemplate.compile("${a} ${b} ${c} ${c}");
+
+        // test
+        final String first = template.render(resolver);
+        final String second = template.render(resolver);
+
+        // assertions
+        assertEquals("first second third third", first);
+        assertEquals(first, second);
+        assertEquals(1, lookups.get());
+    }
+
+    @Test
+    public void testRender_SystemProperties() throws Exception {
+        // test data
+        System.setProperty("placeholder.test", "system");
+
+        try {
+            // test
+            final String actual = PlaceholderTemplate.compile("${placeholder.test}").render(
+                    PlaceholderResolver.of(Collections.emptyMap()).withFallback(PlaceholderResolver.SYSTEM_PROPERTIES));
+
+            // assertions
+            assertEquals("system", actual);
+
+        } finally {
+            System.clearProperty("placeholder.test");
+        }
+    }
+
+    @Test
+    public void testRender_Cycle() throws Exception {
+        // test data
+        final PlaceholderResolver resolver = PlaceholderResolver.of(ImmutableMap.of(
+                "a", "${b}",
+                "b", "x${c}",
+                "c", "${a}"));
+
+        // test
+        try {
+            PlaceholderTemplate.compile("value: ${a}").render(resolver);
+            fail("Expected a DeclarativeException");
+
+        } catch (DeclarativeException e) {
+            // assertions
+            assertEquals("Placeholder cycle: a -> b -> c -> a", e.getMessage());
+        }
+    }
+}